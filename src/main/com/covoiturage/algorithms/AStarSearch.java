@@ -0,0 +1,225 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Noeud;
+import com.covoiturage.models.PathResult;
+
+import java.util.*;
+
+/**
+ * Recherches point à point guidées sur {@link CompactGraph} : A* et A* bidirectionnel.
+ * L'heuristique par défaut est la distance orthodromique ({@link CalculDistance}), qui
+ * minore la longueur de toute liaison tant que celle-ci n'est pas plus courte que le vol
+ * d'oiseau entre ses extrémités.
+ */
+public final class AStarSearch {
+
+    /** Marge absorbant les erreurs d'arrondi de la formule de Haversine. */
+    private static final double HEURISTIC_SCALE = 1.0 - 1e-9;
+
+    private AStarSearch() {}
+
+    public static double distance(CompactGraph graph, int source, int target, SearchMode mode) {
+        return distance(graph, source, target, mode, greatCircleBound(graph));
+    }
+
+    public static PathResult findShortestPath(CompactGraph graph, int source, int target, SearchMode mode) {
+        return findShortestPath(graph, source, target, mode, greatCircleBound(graph));
+    }
+
+    /**
+     * Nombre de nœuds fixés par la requête (somme des deux sens en bidirectionnel),
+     * pour comparer les modes de recherche sur les mêmes requêtes.
+     */
+    public static int settledNodeCount(CompactGraph graph, int source, int target, SearchMode mode) {
+        return settledNodeCount(graph, source, target, mode, greatCircleBound(graph));
+    }
+
+    static double distance(CompactGraph graph, int source, int target, SearchMode mode, DistanceBound bound) {
+        switch (mode) {
+            case DIJKSTRA:
+                return DijkstraEngine.distance(graph, source, target);
+            case A_STAR:
+                return search(graph, source, target, bound).distance(target);
+            default:
+                return searchBidirectional(graph, source, target, bound).distance;
+        }
+    }
+
+    static PathResult findShortestPath(CompactGraph graph, int source, int target,
+                                       SearchMode mode, DistanceBound bound) {
+        if (source == target) {
+            return new PathResult(List.of(graph.getNodeId(source)), 0.0, 0.0, true);
+        }
+        switch (mode) {
+            case DIJKSTRA:
+                return DijkstraEngine.findShortestPath(graph, source, target);
+            case A_STAR:
+                DijkstraWorkspace workspace = search(graph, source, target, bound);
+                if (!workspace.isSettled(target)) {
+                    return noPath();
+                }
+                return DijkstraEngine.buildResult(graph, workspace, target);
+            default:
+                Meeting meeting = searchBidirectional(graph, source, target, bound);
+                if (meeting.node < 0) {
+                    return noPath();
+                }
+                return buildResult(graph, meeting);
+        }
+    }
+
+    static int settledNodeCount(CompactGraph graph, int source, int target, SearchMode mode, DistanceBound bound) {
+        switch (mode) {
+            case DIJKSTRA:
+                return DijkstraEngine.search(graph, source, target).getSettledCount();
+            case A_STAR:
+                return search(graph, source, target, bound).getSettledCount();
+            default:
+                Meeting meeting = searchBidirectional(graph, source, target, bound);
+                return meeting.forward.getSettledCount() + meeting.backward.getSettledCount();
+        }
+    }
+
+    static DistanceBound greatCircleBound(CompactGraph graph) {
+        return (from, to) -> {
+            Noeud a = graph.getNode(from);
+            Noeud b = graph.getNode(to);
+            return HEURISTIC_SCALE * CalculDistance.calculateDistance(
+                    a.getLatitude(), a.getLongitude(), b.getLatitude(), b.getLongitude());
+        };
+    }
+
+    /**
+     * A* unidirectionnel : la file est ordonnée par distance + borne vers la cible.
+     */
+    static DijkstraWorkspace search(CompactGraph graph, int source, int target, DistanceBound bound) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forCurrentThread(graph.getNodeCount());
+        IndexedMinHeap queue = workspace.queue();
+        workspace.start(source, bound.lowerBound(source, target));
+
+        while (!queue.isEmpty()) {
+            int current = workspace.settleNext();
+            if (current == target) {
+                break;
+            }
+
+            double currentDistance = workspace.distance(current);
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int next = graph.edgeTarget(edge);
+                if (workspace.isSettled(next)) {
+                    continue;
+                }
+                double nextDistance = currentDistance + graph.edgeDistance(edge);
+                if (nextDistance < workspace.distance(next)) {
+                    workspace.relax(next, nextDistance, current, nextDistance + bound.lowerBound(next, target));
+                }
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * A* bidirectionnel à potentiels moyennés : {@code p(v) = (b(v, t) - b(s, v)) / 2} en avant
+     * et {@code -p(v)} en arrière, ce qui revient à un Dijkstra bidirectionnel sur des longueurs
+     * repondérées positives. Arrêt dès que la somme des sommets des deux files atteint la
+     * meilleure longueur connue.
+     */
+    static Meeting searchBidirectional(CompactGraph graph, int source, int target, DistanceBound bound) {
+        int nodeCount = graph.getNodeCount();
+        CompactGraph reversed = graph.reversed();
+        DijkstraWorkspace forward = DijkstraWorkspace.forCurrentThread(nodeCount);
+        DijkstraWorkspace backward = DijkstraWorkspace.backwardForCurrentThread(nodeCount);
+        IndexedMinHeap forwardQueue = forward.queue();
+        IndexedMinHeap backwardQueue = backward.queue();
+
+        Meeting meeting = new Meeting(forward, backward);
+        forward.start(source, potential(bound, source, target, source));
+        backward.start(target, -potential(bound, source, target, target));
+        if (source == target) {
+            meeting.node = source;
+            meeting.distance = 0.0;
+            return meeting;
+        }
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forwardQueue.peekKey() + backwardQueue.peekKey() >= meeting.distance) {
+                break;
+            }
+            if (forwardQueue.size() <= backwardQueue.size()) {
+                expand(graph, forward, backward, meeting, bound, source, target, 1.0);
+            } else {
+                expand(reversed, backward, forward, meeting, bound, source, target, -1.0);
+            }
+        }
+        return meeting;
+    }
+
+    private static void expand(CompactGraph graph, DijkstraWorkspace self, DijkstraWorkspace other,
+                               Meeting meeting, DistanceBound bound, int source, int target, double sign) {
+        int current = self.settleNext();
+        double currentDistance = self.distance(current);
+        for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+            int next = graph.edgeTarget(edge);
+            if (self.isSettled(next)) {
+                continue;
+            }
+            double nextDistance = currentDistance + graph.edgeDistance(edge);
+            if (nextDistance < self.distance(next)) {
+                self.relax(next, nextDistance, current, nextDistance + sign * potential(bound, source, target, next));
+            }
+            double total = self.distance(next) + other.distance(next);
+            if (total < meeting.distance) {
+                meeting.distance = total;
+                meeting.node = next;
+            }
+        }
+    }
+
+    private static double potential(DistanceBound bound, int source, int target, int node) {
+        return (bound.lowerBound(node, target) - bound.lowerBound(source, node)) / 2.0;
+    }
+
+    private static PathResult buildResult(CompactGraph graph, Meeting meeting) {
+        List<Integer> nodes = new ArrayList<>();
+        for (int current = meeting.node; current != -1; current = meeting.forward.parent(current)) {
+            nodes.add(current);
+        }
+        Collections.reverse(nodes);
+        // Dans la recherche arrière, le parent d'un nœud est son successeur vers la cible
+        for (int current = meeting.backward.parent(meeting.node); current != -1;
+             current = meeting.backward.parent(current)) {
+            nodes.add(current);
+        }
+
+        List<String> path = new ArrayList<>(nodes.size());
+        double totalTime = 0.0;
+        for (int i = 0; i < nodes.size(); i++) {
+            path.add(graph.getNodeId(nodes.get(i)));
+            if (i > 0) {
+                totalTime += PlusCourtcChemin.estimateTravelTime(
+                        graph.getNode(nodes.get(i - 1)), graph.getNode(nodes.get(i)));
+            }
+        }
+        return new PathResult(path, meeting.distance, totalTime, true);
+    }
+
+    private static PathResult noPath() {
+        return new PathResult(Collections.emptyList(), Double.POSITIVE_INFINITY, Double.NaN, false);
+    }
+
+    /**
+     * Point de rencontre des deux recherches et longueur du meilleur chemin connu.
+     */
+    static final class Meeting {
+        final DijkstraWorkspace forward;
+        final DijkstraWorkspace backward;
+        int node = -1;
+        double distance = Double.POSITIVE_INFINITY;
+
+        Meeting(DijkstraWorkspace forward, DijkstraWorkspace backward) {
+            this.forward = forward;
+            this.backward = backward;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.covoiturage.algorithms;
+
+import java.util.*;
+
+/**
+ * Recherche adaptative à grand voisinage (ALNS) : à chaque itération, une partie des
+ * utilisateurs est retirée de la solution courante (au hasard, les plus coûteux ou des
+ * utilisateurs proches les uns des autres), puis réinsérée par insertion gloutonne ou à regret
+ * ({@link RegretInsertion}). Le résultat est accepté selon le critère du recuit, avec une
+ * température qui décroît sur le budget de temps. Les opérateurs sont tirés au sort selon des
+ * poids ajustés tous les {@value #SEGMENT_LENGTH} essais d'après leurs succès récents.
+ * <p>
+ * La recherche part de l'insertion regret-2 et s'arrête à l'échéance du budget ; chaque route
+ * de la meilleure solution est ensuite réordonnée par {@link LocalSearch}. Un utilisateur non
+ * servi coûte {@value #UNASSIGNED_PENALTY} km, si bien que le nombre d'utilisateurs servis
+ * prime sur la distance.
+ */
+public final class AdaptiveLargeNeighbourhoodSearch implements OptimizationStrategy {
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 2000;
+    private static final long DEFAULT_SEED = 42;
+    private static final double UNASSIGNED_PENALTY = 1e4;
+    /** Essais entre deux ajustements des poids. */
+    private static final int SEGMENT_LENGTH = 100;
+    /** Part du nouveau score dans le poids d'un opérateur. */
+    private static final double REACTION_FACTOR = 0.1;
+    private static final double SCORE_NEW_BEST = 33;
+    private static final double SCORE_IMPROVED = 9;
+    private static final double SCORE_ACCEPTED = 13;
+    /** Plus il est grand, plus le retrait des plus coûteux (ou des plus proches) est déterministe. */
+    private static final double WORST_DETERMINISM = 3;
+    private static final double RELATED_DETERMINISM = 6;
+    private static final int MIN_REMOVED = 4;
+    private static final int MAX_REMOVED = 60;
+    private static final double MAX_REMOVED_SHARE = 0.3;
+    /** Au départ, une solution 5 % plus chère est acceptée une fois sur deux. */
+    private static final double INITIAL_WORSENING = 0.05;
+    /** Température finale, rapportée à la température initiale. */
+    private static final double FINAL_TEMPERATURE_RATIO = 0.01;
+    private static final double IMPROVEMENT_EPSILON = 1e-9;
+
+    private static final int RANDOM_REMOVAL = 0;
+    private static final int WORST_REMOVAL = 1;
+    private static final int RELATED_REMOVAL = 2;
+    /** Regret de chaque opérateur de réinsertion : 1 pour l'insertion gloutonne. */
+    private static final int[] REPAIR_REGRETS = {1, 2, 3};
+
+    private final long timeBudgetMillis;
+    private final int maxIterations;
+    private final long seed;
+
+    public AdaptiveLargeNeighbourhoodSearch(long timeBudgetMillis) {
+        this(timeBudgetMillis, Integer.MAX_VALUE, DEFAULT_SEED);
+    }
+
+    /**
+     * @param maxIterations nombre maximal d'essais, atteint avant le budget sur les petites instances
+     */
+    public AdaptiveLargeNeighbourhoodSearch(long timeBudgetMillis, int maxIterations, long seed) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Le budget de temps ne peut pas être négatif : " + timeBudgetMillis);
+        }
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("Le nombre d'itérations ne peut pas être négatif : " + maxIterations);
+        }
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.maxIterations = maxIterations;
+        this.seed = seed;
+    }
+
+    @Override
+    public String getName() {
+        return "ALNS " + timeBudgetMillis + " ms";
+    }
+
+    @Override
+    public Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                              Map<String, Integer> capacities, CancellationToken token) {
+        return search(matrix, users, depots, capacities, token).getRoutes();
+    }
+
+    @Override
+    public Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                              Map<String, Integer> capacities, CancellationToken token,
+                                              ProgressListener listener) {
+        return search(matrix, users, depots, capacities, token, listener).getRoutes();
+    }
+
+    public Result search(DistanceMatrix matrix, List<String> users, List<String> depots,
+                         Map<String, Integer> capacities) {
+        return search(matrix, users, depots, capacities, CancellationToken.none());
+    }
+
+    /**
+     * Recherche arrêtée au plus tard à l'échéance ou à l'annulation du jeton ; la construction
+     * initiale va toujours à son terme.
+     */
+    public Result search(DistanceMatrix matrix, List<String> users, List<String> depots,
+                         Map<String, Integer> capacities, CancellationToken token) {
+        return search(matrix, users, depots, capacities, token, ProgressListener.none());
+    }
+
+    /**
+     * Recherche interruptible qui signale à {@code listener} la solution initiale puis,
+     * périodiquement, la meilleure solution trouvée (avant le réordonnancement final des routes).
+     */
+    public Result search(DistanceMatrix matrix, List<String> users, List<String> depots,
+                         Map<String, Integer> capacities, CancellationToken token, ProgressListener listener) {
+        Objects.requireNonNull(matrix, "matrix");
+        Objects.requireNonNull(token, "token");
+        Objects.requireNonNull(listener, "listener");
+        long start = System.nanoTime();
+        Search search = new Search(matrix, LocalSearch.toIndices(matrix, users),
+                LocalSearch.toIndices(matrix, depots), capacityArray(depots, capacities), new Random(seed));
+        double initialCost = search.current.total;
+        search.run(token.earliestDeadline(CancellationToken.deadlineAfter(start, timeBudgetMillis)), maxIterations, token, listener);
+
+        Solution best = search.best;
+        Map<String, List<String>> routes = new HashMap<>();
+        double finalCost = best.unassigned.length * UNASSIGNED_PENALTY;
+        for (int v = 0; v < depots.size(); v++) {
+            List<String> route = new ArrayList<>(best.lengths[v]);
+            for (int p = 0; p < best.lengths[v]; p++) {
+                route.add(matrix.getPointId(best.routes[v][p]));
+            }
+            route = LocalSearch.improve(matrix, route);
+            finalCost += new RouteState(matrix, LocalSearch.toIndices(matrix, route)).cost();
+            routes.put(depots.get(v), route);
+        }
+        return new Result(routes, initialCost, finalCost, best.unassigned.length, search.iterations,
+                search.removalWeights.clone(), search.repairWeights.clone(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static int[] capacityArray(List<String> depots, Map<String, Integer> capacities) {
+        int[] result = new int[depots.size()];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = Math.max(0, capacities.getOrDefault(depots.get(v), Integer.MAX_VALUE));
+        }
+        return result;
+    }
+
+    private static final class Search {
+        final DistanceMatrix matrix;
+        final Random random;
+        final int userCount;
+        final boolean[] removing;
+        final double[] removalWeights = {1, 1, 1};
+        final double[] repairWeights = new double[REPAIR_REGRETS.length];
+        final double[] removalScores = new double[3];
+        final double[] repairScores = new double[REPAIR_REGRETS.length];
+        final int[] removalUses = new int[3];
+        final int[] repairUses = new int[REPAIR_REGRETS.length];
+        Solution current;
+        /** Remplacée, jamais modifiée, à chaque nouvelle meilleure solution. */
+        Solution best;
+        int iterations;
+        private Solution reportedBest;
+        private Map<String, List<String>> reportedRoutes;
+
+        Search(DistanceMatrix matrix, int[] users, int[] depots, int[] capacities, Random random) {
+            this.matrix = matrix;
+            this.random = random;
+            this.userCount = users.length;
+            this.removing = new boolean[matrix.size()];
+            Arrays.fill(repairWeights, 1);
+
+            int[][] routes = new int[depots.length][];
+            int[] lengths = new int[depots.length];
+            for (int v = 0; v < depots.length; v++) {
+                routes[v] = new int[Math.min(capacities[v], users.length) + 1];
+                routes[v][0] = depots[v];
+                lengths[v] = 1;
+            }
+            int[] remaining = capacities.clone();
+            int[] unassigned = RegretInsertion.insert(matrix, routes, lengths, remaining, users,
+                    RegretInsertion.DEFAULT_REGRET);
+            current = new Solution(routes, lengths, remaining, unassigned);
+            current.evaluate(matrix);
+            best = current.copy();
+        }
+
+        void run(long deadline, int maxIterations, CancellationToken token, ProgressListener listener) {
+            long start = System.nanoTime();
+            long nextReport = start;
+            double span = Math.max(1, deadline - start);
+            // exp(-INITIAL_WORSENING · coût / T0) = 1/2
+            double distance = current.total - current.unassigned.length * UNASSIGNED_PENALTY;
+            double initialTemperature = INITIAL_WORSENING * distance / Math.log(2);
+            while (iterations < maxIterations) {
+                long now = System.nanoTime();
+                if (now >= deadline || token.isCancelled()) {
+                    break;
+                }
+                if (listener != ProgressListener.NONE && now >= nextReport) {
+                    report(listener, now - start);
+                    nextReport = now + ProgressListener.INTERVAL_MILLIS * 1_000_000;
+                }
+                int assignedCount = userCount - current.unassigned.length;
+                if (assignedCount == 0) {
+                    // Aucun utilisateur, ou aucune place : rien à déplacer
+                    break;
+                }
+                double progress = Math.max((now - start) / span,
+                        maxIterations == Integer.MAX_VALUE ? 0.0 : (double) iterations / maxIterations);
+                double temperature = initialTemperature * Math.pow(FINAL_TEMPERATURE_RATIO, progress);
+
+                int removal = roulette(removalWeights);
+                int repair = roulette(repairWeights);
+                Solution candidate = current.copy();
+                int[] removed = remove(candidate, removal, removedCount(assignedCount));
+                int[] pending = Arrays.copyOf(removed, removed.length + candidate.unassigned.length);
+                System.arraycopy(candidate.unassigned, 0, pending, removed.length, candidate.unassigned.length);
+                candidate.unassigned = RegretInsertion.insert(matrix, candidate.routes, candidate.lengths,
+                        candidate.remaining, pending, REPAIR_REGRETS[repair]);
+                candidate.evaluate(matrix);
+
+                double score = 0;
+                if (candidate.total < best.total - IMPROVEMENT_EPSILON) {
+                    best = candidate.copy();
+                    current = candidate;
+                    score = SCORE_NEW_BEST;
+                } else if (candidate.total < current.total - IMPROVEMENT_EPSILON) {
+                    current = candidate;
+                    score = SCORE_IMPROVED;
+                } else if (Math.abs(candidate.total - current.total) > IMPROVEMENT_EPSILON
+                        && random.nextDouble() < Math.exp((current.total - candidate.total) / temperature)) {
+                    current = candidate;
+                    score = SCORE_ACCEPTED;
+                }
+                removalScores[removal] += score;
+                removalUses[removal]++;
+                repairScores[repair] += score;
+                repairUses[repair]++;
+
+                iterations++;
+                if (iterations % SEGMENT_LENGTH == 0) {
+                    adjust(removalWeights, removalScores, removalUses);
+                    adjust(repairWeights, repairScores, repairUses);
+                }
+            }
+        }
+
+        /**
+         * Signale la meilleure solution ; ses routes ne sont recopiées que si elle a changé
+         * depuis le rapport précédent.
+         */
+        private void report(ProgressListener listener, long elapsedNanos) {
+            if (best != reportedBest) {
+                Map<String, List<String>> routes = new HashMap<>();
+                for (int v = 0; v < best.routes.length; v++) {
+                    List<String> route = new ArrayList<>(best.lengths[v]);
+                    for (int p = 0; p < best.lengths[v]; p++) {
+                        route.add(matrix.getPointId(best.routes[v][p]));
+                    }
+                    routes.put(route.get(0), Collections.unmodifiableList(route));
+                }
+                reportedRoutes = Collections.unmodifiableMap(routes);
+                reportedBest = best;
+            }
+            listener.onProgress(new SearchProgress(iterations, best.total - best.unassigned.length * UNASSIGNED_PENALTY,
+                    userCount - best.unassigned.length, userCount, reportedRoutes, elapsedNanos / 1_000_000));
+        }
+
+        private int removedCount(int assignedCount) {
+            int low = Math.min(MIN_REMOVED, assignedCount);
+            int high = Math.max(low, Math.min(MAX_REMOVED, (int) (assignedCount * MAX_REMOVED_SHARE)));
+            return low + random.nextInt(high - low + 1);
+        }
+
+        /**
+         * Retire {@code count} utilisateurs de la solution, sur place.
+         *
+         * @return les utilisateurs retirés
+         */
+        private int[] remove(Solution solution, int operator, int count) {
+            int[] assigned = new int[userCount];
+            double[] gains = new double[userCount];
+            int n = 0;
+            for (int v = 0; v < solution.routes.length; v++) {
+                int[] route = solution.routes[v];
+                int length = solution.lengths[v];
+                for (int p = 1; p < length; p++) {
+                    assigned[n] = route[p];
+                    if (operator == WORST_REMOVAL) {
+                        gains[n] = removalGain(route, length, p);
+                    }
+                    n++;
+                }
+            }
+            count = Math.min(count, n);
+            int[] removed = new int[count];
+
+            if (operator == RANDOM_REMOVAL) {
+                for (int i = 0; i < count; i++) {
+                    int j = i + random.nextInt(n - i);
+                    int chosen = assigned[j];
+                    assigned[j] = assigned[i];
+                    assigned[i] = chosen;
+                    removed[i] = chosen;
+                }
+            } else {
+                Integer[] order = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    order[i] = i;
+                }
+                double determinism;
+                if (operator == WORST_REMOVAL) {
+                    Arrays.sort(order, (a, b) -> Double.compare(gains[b], gains[a]));
+                    determinism = WORST_DETERMINISM;
+                } else {
+                    // Proximité à un utilisateur tiré au sort, lui-même en tête
+                    int seed = assigned[random.nextInt(n)];
+                    double[] relatedness = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        relatedness[i] = assigned[i] == seed ? -1.0
+                                : matrix.distance(seed, assigned[i]) + matrix.distance(assigned[i], seed);
+                    }
+                    Arrays.sort(order, (a, b) -> Double.compare(relatedness[a], relatedness[b]));
+                    determinism = RELATED_DETERMINISM;
+                }
+                List<Integer> candidates = new ArrayList<>(Arrays.asList(order));
+                for (int i = 0; i < count; i++) {
+                    int pick = operator == RELATED_REMOVAL && i == 0 ? 0
+                            : (int) (Math.pow(random.nextDouble(), determinism) * candidates.size());
+                    removed[i] = assigned[candidates.remove(pick)];
+                }
+            }
+
+            for (int user : removed) {
+                removing[user] = true;
+            }
+            for (int v = 0; v < solution.routes.length; v++) {
+                int[] route = solution.routes[v];
+                int kept = 1;
+                for (int p = 1; p < solution.lengths[v]; p++) {
+                    if (!removing[route[p]]) {
+                        route[kept++] = route[p];
+                    }
+                }
+                solution.remaining[v] += solution.lengths[v] - kept;
+                solution.lengths[v] = kept;
+            }
+            for (int user : removed) {
+                removing[user] = false;
+            }
+            return removed;
+        }
+
+        /**
+         * Économie réalisée en retirant le point en position {@code p} d'une route ouverte.
+         */
+        private double removalGain(int[] route, int length, int p) {
+            double gain = matrix.distance(route[p - 1], route[p]);
+            if (p + 1 < length) {
+                gain += matrix.distance(route[p], route[p + 1]) - matrix.distance(route[p - 1], route[p + 1]);
+            }
+            return gain;
+        }
+
+        private int roulette(double[] weights) {
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+            double draw = random.nextDouble() * total;
+            for (int i = 0; i < weights.length - 1; i++) {
+                draw -= weights[i];
+                if (draw < 0) {
+                    return i;
+                }
+            }
+            return weights.length - 1;
+        }
+
+        private static void adjust(double[] weights, double[] scores, int[] uses) {
+            for (int i = 0; i < weights.length; i++) {
+                if (uses[i] > 0) {
+                    weights[i] = weights[i] * (1 - REACTION_FACTOR) + REACTION_FACTOR * scores[i] / uses[i];
+                }
+                // Un opérateur ne disparaît jamais tout à fait
+                weights[i] = Math.max(weights[i], 0.01);
+                scores[i] = 0;
+                uses[i] = 0;
+            }
+        }
+    }
+
+    private static final class Solution {
+        final int[][] routes;
+        final int[] lengths;
+        final int[] remaining;
+        int[] unassigned;
+        double total;
+
+        Solution(int[][] routes, int[] lengths, int[] remaining, int[] unassigned) {
+            this.routes = routes;
+            this.lengths = lengths;
+            this.remaining = remaining;
+            this.unassigned = unassigned;
+        }
+
+        Solution copy() {
+            int[][] copied = new int[routes.length][];
+            for (int v = 0; v < routes.length; v++) {
+                copied[v] = routes[v].clone();
+            }
+            Solution solution = new Solution(copied, lengths.clone(), remaining.clone(), unassigned.clone());
+            solution.total = total;
+            return solution;
+        }
+
+        void evaluate(DistanceMatrix matrix) {
+            double sum = unassigned.length * UNASSIGNED_PENALTY;
+            for (int v = 0; v < routes.length; v++) {
+                for (int p = 1; p < lengths[v]; p++) {
+                    sum += matrix.distance(routes[v][p - 1], routes[v][p]);
+                }
+            }
+            total = sum;
+        }
+    }
+
+    public static final class Result {
+        private final Map<String, List<String>> routes;
+        private final double initialCost;
+        private final double finalCost;
+        private final int unassignedCount;
+        private final int iterationCount;
+        private final double[] removalWeights;
+        private final double[] repairWeights;
+        private final long elapsedMillis;
+
+        Result(Map<String, List<String>> routes, double initialCost, double finalCost, int unassignedCount,
+               int iterationCount, double[] removalWeights, double[] repairWeights, long elapsedMillis) {
+            this.routes = Collections.unmodifiableMap(routes);
+            this.initialCost = initialCost;
+            this.finalCost = finalCost;
+            this.unassignedCount = unassignedCount;
+            this.iterationCount = iterationCount;
+            this.removalWeights = removalWeights;
+            this.repairWeights = repairWeights;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public Map<String, List<String>> getRoutes() { return routes; }
+        /** Coût de la solution initiale, pénalités des utilisateurs non servis comprises. */
+        public double getInitialCost() { return initialCost; }
+        public double getFinalCost() { return finalCost; }
+        public int getUnassignedCount() { return unassignedCount; }
+        public int getIterationCount() { return iterationCount; }
+        /** Poids finaux des retraits aléatoire, des plus coûteux et des plus proches. */
+        public double[] getRemovalWeights() { return removalWeights.clone(); }
+        /** Poids finaux des réinsertions gloutonne, regret-2 et regret-3. */
+        public double[] getRepairWeights() { return repairWeights.clone(); }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+}
@@ -0,0 +1,169 @@
+package com.covoiturage.algorithms;
+
+import java.util.SplittableRandom;
+
+/**
+ * Chaîne de Metropolis sur une route ({@link RouteState}), avec les mouvements de
+ * {@link LocalSearch} : échange de deux points, 2-opt et relocalisation / Or-opt, ces deux
+ * derniers guidés par les listes de plus proches voisins. Chaque mouvement est évalué en O(1)
+ * et n'est appliqué, en place, que s'il est accepté. La température est fixée par l'appelant
+ * à chaque pas : refroidissement pour le recuit, échelle fixe pour le recuit parallèle.
+ * Une chaîne n'est utilisée que par un thread à la fois.
+ */
+final class AnnealingChain {
+
+    private static final int SWAP = 0;
+    private static final int REVERSE = 1;
+    /** Déplacement de segment, codé {@code MOVE + longueur}. */
+    private static final int MOVE = 2;
+
+    private final DistanceMatrix matrix;
+    private final RouteState state;
+    private final int[][] neighbours;
+    private final SplittableRandom random;
+    private final int[] backup;
+    private final int[] bestRoute;
+    private double currentCost;
+    private double bestCost;
+
+    AnnealingChain(DistanceMatrix matrix, int[] initialRoute, int[][] neighbours, SplittableRandom random) {
+        this.matrix = matrix;
+        this.state = new RouteState(matrix, initialRoute);
+        this.neighbours = neighbours;
+        this.random = random;
+        this.backup = new int[initialRoute.length];
+        this.bestRoute = initialRoute.clone();
+        this.currentCost = state.cost();
+        this.bestCost = currentCost;
+    }
+
+    double getCurrentCost() {
+        return currentCost;
+    }
+
+    double getBestCost() {
+        return bestCost;
+    }
+
+    /**
+     * Tire un mouvement et l'accepte selon le critère de Metropolis à {@code temperature} ;
+     * le départ (position 0) ne bouge jamais.
+     *
+     * @return {@code true} si un mouvement a été accepté
+     */
+    boolean step(double temperature) {
+        int n = state.size();
+        if (n <= 2) {
+            return false;
+        }
+
+        int type = random.nextInt(3);
+        int first;
+        int second;
+        if (type == SWAP) {
+            first = random.nextInt(n - 1) + 1;
+            second = random.nextInt(n - 1) + 1;
+            if (first == second) {
+                return false;
+            }
+            if (first > second) {
+                int tmp = first;
+                first = second;
+                second = tmp;
+            }
+        } else if (type == REVERSE) {
+            int p = random.nextInt(n);
+            int[] candidates = neighbours[state.nodeAt(p)];
+            int q = state.positionOf(candidates[random.nextInt(candidates.length)]);
+            first = Math.min(p, q) + 1;
+            second = Math.max(p, q);
+            if (first >= second) {
+                return false;
+            }
+        } else {
+            int length = 1 + random.nextInt(Math.min(LocalSearch.MAX_SEGMENT_LENGTH, n - 1));
+            first = 1 + random.nextInt(n - length);
+            int[] candidates = neighbours[state.nodeAt(first)];
+            second = state.positionOf(candidates[random.nextInt(candidates.length)]);
+            if (!LocalSearch.isValidAnchor(second, first, length)) {
+                return false;
+            }
+            type = MOVE + length;
+        }
+
+        double delta = Double.isInfinite(currentCost) ? Double.NaN : delta(type, first, second);
+        if (Double.isNaN(delta) || Double.isInfinite(delta)) {
+            // Un tronçon sans chemin rend l'écart indéfini : on applique, recalcule tout et restaure si refusé
+            state.copyInto(backup);
+            apply(type, first, second);
+            double newCost = state.cost();
+            if (acceptanceProbability(currentCost, newCost, temperature) > random.nextDouble()) {
+                accept(newCost);
+                return true;
+            }
+            state.restore(backup);
+            return false;
+        }
+
+        double newCost = currentCost + delta;
+        if (acceptanceProbability(currentCost, newCost, temperature) > random.nextDouble()) {
+            apply(type, first, second);
+            accept(newCost);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Le mouvement accepté est déjà appliqué : il devient la route courante.
+     */
+    private void accept(double newCost) {
+        currentCost = newCost;
+        if (newCost < bestCost) {
+            state.copyInto(bestRoute);
+            bestCost = newCost;
+        }
+    }
+
+    /**
+     * Repart de la meilleure route rencontrée, pour un réchauffage.
+     */
+    void restartFromBest() {
+        state.restore(bestRoute);
+        currentCost = bestCost;
+    }
+
+    /**
+     * Meilleure route rencontrée, avec son coût recalculé (les écarts cumulés peuvent dériver
+     * de quelques ulp).
+     */
+    RecuitSimule.OptimizationResult bestResult() {
+        RouteState best = new RouteState(matrix, bestRoute);
+        double cost = best.cost();
+        return new RecuitSimule.OptimizationResult(best.toPointIds(), cost, cost < Double.POSITIVE_INFINITY);
+    }
+
+    private double delta(int type, int first, int second) {
+        if (type == SWAP) {
+            return state.swapDelta(first, second);
+        }
+        if (type == REVERSE) {
+            return state.reverseDelta(first, second);
+        }
+        return state.moveDelta(first, type - MOVE, second);
+    }
+
+    private void apply(int type, int first, int second) {
+        if (type == SWAP) {
+            state.applySwap(first, second);
+        } else if (type == REVERSE) {
+            state.applyReverse(first, second);
+        } else {
+            state.applyMove(first, type - MOVE, second);
+        }
+    }
+
+    static double acceptanceProbability(double currentCost, double newCost, double temperature) {
+        return (newCost < currentCost) ? 1.0 : Math.exp((currentCost - newCost) / temperature);
+    }
+}
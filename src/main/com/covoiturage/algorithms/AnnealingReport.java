@@ -0,0 +1,62 @@
+package com.covoiturage.algorithms;
+
+/**
+ * Bilan d'un recuit à programme adaptatif : route obtenue, taux d'acceptation, réchauffages
+ * et courbe d'amélioration (itération et coût de chaque nouvelle meilleure route).
+ */
+public final class AnnealingReport {
+
+    private final RecuitSimule.OptimizationResult result;
+    private final double initialCost;
+    private final double initialTemperature;
+    private final int iterations;
+    private final int acceptedMoves;
+    private final int uphillMoves;
+    private final int reheats;
+    private final boolean stoppedOnStagnation;
+    private final boolean stoppedByToken;
+    private final long elapsedMillis;
+    private final int[] curveIterations;
+    private final double[] curveCosts;
+
+    AnnealingReport(RecuitSimule.OptimizationResult result, double initialCost, double initialTemperature,
+                    int iterations, int acceptedMoves, int uphillMoves, int reheats, boolean stoppedOnStagnation,
+                    boolean stoppedByToken, long elapsedMillis, int[] curveIterations, double[] curveCosts) {
+        this.result = result;
+        this.initialCost = initialCost;
+        this.initialTemperature = initialTemperature;
+        this.iterations = iterations;
+        this.acceptedMoves = acceptedMoves;
+        this.uphillMoves = uphillMoves;
+        this.reheats = reheats;
+        this.stoppedOnStagnation = stoppedOnStagnation;
+        this.stoppedByToken = stoppedByToken;
+        this.elapsedMillis = elapsedMillis;
+        this.curveIterations = curveIterations;
+        this.curveCosts = curveCosts;
+    }
+
+    public RecuitSimule.OptimizationResult getResult() { return result; }
+    public double getInitialCost() { return initialCost; }
+    /** Température déduite de l'échantillon de mouvements. */
+    public double getInitialTemperature() { return initialTemperature; }
+    public int getIterations() { return iterations; }
+    public int getAcceptedMoves() { return acceptedMoves; }
+    /** Mouvements acceptés qui allongeaient la route. */
+    public int getUphillMoves() { return uphillMoves; }
+    public int getReheats() { return reheats; }
+    /** Vrai si le recuit s'est arrêté faute d'amélioration, avant la fin de son budget. */
+    public boolean isStoppedOnStagnation() { return stoppedOnStagnation; }
+    /** Vrai si le jeton d'arrêt (annulation ou échéance) a interrompu le recuit. */
+    public boolean isStoppedByToken() { return stoppedByToken; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    public double getAcceptanceRate() {
+        return iterations == 0 ? 0.0 : (double) acceptedMoves / iterations;
+    }
+
+    /** Itération de chaque nouvelle meilleure route, dans l'ordre. */
+    public int[] getCurveIterations() { return curveIterations.clone(); }
+    /** Coût de chaque nouvelle meilleure route, décroissant. */
+    public double[] getCurveCosts() { return curveCosts.clone(); }
+}
@@ -0,0 +1,176 @@
+package com.covoiturage.algorithms;
+
+/**
+ * Programme de refroidissement adaptatif du recuit ({@link RecuitSimule#anneal}) : la
+ * température initiale est déduite d'un échantillon de mouvements (un écart défavorable moyen
+ * est accepté avec la probabilité {@code initialAcceptance}), puis elle décroît
+ * géométriquement jusqu'à être divisée par {@code coolingRange}, au rythme du budget
+ * d'itérations ou de temps. Une fois la moitié du palier refroidie, après
+ * {@code stagnationLimit} itérations sans nouvelle meilleure route, le recuit repart de la
+ * meilleure route avec une température réchauffée, au plus {@code maxReheats} fois, puis
+ * s'arrête.
+ * <p>
+ * Les valeurs nulles du nombre d'itérations et du seuil de stagnation sont calculées d'après la
+ * taille de la route. Instances immuables : chaque {@code with...} renvoie une copie.
+ */
+public final class AnnealingSchedule {
+
+    /** Itérations par point de la route lorsque le nombre d'itérations est automatique. */
+    static final int ITERATIONS_PER_STOP = 500;
+    static final int MIN_ITERATIONS = 1000;
+    /** Itérations sans amélioration avant réchauffage ou arrêt, en part du budget d'itérations. */
+    static final double STAGNATION_SHARE = 0.1;
+    /** Même seuil par point de la route, pour un budget de temps. */
+    static final int STAGNATION_PER_STOP = 200;
+    static final int MIN_STAGNATION = 200;
+
+    private static final AnnealingSchedule DEFAULTS = new AnnealingSchedule(0, 0, 0.1, 1000.0, 0, 2, 0.5);
+
+    private final int maxIterations;
+    private final long timeBudgetMillis;
+    private final double initialAcceptance;
+    private final double coolingRange;
+    private final int stagnationLimit;
+    private final int maxReheats;
+    private final double reheatFactor;
+
+    private AnnealingSchedule(int maxIterations, long timeBudgetMillis, double initialAcceptance,
+                              double coolingRange, int stagnationLimit, int maxReheats, double reheatFactor) {
+        this.maxIterations = maxIterations;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.initialAcceptance = initialAcceptance;
+        this.coolingRange = coolingRange;
+        this.stagnationLimit = stagnationLimit;
+        this.maxReheats = maxReheats;
+        this.reheatFactor = reheatFactor;
+    }
+
+    /**
+     * {@value #ITERATIONS_PER_STOP} itérations par point (au moins {@value #MIN_ITERATIONS}) ;
+     * un écart défavorable moyen accepté une fois sur dix au départ, la route initiale (plus
+     * proche voisin) étant déjà bonne ; température divisée par 1000 ; 2 réchauffages à
+     * mi-température initiale.
+     */
+    public static AnnealingSchedule defaults() {
+        return DEFAULTS;
+    }
+
+    public static AnnealingSchedule iterations(int maxIterations) {
+        return DEFAULTS.withMaxIterations(maxIterations);
+    }
+
+    /**
+     * Refroidissement réglé sur la durée : la température suit le temps écoulé.
+     *
+     * @param timeBudgetMillis durée du recuit, strictement positive : sans elle, rien ne borne
+     *                         le nombre d'itérations
+     */
+    public static AnnealingSchedule timeBudget(long timeBudgetMillis) {
+        if (timeBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Le budget de temps doit être positif : " + timeBudgetMillis);
+        }
+        return DEFAULTS.withTimeBudgetMillis(timeBudgetMillis).withMaxIterations(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxIterations nombre maximal d'itérations ; 0 pour le calculer d'après la route
+     */
+    public AnnealingSchedule withMaxIterations(int maxIterations) {
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("Le nombre d'itérations ne peut pas être négatif : " + maxIterations);
+        }
+        return new AnnealingSchedule(maxIterations, timeBudgetMillis, initialAcceptance, coolingRange,
+                stagnationLimit, maxReheats, reheatFactor);
+    }
+
+    /**
+     * @param timeBudgetMillis durée maximale ; 0 pour ne régler le refroidissement que sur les
+     *                         itérations, dont le nombre redevient automatique s'il n'était
+     *                         borné que par le temps ({@link #timeBudget(long)})
+     */
+    public AnnealingSchedule withTimeBudgetMillis(long timeBudgetMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Le budget de temps ne peut pas être négatif : " + timeBudgetMillis);
+        }
+        int iterations = timeBudgetMillis == 0 && maxIterations == Integer.MAX_VALUE ? 0 : maxIterations;
+        return new AnnealingSchedule(iterations, timeBudgetMillis, initialAcceptance, coolingRange,
+                stagnationLimit, maxReheats, reheatFactor);
+    }
+
+    /**
+     * @param initialAcceptance probabilité d'accepter un écart défavorable moyen au départ
+     * @param coolingRange rapport entre les températures initiale et finale
+     */
+    public AnnealingSchedule withTemperatures(double initialAcceptance, double coolingRange) {
+        if (!(initialAcceptance > 0 && initialAcceptance < 1)) {
+            throw new IllegalArgumentException("La probabilité d'acceptation doit être dans ]0, 1[ : " +
+                    initialAcceptance);
+        }
+        if (!(coolingRange > 1)) {
+            throw new IllegalArgumentException("Le rapport des températures doit dépasser 1 : " + coolingRange);
+        }
+        return new AnnealingSchedule(maxIterations, timeBudgetMillis, initialAcceptance, coolingRange,
+                stagnationLimit, maxReheats, reheatFactor);
+    }
+
+    /**
+     * @param stagnationLimit itérations sans amélioration avant réchauffage ou arrêt ; 0 pour le
+     *                        calculer d'après la route
+     * @param maxReheats nombre de réchauffages ; 0 pour s'arrêter à la première stagnation
+     * @param reheatFactor température d'un réchauffage, rapportée à la température initiale
+     */
+    public AnnealingSchedule withReheats(int stagnationLimit, int maxReheats, double reheatFactor) {
+        if (stagnationLimit < 0 || maxReheats < 0) {
+            throw new IllegalArgumentException("Seuil de stagnation et nombre de réchauffages doivent être positifs : " +
+                    stagnationLimit + ", " + maxReheats);
+        }
+        if (!(reheatFactor > 0 && reheatFactor <= 1)) {
+            throw new IllegalArgumentException("Le facteur de réchauffage doit être dans ]0, 1] : " + reheatFactor);
+        }
+        return new AnnealingSchedule(maxIterations, timeBudgetMillis, initialAcceptance, coolingRange,
+                stagnationLimit, maxReheats, reheatFactor);
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public double getInitialAcceptance() {
+        return initialAcceptance;
+    }
+
+    public double getCoolingRange() {
+        return coolingRange;
+    }
+
+    public int getStagnationLimit() {
+        return stagnationLimit;
+    }
+
+    public int getMaxReheats() {
+        return maxReheats;
+    }
+
+    public double getReheatFactor() {
+        return reheatFactor;
+    }
+
+    int iterationsFor(int routeSize) {
+        return maxIterations > 0 ? maxIterations : Math.max(MIN_ITERATIONS, ITERATIONS_PER_STOP * routeSize);
+    }
+
+    int stagnationFor(int routeSize) {
+        if (stagnationLimit > 0) {
+            return stagnationLimit;
+        }
+        int iterations = iterationsFor(routeSize);
+        int limit = iterations == Integer.MAX_VALUE
+                ? STAGNATION_PER_STOP * routeSize
+                : (int) (STAGNATION_SHARE * iterations);
+        return Math.max(MIN_STAGNATION, limit);
+    }
+}
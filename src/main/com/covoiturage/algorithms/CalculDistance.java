@@ -20,7 +20,7 @@ public final class CalculDistance {
                 arrivee.getLatitude(), arrivee.getLongitude());
     }
 
-    private static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
+    static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         double lat1Rad = Math.toRadians(lat1);
         double lat2Rad = Math.toRadians(lat2);
         double deltaLat = Math.toRadians(lat2 - lat1);
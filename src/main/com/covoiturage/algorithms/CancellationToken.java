@@ -0,0 +1,103 @@
+package com.covoiturage.algorithms;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jeton d'arrêt coopératif d'une optimisation : annulation explicite ({@link #cancel()}) ou
+ * échéance. Les boucles principales des heuristiques le consultent périodiquement et rendent
+ * alors la meilleure solution trouvée ; la construction initiale, rapide et nécessaire à une
+ * solution réalisable, va toujours à son terme.
+ * <p>
+ * Un même jeton est lu par tous les threads d'un job.
+ */
+public final class CancellationToken {
+
+    private static final CancellationToken NONE = new CancellationToken(Long.MAX_VALUE, false);
+
+    private final long deadlineNanos;
+    private final boolean cancellable;
+    private volatile boolean cancelled;
+
+    private CancellationToken(long deadlineNanos, boolean cancellable) {
+        this.deadlineNanos = deadlineNanos;
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Jeton jamais déclenché ; {@link #cancel()} est sans effet.
+     */
+    public static CancellationToken none() {
+        return NONE;
+    }
+
+    /**
+     * Jeton sans échéance, déclenché uniquement par {@link #cancel()}.
+     */
+    public static CancellationToken cancellable() {
+        return new CancellationToken(Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Jeton qui expire {@code timeoutMillis} ms après sa création ; 0 pour ne fixer aucune échéance.
+     * Un délai au-delà de l'horizon de {@link System#nanoTime()} équivaut lui aussi à aucune échéance.
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Le délai ne peut pas être négatif : " + timeoutMillis);
+        }
+        return timeoutMillis == 0 ? cancellable()
+                : new CancellationToken(deadlineAfter(System.nanoTime(), timeoutMillis), true);
+    }
+
+    public void cancel() {
+        if (cancellable) {
+            cancelled = true;
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean hasDeadline() {
+        return deadlineNanos != Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return hasDeadline() && System.nanoTime() >= deadlineNanos;
+    }
+
+    /**
+     * Vrai si le calcul doit s'arrêter : jeton annulé ou échéance dépassée.
+     */
+    public boolean shouldStop() {
+        return cancelled || isExpired();
+    }
+
+    /**
+     * Temps restant avant l'échéance ({@code Long.MAX_VALUE} sans échéance, 0 si dépassée).
+     */
+    public long remainingMillis() {
+        if (!hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    /**
+     * Échéance {@code millis} ms après {@code startNanos}, saturée à {@code Long.MAX_VALUE} (aucune
+     * échéance) plutôt que de déborder.
+     */
+    static long deadlineAfter(long startNanos, long millis) {
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(millis);
+        return deadline < startNanos ? Long.MAX_VALUE : deadline;
+    }
+
+    /**
+     * Échéance la plus proche entre celle du jeton et {@code deadlineNanos} (horloge
+     * {@link System#nanoTime()}).
+     */
+    long earliestDeadline(long deadlineNanos) {
+        return Math.min(this.deadlineNanos, deadlineNanos);
+    }
+}
@@ -1,7 +1,6 @@
 package com.covoiturage.algorithms;
 
 import com.covoiturage.models.Graph;
-import com.covoiturage.models.PathResult;
 import java.util.*;
 
 public final class ConflictDetector {
@@ -13,6 +12,14 @@ public final class ConflictDetector {
             Map<String, List<String>> assignments,
             Map<String, Integer> capacites) {
 
+        return detecterConflits(construireMatrice(graph, assignments), assignments, capacites);
+    }
+
+    public static List<String> detecterConflits(
+            DistanceMatrix matrice,
+            Map<String, List<String>> assignments,
+            Map<String, Integer> capacites) {
+
         List<String> conflits = new ArrayList<>();
 
         // 1. Vérifier les capacités des véhicules
@@ -52,13 +59,12 @@ public final class ConflictDetector {
                 String from = route.get(i);
                 String to = route.get(i + 1);
 
-                if (!graph.containsNode(from) || !graph.containsNode(to)) {
+                if (!matrice.containsPoint(from) || !matrice.containsPoint(to)) {
                     conflits.add("NOEUD_INEXISTANT: Chemin de " + from + " à " + to + " impossible");
                     continue;
                 }
 
-                PathResult path = PlusCourtcChemin.findShortestPath(graph, from, to);
-                if (!path.isPathExists()) {
+                if (Double.isInfinite(matrice.distance(from, to))) {
                     conflits.add("CHEMIN_IMPOSSIBLE: Aucun chemin trouvé de " + from + " à " + to);
                 }
             }
@@ -72,10 +78,18 @@ public final class ConflictDetector {
             Map<String, List<String>> assignments,
             Map<String, String> horairesUtilisateurs) {
 
+        return verifierContraintesTemps(construireMatrice(graph, assignments), assignments, horairesUtilisateurs);
+    }
+
+    public static boolean verifierContraintesTemps(
+            DistanceMatrix matrice,
+            Map<String, List<String>> assignments,
+            Map<String, String> horairesUtilisateurs) {
+
         // Implémentation simplifiée des contraintes temporelles
         for (List<String> route : assignments.values()) {
             if (route.size() > 1) {
-                double tempsTotal = estimerTempsTrajet(graph, route);
+                double tempsTotal = estimerTempsTrajet(matrice, route);
                 if (tempsTotal > 120.0) { // 2 heures max par exemple
                     return false;
                 }
@@ -84,13 +98,17 @@ public final class ConflictDetector {
         return true;
     }
 
-    private static double estimerTempsTrajet(Graph graph, List<String> route) {
+    private static double estimerTempsTrajet(DistanceMatrix matrice, List<String> route) {
         double tempsTotal = 0.0;
         for (int i = 0; i < route.size() - 1; i++) {
-            PathResult path = PlusCourtcChemin.findShortestPath(graph, route.get(i), route.get(i + 1));
-            if (path.isPathExists()) {
-                // Utiliser le temps calculé ou estimer à partir de la distance
-                double distance = path.getTotalDistance();
+            int from = matrice.indexOf(route.get(i));
+            int to = matrice.indexOf(route.get(i + 1));
+            if (from < 0 || to < 0) {
+                // Point absent du graphe : la contrainte ne peut pas être respectée
+                return Double.POSITIVE_INFINITY;
+            }
+            double distance = matrice.distance(from, to);
+            if (!Double.isInfinite(distance)) {
                 double vitesseMoyenne = 40.0; // km/h en ville
                 tempsTotal += (distance / vitesseMoyenne) * 60; // Conversion en minutes
             }
@@ -98,6 +116,21 @@ public final class ConflictDetector {
         return tempsTotal;
     }
 
+    /**
+     * Matrice restreinte aux points des routes présents dans le graphe.
+     */
+    private static DistanceMatrix construireMatrice(Graph graph, Map<String, List<String>> assignments) {
+        List<String> points = new ArrayList<>();
+        for (List<String> route : assignments.values()) {
+            for (String point : route) {
+                if (graph.containsNode(point)) {
+                    points.add(point);
+                }
+            }
+        }
+        return DistanceMatrix.build(graph, points);
+    }
+
     // Méthode utilitaire pour vérifier si une solution est valide
     public static boolean solutionEstValide(
             Graph graph,
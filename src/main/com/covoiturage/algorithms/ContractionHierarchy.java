@@ -0,0 +1,978 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+import com.covoiturage.models.Noeud;
+import com.covoiturage.models.PathResult;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Hiérarchie de contraction (CH) d'un réseau routier.
+ * <p>
+ * Le prétraitement contracte les nœuds un à un, par importance croissante, en ajoutant des
+ * raccourcis là où aucun chemin témoin n'existe. Une requête n'explore ensuite que les liaisons
+ * montantes depuis la source et depuis la cible, soit quelques centaines de nœuds même sur un
+ * réseau urbain complet ; un nœud atteint plus court par un voisin de rang supérieur n'est pas
+ * développé (« stall-on-demand »). La hiérarchie est figée et peut être enregistrée puis rechargée
+ * ({@link #save(OutputStream)}, {@link #load(InputStream)}).
+ * <p>
+ * Les points d'un job qui ne sont pas des nœuds du réseau y sont rattachés par un
+ * {@link Overlay} ({@link #attach(List)}), comme pour {@link RoadNetwork}.
+ */
+public final class ContractionHierarchy {
+
+    private static final int FORMAT_MAGIC = 0x43484331; // "CHC1"
+    /** Nombre maximal de nœuds fixés par une recherche de témoin lors d'une contraction. */
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+    /** Limite plus basse pour la simple estimation des priorités, recalculées très souvent. */
+    private static final int SIMULATION_SETTLED_LIMIT = 50;
+
+    private final Noeud[] nodes;
+    private final Map<String, Integer> indexById;
+    private final int[] ranks;
+    /** Liaisons {@code u → w} avec rang(w) > rang(u), rangées par {@code u}. */
+    private final Edges upward;
+    /** Liaisons {@code u → v} avec rang(u) > rang(v), rangées par {@code v} (cible = {@code u}). */
+    private final Edges downward;
+    private final long preprocessingMillis;
+    /** Index des nœuds pour le rattachement des points ; lectures concurrentes sûres une fois construit. */
+    private final SpatialIndex index;
+
+    private ContractionHierarchy(Noeud[] nodes, int[] ranks, Edges upward, Edges downward,
+                                 long preprocessingMillis) {
+        this.nodes = nodes;
+        this.ranks = ranks;
+        this.upward = upward;
+        this.downward = downward;
+        this.preprocessingMillis = preprocessingMillis;
+        Map<String, Integer> index = new HashMap<>(nodes.length * 2);
+        for (int i = 0; i < nodes.length; i++) {
+            index.put(nodes[i].getId(), i);
+        }
+        this.indexById = Collections.unmodifiableMap(index);
+        this.index = SpatialIndex.of(Arrays.asList(nodes));
+    }
+
+    public static ContractionHierarchy build(Graph graph) {
+        Objects.requireNonNull(graph, "graph");
+        return build(CompactGraph.fromGraph(graph));
+    }
+
+    /**
+     * Prétraitement hors ligne : coûteux (de l'ordre de la seconde pour quelques dizaines de
+     * milliers de nœuds), à exécuter une fois puis à enregistrer.
+     */
+    public static ContractionHierarchy build(CompactGraph graph) {
+        Objects.requireNonNull(graph, "graph");
+        long start = System.nanoTime();
+        Builder builder = new Builder(graph);
+        builder.contractAll();
+
+        Noeud[] nodes = new Noeud[graph.getNodeCount()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.getNode(i);
+        }
+        long preprocessingMillis = (System.nanoTime() - start) / 1_000_000;
+        return new ContractionHierarchy(nodes, builder.ranks,
+                builder.upwardEdges.toEdges(nodes.length), builder.downwardEdges.toEdges(nodes.length),
+                preprocessingMillis);
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Nombre de liaisons de la hiérarchie (originales et raccourcis).
+     */
+    public int getEdgeCount() {
+        return upward.size() + downward.size();
+    }
+
+    public int getShortcutCount() {
+        return upward.shortcutCount() + downward.shortcutCount();
+    }
+
+    public long getPreprocessingMillis() {
+        return preprocessingMillis;
+    }
+
+    public boolean containsNode(String nodeId) {
+        return indexById.containsKey(nodeId);
+    }
+
+    /**
+     * @return l'indice du nœud, ou -1 s'il n'appartient pas à la hiérarchie
+     */
+    public int indexOf(String nodeId) {
+        Integer index = indexById.get(nodeId);
+        return index != null ? index : -1;
+    }
+
+    public String getNodeId(int index) {
+        return nodes[index].getId();
+    }
+
+    public Noeud getNode(int index) {
+        return nodes[index];
+    }
+
+    public Overlay attach(List<Noeud> points) {
+        return attach(points, RoadNetwork.DEFAULT_ACCESS_NODES);
+    }
+
+    /**
+     * Rattache les points d'un job à la hiérarchie : un point qui en est déjà un nœud y est
+     * relié directement, les autres à leurs {@code accessNodes} nœuds les plus proches par un
+     * tronçon d'accès à vol d'oiseau. Les doublons d'identifiant sont ignorés.
+     */
+    public Overlay attach(List<Noeud> points, int accessNodes) {
+        Objects.requireNonNull(points, "points");
+        if (accessNodes < 1) {
+            throw new IllegalArgumentException("Il faut au moins un nœud d'accès : " + accessNodes);
+        }
+        long start = System.nanoTime();
+        List<String> pointIds = new ArrayList<>(points.size());
+        List<Noeud> locations = new ArrayList<>(points.size());
+        Set<String> seen = new HashSet<>();
+        for (Noeud point : points) {
+            if (seen.add(point.getId())) {
+                pointIds.add(point.getId());
+                locations.add(point);
+            }
+        }
+
+        int size = pointIds.size();
+        int[][] access = new int[size][];
+        double[][] distances = new double[size][];
+        double[][] times = new double[size][];
+        for (int i = 0; i < size; i++) {
+            Noeud point = locations.get(i);
+            int own = indexOf(point.getId());
+            if (own >= 0) {
+                access[i] = new int[]{own};
+                distances[i] = new double[]{0.0};
+                times[i] = new double[]{0.0};
+                continue;
+            }
+            List<String> nearest = index.nearest(point, accessNodes);
+            access[i] = new int[nearest.size()];
+            distances[i] = new double[nearest.size()];
+            times[i] = new double[nearest.size()];
+            for (int k = 0; k < nearest.size(); k++) {
+                access[i][k] = indexById.get(nearest.get(k));
+                distances[i][k] = CalculDistance.calculateDistance(point, nodes[access[i][k]]);
+                times[i][k] = PlusCourtcChemin.estimateTravelTime(point, nodes[access[i][k]]);
+            }
+        }
+        return new Overlay(this, Collections.unmodifiableList(pointIds), locations.toArray(new Noeud[0]),
+                access, distances, times, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public double distance(String fromNodeId, String toNodeId) {
+        return distance(requireIndex(fromNodeId, "départ"), requireIndex(toNodeId, "arrivée"));
+    }
+
+    public double distance(int source, int target) {
+        Meeting meeting = query(source, target);
+        return meeting.distance;
+    }
+
+    public PathResult findShortestPath(String fromNodeId, String toNodeId) {
+        int source = requireIndex(fromNodeId, "départ");
+        int target = requireIndex(toNodeId, "arrivée");
+        if (source == target) {
+            return new PathResult(List.of(fromNodeId), 0.0, 0.0, true);
+        }
+
+        Meeting meeting = query(source, target);
+        if (meeting.node < 0) {
+            return new PathResult(Collections.emptyList(), Double.POSITIVE_INFINITY, Double.NaN, false);
+        }
+
+        List<Integer> hierarchyPath = new ArrayList<>();
+        for (int current = meeting.node; current != -1; current = meeting.forward.parent(current)) {
+            hierarchyPath.add(current);
+        }
+        Collections.reverse(hierarchyPath);
+        for (int current = meeting.backward.parent(meeting.node); current != -1;
+             current = meeting.backward.parent(current)) {
+            hierarchyPath.add(current);
+        }
+
+        List<Integer> unpacked = new ArrayList<>();
+        unpacked.add(source);
+        for (int i = 1; i < hierarchyPath.size(); i++) {
+            unpack(hierarchyPath.get(i - 1), hierarchyPath.get(i), unpacked);
+        }
+
+        List<String> path = new ArrayList<>(unpacked.size());
+        double totalTime = 0.0;
+        for (int i = 0; i < unpacked.size(); i++) {
+            path.add(nodes[unpacked.get(i)].getId());
+            if (i > 0) {
+                totalTime += PlusCourtcChemin.estimateTravelTime(nodes[unpacked.get(i - 1)], nodes[unpacked.get(i)]);
+            }
+        }
+        return new PathResult(path, meeting.distance, totalTime, true);
+    }
+
+    /**
+     * Table des distances {@code [source][cible]} par l'algorithme des seaux : une recherche
+     * montante par cible puis une par source, au lieu d'une requête par paire.
+     */
+    public double[][] manyToMany(List<String> sourceIds, List<String> targetIds) {
+        int[] sources = new int[sourceIds.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = requireIndex(sourceIds.get(i), "départ");
+        }
+        int[] targets = new int[targetIds.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = requireIndex(targetIds.get(i), "arrivée");
+        }
+
+        double[] distances = new double[sources.length * targets.length];
+        double[] times = new double[sources.length * targets.length];
+        manyToMany(sources, targets, distances, times);
+
+        double[][] table = new double[sources.length][];
+        for (int i = 0; i < sources.length; i++) {
+            table[i] = Arrays.copyOfRange(distances, i * targets.length, (i + 1) * targets.length);
+        }
+        return table;
+    }
+
+    /**
+     * Remplit les tables plates (ligne par source) des distances et des durées estimées.
+     */
+    void manyToMany(int[] sources, int[] targets, double[] distances, double[] times) {
+        manyToMany(singletons(sources), zeros(sources.length), zeros(sources.length),
+                singletons(targets), zeros(targets.length), zeros(targets.length), distances, times);
+    }
+
+    /**
+     * Table carrée (ligne par point) entre les points d'un {@link Overlay} : les recherches d'un
+     * point partent de tous ses nœuds d'accès, au coût de leur tronçon d'accès.
+     */
+    void manyToMany(Overlay overlay, double[] distances, double[] times) {
+        manyToMany(overlay.accessNodes, overlay.accessDistances, overlay.accessTimes,
+                overlay.accessNodes, overlay.accessDistances, overlay.accessTimes, distances, times);
+    }
+
+    private void manyToMany(int[][] sources, double[][] sourceDistances, double[][] sourceTimes,
+                            int[][] targets, double[][] targetDistances, double[][] targetTimes,
+                            double[] distances, double[] times) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(times, Double.NaN);
+
+        // 1. Recherches montantes depuis chaque cible : seau (cible, distance, durée) par nœud atteint
+        BucketList buckets = new BucketList();
+        for (int t = 0; t < targets.length; t++) {
+            DijkstraWorkspace backward = upwardSearch(downward, upward, targets[t], targetDistances[t],
+                    targetTimes[t], DijkstraWorkspace.backwardForCurrentThread(nodes.length));
+            for (int i = 0; i < backward.getSettledCount(); i++) {
+                int node = backward.settledNode(i);
+                if (isStalled(upward, backward, node)) {
+                    continue;
+                }
+                buckets.add(node, t, backward.distance(node), backward.time(node));
+            }
+        }
+        buckets.groupByNode(nodes.length);
+
+        // 2. Recherches montantes depuis chaque source, combinées avec les seaux rencontrés
+        for (int s = 0; s < sources.length; s++) {
+            DijkstraWorkspace forward = upwardSearch(upward, downward, sources[s], sourceDistances[s],
+                    sourceTimes[s], DijkstraWorkspace.forCurrentThread(nodes.length));
+            int row = s * targets.length;
+            for (int i = 0; i < forward.getSettledCount(); i++) {
+                int node = forward.settledNode(i);
+                if (isStalled(downward, forward, node)) {
+                    continue;
+                }
+                double forwardDistance = forward.distance(node);
+                for (int entry = buckets.start(node); entry < buckets.end(node); entry++) {
+                    int column = row + buckets.target(entry);
+                    double total = forwardDistance + buckets.distance(entry);
+                    if (total < distances[column]) {
+                        distances[column] = total;
+                        times[column] = forward.time(node) + buckets.time(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------- requêtes
+
+    private Meeting query(int source, int target) {
+        DijkstraWorkspace forward = DijkstraWorkspace.forCurrentThread(nodes.length);
+        DijkstraWorkspace backward = DijkstraWorkspace.backwardForCurrentThread(nodes.length);
+        Meeting meeting = new Meeting(forward, backward);
+        forward.start(source);
+        forward.setTime(source, 0.0);
+        backward.start(target);
+        backward.setTime(target, 0.0);
+
+        IndexedMinHeap forwardQueue = forward.queue();
+        IndexedMinHeap backwardQueue = backward.queue();
+        while (true) {
+            double forwardMin = forwardQueue.isEmpty() ? Double.POSITIVE_INFINITY : forwardQueue.peekKey();
+            double backwardMin = backwardQueue.isEmpty() ? Double.POSITIVE_INFINITY : backwardQueue.peekKey();
+            if (Math.min(forwardMin, backwardMin) >= meeting.distance) {
+                break;
+            }
+            if (forwardMin <= backwardMin) {
+                settleAndRelax(upward, downward, forward, backward, meeting);
+            } else {
+                settleAndRelax(downward, upward, backward, forward, meeting);
+            }
+        }
+        return meeting;
+    }
+
+    private static void settleAndRelax(Edges edges, Edges opposite, DijkstraWorkspace self, DijkstraWorkspace other,
+                                       Meeting meeting) {
+        int current = self.settleNext();
+        double total = self.distance(current) + other.distance(current);
+        if (total < meeting.distance) {
+            meeting.distance = total;
+            meeting.node = current;
+        }
+        if (!isStalled(opposite, self, current)) {
+            relaxUpward(edges, self, current);
+        }
+    }
+
+    /**
+     * Recherche montante complète (sans critère d'arrêt) : l'espace de recherche est petit.
+     * Elle part de chaque source à sa distance et sa durée initiales (tronçon d'accès). Les
+     * nœuds bloqués ({@link #isStalled}) restent fixés mais ne sont pas développés.
+     */
+    private static DijkstraWorkspace upwardSearch(Edges edges, Edges opposite, int[] sources,
+                                                  double[] initialDistances, double[] initialTimes,
+                                                  DijkstraWorkspace workspace) {
+        for (int i = 0; i < sources.length; i++) {
+            if (initialDistances[i] < workspace.distance(sources[i])) {
+                workspace.startAt(sources[i], initialDistances[i]);
+                workspace.setTime(sources[i], initialTimes[i]);
+            }
+        }
+        IndexedMinHeap queue = workspace.queue();
+        while (!queue.isEmpty()) {
+            int current = workspace.settleNext();
+            if (!isStalled(opposite, workspace, current)) {
+                relaxUpward(edges, workspace, current);
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * Stall-on-demand : le nœud est atteint plus court en descendant depuis un nœud de rang
+     * supérieur ({@code opposite} : liaisons de sens contraire à la recherche, rangées par le
+     * nœud de rang inférieur). Sa distance n'est alors pas celle d'un plus court chemin, et
+     * aucun chemin optimal ne passe par lui dans cette recherche.
+     */
+    private static boolean isStalled(Edges opposite, DijkstraWorkspace workspace, int node) {
+        double distance = workspace.distance(node);
+        for (int edge = opposite.offsets[node]; edge < opposite.offsets[node + 1]; edge++) {
+            if (workspace.distance(opposite.targets[edge]) + opposite.weights[edge] < distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void relaxUpward(Edges edges, DijkstraWorkspace workspace, int current) {
+        double currentDistance = workspace.distance(current);
+        double currentTime = workspace.time(current);
+        for (int edge = edges.offsets[current]; edge < edges.offsets[current + 1]; edge++) {
+            int next = edges.targets[edge];
+            if (!workspace.isSettled(next)
+                    && workspace.relax(next, currentDistance + edges.weights[edge], current)) {
+                workspace.setTime(next, currentTime + edges.times[edge]);
+            }
+        }
+    }
+
+    /**
+     * Remplace la liaison {@code from → to} de la hiérarchie par les liaisons originales qu'elle
+     * représente, en ajoutant les nœuds traversés (sauf {@code from}) à {@code path}.
+     */
+    private void unpack(int from, int to, List<Integer> path) {
+        int middle = ranks[from] < ranks[to]
+                ? upward.middleOf(from, to)
+                : downward.middleOf(to, from);
+        if (middle < 0) {
+            path.add(to);
+        } else {
+            unpack(from, middle, path);
+            unpack(middle, to, path);
+        }
+    }
+
+    private static int[][] singletons(int[] nodes) {
+        int[][] singletons = new int[nodes.length][];
+        for (int i = 0; i < nodes.length; i++) {
+            singletons[i] = new int[]{nodes[i]};
+        }
+        return singletons;
+    }
+
+    private static double[][] zeros(int count) {
+        double[][] zeros = new double[count][];
+        for (int i = 0; i < count; i++) {
+            zeros[i] = new double[1];
+        }
+        return zeros;
+    }
+
+    private int requireIndex(String nodeId, String descriptor) {
+        Integer index = nodeId == null ? null : indexById.get(nodeId);
+        if (index == null) {
+            throw new IllegalArgumentException("La hiérarchie ne contient pas le nœud de " + descriptor + " : " + nodeId);
+        }
+        return index;
+    }
+
+    // ----------------------------------------------------------------- sérialisation
+
+    public void save(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(FORMAT_MAGIC);
+        out.writeInt(nodes.length);
+        for (Noeud node : nodes) {
+            out.writeUTF(node.getId());
+            out.writeDouble(node.getLatitude());
+            out.writeDouble(node.getLongitude());
+            out.writeBoolean(node.getName() != null);
+            if (node.getName() != null) {
+                out.writeUTF(node.getName());
+            }
+        }
+        for (int rank : ranks) {
+            out.writeInt(rank);
+        }
+        upward.write(out);
+        downward.write(out);
+        out.writeLong(preprocessingMillis);
+        out.flush();
+    }
+
+    public static ContractionHierarchy load(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Format de hiérarchie de contraction inconnu");
+        }
+        int nodeCount = in.readInt();
+        Noeud[] nodes = new Noeud[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            String id = in.readUTF();
+            double latitude = in.readDouble();
+            double longitude = in.readDouble();
+            String name = in.readBoolean() ? in.readUTF() : null;
+            nodes[i] = new Noeud(id, latitude, longitude, name);
+        }
+        int[] ranks = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            ranks[i] = in.readInt();
+        }
+        Edges upward = Edges.read(in, nodeCount);
+        Edges downward = Edges.read(in, nodeCount);
+        long preprocessingMillis = in.readLong();
+        return new ContractionHierarchy(nodes, ranks, upward, downward, preprocessingMillis);
+    }
+
+    /**
+     * Points d'un job rattachés à la hiérarchie, propres au job : seuls leurs tronçons d'accès
+     * sont stockés, la hiérarchie n'étant ni copiée ni modifiée.
+     */
+    public static final class Overlay {
+        private final ContractionHierarchy hierarchy;
+        private final List<String> pointIds;
+        private final Noeud[] locations;
+        private final int[][] accessNodes;
+        private final double[][] accessDistances;
+        private final double[][] accessTimes;
+        private final long buildTimeMillis;
+
+        private Overlay(ContractionHierarchy hierarchy, List<String> pointIds, Noeud[] locations,
+                        int[][] accessNodes, double[][] accessDistances, double[][] accessTimes,
+                        long buildTimeMillis) {
+            this.hierarchy = hierarchy;
+            this.pointIds = pointIds;
+            this.locations = locations;
+            this.accessNodes = accessNodes;
+            this.accessDistances = accessDistances;
+            this.accessTimes = accessTimes;
+            this.buildTimeMillis = buildTimeMillis;
+        }
+
+        public ContractionHierarchy getHierarchy() {
+            return hierarchy;
+        }
+
+        public List<String> getPointIds() {
+            return pointIds;
+        }
+
+        public int size() {
+            return pointIds.size();
+        }
+
+        public int getAccessLinkCount() {
+            int count = 0;
+            for (int[] nodes : accessNodes) {
+                count += nodes.length;
+            }
+            return count;
+        }
+
+        public long getBuildTimeMillis() {
+            return buildTimeMillis;
+        }
+
+        Noeud location(int point) {
+            return locations[point];
+        }
+    }
+
+    // ----------------------------------------------------------------- structures internes
+
+    private static final class Meeting {
+        final DijkstraWorkspace forward;
+        final DijkstraWorkspace backward;
+        int node = -1;
+        double distance = Double.POSITIVE_INFINITY;
+
+        Meeting(DijkstraWorkspace forward, DijkstraWorkspace backward) {
+            this.forward = forward;
+            this.backward = backward;
+        }
+    }
+
+    /**
+     * Liaisons de la hiérarchie au format CSR ; {@code middles[e]} vaut -1 pour une liaison
+     * originale, sinon le nœud contracté que le raccourci contourne.
+     */
+    private static final class Edges {
+        final int[] offsets;
+        final int[] targets;
+        final double[] weights;
+        final double[] times;
+        final int[] middles;
+
+        Edges(int[] offsets, int[] targets, double[] weights, double[] times, int[] middles) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.times = times;
+            this.middles = middles;
+        }
+
+        int size() {
+            return targets.length;
+        }
+
+        int shortcutCount() {
+            int count = 0;
+            for (int middle : middles) {
+                if (middle >= 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int middleOf(int node, int target) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                if (targets[edge] == target) {
+                    return middles[edge];
+                }
+            }
+            throw new IllegalStateException("Liaison absente de la hiérarchie : " + node + " → " + target);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(targets.length);
+            for (int i = 1; i < offsets.length; i++) {
+                out.writeInt(offsets[i] - offsets[i - 1]);
+            }
+            for (int edge = 0; edge < targets.length; edge++) {
+                out.writeInt(targets[edge]);
+                out.writeDouble(weights[edge]);
+                out.writeDouble(times[edge]);
+                out.writeInt(middles[edge]);
+            }
+        }
+
+        static Edges read(DataInputStream in, int nodeCount) throws IOException {
+            int edgeCount = in.readInt();
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 1; i <= nodeCount; i++) {
+                offsets[i] = offsets[i - 1] + in.readInt();
+            }
+            int[] targets = new int[edgeCount];
+            double[] weights = new double[edgeCount];
+            double[] times = new double[edgeCount];
+            int[] middles = new int[edgeCount];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                targets[edge] = in.readInt();
+                weights[edge] = in.readDouble();
+                times[edge] = in.readDouble();
+                middles[edge] = in.readInt();
+            }
+            return new Edges(offsets, targets, weights, times, middles);
+        }
+    }
+
+    /**
+     * Liste de liaisons en construction, convertie en CSR une fois la contraction terminée.
+     */
+    private static final class EdgeCollector {
+        private int[] owners = new int[16];
+        private int[] targets = new int[16];
+        private double[] weights = new double[16];
+        private double[] times = new double[16];
+        private int[] middles = new int[16];
+        private int size;
+
+        void add(int owner, int target, double weight, double time, int middle) {
+            if (size == owners.length) {
+                int capacity = size * 2;
+                owners = Arrays.copyOf(owners, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                times = Arrays.copyOf(times, capacity);
+                middles = Arrays.copyOf(middles, capacity);
+            }
+            owners[size] = owner;
+            targets[size] = target;
+            weights[size] = weight;
+            times[size] = time;
+            middles[size] = middle;
+            size++;
+        }
+
+        Edges toEdges(int nodeCount) {
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < size; i++) {
+                offsets[owners[i] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            int[] sortedTargets = new int[size];
+            double[] sortedWeights = new double[size];
+            double[] sortedTimes = new double[size];
+            int[] sortedMiddles = new int[size];
+            for (int i = 0; i < size; i++) {
+                int position = next[owners[i]]++;
+                sortedTargets[position] = targets[i];
+                sortedWeights[position] = weights[i];
+                sortedTimes[position] = times[i];
+                sortedMiddles[position] = middles[i];
+            }
+            return new Edges(offsets, sortedTargets, sortedWeights, sortedTimes, sortedMiddles);
+        }
+    }
+
+    /**
+     * Seaux de l'algorithme plusieurs-vers-plusieurs : entrées (cible, distance, durée) par nœud.
+     */
+    private static final class BucketList {
+        private final EdgeCollector entries = new EdgeCollector();
+        private Edges grouped;
+
+        void add(int node, int target, double distance, double time) {
+            entries.add(node, target, distance, time, -1);
+        }
+
+        void groupByNode(int nodeCount) {
+            grouped = entries.toEdges(nodeCount);
+        }
+
+        int start(int node) {
+            return grouped.offsets[node];
+        }
+
+        int end(int node) {
+            return grouped.offsets[node + 1];
+        }
+
+        int target(int entry) {
+            return grouped.targets[entry];
+        }
+
+        double distance(int entry) {
+            return grouped.weights[entry];
+        }
+
+        double time(int entry) {
+            return grouped.times[entry];
+        }
+    }
+
+    /**
+     * Contraction des nœuds par différence d'arêtes croissante, avec mise à jour paresseuse
+     * des priorités.
+     */
+    private static final class Builder {
+        private final CompactGraph graph;
+        private final int nodeCount;
+        private final DynamicAdjacency outgoing;
+        private final DynamicAdjacency incoming;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+        private final int[] levels;
+        private final int[] ranks;
+        private final DijkstraWorkspace witness;
+        private final EdgeCollector upwardEdges = new EdgeCollector();
+        private final EdgeCollector downwardEdges = new EdgeCollector();
+
+        Builder(CompactGraph graph) {
+            this.graph = graph;
+            this.nodeCount = graph.getNodeCount();
+            this.contracted = new boolean[nodeCount];
+            this.outgoing = new DynamicAdjacency(nodeCount, contracted);
+            this.incoming = new DynamicAdjacency(nodeCount, contracted);
+            this.contractedNeighbours = new int[nodeCount];
+            this.levels = new int[nodeCount];
+            this.ranks = new int[nodeCount];
+            this.witness = new DijkstraWorkspace(nodeCount);
+
+            for (int from = 0; from < nodeCount; from++) {
+                for (int edge = graph.edgeStart(from); edge < graph.edgeEnd(from); edge++) {
+                    int to = graph.edgeTarget(edge);
+                    if (to == from) {
+                        continue;
+                    }
+                    double time = PlusCourtcChemin.estimateTravelTime(graph.getNode(from), graph.getNode(to));
+                    outgoing.addOrImprove(from, to, graph.edgeDistance(edge), time, -1);
+                    incoming.addOrImprove(to, from, graph.edgeDistance(edge), time, -1);
+                }
+            }
+        }
+
+        void contractAll() {
+            IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                queue.insertOrDecrease(node, priority(node));
+            }
+
+            int rank = 0;
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                // Mise à jour paresseuse : on réinsère si la priorité a augmenté entre-temps
+                double current = priority(node);
+                if (!queue.isEmpty() && current > queue.peekKey()) {
+                    queue.insertOrDecrease(node, current);
+                    continue;
+                }
+                contract(node);
+                ranks[node] = rank++;
+
+                // Les voisins ont perdu une liaison et gagné des raccourcis : priorités à revoir
+                updateNeighbours(queue, outgoing.cursor(node));
+                updateNeighbours(queue, incoming.cursor(node));
+            }
+        }
+
+        private void updateNeighbours(IndexedMinHeap queue, DynamicAdjacency.Cursor neighbours) {
+            for (int i = 0; i < neighbours.size; i++) {
+                int neighbour = neighbours.targets[i];
+                if (!contracted[neighbour] && queue.contains(neighbour)) {
+                    queue.update(neighbour, priority(neighbour));
+                }
+            }
+        }
+
+        private double priority(int node) {
+            int shortcuts = contract(node, true);
+            int removed = outgoing.cursor(node).size + incoming.cursor(node).size;
+            return 2.0 * (shortcuts - removed) + contractedNeighbours[node] + levels[node];
+        }
+
+        private void contract(int node) {
+            contract(node, false);
+
+            // Les liaisons restantes relient le nœud à des nœuds de rang supérieur
+            DynamicAdjacency.Cursor out = outgoing.cursor(node);
+            for (int i = 0; i < out.size; i++) {
+                int to = out.targets[i];
+                if (!contracted[to]) {
+                    upwardEdges.add(node, to, out.weights[i], out.times[i], out.middles[i]);
+                    contractedNeighbours[to]++;
+                    levels[to] = Math.max(levels[to], levels[node] + 1);
+                }
+            }
+            DynamicAdjacency.Cursor in = incoming.cursor(node);
+            for (int i = 0; i < in.size; i++) {
+                int from = in.targets[i];
+                if (!contracted[from]) {
+                    downwardEdges.add(node, from, in.weights[i], in.times[i], in.middles[i]);
+                    contractedNeighbours[from]++;
+                    levels[from] = Math.max(levels[from], levels[node] + 1);
+                }
+            }
+            contracted[node] = true;
+        }
+
+        /**
+         * Ajoute (ou compte seulement, si {@code simulate}) les raccourcis nécessaires pour
+         * contracter {@code node}.
+         */
+        private int contract(int node, boolean simulate) {
+            DynamicAdjacency.Cursor in = incoming.cursor(node);
+            DynamicAdjacency.Cursor out = outgoing.cursor(node);
+            double maxOut = 0.0;
+            for (int j = 0; j < out.size; j++) {
+                if (!contracted[out.targets[j]]) {
+                    maxOut = Math.max(maxOut, out.weights[j]);
+                }
+            }
+
+            int shortcuts = 0;
+            for (int i = 0; i < in.size; i++) {
+                int from = in.targets[i];
+                if (contracted[from]) {
+                    continue;
+                }
+                double inWeight = in.weights[i];
+                double inTime = in.times[i];
+                witnessSearch(from, node, inWeight + maxOut, out,
+                        simulate ? SIMULATION_SETTLED_LIMIT : WITNESS_SETTLED_LIMIT);
+
+                for (int j = 0; j < out.size; j++) {
+                    int to = out.targets[j];
+                    if (contracted[to] || to == from) {
+                        continue;
+                    }
+                    double viaNode = inWeight + out.weights[j];
+                    if (witness.distance(to) > viaNode) {
+                        shortcuts++;
+                        if (!simulate) {
+                            double time = inTime + out.times[j];
+                            outgoing.addOrImprove(from, to, viaNode, time, node);
+                            incoming.addOrImprove(to, from, viaNode, time, node);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Dijkstra local depuis {@code from} dans le graphe restant privé de {@code excluded},
+         * borné en distance et en nombre de nœuds fixés.
+         */
+        private void witnessSearch(int from, int excluded, double maxDistance, DynamicAdjacency.Cursor targets,
+                                   int settledLimit) {
+            witness.reset(nodeCount);
+            int remaining = 0;
+            for (int j = 0; j < targets.size; j++) {
+                if (!contracted[targets.targets[j]] && witness.markTarget(targets.targets[j])) {
+                    remaining++;
+                }
+            }
+
+            IndexedMinHeap queue = witness.queue();
+            witness.start(from);
+            while (!queue.isEmpty() && remaining > 0 && witness.getSettledCount() < settledLimit) {
+                if (queue.peekKey() > maxDistance) {
+                    break;
+                }
+                int current = witness.settleNext();
+                if (witness.isTarget(current)) {
+                    remaining--;
+                }
+                DynamicAdjacency.Cursor edges = outgoing.cursor(current);
+                double currentDistance = witness.distance(current);
+                for (int e = 0; e < edges.size; e++) {
+                    int next = edges.targets[e];
+                    if (next != excluded && !contracted[next] && !witness.isSettled(next)) {
+                        witness.relax(next, currentDistance + edges.weights[e], current);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Listes d'adjacence modifiables pendant la contraction ; une seule liaison (la plus courte)
+     * est conservée par paire de nœuds.
+     */
+    private static final class DynamicAdjacency {
+        private final Cursor[] lists;
+        private final boolean[] contracted;
+
+        DynamicAdjacency(int nodeCount, boolean[] contracted) {
+            this.contracted = contracted;
+            lists = new Cursor[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                lists[i] = new Cursor();
+            }
+        }
+
+        /**
+         * Liaisons du nœud vers des nœuds non encore contractés ; les autres sont retirées au passage.
+         */
+        Cursor cursor(int node) {
+            Cursor list = lists[node];
+            int kept = 0;
+            for (int i = 0; i < list.size; i++) {
+                if (!contracted[list.targets[i]]) {
+                    list.targets[kept] = list.targets[i];
+                    list.weights[kept] = list.weights[i];
+                    list.times[kept] = list.times[i];
+                    list.middles[kept] = list.middles[i];
+                    kept++;
+                }
+            }
+            list.size = kept;
+            return list;
+        }
+
+        void addOrImprove(int node, int target, double weight, double time, int middle) {
+            Cursor list = lists[node];
+            for (int i = 0; i < list.size; i++) {
+                if (list.targets[i] == target) {
+                    if (weight < list.weights[i]) {
+                        list.weights[i] = weight;
+                        list.times[i] = time;
+                        list.middles[i] = middle;
+                    }
+                    return;
+                }
+            }
+            list.add(target, weight, time, middle);
+        }
+
+        static final class Cursor {
+            int[] targets = new int[4];
+            double[] weights = new double[4];
+            double[] times = new double[4];
+            int[] middles = new int[4];
+            int size;
+
+            void add(int target, double weight, double time, int middle) {
+                if (size == targets.length) {
+                    int capacity = size * 2;
+                    targets = Arrays.copyOf(targets, capacity);
+                    weights = Arrays.copyOf(weights, capacity);
+                    times = Arrays.copyOf(times, capacity);
+                    middles = Arrays.copyOf(middles, capacity);
+                }
+                targets[size] = target;
+                weights[size] = weight;
+                times[size] = time;
+                middles[size] = middle;
+                size++;
+            }
+        }
+    }
+}
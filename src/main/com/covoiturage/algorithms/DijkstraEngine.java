@@ -0,0 +1,177 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.PathResult;
+
+import java.util.*;
+
+/**
+ * Moteur de Dijkstra sur {@link CompactGraph} : tas binaire indexé sur les indices de nœuds
+ * et espace de travail réutilisé par thread. Une fois l'espace de travail dimensionné,
+ * {@link #distance(CompactGraph, int, int)} n'alloue aucun objet.
+ */
+public final class DijkstraEngine {
+
+    private DijkstraEngine() {}
+
+    /**
+     * Distance du plus court chemin entre deux indices de nœuds, ou l'infini si la cible
+     * est inaccessible.
+     */
+    public static double distance(CompactGraph graph, int source, int target) {
+        return search(graph, source, target).distance(target);
+    }
+
+    public static PathResult findShortestPath(CompactGraph graph, int source, int target) {
+        if (source == target) {
+            return new PathResult(List.of(graph.getNodeId(source)), 0.0, 0.0, true);
+        }
+
+        DijkstraWorkspace workspace = search(graph, source, target);
+        if (!workspace.isSettled(target)) {
+            return new PathResult(Collections.emptyList(), Double.POSITIVE_INFINITY, Double.NaN, false);
+        }
+        return buildResult(graph, workspace, target);
+    }
+
+    /**
+     * Distances depuis {@code source} vers chaque cible, écrites dans {@code result}
+     * (même ordre que {@code targets}). La recherche s'arrête dès que toutes les cibles
+     * sont fixées ; aucune allocation une fois l'espace de travail dimensionné.
+     */
+    public static void oneToMany(CompactGraph graph, int source, int[] targets, double[] result) {
+        DijkstraWorkspace workspace = searchTargets(graph, source, targets);
+        for (int i = 0; i < targets.length; i++) {
+            result[i] = workspace.distance(targets[i]);
+        }
+    }
+
+    /**
+     * Comme {@link #oneToMany(CompactGraph, int, int[], double[])}, en renseignant aussi la durée
+     * estimée (minutes) de chaque chemin, calculée comme {@link PathResult#getTotalTime()}.
+     */
+    public static void oneToMany(CompactGraph graph, int source, int[] targets,
+                                 double[] distances, double[] times) {
+        DijkstraWorkspace workspace = searchTargets(graph, source, targets);
+        for (int i = 0; i < targets.length; i++) {
+            distances[i] = workspace.distance(targets[i]);
+            times[i] = Double.isInfinite(distances[i]) ? Double.NaN : pathTime(graph, workspace, targets[i]);
+        }
+    }
+
+    /**
+     * Table des distances {@code [source][cible]} : une recherche un-vers-plusieurs par source.
+     */
+    public static double[][] manyToMany(CompactGraph graph, int[] sources, int[] targets) {
+        double[][] table = new double[sources.length][targets.length];
+        for (int i = 0; i < sources.length; i++) {
+            oneToMany(graph, sources[i], targets, table[i]);
+        }
+        return table;
+    }
+
+    private static DijkstraWorkspace searchTargets(CompactGraph graph, int source, int[] targets) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forCurrentThread(graph.getNodeCount());
+        int remaining = markTargets(workspace, targets);
+        workspace.start(source);
+        return settleTargets(graph, workspace, remaining);
+    }
+
+    /**
+     * Recherche à plusieurs sources, chacune partant de sa distance initiale (tronçon d'accès
+     * d'un point situé hors du réseau), jusqu'à fixer toutes les cibles. L'arbre reste lisible
+     * dans l'espace de travail du thread jusqu'à la recherche suivante ; en remontant les
+     * prédécesseurs d'un nœud, on aboutit à la source dont il descend.
+     */
+    static DijkstraWorkspace searchTargets(CompactGraph graph, int[] sources, double[] initialDistances,
+                                           int[] targets) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forCurrentThread(graph.getNodeCount());
+        int remaining = markTargets(workspace, targets);
+        for (int i = 0; i < sources.length; i++) {
+            workspace.startAt(sources[i], initialDistances[i]);
+        }
+        return settleTargets(graph, workspace, remaining);
+    }
+
+    private static int markTargets(DijkstraWorkspace workspace, int[] targets) {
+        int remaining = 0;
+        for (int target : targets) {
+            if (workspace.markTarget(target)) {
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+
+    private static DijkstraWorkspace settleTargets(CompactGraph graph, DijkstraWorkspace workspace, int remaining) {
+        IndexedMinHeap queue = workspace.queue();
+        while (!queue.isEmpty() && remaining > 0) {
+            int current = workspace.settleNext();
+            if (workspace.isTarget(current)) {
+                remaining--;
+            }
+            relaxEdges(graph, workspace, current);
+        }
+        return workspace;
+    }
+
+    /**
+     * Exécute la recherche depuis {@code source} jusqu'à fixer {@code target}
+     * (ou jusqu'à épuisement si {@code target} vaut -1). Le résultat reste lisible dans
+     * l'espace de travail du thread jusqu'à la recherche suivante.
+     */
+    static DijkstraWorkspace search(CompactGraph graph, int source, int target) {
+        DijkstraWorkspace workspace = DijkstraWorkspace.forCurrentThread(graph.getNodeCount());
+        IndexedMinHeap queue = workspace.queue();
+        workspace.start(source);
+
+        while (!queue.isEmpty()) {
+            int current = workspace.settleNext();
+            if (current == target) {
+                break;
+            }
+
+            relaxEdges(graph, workspace, current);
+        }
+        return workspace;
+    }
+
+    private static void relaxEdges(CompactGraph graph, DijkstraWorkspace workspace, int current) {
+        double currentDistance = workspace.distance(current);
+        for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+            int next = graph.edgeTarget(edge);
+            if (!workspace.isSettled(next)) {
+                workspace.relax(next, currentDistance + graph.edgeDistance(edge), current);
+            }
+        }
+    }
+
+    static double pathTime(CompactGraph graph, DijkstraWorkspace workspace, int target) {
+        double totalTime = 0.0;
+        int current = target;
+        int parent = workspace.parent(current);
+        while (parent != -1) {
+            totalTime += PlusCourtcChemin.estimateTravelTime(graph.getNode(parent), graph.getNode(current));
+            current = parent;
+            parent = workspace.parent(current);
+        }
+        return totalTime;
+    }
+
+    static PathResult buildResult(CompactGraph graph, DijkstraWorkspace workspace, int target) {
+        List<String> path = new ArrayList<>();
+        int current = target;
+        double totalTime = 0.0;
+
+        while (current != -1) {
+            path.add(graph.getNodeId(current));
+            int parent = workspace.parent(current);
+            if (parent != -1) {
+                totalTime += PlusCourtcChemin.estimateTravelTime(graph.getNode(parent), graph.getNode(current));
+            }
+            current = parent;
+        }
+        Collections.reverse(path);
+        return new PathResult(path, workspace.distance(target), totalTime, true);
+    }
+}
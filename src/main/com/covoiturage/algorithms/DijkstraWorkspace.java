@@ -0,0 +1,214 @@
+package com.covoiturage.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Espace de travail réutilisable d'une recherche de Dijkstra sur des indices entiers.
+ * Les tableaux sont invalidés par tampon de version plutôt que réinitialisés : un nœud
+ * dont le tampon diffère de la requête courante est considéré à distance infinie.
+ * Une instance par thread ({@link #forCurrentThread(int)}) ; non réentrante.
+ */
+final class DijkstraWorkspace {
+
+    private static final ThreadLocal<DijkstraWorkspace> CURRENT =
+            ThreadLocal.withInitial(() -> new DijkstraWorkspace(0));
+    private static final ThreadLocal<DijkstraWorkspace> BACKWARD =
+            ThreadLocal.withInitial(() -> new DijkstraWorkspace(0));
+
+    private double[] distances;
+    private double[] times;
+    private int[] parents;
+    private int[] reachedStamps;
+    private int[] settledStamps;
+    private int[] targetStamps;
+    private int[] settledOrder;
+    private int stamp;
+    private final IndexedMinHeap queue;
+    private int settledCount;
+
+    DijkstraWorkspace(int nodeCount) {
+        this.distances = new double[nodeCount];
+        this.times = new double[nodeCount];
+        this.parents = new int[nodeCount];
+        this.reachedStamps = new int[nodeCount];
+        this.settledStamps = new int[nodeCount];
+        this.targetStamps = new int[nodeCount];
+        this.settledOrder = new int[nodeCount];
+        this.queue = new IndexedMinHeap(nodeCount);
+    }
+
+    /**
+     * Espace de travail du thread courant, prêt pour une nouvelle recherche sur
+     * {@code nodeCount} nœuds. Il n'est réalloué que si le graphe grandit.
+     */
+    static DijkstraWorkspace forCurrentThread(int nodeCount) {
+        DijkstraWorkspace workspace = CURRENT.get();
+        workspace.reset(nodeCount);
+        return workspace;
+    }
+
+    /**
+     * Second espace de travail du thread courant, pour la recherche arrière d'une
+     * recherche bidirectionnelle.
+     */
+    static DijkstraWorkspace backwardForCurrentThread(int nodeCount) {
+        DijkstraWorkspace workspace = BACKWARD.get();
+        workspace.reset(nodeCount);
+        return workspace;
+    }
+
+    void reset(int nodeCount) {
+        if (nodeCount > distances.length) {
+            distances = new double[nodeCount];
+            times = new double[nodeCount];
+            parents = new int[nodeCount];
+            reachedStamps = new int[nodeCount];
+            settledStamps = new int[nodeCount];
+            targetStamps = new int[nodeCount];
+            settledOrder = new int[nodeCount];
+            stamp = 0;
+        }
+        queue.ensureCapacity(nodeCount);
+        queue.clear();
+        settledCount = 0;
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(reachedStamps, 0);
+            Arrays.fill(settledStamps, 0);
+            Arrays.fill(targetStamps, 0);
+            stamp = 1;
+        }
+    }
+
+    double distance(int node) {
+        return reachedStamps[node] == stamp ? distances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Coût secondaire (durée) propagé le long de l'arbre par l'appelant via {@link #setTime(int, double)} ;
+     * NaN si le nœud n'est pas atteint.
+     */
+    double time(int node) {
+        return reachedStamps[node] == stamp ? times[node] : Double.NaN;
+    }
+
+    void setTime(int node, double time) {
+        times[node] = time;
+    }
+
+    /**
+     * @return le prédécesseur du nœud dans l'arbre de recherche, ou -1 pour la source
+     */
+    int parent(int node) {
+        return reachedStamps[node] == stamp ? parents[node] : -1;
+    }
+
+    boolean isSettled(int node) {
+        return settledStamps[node] == stamp;
+    }
+
+    /**
+     * Marque le nœud comme cible de la recherche courante.
+     *
+     * @return {@code true} s'il n'était pas déjà marqué
+     */
+    boolean markTarget(int node) {
+        if (targetStamps[node] == stamp) {
+            return false;
+        }
+        targetStamps[node] = stamp;
+        return true;
+    }
+
+    boolean isTarget(int node) {
+        return targetStamps[node] == stamp;
+    }
+
+    int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * @return le {@code order}-ième nœud fixé par la recherche courante
+     */
+    int settledNode(int order) {
+        return settledOrder[order];
+    }
+
+    /**
+     * Copie l'arbre de recherche courant dans des tableaux autonomes.
+     */
+    void copyTree(double[] treeDistances, int[] treeParents) {
+        for (int node = 0; node < treeDistances.length; node++) {
+            treeDistances[node] = distance(node);
+            treeParents[node] = parent(node);
+        }
+    }
+
+    IndexedMinHeap queue() {
+        return queue;
+    }
+
+    void start(int source) {
+        start(source, 0.0);
+    }
+
+    /**
+     * Démarre la recherche avec une priorité initiale (potentiel de la source pour A*).
+     */
+    void start(int source, double key) {
+        reach(source, 0.0, -1);
+        queue.insertOrDecrease(source, key);
+    }
+
+    /**
+     * Ajoute une source partant de {@code distance}, pour une recherche à plusieurs sources ;
+     * sans effet si le nœud est déjà atteint à moindre distance.
+     */
+    void startAt(int source, double distance) {
+        if (distance < distance(source)) {
+            reach(source, distance, -1);
+            queue.insertOrDecrease(source, distance);
+        }
+    }
+
+    /**
+     * Extrait le prochain nœud à fixer ; sa distance est alors définitive.
+     */
+    int settleNext() {
+        int node = queue.poll();
+        settledStamps[node] = stamp;
+        settledOrder[settledCount++] = node;
+        return node;
+    }
+
+    /**
+     * Met à jour la distance du nœud si {@code distance} l'améliore.
+     */
+    boolean relax(int node, double distance, int parent) {
+        if (distance < distance(node)) {
+            reach(node, distance, parent);
+            queue.insertOrDecrease(node, distance);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Variante de {@link #relax(int, double, int)} où la priorité dans la file diffère de la
+     * distance (distance + potentiel pour A*). Le potentiel doit être constant par nœud.
+     */
+    boolean relax(int node, double distance, int parent, double key) {
+        if (distance < distance(node)) {
+            reach(node, distance, parent);
+            queue.insertOrDecrease(node, key);
+            return true;
+        }
+        return false;
+    }
+
+    private void reach(int node, double distance, int parent) {
+        distances[node] = distance;
+        parents[node] = parent;
+        reachedStamps[node] = stamp;
+    }
+}
@@ -0,0 +1,11 @@
+package com.covoiturage.algorithms;
+
+/**
+ * Borne inférieure de la distance de plus court chemin entre deux nœuds d'un
+ * {@link com.covoiturage.models.CompactGraph}, utilisée comme heuristique par A*.
+ * Elle doit être cohérente : {@code lowerBound(u, t) <= longueur(u, v) + lowerBound(v, t)}.
+ */
+interface DistanceBound {
+
+    double lowerBound(int from, int to);
+}
@@ -0,0 +1,382 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+import com.covoiturage.models.Noeud;
+import com.covoiturage.models.PathResult;
+import com.covoiturage.utils.MemoryEstimates;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Matrice des plus courts chemins entre les points d'un job (dépôts et points de prise
+ * en charge), calculée une seule fois puis lue par les heuristiques.
+ * Distance (km) et durée (minutes) d'une même paire sont stockées côte à côte dans un
+ * unique tableau plat, ligne par ligne. Les nœuds des points sont conservés pour les
+ * heuristiques qui présélectionnent leurs candidats par proximité géographique.
+ */
+public final class DistanceMatrix {
+    private final List<String> pointIds;
+    private final Map<String, Integer> indexById;
+    private final Noeud[] locations;
+    private final double[] costs;
+    private final long buildTimeMillis;
+
+    private DistanceMatrix(List<String> pointIds, Map<String, Integer> indexById, Noeud[] locations,
+                           double[] costs, long buildTimeMillis) {
+        this.pointIds = pointIds;
+        this.indexById = indexById;
+        this.locations = locations;
+        this.costs = costs;
+        this.buildTimeMillis = buildTimeMillis;
+    }
+
+    public static DistanceMatrix build(Graph graph, List<String> pointIds) {
+        Objects.requireNonNull(graph, "graph");
+        return build(CompactGraph.fromGraph(graph), pointIds);
+    }
+
+    public static DistanceMatrix build(Graph graph, List<String> pointIds, SearchMode mode) {
+        Objects.requireNonNull(graph, "graph");
+        return build(CompactGraph.fromGraph(graph), pointIds, mode);
+    }
+
+    /**
+     * Construit la matrice : une recherche un-vers-plusieurs par point, réparties sur les cœurs.
+     */
+    public static DistanceMatrix build(CompactGraph graph, List<String> pointIds) {
+        return build(graph, pointIds, SearchMode.DIJKSTRA);
+    }
+
+    /**
+     * Avec {@link SearchMode#DIJKSTRA}, une recherche un-vers-plusieurs par point ; avec les
+     * modes A*, une requête guidée par paire, préférable quand les points sont peu nombreux
+     * sur un grand réseau.
+     */
+    public static DistanceMatrix build(CompactGraph graph, List<String> pointIds, SearchMode mode) {
+        Objects.requireNonNull(graph, "graph");
+        Objects.requireNonNull(mode, "mode");
+        return build(graph, pointIds, mode, AStarSearch.greatCircleBound(graph));
+    }
+
+    /**
+     * Construit la matrice par A* bidirectionnel guidé par les repères de l'oracle, sur le
+     * graphe où celui-ci a été calculé.
+     */
+    public static DistanceMatrix build(LandmarkOracle oracle, List<String> pointIds) {
+        Objects.requireNonNull(oracle, "oracle");
+        return build(oracle.getGraph(), pointIds, SearchMode.BIDIRECTIONAL_A_STAR, oracle);
+    }
+
+    private static DistanceMatrix build(CompactGraph graph, List<String> pointIds, SearchMode mode,
+                                        DistanceBound bound) {
+        long start = System.nanoTime();
+
+        List<String> points = new ArrayList<>();
+        Map<String, Integer> indexById = indexPoints(graph::containsNode, pointIds, points);
+
+        int size = points.size();
+        int[] nodes = new int[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = graph.indexOf(points.get(i));
+        }
+        Noeud[] locations = locate(points, id -> graph.getNode(graph.indexOf(id)));
+
+        double[] costs = new double[2 * size * size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            double[] distances = new double[size];
+            double[] times = new double[size];
+            if (mode == SearchMode.DIJKSTRA) {
+                DijkstraEngine.oneToMany(graph, nodes[i], nodes, distances, times);
+            } else {
+                for (int j = 0; j < size; j++) {
+                    PathResult path = AStarSearch.findShortestPath(graph, nodes[i], nodes[j], mode, bound);
+                    distances[j] = path.getTotalDistance();
+                    times[j] = path.getTotalTime();
+                }
+            }
+            int row = 2 * i * size;
+            for (int j = 0; j < size; j++) {
+                costs[row + 2 * j] = distances[j];
+                costs[row + 2 * j + 1] = times[j];
+            }
+        });
+
+        long buildTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        return new DistanceMatrix(Collections.unmodifiableList(points),
+                Collections.unmodifiableMap(indexById), locations, costs,
+                buildTimeMillis);
+    }
+
+    /**
+     * Construit la matrice à partir des arbres du cache : les sources déjà connues
+     * (dépôts récurrents, points de prise en charge fréquents) ne déclenchent aucune recherche.
+     */
+    public static DistanceMatrix build(ShortestPathTreeCache cache, List<String> pointIds) {
+        Objects.requireNonNull(cache, "cache");
+        long start = System.nanoTime();
+        CompactGraph graph = cache.getCompactGraph();
+
+        List<String> points = new ArrayList<>();
+        Map<String, Integer> indexById = indexPoints(graph::containsNode, pointIds, points);
+
+        int size = points.size();
+        Noeud[] locations = locate(points, id -> graph.getNode(graph.indexOf(id)));
+        double[] costs = new double[2 * size * size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            ShortestPathTreeCache.Tree tree = cache.getTree(points.get(i));
+            int row = 2 * i * size;
+            for (int j = 0; j < size; j++) {
+                int node = tree.indexOf(points.get(j), "arrivée");
+                costs[row + 2 * j] = tree.distance(node);
+                costs[row + 2 * j + 1] = tree.time(node);
+            }
+        });
+
+        long buildTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        return new DistanceMatrix(Collections.unmodifiableList(points),
+                Collections.unmodifiableMap(indexById), locations, costs,
+                buildTimeMillis);
+    }
+
+    /**
+     * Construit la matrice sur une hiérarchie de contraction préalablement calculée,
+     * par l'algorithme des seaux (une recherche montante par point dans chaque sens).
+     */
+    public static DistanceMatrix build(ContractionHierarchy hierarchy, List<String> pointIds) {
+        Objects.requireNonNull(hierarchy, "hierarchy");
+        long start = System.nanoTime();
+
+        List<String> points = new ArrayList<>();
+        Map<String, Integer> indexById = indexPoints(hierarchy::containsNode, pointIds, points);
+
+        int size = points.size();
+        int[] nodes = new int[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = hierarchy.indexOf(points.get(i));
+        }
+        Noeud[] locations = locate(points, id -> hierarchy.getNode(hierarchy.indexOf(id)));
+        double[] distances = new double[size * size];
+        double[] times = new double[size * size];
+        hierarchy.manyToMany(nodes, nodes, distances, times);
+
+        double[] costs = new double[2 * size * size];
+        for (int k = 0; k < size * size; k++) {
+            costs[2 * k] = distances[k];
+            costs[2 * k + 1] = times[k];
+        }
+
+        long buildTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        return new DistanceMatrix(Collections.unmodifiableList(points),
+                Collections.unmodifiableMap(indexById), locations, costs,
+                buildTimeMillis);
+    }
+
+    /**
+     * Construit la matrice des points d'un job rattachés à une hiérarchie de contraction, par
+     * l'algorithme des seaux : les recherches montantes d'un point partent de tous ses nœuds
+     * d'accès, au coût du tronçon d'accès, dont la durée est estimée comme celle des liaisons.
+     */
+    public static DistanceMatrix build(ContractionHierarchy.Overlay overlay) {
+        Objects.requireNonNull(overlay, "overlay");
+        long start = System.nanoTime();
+
+        List<String> points = new ArrayList<>();
+        Map<String, Integer> indexById = indexPoints(id -> true, overlay.getPointIds(), points);
+
+        int size = points.size();
+        Noeud[] locations = new Noeud[size];
+        for (int i = 0; i < size; i++) {
+            locations[i] = overlay.location(i);
+        }
+        double[] distances = new double[size * size];
+        double[] times = new double[size * size];
+        overlay.getHierarchy().manyToMany(overlay, distances, times);
+
+        double[] costs = new double[2 * size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                // Un point vers lui-même : pas d'aller-retour par son nœud d'accès
+                int k = i * size + j;
+                costs[2 * k] = i == j ? 0.0 : distances[k];
+                costs[2 * k + 1] = i == j ? 0.0 : times[k];
+            }
+        }
+
+        long buildTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        return new DistanceMatrix(Collections.unmodifiableList(points),
+                Collections.unmodifiableMap(indexById), locations, costs,
+                buildTimeMillis);
+    }
+
+    /**
+     * Construit la matrice des points d'un job rattachés à un réseau résident : une recherche
+     * à plusieurs sources par point, partant de ses nœuds d'accès. La distance entre deux
+     * points est le meilleur total tronçon d'accès, réseau, tronçon d'accès ; la durée des
+     * tronçons d'accès est estimée comme celle des liaisons.
+     */
+    public static DistanceMatrix build(RoadNetwork.Overlay overlay) {
+        Objects.requireNonNull(overlay, "overlay");
+        long start = System.nanoTime();
+        CompactGraph graph = overlay.getNetwork().getGraph();
+
+        List<String> points = new ArrayList<>();
+        Map<String, Integer> indexById = indexPoints(id -> true, overlay.getPointIds(), points);
+
+        int size = points.size();
+        Noeud[] locations = new Noeud[size];
+        Set<Integer> accessNodes = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            locations[i] = overlay.location(i);
+            for (int node : overlay.accessNodes(i)) {
+                accessNodes.add(node);
+            }
+        }
+        int[] targets = accessNodes.stream().mapToInt(Integer::intValue).toArray();
+
+        double[] costs = new double[2 * size * size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            DijkstraWorkspace workspace = DijkstraEngine.searchTargets(graph, overlay.accessNodes(i),
+                    overlay.accessDistances(i), targets);
+            int row = 2 * i * size;
+            for (int j = 0; j < size; j++) {
+                if (i == j) {
+                    continue;
+                }
+                int[] nodes = overlay.accessNodes(j);
+                double[] legs = overlay.accessDistances(j);
+                double best = Double.POSITIVE_INFINITY;
+                int bestNode = -1;
+                for (int k = 0; k < nodes.length; k++) {
+                    double distance = workspace.distance(nodes[k]) + legs[k];
+                    if (distance < best) {
+                        best = distance;
+                        bestNode = nodes[k];
+                    }
+                }
+                costs[row + 2 * j] = best;
+                costs[row + 2 * j + 1] = bestNode < 0 ? Double.NaN
+                        : DijkstraEngine.pathTime(graph, workspace, bestNode)
+                        + PlusCourtcChemin.estimateTravelTime(locations[i], graph.getNode(root(workspace, bestNode)))
+                        + PlusCourtcChemin.estimateTravelTime(graph.getNode(bestNode), locations[j]);
+            }
+        });
+
+        long buildTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        return new DistanceMatrix(Collections.unmodifiableList(points),
+                Collections.unmodifiableMap(indexById), locations, costs,
+                buildTimeMillis);
+    }
+
+    public int size() {
+        return pointIds.size();
+    }
+
+    public List<String> getPointIds() {
+        return pointIds;
+    }
+
+    public boolean containsPoint(String pointId) {
+        return indexById.containsKey(pointId);
+    }
+
+    /**
+     * @return l'indice du point, ou -1 s'il ne fait pas partie de la matrice
+     */
+    public int indexOf(String pointId) {
+        Integer index = indexById.get(pointId);
+        return index != null ? index : -1;
+    }
+
+    public String getPointId(int index) {
+        return pointIds.get(index);
+    }
+
+    /**
+     * Nœud (coordonnées) du point d'indice {@code index}.
+     */
+    public Noeud getLocation(int index) {
+        return locations[index];
+    }
+
+    /**
+     * Distance (km) du plus court chemin, l'infini si aucun chemin n'existe.
+     */
+    public double distance(int from, int to) {
+        return costs[2 * (from * pointIds.size() + to)];
+    }
+
+    /**
+     * Durée estimée (minutes) du plus court chemin, NaN si aucun chemin n'existe.
+     */
+    public double time(int from, int to) {
+        return costs[2 * (from * pointIds.size() + to) + 1];
+    }
+
+    public double distance(String fromId, String toId) {
+        return distance(requireIndex(fromId), requireIndex(toId));
+    }
+
+    public double time(String fromId, String toId) {
+        return time(requireIndex(fromId), requireIndex(toId));
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    public long estimateMemoryBytes() {
+        return MemoryEstimates.arrayBytes(costs.length, Double.BYTES)
+                + MemoryEstimates.hashMapBytes(indexById.size(), MemoryEstimates.INTEGER_BYTES)
+                + MemoryEstimates.arrayListBytes(pointIds.size())
+                + MemoryEstimates.arrayBytes(locations.length, MemoryEstimates.REFERENCE_BYTES);
+    }
+
+    /**
+     * Indexe les points distincts dans leur ordre d'apparition.
+     */
+    private static Map<String, Integer> indexPoints(Predicate<String> inGraph, List<String> pointIds,
+                                                    List<String> points) {
+        Map<String, Integer> indexById = new HashMap<>();
+        for (String pointId : pointIds) {
+            if (!inGraph.test(pointId)) {
+                throw new IllegalArgumentException("Le graphe ne contient pas le point : " + pointId);
+            }
+            if (indexById.putIfAbsent(pointId, points.size()) == null) {
+                points.add(pointId);
+            }
+        }
+        return indexById;
+    }
+
+    /**
+     * Source d'une recherche à plusieurs sources dont descend {@code node}.
+     */
+    private static int root(DijkstraWorkspace workspace, int node) {
+        int parent = workspace.parent(node);
+        while (parent != -1) {
+            node = parent;
+            parent = workspace.parent(node);
+        }
+        return node;
+    }
+
+    private static Noeud[] locate(List<String> points, Function<String, Noeud> nodeById) {
+        Noeud[] locations = new Noeud[points.size()];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = nodeById.apply(points.get(i));
+        }
+        return locations;
+    }
+
+    private int requireIndex(String pointId) {
+        Integer index = indexById.get(pointId);
+        if (index == null) {
+            throw new IllegalArgumentException("Point absent de la matrice : " + pointId);
+        }
+        return index;
+    }
+}
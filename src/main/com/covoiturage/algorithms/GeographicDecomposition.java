@@ -0,0 +1,493 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.Noeud;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Découpage géographique des grandes instances : les utilisateurs sont répartis en zones
+ * équilibrées par un k-moyennes à effectif borné sur leurs coordonnées, puis chaque zone reçoit
+ * les véhicules les plus proches jusqu'à couvrir ses utilisateurs. Les zones sont résolues
+ * indépendamment, en parallèle, par {@link AdaptiveLargeNeighbourhoodSearch} ; les routes sont
+ * ensuite réunies, les utilisateurs restés sans véhicule dans leur zone sont insérés sur
+ * l'ensemble des véhicules et {@link InterRouteSearch} corrige les frontières entre zones.
+ * <p>
+ * Le budget de temps est partagé entre les zones, exécutées par vagues de la taille du pool, et
+ * la réparation des frontières ({@value #REPAIR_SHARE} du budget) : la qualité obtenue dans un
+ * budget donné croît avec le nombre de cœurs.
+ */
+public final class GeographicDecomposition implements OptimizationStrategy {
+
+    /** Nombre d'utilisateurs visé par zone. */
+    public static final int DEFAULT_CLUSTER_USERS = 250;
+    /** Effectif maximal d'une zone, rapporté à l'effectif moyen. */
+    private static final double CLUSTER_SLACK = 1.1;
+    private static final int MAX_KMEANS_ITERATIONS = 20;
+    /** Part du budget réservée à la réparation des frontières. */
+    private static final double REPAIR_SHARE = 0.2;
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final long SEED = 42;
+
+    private final int clusterUsers;
+    private final long timeBudgetMillis;
+    private final ForkJoinPool pool;
+
+    public GeographicDecomposition(long timeBudgetMillis, ForkJoinPool pool) {
+        this(DEFAULT_CLUSTER_USERS, timeBudgetMillis, pool);
+    }
+
+    public GeographicDecomposition(int clusterUsers, long timeBudgetMillis, ForkJoinPool pool) {
+        if (clusterUsers <= 0) {
+            throw new IllegalArgumentException("La taille des zones doit être positive : " + clusterUsers);
+        }
+        if (timeBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Le budget de temps doit être positif : " + timeBudgetMillis);
+        }
+        this.clusterUsers = clusterUsers;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.pool = Objects.requireNonNull(pool, "pool");
+    }
+
+    @Override
+    public String getName() {
+        return "découpage géographique + ALNS " + timeBudgetMillis + " ms";
+    }
+
+    @Override
+    public Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                              Map<String, Integer> capacities, CancellationToken token) {
+        return search(matrix, users, depots, capacities, token).getRoutes();
+    }
+
+    @Override
+    public Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                              Map<String, Integer> capacities, CancellationToken token,
+                                              ProgressListener listener) {
+        return search(matrix, users, depots, capacities, token, listener).getRoutes();
+    }
+
+    public Result search(DistanceMatrix matrix, List<String> users, List<String> depots,
+                         Map<String, Integer> capacities) {
+        return search(matrix, users, depots, capacities, CancellationToken.none());
+    }
+
+    /**
+     * Le jeton interrompt les recherches des zones et la réparation des frontières ; les routes
+     * des zones sont toujours réunies et les utilisateurs restants insérés.
+     */
+    public Result search(DistanceMatrix matrix, List<String> users, List<String> depots,
+                         Map<String, Integer> capacities, CancellationToken token) {
+        return search(matrix, users, depots, capacities, token, ProgressListener.none());
+    }
+
+    /**
+     * Recherche interruptible qui signale à {@code listener} la réunion des meilleures solutions
+     * des zones au fil de leurs recherches, puis les routes réunies avant la réparation des
+     * frontières.
+     */
+    public Result search(DistanceMatrix matrix, List<String> users, List<String> depots,
+                         Map<String, Integer> capacities, CancellationToken token, ProgressListener listener) {
+        Objects.requireNonNull(matrix, "matrix");
+        Objects.requireNonNull(token, "token");
+        Objects.requireNonNull(listener, "listener");
+        long start = System.nanoTime();
+        int[] userIndices = LocalSearch.toIndices(matrix, users);
+        int[] depotIndices = LocalSearch.toIndices(matrix, depots);
+        int clusterCount = Math.max(1, Math.min(depots.size(), (users.size() + clusterUsers - 1) / clusterUsers));
+
+        double[][] userPoints = project(matrix, userIndices);
+        double[][] centres = new double[clusterCount][];
+        int[] userCluster = cluster(userPoints, clusterCount, centres);
+        int[] depotCluster = assignVehicles(project(matrix, depotIndices), depots, capacities, userCluster, centres);
+
+        List<List<String>> clusterUserIds = new ArrayList<>();
+        List<List<String>> clusterDepotIds = new ArrayList<>();
+        for (int c = 0; c < clusterCount; c++) {
+            clusterUserIds.add(new ArrayList<>());
+            clusterDepotIds.add(new ArrayList<>());
+        }
+        for (int u = 0; u < users.size(); u++) {
+            clusterUserIds.get(userCluster[u]).add(users.get(u));
+        }
+        for (int v = 0; v < depots.size(); v++) {
+            clusterDepotIds.get(depotCluster[v]).add(depots.get(v));
+        }
+
+        // Zones exécutées par vagues de la taille du pool, dans la part du budget qui leur revient
+        int waves = (clusterCount + pool.getParallelism() - 1) / pool.getParallelism();
+        long clusterBudget = Math.max(1, (long) (timeBudgetMillis * (1 - REPAIR_SHARE)) / waves);
+        ZoneProgress zoneProgress = new ZoneProgress(listener, clusterCount, users.size(), start);
+        List<ForkJoinTask<AdaptiveLargeNeighbourhoodSearch.Result>> tasks = new ArrayList<>();
+        for (int c = 0; c < clusterCount; c++) {
+            List<String> zoneUsers = clusterUserIds.get(c);
+            List<String> zoneDepots = clusterDepotIds.get(c);
+            ProgressListener zoneListener = zoneProgress.forZone(c);
+            if (!zoneDepots.isEmpty()) {
+                tasks.add(pool.submit(() -> new AdaptiveLargeNeighbourhoodSearch(clusterBudget)
+                        .search(matrix, zoneUsers, zoneDepots, capacities, token, zoneListener)));
+            }
+        }
+        Map<String, List<String>> routes = new HashMap<>();
+        for (String depot : depots) {
+            routes.put(depot, new ArrayList<>(List.of(depot)));
+        }
+        int iterations = 0;
+        for (ForkJoinTask<AdaptiveLargeNeighbourhoodSearch.Result> task : tasks) {
+            AdaptiveLargeNeighbourhoodSearch.Result zone = task.join();
+            routes.putAll(zone.getRoutes());
+            iterations += zone.getIterationCount();
+        }
+        long clusterMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long repairStart = System.nanoTime();
+        int inserted = insertLeftovers(matrix, routes, depots, capacities, users);
+        double stitchedCost = cost(matrix, routes);
+        if (listener != ProgressListener.NONE) {
+            Map<String, List<String>> stitched = new HashMap<>();
+            int assigned = 0;
+            for (Map.Entry<String, List<String>> entry : routes.entrySet()) {
+                stitched.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+                assigned += entry.getValue().size() - 1;
+            }
+            listener.onProgress(new SearchProgress(iterations, stitchedCost, assigned, users.size(),
+                    Collections.unmodifiableMap(stitched), (System.nanoTime() - start) / 1_000_000));
+        }
+        long remaining = timeBudgetMillis - (System.nanoTime() - start) / 1_000_000;
+        InterRouteSearch.Result repaired = InterRouteSearch.improve(matrix, routes, capacities,
+                Math.max(remaining, (long) (timeBudgetMillis * REPAIR_SHARE)), token);
+        long repairMillis = (System.nanoTime() - repairStart) / 1_000_000;
+
+        return new Result(new HashMap<>(repaired.getRoutes()), clusterCount, iterations, inserted, stitchedCost,
+                repaired.getFinalCost(), clusterMillis, repairMillis, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Coordonnées planes (km) des points, projection équirectangulaire comme {@link SpatialIndex}.
+     */
+    private static double[][] project(DistanceMatrix matrix, int[] indices) {
+        double[][] points = new double[indices.length][2];
+        double scale = indices.length > 0
+                ? Math.cos(Math.toRadians(matrix.getLocation(indices[0]).getLatitude()))
+                : 1.0;
+        for (int i = 0; i < indices.length; i++) {
+            Noeud location = matrix.getLocation(indices[i]);
+            points[i][0] = location.getLongitude() * KM_PER_DEGREE * scale;
+            points[i][1] = location.getLatitude() * KM_PER_DEGREE;
+        }
+        return points;
+    }
+
+    /**
+     * k-moyennes dont chaque zone compte au plus {@value #CLUSTER_SLACK} fois l'effectif moyen :
+     * à chaque tour, les points qui perdraient le plus à ne pas rejoindre leur centre le plus
+     * proche choisissent d'abord.
+     *
+     * @param centres reçoit le centre de chaque zone
+     * @return la zone de chaque point
+     */
+    private static int[] cluster(double[][] points, int k, double[][] centres) {
+        int n = points.length;
+        Random random = new Random(SEED);
+        seedCentres(points, k, centres, random);
+        int limit = (int) Math.ceil(CLUSTER_SLACK * n / k);
+        int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        double[][] distances = new double[n][k];
+        Integer[] order = new Integer[n];
+        double[] regret = new double[n];
+
+        for (int iteration = 0; iteration < MAX_KMEANS_ITERATIONS; iteration++) {
+            for (int i = 0; i < n; i++) {
+                double best = Double.POSITIVE_INFINITY;
+                double second = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < k; c++) {
+                    double d = Math.hypot(points[i][0] - centres[c][0], points[i][1] - centres[c][1]);
+                    distances[i][c] = d;
+                    if (d < best) {
+                        second = best;
+                        best = d;
+                    } else if (d < second) {
+                        second = d;
+                    }
+                }
+                regret[i] = k > 1 ? second - best : 0.0;
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(regret[b], regret[a]));
+
+            int[] sizes = new int[k];
+            boolean changed = false;
+            for (int i : order) {
+                int chosen = -1;
+                for (int c = 0; c < k; c++) {
+                    if (sizes[c] < limit && (chosen < 0 || distances[i][c] < distances[i][chosen])) {
+                        chosen = c;
+                    }
+                }
+                sizes[chosen]++;
+                if (assignment[i] != chosen) {
+                    assignment[i] = chosen;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+
+            double[][] sums = new double[k][2];
+            for (int i = 0; i < n; i++) {
+                sums[assignment[i]][0] += points[i][0];
+                sums[assignment[i]][1] += points[i][1];
+            }
+            for (int c = 0; c < k; c++) {
+                if (sizes[c] > 0) {
+                    centres[c] = new double[]{sums[c][0] / sizes[c], sums[c][1] / sizes[c]};
+                }
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * Centres initiaux par k-means++ : chaque nouveau centre est tiré avec une probabilité
+     * proportionnelle au carré de la distance au centre le plus proche.
+     */
+    private static void seedCentres(double[][] points, int k, double[][] centres, Random random) {
+        int n = points.length;
+        if (n == 0) {
+            for (int c = 0; c < k; c++) {
+                centres[c] = new double[2];
+            }
+            return;
+        }
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        centres[0] = points[random.nextInt(n)].clone();
+        for (int c = 1; c < k; c++) {
+            double total = 0.0;
+            for (int i = 0; i < n; i++) {
+                double d = Math.hypot(points[i][0] - centres[c - 1][0], points[i][1] - centres[c - 1][1]);
+                nearest[i] = Math.min(nearest[i], d * d);
+                total += nearest[i];
+            }
+            int chosen = n - 1;
+            double draw = random.nextDouble() * total;
+            for (int i = 0; i < n; i++) {
+                draw -= nearest[i];
+                if (draw < 0) {
+                    chosen = i;
+                    break;
+                }
+            }
+            centres[c] = points[chosen].clone();
+        }
+    }
+
+    /**
+     * Chaque zone non vide reçoit d'abord son véhicule le plus proche, puis les véhicules sont
+     * attribués par distance croissante aux zones dont la capacité ne couvre pas encore les
+     * utilisateurs ; les véhicules restants rejoignent la zone la plus proche.
+     */
+    private static int[] assignVehicles(double[][] depotPoints, List<String> depots, Map<String, Integer> capacities,
+                                        int[] userCluster, double[][] centres) {
+        int k = centres.length;
+        int vehicleCount = depotPoints.length;
+        long[] deficit = new long[k];
+        for (int c : userCluster) {
+            deficit[c]++;
+        }
+        double[][] distances = new double[vehicleCount][k];
+        for (int v = 0; v < vehicleCount; v++) {
+            for (int c = 0; c < k; c++) {
+                distances[v][c] = Math.hypot(depotPoints[v][0] - centres[c][0], depotPoints[v][1] - centres[c][1]);
+            }
+        }
+        int[] assignment = new int[vehicleCount];
+        Arrays.fill(assignment, -1);
+
+        for (int c = 0; c < k; c++) {
+            if (deficit[c] == 0) {
+                continue;
+            }
+            int chosen = -1;
+            for (int v = 0; v < vehicleCount; v++) {
+                if (assignment[v] < 0 && (chosen < 0 || distances[v][c] < distances[chosen][c])) {
+                    chosen = v;
+                }
+            }
+            if (chosen >= 0) {
+                assignment[chosen] = c;
+                deficit[c] -= capacity(depots.get(chosen), capacities);
+            }
+        }
+
+        Integer[] pairs = new Integer[vehicleCount * k];
+        for (int p = 0; p < pairs.length; p++) {
+            pairs[p] = p;
+        }
+        Arrays.sort(pairs, Comparator.comparingDouble(p -> distances[p / k][p % k]));
+        for (int p : pairs) {
+            int v = p / k;
+            int c = p % k;
+            if (assignment[v] < 0 && deficit[c] > 0) {
+                assignment[v] = c;
+                deficit[c] -= capacity(depots.get(v), capacities);
+            }
+        }
+        for (int v = 0; v < vehicleCount; v++) {
+            if (assignment[v] < 0) {
+                int nearest = 0;
+                for (int c = 1; c < k; c++) {
+                    if (distances[v][c] < distances[v][nearest]) {
+                        nearest = c;
+                    }
+                }
+                assignment[v] = nearest;
+            }
+        }
+        return assignment;
+    }
+
+    private static long capacity(String depot, Map<String, Integer> capacities) {
+        return Math.max(0, capacities.getOrDefault(depot, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Insère par regret-2, sur l'ensemble des véhicules, les utilisateurs qu'aucune zone n'a servis.
+     *
+     * @return le nombre d'utilisateurs insérés
+     */
+    private static int insertLeftovers(DistanceMatrix matrix, Map<String, List<String>> routes, List<String> depots,
+                                       Map<String, Integer> capacities, List<String> users) {
+        Set<String> served = new HashSet<>();
+        for (List<String> route : routes.values()) {
+            served.addAll(route.subList(1, route.size()));
+        }
+        List<String> leftovers = new ArrayList<>();
+        for (String user : users) {
+            if (!served.contains(user)) {
+                leftovers.add(user);
+            }
+        }
+        if (leftovers.isEmpty()) {
+            return 0;
+        }
+
+        int[][] routeArrays = new int[depots.size()][];
+        int[] lengths = new int[depots.size()];
+        int[] remaining = new int[depots.size()];
+        for (int v = 0; v < depots.size(); v++) {
+            int[] route = LocalSearch.toIndices(matrix, routes.get(depots.get(v)));
+            remaining[v] = (int) Math.max(0, Math.min(capacity(depots.get(v), capacities) - (route.length - 1),
+                    leftovers.size()));
+            routeArrays[v] = Arrays.copyOf(route, route.length + remaining[v]);
+            lengths[v] = route.length;
+        }
+        int[] rejected = RegretInsertion.insert(matrix, routeArrays, lengths, remaining,
+                LocalSearch.toIndices(matrix, leftovers), RegretInsertion.DEFAULT_REGRET);
+        for (int v = 0; v < depots.size(); v++) {
+            List<String> route = new ArrayList<>(lengths[v]);
+            for (int p = 0; p < lengths[v]; p++) {
+                route.add(matrix.getPointId(routeArrays[v][p]));
+            }
+            routes.put(depots.get(v), route);
+        }
+        return leftovers.size() - rejected.length;
+    }
+
+    private static double cost(DistanceMatrix matrix, Map<String, List<String>> routes) {
+        double total = 0.0;
+        for (List<String> route : routes.values()) {
+            total += new RouteState(matrix, LocalSearch.toIndices(matrix, route)).cost();
+        }
+        return total;
+    }
+
+    /**
+     * Réunit les rapports des recherches parallèles des zones en un seul, au plus un tous les
+     * {@value ProgressListener#INTERVAL_MILLIS} ms : routes des zones déjà construites,
+     * itérations, coûts et utilisateurs servis cumulés.
+     */
+    private static final class ZoneProgress {
+        private final ProgressListener listener;
+        private final SearchProgress[] latest;
+        private final int userCount;
+        private final long start;
+        private long nextReport;
+
+        ZoneProgress(ProgressListener listener, int zoneCount, int userCount, long start) {
+            this.listener = listener;
+            this.latest = new SearchProgress[zoneCount];
+            this.userCount = userCount;
+            this.start = start;
+            this.nextReport = start;
+        }
+
+        ProgressListener forZone(int zone) {
+            return listener == ProgressListener.NONE ? ProgressListener.NONE : progress -> update(zone, progress);
+        }
+
+        private synchronized void update(int zone, SearchProgress progress) {
+            latest[zone] = progress;
+            long now = System.nanoTime();
+            if (now < nextReport) {
+                return;
+            }
+            nextReport = now + ProgressListener.INTERVAL_MILLIS * 1_000_000;
+            Map<String, List<String>> routes = new HashMap<>();
+            int iterations = 0;
+            double cost = 0.0;
+            int assigned = 0;
+            for (SearchProgress zoneProgress : latest) {
+                if (zoneProgress != null) {
+                    routes.putAll(zoneProgress.getRoutes());
+                    iterations += zoneProgress.getIterations();
+                    cost += zoneProgress.getBestCost();
+                    assigned += zoneProgress.getAssignedUsers();
+                }
+            }
+            listener.onProgress(new SearchProgress(iterations, cost, assigned, userCount,
+                    Collections.unmodifiableMap(routes), (now - start) / 1_000_000));
+        }
+    }
+
+    public static final class Result {
+        private final Map<String, List<String>> routes;
+        private final int clusterCount;
+        private final int iterationCount;
+        private final int insertedAcrossClusters;
+        private final double stitchedCost;
+        private final double finalCost;
+        private final long clusterMillis;
+        private final long repairMillis;
+        private final long elapsedMillis;
+
+        Result(Map<String, List<String>> routes, int clusterCount, int iterationCount, int insertedAcrossClusters,
+               double stitchedCost, double finalCost, long clusterMillis, long repairMillis, long elapsedMillis) {
+            this.routes = Collections.unmodifiableMap(routes);
+            this.clusterCount = clusterCount;
+            this.iterationCount = iterationCount;
+            this.insertedAcrossClusters = insertedAcrossClusters;
+            this.stitchedCost = stitchedCost;
+            this.finalCost = finalCost;
+            this.clusterMillis = clusterMillis;
+            this.repairMillis = repairMillis;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public Map<String, List<String>> getRoutes() { return routes; }
+        public int getClusterCount() { return clusterCount; }
+        /** Itérations de l'ALNS, toutes zones confondues. */
+        public int getIterationCount() { return iterationCount; }
+        /** Utilisateurs sans véhicule dans leur zone, insérés ensuite dans une autre. */
+        public int getInsertedAcrossClusters() { return insertedAcrossClusters; }
+        /** Coût des routes réunies, avant la réparation des frontières. */
+        public double getStitchedCost() { return stitchedCost; }
+        public double getFinalCost() { return finalCost; }
+        public long getClusterMillis() { return clusterMillis; }
+        public long getRepairMillis() { return repairMillis; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+}
@@ -1,11 +1,21 @@
 package com.covoiturage.algorithms;
 
 import com.covoiturage.models.Graph;
-import com.covoiturage.models.PathResult;
+import com.covoiturage.models.Noeud;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleBiFunction;
 
 public final class GestionnaireOptimisation {
 
+    /** Au-delà de ce nombre de véhicules, les candidats sont présélectionnés par l'index spatial. */
+    static final int SEUIL_INDEX_VEHICULES = 32;
+    /** Nombre de véhicules, les plus proches géographiquement, dont le coût d'insertion est évalué. */
+    static final int VEHICULES_CANDIDATS = 8;
+
     private GestionnaireOptimisation() {}
 
     public static Map<String, List<String>> optimiserCovoiturage(
@@ -14,26 +24,281 @@ public final class GestionnaireOptimisation {
             List<String> depotsVehicules,
             Map<String, Integer> capacitesVehicules) {
 
-        Map<String, List<String>> assignments = new HashMap<>();
+        List<String> points = new ArrayList<>(depotsVehicules);
+        points.addAll(pointsUtilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+        return optimiserCovoiturage(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules);
+    }
 
-        // Initialiser les véhicules avec leurs dépôts
-        for (String depot : depotsVehicules) {
-            assignments.put(depot, new ArrayList<>(List.of(depot)));
+    /**
+     * Variante sur une matrice de distances déjà calculée : chaque coût est une lecture de tableau.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules) {
+        return optimiserCovoiturage(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules,
+                ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Les routes, indépendantes une fois l'assignation faite, sont optimisées en parallèle sur
+     * {@code pool}. Si {@code dureesParVehicule} n'est pas {@code null}, il reçoit la durée (ms)
+     * de l'optimisation de chaque route, dans l'ordre des dépôts.
+     * <p>
+     * Au-delà de {@value #SEUIL_INDEX_VEHICULES} véhicules, seuls les
+     * {@value #VEHICULES_CANDIDATS} véhicules non pleins dont la route passe le plus près de
+     * l'utilisateur sont évalués, avec repli sur tous les véhicules si aucun ne peut l'insérer :
+     * l'assignation reste quasi linéaire en nombre de véhicules.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules,
+            ForkJoinPool pool,
+            Map<String, Long> dureesParVehicule) {
+        return optimiserCovoiturage(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules, 0,
+                HeldKarp.DEFAULT_MAX_STOPS, pool, dureesParVehicule);
+    }
+
+    /**
+     * Variante à insertion à regret ({@link RegretInsertion}) : les utilisateurs dont le
+     * meilleur véhicule est le plus difficile à remplacer sont placés d'abord, chacun à sa
+     * meilleure position, ce qui donne une meilleure solution initiale que l'affectation dans
+     * l'ordre de la liste. Un regret de 0 revient à l'affectation dans l'ordre de la liste.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules,
+            int regret,
+            ForkJoinPool pool,
+            Map<String, Long> dureesParVehicule) {
+        return optimiserCovoiturage(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules, regret,
+                HeldKarp.DEFAULT_MAX_STOPS, pool, dureesParVehicule);
+    }
+
+    /**
+     * Les routes d'au plus {@code arretsMaxExacts} passagers sont ordonnées de façon exacte par
+     * {@link HeldKarp}, les autres par recuit simulé ; 0 réserve tout au recuit.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules,
+            int regret,
+            int arretsMaxExacts,
+            ForkJoinPool pool,
+            Map<String, Long> dureesParVehicule) {
+        return optimiserCovoiturage(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules, regret,
+                arretsMaxExacts, pool, dureesParVehicule, CancellationToken.none());
+    }
+
+    /**
+     * Variante interruptible : l'assignation va toujours à son terme, puis une route dont
+     * l'optimisation commence après l'arrêt du jeton garde l'ordre de l'assignation, et un
+     * recuit en cours rend sa meilleure route.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules,
+            int regret,
+            int arretsMaxExacts,
+            ForkJoinPool pool,
+            Map<String, Long> dureesParVehicule,
+            CancellationToken jeton) {
+        return optimiserCovoiturage(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules, regret,
+                arretsMaxExacts, pool, dureesParVehicule, jeton, ProgressListener.none());
+    }
+
+    /**
+     * Comme la variante interruptible, en signalant à {@code auditeur} la solution obtenue après
+     * l'assignation puis après chaque route optimisée, le nombre de routes optimisées tenant lieu
+     * d'itérations. Les rapports sont émis par le thread appelant, jamais en parallèle.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules,
+            int regret,
+            int arretsMaxExacts,
+            ForkJoinPool pool,
+            Map<String, Long> dureesParVehicule,
+            CancellationToken jeton,
+            ProgressListener auditeur) {
+
+        Objects.requireNonNull(pool, "pool");
+        Objects.requireNonNull(jeton, "jeton");
+        Objects.requireNonNull(auditeur, "auditeur");
+        if (regret < 0) {
+            throw new IllegalArgumentException("Le regret ne peut pas être négatif : " + regret);
         }
+        if (arretsMaxExacts < 0 || arretsMaxExacts > HeldKarp.MAX_STOPS) {
+            throw new IllegalArgumentException("Le nombre d'arrêts de la résolution exacte doit être entre 0 et " +
+                    HeldKarp.MAX_STOPS + " : " + arretsMaxExacts);
+        }
+        long debut = System.nanoTime();
+        Map<String, List<String>> assignments = regret == 0
+                ? assignerDansLOrdre(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules)
+                : assignerParRegret(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules, regret);
+
+        int utilisateurs = pointsUtilisateurs.size();
+        signaler(auditeur, matrice, assignments, 0, utilisateurs, debut);
+        optimiserRoutes(assignments, depotsVehicules, route -> matrice, arretsMaxExacts, pool, dureesParVehicule,
+                jeton, routesOptimisees ->
+                        signaler(auditeur, matrice, assignments, routesOptimisees, utilisateurs, debut));
+        return assignments;
+    }
+
+    /**
+     * Rapport de progression de la solution courante ; aucune copie des routes sans auditeur.
+     */
+    private static void signaler(ProgressListener auditeur, DistanceMatrix matrice,
+                                 Map<String, List<String>> assignments, int routesOptimisees, int utilisateurs,
+                                 long debut) {
+        if (auditeur == ProgressListener.NONE) {
+            return;
+        }
+        Map<String, List<String>> routes = new HashMap<>();
+        double cout = 0.0;
+        int assignes = 0;
+        for (Map.Entry<String, List<String>> entree : assignments.entrySet()) {
+            List<String> route = entree.getValue();
+            routes.put(entree.getKey(), Collections.unmodifiableList(new ArrayList<>(route)));
+            for (int i = 0; i + 1 < route.size(); i++) {
+                cout += matrice.distance(route.get(i), route.get(i + 1));
+            }
+            assignes += route.size() - 1;
+        }
+        auditeur.onProgress(new SearchProgress(routesOptimisees, cout, assignes, utilisateurs,
+                Collections.unmodifiableMap(routes), (System.nanoTime() - debut) / 1_000_000));
+    }
+
+    private static Map<String, List<String>> assignerDansLOrdre(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules) {
+
+        Map<String, List<String>> assignments = initialiserAssignations(depotsVehicules);
 
         System.out.println("🔍 Début de l'assignation - " + pointsUtilisateurs.size() + " utilisateurs à assigner");
 
+        IndexVehicules index = depotsVehicules.size() > SEUIL_INDEX_VEHICULES
+                ? new IndexVehicules(matrice, assignments, capacitesVehicules)
+                : null;
+
         // Assigner les utilisateurs aux véhicules disponibles
         for (String utilisateur : pointsUtilisateurs) {
-            String meilleurVehicule = trouverVehiculeOptimal(graph, assignments, utilisateur, capacitesVehicules);
-            if (meilleurVehicule != null) {
-                assignments.get(meilleurVehicule).add(utilisateur);
-                System.out.println("✅ Assigné " + utilisateur + " à " + meilleurVehicule);
+            String vehicule = null;
+            if (index != null) {
+                vehicule = trouverVehiculeOptimal(matrice, index.vehiculesProches(utilisateur),
+                        assignments, utilisateur);
+            }
+            if (vehicule == null) {
+                vehicule = trouverVehiculeOptimal(matrice, assignments, utilisateur, capacitesVehicules);
+            }
+            assigner(assignments, utilisateur, vehicule);
+            if (index != null && vehicule != null) {
+                index.ajouter(vehicule, utilisateur);
+            }
+        }
+        return assignments;
+    }
+
+    private static Map<String, List<String>> assignerParRegret(
+            DistanceMatrix matrice,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules,
+            int regret) {
+
+        System.out.println("🔍 Début de l'assignation (regret-" + regret + ") - " + pointsUtilisateurs.size() +
+                " utilisateurs à assigner");
+
+        long debut = System.nanoTime();
+        Map<String, List<String>> assignments =
+                RegretInsertion.assign(matrice, pointsUtilisateurs, depotsVehicules, capacitesVehicules, regret);
+        Map<String, String> vehiculeParUtilisateur = new HashMap<>();
+        for (String depot : depotsVehicules) {
+            List<String> route = assignments.get(depot);
+            for (String utilisateur : route.subList(1, route.size())) {
+                vehiculeParUtilisateur.put(utilisateur, depot);
+            }
+        }
+        for (String utilisateur : pointsUtilisateurs) {
+            String vehicule = vehiculeParUtilisateur.get(utilisateur);
+            if (vehicule != null) {
+                System.out.println("✅ Assigné " + utilisateur + " à " + vehicule);
             } else {
                 System.out.println("❌ Impossible d'assigner " + utilisateur + " - capacité insuffisante");
             }
         }
+        System.out.println("⏱️ Assignation en " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+        return assignments;
+    }
+
+    /**
+     * Variante sans matrice pour les grands réseaux : les distances exactes sont calculées à la
+     * demande par A* bidirectionnel guidé par l'oracle, et un véhicule dont la borne inférieure
+     * du coût d'insertion atteint déjà le meilleur coût exact est écarté sans requête.
+     */
+    public static Map<String, List<String>> optimiserCovoiturage(
+            LandmarkOracle oracle,
+            List<String> pointsUtilisateurs,
+            List<String> depotsVehicules,
+            Map<String, Integer> capacitesVehicules) {
+
+        Objects.requireNonNull(oracle, "oracle");
+        DistancesALT distances = new DistancesALT(oracle);
+        Map<String, List<String>> assignments = initialiserAssignations(depotsVehicules);
+
+        System.out.println("🔍 Début de l'assignation - " + pointsUtilisateurs.size() + " utilisateurs à assigner");
+
+        for (String utilisateur : pointsUtilisateurs) {
+            assigner(assignments, utilisateur,
+                    trouverVehiculeOptimal(distances, assignments, utilisateur, capacitesVehicules));
+        }
+        System.out.println("📉 Requêtes exactes: " + distances.requetes + ", véhicules écartés par borne: " +
+                distances.vehiculesEcartes);
+
+        // Chaque route n'a besoin que de la matrice de ses propres points
+        optimiserRoutes(assignments, depotsVehicules, route -> DistanceMatrix.build(oracle, route),
+                HeldKarp.DEFAULT_MAX_STOPS, ForkJoinPool.commonPool(), null, CancellationToken.none(),
+                routesOptimisees -> { });
+        return assignments;
+    }
+
+    private static Map<String, List<String>> initialiserAssignations(List<String> depotsVehicules) {
+        Map<String, List<String>> assignments = new HashMap<>();
+
+        // Initialiser les véhicules avec leurs dépôts
+        for (String depot : depotsVehicules) {
+            assignments.put(depot, new ArrayList<>(List.of(depot)));
+        }
+        return assignments;
+    }
+
+    private static void assigner(Map<String, List<String>> assignments, String utilisateur, String meilleurVehicule) {
+        if (meilleurVehicule != null) {
+            assignments.get(meilleurVehicule).add(utilisateur);
+            System.out.println("✅ Assigné " + utilisateur + " à " + meilleurVehicule);
+        } else {
+            System.out.println("❌ Impossible d'assigner " + utilisateur + " - capacité insuffisante");
+        }
+    }
 
+    private static void optimiserRoutes(Map<String, List<String>> assignments, List<String> depotsVehicules,
+                                        Function<List<String>, DistanceMatrix> matricePourRoute,
+                                        int arretsMaxExacts, ForkJoinPool pool, Map<String, Long> dureesParVehicule,
+                                        CancellationToken jeton, IntConsumer apresChaqueRoute) {
         // Afficher l'état avant optimisation
         System.out.println("📊 Avant optimisation:");
         for (String depot : depotsVehicules) {
@@ -42,25 +307,58 @@ public final class GestionnaireOptimisation {
             System.out.println("   " + depot + ": " + passagers + " passagers - " + route);
         }
 
-        // Optimiser chaque route
+        // Une tâche par route ayant au moins 1 passager
+        long debut = System.nanoTime();
+        List<ForkJoinTask<RouteOptimisee>> taches = new ArrayList<>();
         for (String depot : depotsVehicules) {
-            List<String> route = assignments.get(depot);
-            if (route.size() > 1) { // Au moins 1 passager
-                List<String> pointsAVisiter = new ArrayList<>(route.subList(1, route.size()));
-                System.out.println("🔄 Optimisation de " + depot + " avec points: " + pointsAVisiter);
-
-                RecuitSimule.OptimizationResult result = RecuitSimule.optimizeRoute(graph, depot, pointsAVisiter);
-                if (result.isFeasible()) {
-                    assignments.put(depot, result.getRoute());
-                    System.out.println("✅ Route optimisée pour " + depot + ": " + result.getRoute());
-                }
+            List<String> route = List.copyOf(assignments.get(depot));
+            if (route.size() > 1) {
+                taches.add(pool.submit(() -> optimiserRoute(depot, route, matricePourRoute, arretsMaxExacts, jeton)));
             }
         }
 
-        return assignments;
+        // Fusion dans l'ordre des dépôts, quel que soit l'ordre d'achèvement des tâches
+        int fusionnees = 0;
+        for (ForkJoinTask<RouteOptimisee> tache : taches) {
+            RouteOptimisee optimisee = tache.join();
+            System.out.println("🔄 Optimisation de " + optimisee.depot + " en " + optimisee.dureeMillis + " ms");
+            if (dureesParVehicule != null) {
+                dureesParVehicule.put(optimisee.depot, optimisee.dureeMillis);
+            }
+            if (optimisee.resultat.isFeasible()) {
+                assignments.put(optimisee.depot, optimisee.resultat.getRoute());
+                System.out.println("✅ Route optimisée pour " + optimisee.depot + ": " + optimisee.resultat.getRoute());
+            }
+            apresChaqueRoute.accept(++fusionnees);
+        }
+        System.out.println("⏱️ " + taches.size() + " routes optimisées en " +
+                (System.nanoTime() - debut) / 1_000_000 + " ms");
+    }
+
+    private static RouteOptimisee optimiserRoute(String depot, List<String> route,
+                                                 Function<List<String>, DistanceMatrix> matricePourRoute,
+                                                 int arretsMaxExacts, CancellationToken jeton) {
+        long debut = System.nanoTime();
+        List<String> pointsAVisiter = route.subList(1, route.size());
+        DistanceMatrix matrice = matricePourRoute.apply(route);
+        double coutActuel = new RouteState(matrice, LocalSearch.toIndices(matrice, route)).cost();
+        if (jeton.shouldStop()) {
+            return new RouteOptimisee(depot, new RecuitSimule.OptimizationResult(route, coutActuel,
+                    coutActuel < Double.POSITIVE_INFINITY), (System.nanoTime() - debut) / 1_000_000);
+        }
+        // Quelques passagers : l'ordre optimal coûte moins cher que le recuit
+        RecuitSimule.OptimizationResult resultat = pointsAVisiter.size() <= arretsMaxExacts
+                ? HeldKarp.optimizeRoute(matrice, depot, pointsAVisiter)
+                : RecuitSimule.optimizeRoute(matrice, depot, pointsAVisiter, jeton);
+
+        // Une construction à regret fournit déjà un ordre de passage : on le garde s'il est meilleur
+        if (coutActuel < resultat.getTotalDistance()) {
+            resultat = new RecuitSimule.OptimizationResult(route, coutActuel, true);
+        }
+        return new RouteOptimisee(depot, resultat, (System.nanoTime() - debut) / 1_000_000);
     }
 
-    private static String trouverVehiculeOptimal(Graph graph, Map<String, List<String>> assignments,
+    private static String trouverVehiculeOptimal(DistanceMatrix matrice, Map<String, List<String>> assignments,
                                                  String utilisateur, Map<String, Integer> capacites) {
         String meilleurVehicule = null;
         double meilleurCout = Double.MAX_VALUE;
@@ -79,7 +377,7 @@ public final class GestionnaireOptimisation {
             }
 
             // Calculer coût d'insertion
-            double cout = calculerCoutInsertion(graph, routeActuelle, utilisateur);
+            double cout = calculerCoutInsertion(matrice, routeActuelle, utilisateur);
             System.out.println("      💰 Coût d'insertion pour " + utilisateur + ": " + cout + " km");
 
             if (cout < meilleurCout && cout < Double.MAX_VALUE) {
@@ -92,35 +390,50 @@ public final class GestionnaireOptimisation {
         return meilleurVehicule;
     }
 
-    private static double calculerCoutInsertion(Graph graph, List<String> route, String utilisateur) {
+    /**
+     * Meilleur véhicule parmi les candidats présélectionnés (tous non pleins), ou {@code null}
+     * si aucun n'a de chemin vers l'utilisateur.
+     */
+    private static String trouverVehiculeOptimal(DistanceMatrix matrice, Collection<String> candidats,
+                                                 Map<String, List<String>> assignments, String utilisateur) {
+        String meilleurVehicule = null;
+        double meilleurCout = Double.MAX_VALUE;
+        for (String depot : candidats) {
+            double cout = calculerCoutInsertion(matrice, assignments.get(depot), utilisateur);
+            System.out.println("      💰 Coût d'insertion pour " + utilisateur + " dans " + depot + ": " + cout + " km");
+            if (cout < meilleurCout) {
+                meilleurCout = cout;
+                meilleurVehicule = depot;
+            }
+        }
+        return meilleurVehicule;
+    }
+
+    private static double calculerCoutInsertion(DistanceMatrix matrice, List<String> route, String utilisateur) {
+        int indexUtilisateur = matrice.indexOf(utilisateur);
         if (route.size() == 1) {
             // Seulement le dépôt - aller directement à l'utilisateur
-            PathResult aller = PlusCourtcChemin.findShortestPath(graph, route.get(0), utilisateur);
-            if (aller == null || !aller.isPathExists()) {
-                return Double.MAX_VALUE;
-            }
-            return aller.getTotalDistance();
+            double aller = matrice.distance(matrice.indexOf(route.get(0)), indexUtilisateur);
+            return Double.isInfinite(aller) ? Double.MAX_VALUE : aller;
         }
 
         double meilleurCout = Double.MAX_VALUE;
 
         for (int i = 1; i <= route.size(); i++) {
-            String prev = route.get(i - 1);
-            String next = (i < route.size()) ? route.get(i) : route.get(0); // Retour au dépôt si fin
+            int prev = matrice.indexOf(route.get(i - 1));
+            int next = matrice.indexOf((i < route.size()) ? route.get(i) : route.get(0)); // Retour au dépôt si fin
 
-            PathResult pathOriginal = PlusCourtcChemin.findShortestPath(graph, prev, next);
-            PathResult pathToUser = PlusCourtcChemin.findShortestPath(graph, prev, utilisateur);
-            PathResult pathFromUser = PlusCourtcChemin.findShortestPath(graph, utilisateur, next);
+            double distanceOriginale = matrice.distance(prev, next);
+            double versUtilisateur = matrice.distance(prev, indexUtilisateur);
+            double depuisUtilisateur = matrice.distance(indexUtilisateur, next);
 
             // Vérifications de sécurité
-            if (pathOriginal == null || !pathOriginal.isPathExists() ||
-                    pathToUser == null || !pathToUser.isPathExists() ||
-                    pathFromUser == null || !pathFromUser.isPathExists()) {
+            if (Double.isInfinite(distanceOriginale) || Double.isInfinite(versUtilisateur)
+                    || Double.isInfinite(depuisUtilisateur)) {
                 continue;
             }
 
-            double distanceOriginale = pathOriginal.getTotalDistance();
-            double nouvelleDistance = pathToUser.getTotalDistance() + pathFromUser.getTotalDistance();
+            double nouvelleDistance = versUtilisateur + depuisUtilisateur;
             double coutInsertion = nouvelleDistance - distanceOriginale;
 
             if (coutInsertion < meilleurCout) {
@@ -130,4 +443,206 @@ public final class GestionnaireOptimisation {
 
         return meilleurCout;
     }
-}
\ No newline at end of file
+
+    /**
+     * Véhicules examinés par borne inférieure croissante : dès que la borne atteint le meilleur
+     * coût exact trouvé, les véhicules restants ne peuvent plus faire mieux.
+     */
+    private static String trouverVehiculeOptimal(DistancesALT distances, Map<String, List<String>> assignments,
+                                                 String utilisateur, Map<String, Integer> capacites) {
+        Map<String, Double> bornes = new HashMap<>();
+        for (String depot : assignments.keySet()) {
+            List<String> routeActuelle = assignments.get(depot);
+            if (routeActuelle.size() - 1 >= capacites.getOrDefault(depot, Integer.MAX_VALUE)) {
+                System.out.println("      ❌ Capacité dépassée pour " + depot);
+                continue;
+            }
+            bornes.put(depot, calculerCoutInsertion(routeActuelle, utilisateur, distances::borne, distances::exacte));
+        }
+
+        List<String> candidats = new ArrayList<>(bornes.keySet());
+        candidats.sort(Comparator.comparingDouble(bornes::get));
+
+        String meilleurVehicule = null;
+        double meilleurCout = Double.MAX_VALUE;
+        for (int i = 0; i < candidats.size(); i++) {
+            String depot = candidats.get(i);
+            if (bornes.get(depot) >= meilleurCout) {
+                distances.vehiculesEcartes += candidats.size() - i;
+                break;
+            }
+
+            List<String> routeActuelle = assignments.get(depot);
+            double cout = calculerCoutInsertion(routeActuelle, utilisateur, distances::exacte, distances::exacte);
+            System.out.println("      💰 Coût d'insertion pour " + utilisateur + " dans " + depot + ": " + cout + " km");
+            if (cout < meilleurCout) {
+                meilleurCout = cout;
+                meilleurVehicule = depot;
+            }
+        }
+        return meilleurVehicule;
+    }
+
+    /**
+     * Coût d'insertion sur des identifiants : {@code versPoint} évalue les deux nouveaux tronçons,
+     * {@code tronconRetire} celui qu'ils remplacent. Avec un minorant pour {@code versPoint} et la
+     * distance exacte pour {@code tronconRetire}, le résultat minore le coût exact.
+     */
+    private static double calculerCoutInsertion(List<String> route, String utilisateur,
+                                                ToDoubleBiFunction<String, String> versPoint,
+                                                ToDoubleBiFunction<String, String> tronconRetire) {
+        if (route.size() == 1) {
+            double aller = versPoint.applyAsDouble(route.get(0), utilisateur);
+            return Double.isInfinite(aller) ? Double.MAX_VALUE : aller;
+        }
+
+        double meilleurCout = Double.MAX_VALUE;
+        for (int i = 1; i <= route.size(); i++) {
+            String prev = route.get(i - 1);
+            String next = (i < route.size()) ? route.get(i) : route.get(0); // Retour au dépôt si fin
+
+            double distanceOriginale = tronconRetire.applyAsDouble(prev, next);
+            double versUtilisateur = versPoint.applyAsDouble(prev, utilisateur);
+            double depuisUtilisateur = versPoint.applyAsDouble(utilisateur, next);
+            if (Double.isInfinite(distanceOriginale) || Double.isInfinite(versUtilisateur)
+                    || Double.isInfinite(depuisUtilisateur)) {
+                continue;
+            }
+
+            double coutInsertion = versUtilisateur + depuisUtilisateur - distanceOriginale;
+            if (coutInsertion < meilleurCout) {
+                meilleurCout = coutInsertion;
+            }
+        }
+        return meilleurCout;
+    }
+
+    /**
+     * Distances exactes calculées à la demande et mémorisées par paire, et minorants de l'oracle.
+     */
+    private static final class DistancesALT {
+        private final LandmarkOracle oracle;
+        private final Map<Long, Double> exactes = new HashMap<>();
+        private int requetes;
+        private int vehiculesEcartes;
+
+        DistancesALT(LandmarkOracle oracle) {
+            this.oracle = oracle;
+        }
+
+        double borne(String from, String to) {
+            return oracle.lowerBound(from, to);
+        }
+
+        double exacte(String from, String to) {
+            int source = oracle.requireIndex(from, "départ");
+            int cible = oracle.requireIndex(to, "arrivée");
+            return exactes.computeIfAbsent(((long) source << 32) | cible, cle -> {
+                requetes++;
+                return AStarSearch.distance(oracle.getGraph(), source, cible,
+                        SearchMode.BIDIRECTIONAL_A_STAR, oracle);
+            });
+        }
+    }
+
+    /**
+     * Index spatial des points des routes des véhicules non pleins (dépôt et passagers), chaque
+     * point rattaché à son véhicule. Les points d'un véhicule sont retirés dès qu'il est plein.
+     */
+    private static final class IndexVehicules {
+        private final DistanceMatrix matrice;
+        private final Map<String, Integer> capacites;
+        private final SpatialIndex index;
+        /** Clés propres à l'index : un même point peut figurer sur plusieurs routes. */
+        private final Map<String, String> vehiculeParCle = new HashMap<>();
+        private final Map<String, List<String>> clesParVehicule = new HashMap<>();
+        private final Map<String, Integer> passagers = new HashMap<>();
+        private int prochaineCle;
+
+        IndexVehicules(DistanceMatrix matrice, Map<String, List<String>> assignments, Map<String, Integer> capacites) {
+            this.matrice = matrice;
+            this.capacites = capacites;
+            // Cellules dimensionnées sur l'ensemble des points du job, passagers compris
+            List<Noeud> positions = new ArrayList<>(matrice.size());
+            for (int i = 0; i < matrice.size(); i++) {
+                positions.add(matrice.getLocation(i));
+            }
+            this.index = new SpatialIndex(SpatialIndex.suggestedCellSize(positions));
+            for (Map.Entry<String, List<String>> entree : assignments.entrySet()) {
+                String depot = entree.getKey();
+                passagers.put(depot, entree.getValue().size() - 1);
+                if (!estPlein(depot)) {
+                    for (String point : entree.getValue()) {
+                        indexer(depot, point);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Les véhicules non pleins les plus proches de l'utilisateur, par distance à vol
+         * d'oiseau de leur point le plus proche ; la recherche s'élargit par doublement tant
+         * qu'elle n'en a pas trouvé assez.
+         */
+        Set<String> vehiculesProches(String utilisateur) {
+            Noeud position = localiser(utilisateur);
+            Set<String> vehicules = new LinkedHashSet<>();
+            for (int points = 4 * VEHICULES_CANDIDATS; ; points *= 2) {
+                List<String> cles = index.nearest(position, points);
+                vehicules.clear();
+                for (String cle : cles) {
+                    vehicules.add(vehiculeParCle.get(cle));
+                    if (vehicules.size() == VEHICULES_CANDIDATS) {
+                        return vehicules;
+                    }
+                }
+                if (cles.size() < points) {
+                    return vehicules;
+                }
+            }
+        }
+
+        void ajouter(String vehicule, String utilisateur) {
+            passagers.merge(vehicule, 1, Integer::sum);
+            if (!estPlein(vehicule)) {
+                indexer(vehicule, utilisateur);
+                return;
+            }
+            List<String> cles = clesParVehicule.remove(vehicule);
+            if (cles != null) {
+                for (String cle : cles) {
+                    index.remove(cle);
+                    vehiculeParCle.remove(cle);
+                }
+            }
+        }
+
+        private void indexer(String vehicule, String point) {
+            String cle = Integer.toString(prochaineCle++);
+            Noeud position = localiser(point);
+            index.insert(cle, position.getLatitude(), position.getLongitude());
+            vehiculeParCle.put(cle, vehicule);
+            clesParVehicule.computeIfAbsent(vehicule, v -> new ArrayList<>()).add(cle);
+        }
+
+        private boolean estPlein(String vehicule) {
+            return passagers.get(vehicule) >= capacites.getOrDefault(vehicule, Integer.MAX_VALUE);
+        }
+
+        private Noeud localiser(String point) {
+            return matrice.getLocation(matrice.indexOf(point));
+        }
+    }
+
+    private static final class RouteOptimisee {
+        final String depot;
+        final RecuitSimule.OptimizationResult resultat;
+        final long dureeMillis;
+
+        RouteOptimisee(String depot, RecuitSimule.OptimizationResult resultat, long dureeMillis) {
+            this.depot = depot;
+            this.resultat = resultat;
+            this.dureeMillis = dureeMillis;
+        }
+    }
+}
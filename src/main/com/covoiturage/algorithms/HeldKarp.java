@@ -0,0 +1,139 @@
+package com.covoiturage.algorithms;
+
+import java.util.*;
+
+/**
+ * Ordre de passage optimal d'une petite route ouverte (programmation dynamique de Held-Karp
+ * sur les sous-ensembles d'arrêts) : O(2^m · m²) lectures de matrice pour m arrêts, dans des
+ * tableaux primitifs. Pour les 2 à 8 passagers d'un véhicule, c'est plus rapide et meilleur
+ * qu'un recuit ; au-delà d'une quinzaine d'arrêts, la table devient trop grande.
+ */
+public final class HeldKarp {
+
+    /** Taille maximale acceptée : 2^16 × 16 coûts, soit 8 Mo. */
+    public static final int MAX_STOPS = 16;
+    /** Taille jusqu'à laquelle {@link GestionnaireOptimisation} choisit la résolution exacte. */
+    public static final int DEFAULT_MAX_STOPS = 12;
+
+    private HeldKarp() {}
+
+    /**
+     * Route optimale partant de {@code startNodeId} et passant par tous les points de
+     * {@code mustVisitNodes} présents dans la matrice (au plus {@value #MAX_STOPS}).
+     */
+    public static RecuitSimule.OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                                List<String> mustVisitNodes) {
+        Objects.requireNonNull(matrix, "matrix");
+        int start = matrix.indexOf(startNodeId);
+        if (start < 0) {
+            throw new IllegalArgumentException("Point absent de la matrice : " + startNodeId);
+        }
+        Set<Integer> distinct = new LinkedHashSet<>();
+        for (String nodeId : mustVisitNodes) {
+            int index = matrix.indexOf(nodeId);
+            if (index >= 0 && index != start) {
+                distinct.add(index);
+            }
+        }
+        int m = distinct.size();
+        if (m > MAX_STOPS) {
+            throw new IllegalArgumentException("Trop d'arrêts pour une résolution exacte : " + m + " > " + MAX_STOPS);
+        }
+        int[] stops = new int[m];
+        int s = 0;
+        for (int index : distinct) {
+            stops[s++] = index;
+        }
+
+        int[] order = solve(matrix, start, stops);
+        List<String> route = new ArrayList<>(m + 1);
+        route.add(matrix.getPointId(start));
+        if (order == null) {
+            // Aucun ordre sans tronçon manquant
+            for (int stop : stops) {
+                route.add(matrix.getPointId(stop));
+            }
+            return new RecuitSimule.OptimizationResult(route, Double.POSITIVE_INFINITY, false);
+        }
+        double cost = 0.0;
+        int previous = start;
+        for (int stop : order) {
+            route.add(matrix.getPointId(stop));
+            cost += matrix.distance(previous, stop);
+            previous = stop;
+        }
+        return new RecuitSimule.OptimizationResult(route, cost, true);
+    }
+
+    /**
+     * @return les arrêts dans l'ordre optimal, ou {@code null} si tout ordre emprunte un
+     *         tronçon sans chemin
+     */
+    private static int[] solve(DistanceMatrix matrix, int start, int[] stops) {
+        int m = stops.length;
+        if (m == 0) {
+            return stops;
+        }
+        int full = (1 << m) - 1;
+        // cost[mask * m + j] : plus court chemin depuis le départ couvrant mask et finissant en j
+        double[] cost = new double[(full + 1) * m];
+        byte[] previous = new byte[(full + 1) * m];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        double[] legs = new double[m * m];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                legs[i * m + j] = finite(matrix.distance(stops[i], stops[j]));
+            }
+            cost[(1 << i) * m + i] = finite(matrix.distance(start, stops[i]));
+            previous[(1 << i) * m + i] = -1;
+        }
+
+        for (int mask = 1; mask <= full; mask++) {
+            for (int last = 0; last < m; last++) {
+                double current = cost[mask * m + last];
+                if ((mask & (1 << last)) == 0 || current == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int remaining = full & ~mask;
+                while (remaining != 0) {
+                    int next = Integer.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    int slot = (mask | (1 << next)) * m + next;
+                    double candidate = current + legs[last * m + next];
+                    if (candidate < cost[slot]) {
+                        cost[slot] = candidate;
+                        previous[slot] = (byte) last;
+                    }
+                }
+            }
+        }
+
+        int last = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < m; j++) {
+            if (cost[full * m + j] < best) {
+                best = cost[full * m + j];
+                last = j;
+            }
+        }
+        if (last < 0) {
+            return null;
+        }
+        int[] order = new int[m];
+        int mask = full;
+        for (int position = m - 1; position >= 0; position--) {
+            order[position] = stops[last];
+            int before = previous[mask * m + last];
+            mask &= ~(1 << last);
+            last = before;
+        }
+        return order;
+    }
+
+    /**
+     * NaN (chemin non calculable) est traité comme un tronçon manquant.
+     */
+    private static double finite(double distance) {
+        return distance < Double.POSITIVE_INFINITY ? distance : Double.POSITIVE_INFINITY;
+    }
+}
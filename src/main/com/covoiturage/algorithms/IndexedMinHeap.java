@@ -0,0 +1,143 @@
+package com.covoiturage.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Tas binaire indexé sur des identifiants entiers de nœuds, avec diminution de clé en place.
+ * Aucun objet n'est alloué après construction.
+ */
+final class IndexedMinHeap {
+    private int[] heap;
+    private int[] positions;
+    private double[] keys;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    int capacity() {
+        return positions.length;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) {
+            return;
+        }
+        int oldCapacity = positions.length;
+        heap = Arrays.copyOf(heap, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        Arrays.fill(positions, oldCapacity, capacity, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int node) {
+        return positions[node] >= 0;
+    }
+
+    double peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Insère le nœud, ou diminue sa clé s'il est déjà présent avec une clé supérieure.
+     */
+    void insertOrDecrease(int node, double key) {
+        int position = positions[node];
+        if (position < 0) {
+            keys[node] = key;
+            heap[size] = node;
+            positions[node] = size;
+            siftUp(size++);
+        } else if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(position);
+        }
+    }
+
+    /**
+     * Change la clé d'un nœud présent dans le tas, à la hausse comme à la baisse.
+     */
+    void update(int node, double key) {
+        int position = positions[node];
+        double previous = keys[node];
+        keys[node] = key;
+        if (key < previous) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Vide le tas en O(taille courante) : seules les positions encore occupées sont remises à zéro.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int node = heap[position];
+        double key = keys[node];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            int parent = heap[parentPosition];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[position] = parent;
+            positions[parent] = position;
+            position = parentPosition;
+        }
+        heap[position] = node;
+        positions[node] = position;
+    }
+
+    private void siftDown(int position) {
+        int node = heap[position];
+        double key = keys[node];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[child]] = position;
+            position = child;
+        }
+        heap[position] = node;
+        positions[node] = position;
+    }
+}
@@ -0,0 +1,54 @@
+package com.covoiturage.algorithms;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Construction par insertion puis optimisation indépendante de chaque route (résolution
+ * exacte ou recuit), comme {@link GestionnaireOptimisation}.
+ */
+public final class InsertionAnnealingStrategy implements OptimizationStrategy {
+
+    private final int regret;
+    private final int exactMaxStops;
+    private final ForkJoinPool pool;
+    private final Map<String, Long> routeMillis;
+
+    /**
+     * @param regret regret de l'insertion, 0 pour l'affectation dans l'ordre des utilisateurs
+     * @param exactMaxStops nombre de passagers jusqu'auquel une route est ordonnée par {@link HeldKarp}
+     * @param routeMillis reçoit la durée d'optimisation de chaque route, ou {@code null}
+     */
+    public InsertionAnnealingStrategy(int regret, int exactMaxStops, ForkJoinPool pool, Map<String, Long> routeMillis) {
+        this.regret = regret;
+        this.exactMaxStops = exactMaxStops;
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.routeMillis = routeMillis;
+    }
+
+    @Override
+    public String getName() {
+        return (regret > 0 ? "regret-" + regret : "glouton") + " + recuit";
+    }
+
+    @Override
+    public Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                              Map<String, Integer> capacities, CancellationToken token) {
+        return GestionnaireOptimisation.optimiserCovoiturage(matrix, users, depots, capacities, regret, exactMaxStops,
+                pool, routeMillis, token);
+    }
+
+    /**
+     * Rapport après l'assignation puis après chaque route optimisée, le nombre de routes
+     * optimisées tenant lieu d'itérations.
+     */
+    @Override
+    public Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                              Map<String, Integer> capacities, CancellationToken token,
+                                              ProgressListener listener) {
+        return GestionnaireOptimisation.optimiserCovoiturage(matrix, users, depots, capacities, regret, exactMaxStops,
+                pool, routeMillis, token, listener);
+    }
+}
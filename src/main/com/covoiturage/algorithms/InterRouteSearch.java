@@ -0,0 +1,372 @@
+package com.covoiturage.algorithms;
+
+import java.util.*;
+
+/**
+ * Recherche locale entre véhicules sur des routes ouvertes partant de leur dépôt :
+ * <ul>
+ *   <li>échange croisé : deux segments d'au plus {@value #MAX_SEGMENT_LENGTH} points changent de
+ *       route, dont la relocalisation (segment vide d'un côté) et l'échange de deux points ;</li>
+ *   <li>2-opt* : deux routes échangent leurs fins.</li>
+ * </ul>
+ * Les segments gardent leur sens, si bien que chaque mouvement ne change que quatre tronçons
+ * au plus : son écart de coût est en O(1), comme la vérification de capacité, qui ne dépend que
+ * du nombre de points de chaque route. Seuls les mouvements qui relient un point à l'un de ses
+ * plus proches voisins sont évalués, avec une file de points à examiner comme
+ * {@link LocalSearch} ; les routes modifiées sont ensuite réordonnées par {@link LocalSearch}.
+ * La recherche s'arrête à l'optimum local ou à l'échéance du budget de temps.
+ */
+public final class InterRouteSearch {
+
+    /** Longueur maximale d'un segment échangé. */
+    static final int MAX_SEGMENT_LENGTH = LocalSearch.MAX_SEGMENT_LENGTH;
+    private static final double IMPROVEMENT_EPSILON = 1e-10;
+    /** Point absent d'un segment ou fin de route. */
+    private static final int NONE = -1;
+
+    private final DistanceMatrix matrix;
+    private final int[][] routes;
+    private final int[] lengths;
+    private final int[] capacities;
+    private final int[] routeOf;
+    private final int[] positionOf;
+    private final boolean[] modified;
+    private int moves;
+
+    private InterRouteSearch(DistanceMatrix matrix, int[][] routes, int[] capacities) {
+        this.matrix = matrix;
+        this.capacities = capacities;
+        this.routes = new int[routes.length][];
+        this.lengths = new int[routes.length];
+        this.routeOf = new int[matrix.size()];
+        this.positionOf = new int[matrix.size()];
+        this.modified = new boolean[routes.length];
+        Arrays.fill(routeOf, NONE);
+        for (int r = 0; r < routes.length; r++) {
+            this.routes[r] = routes[r].clone();
+            lengths[r] = routes[r].length;
+            updatePositions(r, 0);
+        }
+    }
+
+    /**
+     * Améliore la répartition des utilisateurs entre véhicules, sans dépasser la capacité d'un
+     * véhicule (ni aggraver un dépassement existant).
+     *
+     * @param routes pour chaque dépôt, sa route (dépôt en tête) ; un point ne doit figurer
+     *               que dans une seule route
+     * @param timeBudgetMillis durée maximale de la recherche
+     */
+    public static Result improve(DistanceMatrix matrix, Map<String, List<String>> routes,
+                                 Map<String, Integer> capacities, long timeBudgetMillis) {
+        return improve(matrix, routes, capacities, timeBudgetMillis, CancellationToken.none());
+    }
+
+    /**
+     * Comme {@link #improve(DistanceMatrix, Map, Map, long)}, arrêtée au plus tard par le jeton.
+     */
+    public static Result improve(DistanceMatrix matrix, Map<String, List<String>> routes,
+                                 Map<String, Integer> capacities, long timeBudgetMillis, CancellationToken token) {
+        Objects.requireNonNull(matrix, "matrix");
+        Objects.requireNonNull(token, "token");
+        Objects.requireNonNull(routes, "routes");
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Le budget de temps ne peut pas être négatif : " + timeBudgetMillis);
+        }
+        long start = System.nanoTime();
+        List<String> depots = new ArrayList<>(routes.keySet());
+        int[][] indices = new int[depots.size()][];
+        int[] capacityArray = new int[depots.size()];
+        Set<Integer> seen = new HashSet<>();
+        for (int r = 0; r < indices.length; r++) {
+            indices[r] = LocalSearch.toIndices(matrix, routes.get(depots.get(r)));
+            capacityArray[r] = capacities.getOrDefault(depots.get(r), Integer.MAX_VALUE);
+            for (int node : indices[r]) {
+                if (!seen.add(node)) {
+                    throw new IllegalArgumentException("Point présent dans plusieurs routes : " + matrix.getPointId(node));
+                }
+            }
+        }
+
+        InterRouteSearch search = new InterRouteSearch(matrix, indices, capacityArray);
+        double initialCost = search.totalCost();
+        boolean completed = search.run(token.earliestDeadline(CancellationToken.deadlineAfter(start, timeBudgetMillis)), token);
+
+        Map<String, List<String>> improved = new HashMap<>();
+        for (int r = 0; r < depots.size(); r++) {
+            List<String> route = search.pointIds(r);
+            if (search.modified[r]) {
+                route = LocalSearch.improve(matrix, route);
+            }
+            improved.put(depots.get(r), route);
+        }
+        double finalCost = 0.0;
+        for (List<String> route : improved.values()) {
+            finalCost += new RouteState(matrix, LocalSearch.toIndices(matrix, route)).cost();
+        }
+        return new Result(improved, initialCost, finalCost, search.moves, completed,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @return {@code true} si l'optimum local est atteint avant l'échéance
+     */
+    private boolean run(long deadline, CancellationToken token) {
+        int n = matrix.size();
+        int[] nodes = new int[n];
+        int count = 0;
+        for (int r = 0; r < routes.length; r++) {
+            for (int p = 0; p < lengths[r]; p++) {
+                nodes[count++] = routes[r][p];
+            }
+        }
+        int[][] neighbours = LocalSearch.nearestNeighbours(matrix, Arrays.copyOf(nodes, count),
+                LocalSearch.DEFAULT_NEIGHBOURS);
+
+        ArrayDeque<Integer> active = new ArrayDeque<>();
+        boolean[] queued = new boolean[n];
+        for (int i = 0; i < count; i++) {
+            if (positionOf[nodes[i]] > 0) {
+                active.add(nodes[i]);
+                queued[nodes[i]] = true;
+            }
+        }
+
+        int[] touched = new int[12];
+        while (!active.isEmpty()) {
+            if (System.nanoTime() > deadline || token.isCancelled()) {
+                return false;
+            }
+            int node = active.poll();
+            queued[node] = false;
+            int changed = improveAround(node, neighbours[node], touched);
+            for (int i = 0; i < changed; i++) {
+                int other = touched[i];
+                if (other != NONE && positionOf[other] > 0 && !queued[other]) {
+                    active.add(other);
+                    queued[other] = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applique le premier mouvement améliorant qui place {@code node} juste après l'un de ses
+     * voisins d'une autre route.
+     *
+     * @return le nombre de points écrits dans {@code touched}, 0 sans amélioration
+     */
+    private int improveAround(int node, int[] neighbours, int[] touched) {
+        int a = routeOf[node];
+        int i = positionOf[node];
+        if (neighbours == null || i < 1) {
+            return 0;
+        }
+        for (int neighbour : neighbours) {
+            int b = routeOf[neighbour];
+            if (b == a) {
+                continue;
+            }
+            int j = positionOf[neighbour] + 1;
+
+            // 2-opt* : la fin de a à partir du point passe derrière le voisin, et inversement
+            if (improves(tailDelta(a, i, b, j)) && tailsFit(a, i, b, j)) {
+                int count = collect(touched, a, i - 1, i, b, j - 1, j);
+                applyTails(a, i, b, j);
+                return count;
+            }
+
+            // Échange croisé : segment de a commençant au point contre segment de b suivant le voisin
+            for (int la = 1; la <= MAX_SEGMENT_LENGTH && i + la <= lengths[a]; la++) {
+                for (int lb = 0; lb <= MAX_SEGMENT_LENGTH && j + lb <= lengths[b]; lb++) {
+                    if (improves(crossDelta(a, i, la, b, j, lb)) && segmentsFit(a, la, b, lb)) {
+                        int count = collect(touched, a, i - 1, i + la, b, j - 1, j + lb);
+                        touched[count++] = node;
+                        applyCross(a, i, la, b, j, lb);
+                        return count;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Écart de l'échange des segments {@code a[i, i + la)} et {@code b[j, j + lb)}
+     * ({@code i, j >= 1}), chacun prenant la place de l'autre.
+     */
+    private double crossDelta(int a, int i, int la, int b, int j, int lb) {
+        int previousA = routes[a][i - 1];
+        int nextA = at(a, i + la);
+        int firstA = la > 0 ? routes[a][i] : NONE;
+        int lastA = la > 0 ? routes[a][i + la - 1] : NONE;
+        int previousB = routes[b][j - 1];
+        int nextB = at(b, j + lb);
+        int firstB = lb > 0 ? routes[b][j] : NONE;
+        int lastB = lb > 0 ? routes[b][j + lb - 1] : NONE;
+        return chain(previousA, firstB, lastB, nextA) + chain(previousB, firstA, lastA, nextB)
+                - chain(previousA, firstA, lastA, nextA) - chain(previousB, firstB, lastB, nextB);
+    }
+
+    /**
+     * Écart du 2-opt* : {@code a} garde ses positions {@code [0, i)} suivies de la fin de
+     * {@code b} à partir de {@code j}, et réciproquement.
+     */
+    private double tailDelta(int a, int i, int b, int j) {
+        int lastA = routes[a][i - 1];
+        int lastB = routes[b][j - 1];
+        int tailA = at(a, i);
+        int tailB = at(b, j);
+        return link(lastA, tailB) + link(lastB, tailA) - link(lastA, tailA) - link(lastB, tailB);
+    }
+
+    /**
+     * Coût des tronçons reliant {@code previous}, le segment {@code [first, last]} (éventuellement
+     * vide) et {@code next} (éventuellement absent) ; l'intérieur du segment n'est pas compté.
+     */
+    private double chain(int previous, int first, int last, int next) {
+        if (first == NONE) {
+            return link(previous, next);
+        }
+        return leg(previous, first) + link(last, next);
+    }
+
+    private double link(int from, int to) {
+        return to == NONE ? 0.0 : leg(from, to);
+    }
+
+    private double leg(int from, int to) {
+        return matrix.distance(from, to);
+    }
+
+    private int at(int route, int position) {
+        return position < lengths[route] ? routes[route][position] : NONE;
+    }
+
+    private boolean segmentsFit(int a, int la, int b, int lb) {
+        return fits(a, lb - la) && fits(b, la - lb);
+    }
+
+    private boolean tailsFit(int a, int i, int b, int j) {
+        int tailA = lengths[a] - i;
+        int tailB = lengths[b] - j;
+        return fits(a, tailB - tailA) && fits(b, tailA - tailB);
+    }
+
+    /**
+     * Capacité respectée après ajout de {@code change} passagers, ou dépassement non aggravé.
+     */
+    private boolean fits(int route, int change) {
+        return change <= 0 || lengths[route] - 1 + change <= capacities[route];
+    }
+
+    private void applyCross(int a, int i, int la, int b, int j, int lb) {
+        int[] segmentA = Arrays.copyOfRange(routes[a], i, i + la);
+        int[] segmentB = Arrays.copyOfRange(routes[b], j, j + lb);
+        replace(a, i, la, segmentB);
+        replace(b, j, lb, segmentA);
+        updatePositions(a, i);
+        updatePositions(b, j);
+        markModified(a, b);
+    }
+
+    private void applyTails(int a, int i, int b, int j) {
+        int[] tailA = Arrays.copyOfRange(routes[a], i, lengths[a]);
+        int[] tailB = Arrays.copyOfRange(routes[b], j, lengths[b]);
+        replace(a, i, tailA.length, tailB);
+        replace(b, j, tailB.length, tailA);
+        updatePositions(a, i);
+        updatePositions(b, j);
+        markModified(a, b);
+    }
+
+    /**
+     * Remplace les {@code length} points de la route à partir de {@code from} par {@code points}.
+     */
+    private void replace(int route, int from, int length, int[] points) {
+        int shift = points.length - length;
+        if (lengths[route] + shift > routes[route].length) {
+            routes[route] = Arrays.copyOf(routes[route], Math.max(2 * routes[route].length, lengths[route] + shift));
+        }
+        int[] nodes = routes[route];
+        System.arraycopy(nodes, from + length, nodes, from + points.length, lengths[route] - from - length);
+        System.arraycopy(points, 0, nodes, from, points.length);
+        lengths[route] += shift;
+    }
+
+    private void updatePositions(int route, int from) {
+        for (int p = from; p < lengths[route]; p++) {
+            routeOf[routes[route][p]] = route;
+            positionOf[routes[route][p]] = p;
+        }
+    }
+
+    private void markModified(int a, int b) {
+        modified[a] = true;
+        modified[b] = true;
+        moves++;
+    }
+
+    /**
+     * Écrit les points aux positions données (avant modification) de deux routes.
+     */
+    private int collect(int[] touched, int a, int a1, int a2, int b, int b1, int b2) {
+        touched[0] = at(a, a1);
+        touched[1] = at(a, a2);
+        touched[2] = at(b, b1);
+        touched[3] = at(b, b2);
+        touched[4] = at(b, b1 + 1);
+        return 5;
+    }
+
+    private double totalCost() {
+        double total = 0.0;
+        for (int r = 0; r < routes.length; r++) {
+            for (int p = 0; p + 1 < lengths[r]; p++) {
+                total += leg(routes[r][p], routes[r][p + 1]);
+            }
+        }
+        return total;
+    }
+
+    private List<String> pointIds(int route) {
+        List<String> ids = new ArrayList<>(lengths[route]);
+        for (int p = 0; p < lengths[route]; p++) {
+            ids.add(matrix.getPointId(routes[route][p]));
+        }
+        return ids;
+    }
+
+    private static boolean improves(double delta) {
+        // NaN ou infini : un tronçon sans chemin, mouvement ignoré
+        return delta < -IMPROVEMENT_EPSILON && delta > Double.NEGATIVE_INFINITY;
+    }
+
+    public static final class Result {
+        private final Map<String, List<String>> routes;
+        private final double initialCost;
+        private final double finalCost;
+        private final int moveCount;
+        private final boolean completed;
+        private final long elapsedMillis;
+
+        Result(Map<String, List<String>> routes, double initialCost, double finalCost, int moveCount,
+               boolean completed, long elapsedMillis) {
+            this.routes = Collections.unmodifiableMap(routes);
+            this.initialCost = initialCost;
+            this.finalCost = finalCost;
+            this.moveCount = moveCount;
+            this.completed = completed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public Map<String, List<String>> getRoutes() { return routes; }
+        public double getInitialCost() { return initialCost; }
+        public double getFinalCost() { return finalCost; }
+        public int getMoveCount() { return moveCount; }
+        /** Faux si le budget de temps a interrompu la recherche avant l'optimum local. */
+        public boolean isCompleted() { return completed; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+}
@@ -0,0 +1,302 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+import com.covoiturage.models.Noeud;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Graphe creux à vol d'oiseau : chaque nœud est relié (dans les deux sens) à ses {@code k} plus
+ * proches voisins, puis des liaisons sont ajoutées entre composantes jusqu'à ce que le graphe
+ * soit connexe. Remplace le graphe complet, en O(n·k) liaisons au lieu de O(n²).
+ * <p>
+ * Dans le graphe complet, le plus court chemin entre deux nœuds est la liaison directe ;
+ * l'erreur d'un graphe creux est donc le rapport entre son plus court chemin et la distance
+ * orthodromique, moins un.
+ */
+public final class KNearestGraph {
+
+    /** Nombre de voisins par défaut. */
+    public static final int DEFAULT_NEIGHBOURS = 8;
+    /** Nombre de sources des recherches qui estiment l'erreur. */
+    private static final int ERROR_SAMPLE_SOURCES = 8;
+
+    private final Graph graph;
+    private final int neighbourCount;
+    private final int edgeCount;
+    private final int initialComponentCount;
+    private final int connectivityEdgeCount;
+    private final boolean connected;
+    private final long buildTimeMillis;
+    private double estimatedError = Double.NaN;
+
+    private KNearestGraph(Graph graph, int neighbourCount, int edgeCount, int initialComponentCount,
+                          int connectivityEdgeCount, boolean connected, long buildTimeMillis) {
+        this.graph = graph;
+        this.neighbourCount = neighbourCount;
+        this.edgeCount = edgeCount;
+        this.initialComponentCount = initialComponentCount;
+        this.connectivityEdgeCount = connectivityEdgeCount;
+        this.connected = connected;
+        this.buildTimeMillis = buildTimeMillis;
+    }
+
+    /**
+     * Construit le graphe ; les recherches de voisins et les distances sont calculées en parallèle.
+     */
+    public static KNearestGraph build(Collection<Noeud> nodes, int k) {
+        return build(nodes, k, System.nanoTime());
+    }
+
+    /**
+     * Construit le graphe avec {@code k} voisins, puis double {@code k} tant que l'erreur
+     * estimée (voir {@link #estimateError()}) dépasse {@code maxError}, par exemple 0.05 pour 5 %.
+     * Au pire, le graphe obtenu est complet ; la durée de construction couvre tous les essais.
+     */
+    public static KNearestGraph build(Collection<Noeud> nodes, int k, double maxError) {
+        if (!(maxError >= 0)) {
+            throw new IllegalArgumentException("L'erreur maximale doit être positive : " + maxError);
+        }
+        long start = System.nanoTime();
+        int neighbours = k;
+        while (true) {
+            KNearestGraph result = build(nodes, neighbours, start);
+            if (neighbours >= nodes.size() - 1 || result.estimateError() <= maxError) {
+                return result;
+            }
+            neighbours = (int) Math.min(2L * neighbours, nodes.size() - 1);
+        }
+    }
+
+    private static KNearestGraph build(Collection<Noeud> nodes, int k, long start) {
+        Objects.requireNonNull(nodes, "nodes");
+        if (k <= 0) {
+            throw new IllegalArgumentException("Le nombre de voisins doit être positif : " + k);
+        }
+        Noeud[] points = nodes.toArray(new Noeud[0]);
+        int n = points.length;
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (indexById.put(points[i].getId(), i) != null) {
+                throw new IllegalArgumentException("Nœud en double : " + points[i].getId());
+            }
+        }
+
+        // Lectures concurrentes seulement : l'index n'est plus modifié après sa construction
+        SpatialIndex index = SpatialIndex.of(Arrays.asList(points));
+        int[][] neighbours = new int[n][];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            List<String> nearest = index.nearest(points[i], k + 1);
+            int[] found = new int[k];
+            int count = 0;
+            for (String id : nearest) {
+                int j = indexById.get(id);
+                if (j != i && count < k) {
+                    found[count++] = j;
+                }
+            }
+            neighbours[i] = Arrays.copyOf(found, count);
+        });
+
+        // Paires non orientées distinctes, chaque nœud dans l'union-find
+        Set<Long> pairs = new LinkedHashSet<>();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j : neighbours[i]) {
+                if (pairs.add(pair(i, j))) {
+                    union(parent, i, j);
+                }
+            }
+        }
+        int initialComponents = componentCount(parent);
+        int connectivityEdges = connect(points, indexById, index, parent, pairs);
+
+        long[] edges = new long[pairs.size()];
+        int e = 0;
+        for (long edge : pairs) {
+            edges[e++] = edge;
+        }
+        double[] lengths = new double[edges.length];
+        IntStream.range(0, edges.length).parallel().forEach(i ->
+                lengths[i] = CalculDistance.calculateDistance(points[(int) (edges[i] >>> 32)], points[(int) edges[i]]));
+
+        Graph graph = new Graph();
+        for (Noeud point : points) {
+            graph.addNode(point);
+        }
+        for (int i = 0; i < edges.length; i++) {
+            String a = points[(int) (edges[i] >>> 32)].getId();
+            String b = points[(int) edges[i]].getId();
+            graph.addEdge(a, b, lengths[i]);
+            graph.addEdge(b, a, lengths[i]);
+        }
+
+        long buildTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        return new KNearestGraph(graph, k, 2 * edges.length, initialComponents, connectivityEdges,
+                componentCount(parent) <= 1, buildTimeMillis);
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public int getNeighbourCount() {
+        return neighbourCount;
+    }
+
+    /**
+     * Nombre de liaisons orientées du graphe.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Nombre de composantes connexes du graphe des plus proches voisins, avant réparation.
+     */
+    public int getInitialComponentCount() {
+        return initialComponentCount;
+    }
+
+    /**
+     * Liaisons non orientées ajoutées pour rendre le graphe connexe.
+     */
+    public int getConnectivityEdgeCount() {
+        return connectivityEdgeCount;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    /**
+     * Erreur relative par rapport au graphe complet, estimée sur un échantillon : somme des plus
+     * courts chemins issus de {@value #ERROR_SAMPLE_SOURCES} sources seulement, réparties dans
+     * le graphe, vers tous les nœuds, rapportée à la somme des distances directes, moins un.
+     * C'est l'allongement moyen d'un trajet depuis ces sources, pondéré par sa longueur, et non
+     * une mesure sur toutes les paires : les détours des paires très proches pèsent peu.
+     * Calculée à la première demande.
+     */
+    public synchronized double estimateError() {
+        if (!Double.isNaN(estimatedError)) {
+            return estimatedError;
+        }
+        CompactGraph compact = CompactGraph.fromGraph(graph);
+        int n = compact.getNodeCount();
+        int[] targets = new int[n];
+        for (int i = 0; i < n; i++) {
+            targets[i] = i;
+        }
+        int sources = Math.min(ERROR_SAMPLE_SOURCES, n);
+        double[][] totals = new double[sources][2];
+        IntStream.range(0, sources).parallel().forEach(s -> {
+            int source = (int) ((long) s * n / sources);
+            double[] distances = new double[n];
+            DijkstraEngine.oneToMany(compact, source, targets, distances);
+            for (int t = 0; t < n; t++) {
+                totals[s][0] += distances[t];
+                totals[s][1] += CalculDistance.calculateDistance(compact.getNode(source), compact.getNode(t));
+            }
+        });
+        double viaGraph = 0.0;
+        double direct = 0.0;
+        for (double[] total : totals) {
+            viaGraph += total[0];
+            direct += total[1];
+        }
+        estimatedError = direct > 0 ? viaGraph / direct - 1.0 : 0.0;
+        return estimatedError;
+    }
+
+    /**
+     * Relie les composantes jusqu'à connexité : à chaque tour, chaque composante hors la plus
+     * grande reçoit la liaison la plus courte (dans la projection de l'index) vers un nœud d'une
+     * autre composante. La liaison trouvée borne la recherche depuis les membres suivants, si
+     * bien que les membres éloignés du bord de leur composante n'en parcourent qu'un anneau.
+     *
+     * @return le nombre de liaisons ajoutées
+     */
+    private static int connect(Noeud[] points, Map<String, Integer> indexById, SpatialIndex index,
+                               int[] parent, Set<Long> pairs) {
+        int added = 0;
+        while (true) {
+            Map<Integer, List<Integer>> components = new HashMap<>();
+            for (int i = 0; i < points.length; i++) {
+                components.computeIfAbsent(find(parent, i), c -> new ArrayList<>()).add(i);
+            }
+            if (components.size() <= 1) {
+                return added;
+            }
+            int largest = -1;
+            for (Map.Entry<Integer, List<Integer>> entry : components.entrySet()) {
+                if (largest < 0 || entry.getValue().size() > components.get(largest).size()) {
+                    largest = entry.getKey();
+                }
+            }
+
+            List<long[]> links = new ArrayList<>();
+            for (Map.Entry<Integer, List<Integer>> entry : components.entrySet()) {
+                if (entry.getKey() == largest) {
+                    continue;
+                }
+                int component = entry.getKey();
+                int bestFrom = -1;
+                int bestTo = -1;
+                double bestDistance = Double.POSITIVE_INFINITY;
+                for (int member : entry.getValue()) {
+                    String id = index.nearestMatching(points[member], bestDistance,
+                            other -> find(parent, indexById.get(other)) != component);
+                    if (id != null) {
+                        bestDistance = index.distance(points[member], id);
+                        bestFrom = member;
+                        bestTo = indexById.get(id);
+                    }
+                }
+                links.add(new long[]{bestFrom, bestTo});
+            }
+            for (long[] link : links) {
+                int a = (int) link[0];
+                int b = (int) link[1];
+                if (pairs.add(pair(a, b))) {
+                    added++;
+                }
+                union(parent, a, b);
+            }
+        }
+    }
+
+    private static long pair(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+
+    private static int componentCount(int[] parent) {
+        int count = 0;
+        for (int i = 0; i < parent.length; i++) {
+            if (find(parent, i) == i) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,174 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+import com.covoiturage.models.Noeud;
+import com.covoiturage.utils.MemoryEstimates;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Oracle de bornes inférieures ALT (A*, repères et inégalité triangulaire).
+ * <p>
+ * Pour K repères L, on stocke {@code d(L, v)} et {@code d(v, L)} pour tout nœud v ; alors
+ * {@code d(u, t) >= max(d(L, t) - d(L, u), d(u, L) - d(t, L))}. Le prétraitement se limite à
+ * 2K recherches complètes, exécutées en parallèle : bien plus léger qu'une
+ * {@link ContractionHierarchy}, il convient aux réseaux souvent modifiés. Les bornes restent
+ * valides si des liaisons sont fermées ou rallongées ; un raccourci nouveau impose de reconstruire.
+ */
+public final class LandmarkOracle implements DistanceBound {
+
+    /** Marge absorbant les erreurs d'arrondi des sommes de distances. */
+    private static final double BOUND_SCALE = 1.0 - 1e-9;
+
+    private final CompactGraph graph;
+    private final int[] landmarks;
+    /** {@code d(L, v)}, rangées par nœud : {@code [v * K + l]}. */
+    private final double[] fromLandmarks;
+    /** {@code d(v, L)}, même disposition. */
+    private final double[] toLandmarks;
+    private final long preprocessingMillis;
+
+    private LandmarkOracle(CompactGraph graph, int[] landmarks, double[] fromLandmarks,
+                           double[] toLandmarks, long preprocessingMillis) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.fromLandmarks = fromLandmarks;
+        this.toLandmarks = toLandmarks;
+        this.preprocessingMillis = preprocessingMillis;
+    }
+
+    public static LandmarkOracle build(Graph graph, int landmarkCount) {
+        Objects.requireNonNull(graph, "graph");
+        return build(CompactGraph.fromGraph(graph), landmarkCount);
+    }
+
+    /**
+     * Choisit les repères en périphérie du réseau (le nœud le plus éloigné du centre dans
+     * chacun des {@code landmarkCount} secteurs angulaires), puis calcule leurs distances.
+     */
+    public static LandmarkOracle build(CompactGraph graph, int landmarkCount) {
+        Objects.requireNonNull(graph, "graph");
+        if (landmarkCount <= 0) {
+            throw new IllegalArgumentException("Le nombre de repères doit être positif : " + landmarkCount);
+        }
+        long start = System.nanoTime();
+        int nodeCount = graph.getNodeCount();
+        int[] landmarks = selectLandmarks(graph, landmarkCount);
+        int k = landmarks.length;
+
+        double[] fromLandmarks = new double[nodeCount * k];
+        double[] toLandmarks = new double[nodeCount * k];
+        CompactGraph reversed = graph.reversed();
+        // Une tâche par repère et par sens ; chaque thread dispose de son propre espace de travail
+        IntStream.range(0, 2 * k).parallel().forEach(task -> {
+            int l = task >> 1;
+            boolean forward = (task & 1) == 0;
+            DijkstraWorkspace workspace = DijkstraEngine.search(forward ? graph : reversed, landmarks[l], -1);
+            double[] target = forward ? fromLandmarks : toLandmarks;
+            for (int v = 0; v < nodeCount; v++) {
+                target[v * k + l] = workspace.distance(v);
+            }
+        });
+
+        long preprocessingMillis = (System.nanoTime() - start) / 1_000_000;
+        return new LandmarkOracle(graph, landmarks, fromLandmarks, toLandmarks, preprocessingMillis);
+    }
+
+    /**
+     * Graphe figé sur lequel l'oracle a été calculé, à utiliser pour les requêtes guidées.
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public List<String> getLandmarkIds() {
+        List<String> ids = new ArrayList<>(landmarks.length);
+        for (int landmark : landmarks) {
+            ids.add(graph.getNodeId(landmark));
+        }
+        return ids;
+    }
+
+    public long getPreprocessingMillis() {
+        return preprocessingMillis;
+    }
+
+    /**
+     * Minorant (km) de la distance de plus court chemin de {@code from} à {@code to}, en O(K).
+     */
+    @Override
+    public double lowerBound(int from, int to) {
+        int k = landmarks.length;
+        int fromRow = from * k;
+        int toRow = to * k;
+        double best = 0.0;
+        for (int l = 0; l < k; l++) {
+            // Les différences infinies (nœud hors de portée d'un repère) ne bornent rien d'exploitable
+            double viaFrom = fromLandmarks[toRow + l] - fromLandmarks[fromRow + l];
+            if (viaFrom > best && viaFrom != Double.POSITIVE_INFINITY) {
+                best = viaFrom;
+            }
+            double viaTo = toLandmarks[fromRow + l] - toLandmarks[toRow + l];
+            if (viaTo > best && viaTo != Double.POSITIVE_INFINITY) {
+                best = viaTo;
+            }
+        }
+        return BOUND_SCALE * best;
+    }
+
+    public double lowerBound(String fromId, String toId) {
+        return lowerBound(requireIndex(fromId, "départ"), requireIndex(toId, "arrivée"));
+    }
+
+    public long estimateMemoryBytes() {
+        return MemoryEstimates.arrayBytes(fromLandmarks.length, Double.BYTES)
+                + MemoryEstimates.arrayBytes(toLandmarks.length, Double.BYTES)
+                + MemoryEstimates.arrayBytes(landmarks.length, Integer.BYTES);
+    }
+
+    int requireIndex(String nodeId, String descriptor) {
+        int index = nodeId == null ? -1 : graph.indexOf(nodeId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Le graphe ne contient pas le nœud de " + descriptor + " : " + nodeId);
+        }
+        return index;
+    }
+
+    /**
+     * Sélection « planaire » : un repère par secteur angulaire autour du barycentre, le plus
+     * éloigné de celui-ci. Les secteurs vides sont ignorés.
+     */
+    private static int[] selectLandmarks(CompactGraph graph, int landmarkCount) {
+        int nodeCount = graph.getNodeCount();
+        double centerLatitude = 0.0;
+        double centerLongitude = 0.0;
+        for (int v = 0; v < nodeCount; v++) {
+            centerLatitude += graph.getNode(v).getLatitude();
+            centerLongitude += graph.getNode(v).getLongitude();
+        }
+        centerLatitude /= Math.max(1, nodeCount);
+        centerLongitude /= Math.max(1, nodeCount);
+
+        int[] farthest = new int[landmarkCount];
+        double[] farthestDistance = new double[landmarkCount];
+        Arrays.fill(farthest, -1);
+        for (int v = 0; v < nodeCount; v++) {
+            Noeud node = graph.getNode(v);
+            double angle = Math.atan2(node.getLatitude() - centerLatitude, node.getLongitude() - centerLongitude);
+            int sector = (int) ((angle + Math.PI) / (2 * Math.PI) * landmarkCount) % landmarkCount;
+            double distance = CalculDistance.calculateDistance(
+                    centerLatitude, centerLongitude, node.getLatitude(), node.getLongitude());
+            if (farthest[sector] < 0 || distance > farthestDistance[sector]) {
+                farthest[sector] = v;
+                farthestDistance[sector] = distance;
+            }
+        }
+        return Arrays.stream(farthest).filter(v -> v >= 0).toArray();
+    }
+}
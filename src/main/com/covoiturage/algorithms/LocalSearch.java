@@ -0,0 +1,232 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+
+import java.util.*;
+
+/**
+ * Recherche locale sur une route ouverte partant d'un point fixe : 2-opt, Or-opt (déplacement
+ * d'un segment de 2 ou 3 points) et relocalisation d'un point, en première amélioration.
+ * <p>
+ * Seuls les mouvements rapprochant un point de l'un de ses plus proches voisins sont évalués,
+ * et un point dont aucun mouvement n'améliore la route reçoit un bit « ne pas regarder »,
+ * levé dès qu'un mouvement modifie un tronçon qui le touche.
+ */
+public final class LocalSearch {
+
+    /** Taille par défaut des listes de voisins. */
+    public static final int DEFAULT_NEIGHBOURS = 8;
+    /** Longueur maximale d'un segment déplacé par Or-opt. */
+    static final int MAX_SEGMENT_LENGTH = 3;
+    /** En deçà, un gain est considéré comme du bruit d'arrondi. */
+    private static final double IMPROVEMENT_EPSILON = 1e-10;
+
+    private LocalSearch() {}
+
+    /**
+     * Construit la matrice des seuls points de cet appel : un appelant qui enchaîne plusieurs
+     * routes sur le même graphe construit une fois {@link DistanceMatrix} et utilise la
+     * variante sur matrice.
+     */
+    public static RecuitSimule.OptimizationResult optimizeRoute(Graph graph, String startNodeId,
+                                                                List<String> mustVisitNodes) {
+        return optimizeRoute(CompactGraph.fromGraph(graph), startNodeId, mustVisitNodes);
+    }
+
+    public static RecuitSimule.OptimizationResult optimizeRoute(CompactGraph graph, String startNodeId,
+                                                                List<String> mustVisitNodes) {
+        List<String> points = new ArrayList<>();
+        points.add(startNodeId);
+        for (String nodeId : mustVisitNodes) {
+            if (graph.containsNode(nodeId)) {
+                points.add(nodeId);
+            }
+        }
+        return optimizeRoute(DistanceMatrix.build(graph, points), startNodeId, mustVisitNodes);
+    }
+
+    /**
+     * Plus proche voisin suivi de la recherche locale.
+     */
+    public static RecuitSimule.OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                                List<String> mustVisitNodes) {
+        List<String> route = improve(matrix, NearestNeighbor.findRoute(matrix, startNodeId, mustVisitNodes));
+        RouteState state = new RouteState(matrix, toIndices(matrix, route));
+        double cost = state.cost();
+        return new RecuitSimule.OptimizationResult(route, cost, cost < Double.POSITIVE_INFINITY);
+    }
+
+    public static List<String> improve(DistanceMatrix matrix, List<String> route) {
+        return improve(matrix, route, DEFAULT_NEIGHBOURS);
+    }
+
+    /**
+     * Améliore la route jusqu'à un optimum local ; le premier point (départ) ne bouge pas.
+     */
+    public static List<String> improve(DistanceMatrix matrix, List<String> route, int neighbourCount) {
+        Objects.requireNonNull(matrix, "matrix");
+        Objects.requireNonNull(route, "route");
+        if (neighbourCount <= 0) {
+            throw new IllegalArgumentException("Le nombre de voisins doit être positif : " + neighbourCount);
+        }
+        if (route.size() < 3) {
+            return new ArrayList<>(route);
+        }
+
+        int[] nodes = toIndices(matrix, route);
+        RouteState state = new RouteState(matrix, nodes);
+        int[][] neighbours = nearestNeighbours(matrix, nodes, neighbourCount);
+
+        // File des points à examiner ; absent de la file = bit « ne pas regarder » positionné
+        ArrayDeque<Integer> active = new ArrayDeque<>();
+        boolean[] queued = new boolean[matrix.size()];
+        for (int node : nodes) {
+            active.add(node);
+            queued[node] = true;
+        }
+
+        int[] touched = new int[6];
+        while (!active.isEmpty()) {
+            int node = active.poll();
+            queued[node] = false;
+            int count = improveAround(state, node, neighbours[node], touched);
+            for (int i = 0; i < count; i++) {
+                if (!queued[touched[i]]) {
+                    active.add(touched[i]);
+                    queued[touched[i]] = true;
+                }
+            }
+        }
+        return state.toPointIds();
+    }
+
+    /**
+     * Applique le premier mouvement améliorant qui rapproche {@code node} d'un de ses voisins.
+     *
+     * @return le nombre de points dont un tronçon a changé (écrits dans {@code touched}),
+     *         0 si aucun mouvement n'améliore la route
+     */
+    private static int improveAround(RouteState state, int node, int[] neighbours, int[] touched) {
+        int n = state.size();
+        int p = state.positionOf(node);
+        for (int neighbour : neighbours) {
+            int q = state.positionOf(neighbour);
+            int low = Math.min(p, q);
+            int high = Math.max(p, q);
+
+            // 2-opt : rend les deux points consécutifs, dans un sens ou dans l'autre
+            if (low + 1 < high && improves(state.reverseDelta(low + 1, high))) {
+                int count = collectReverse(state, low + 1, high, touched);
+                state.applyReverse(low + 1, high);
+                return count;
+            }
+            if (low >= 1 && low < high - 1 && improves(state.reverseDelta(low, high - 1))) {
+                int count = collectReverse(state, low, high - 1, touched);
+                state.applyReverse(low, high - 1);
+                return count;
+            }
+
+            // Relocalisation / Or-opt : segment commençant au point, inséré juste après le voisin,
+            // ou segment finissant au point, inséré juste avant le voisin
+            for (int length = 1; length <= MAX_SEGMENT_LENGTH; length++) {
+                int start = p;
+                if (start >= 1 && start + length <= n && isValidAnchor(q, start, length)
+                        && improves(state.moveDelta(start, length, q))) {
+                    int count = collectMove(state, start, length, q, touched);
+                    state.applyMove(start, length, q);
+                    return count;
+                }
+                start = p - length + 1;
+                if (start >= 1 && q >= 1 && isValidAnchor(q - 1, start, length)
+                        && improves(state.moveDelta(start, length, q - 1))) {
+                    int count = collectMove(state, start, length, q - 1, touched);
+                    state.applyMove(start, length, q - 1);
+                    return count;
+                }
+            }
+        }
+        return 0;
+    }
+
+    static boolean isValidAnchor(int after, int start, int length) {
+        return after < start - 1 || after >= start + length;
+    }
+
+    private static boolean improves(double delta) {
+        // NaN ou infini : un tronçon sans chemin, mouvement ignoré
+        return delta < -IMPROVEMENT_EPSILON && delta > Double.NEGATIVE_INFINITY;
+    }
+
+    private static int collectReverse(RouteState state, int i, int j, int[] touched) {
+        int count = 0;
+        touched[count++] = state.nodeAt(i - 1);
+        touched[count++] = state.nodeAt(i);
+        touched[count++] = state.nodeAt(j);
+        if (j + 1 < state.size()) {
+            touched[count++] = state.nodeAt(j + 1);
+        }
+        return count;
+    }
+
+    private static int collectMove(RouteState state, int start, int length, int after, int[] touched) {
+        int end = start + length - 1;
+        int count = 0;
+        touched[count++] = state.nodeAt(start - 1);
+        touched[count++] = state.nodeAt(start);
+        touched[count++] = state.nodeAt(end);
+        if (end + 1 < state.size()) {
+            touched[count++] = state.nodeAt(end + 1);
+        }
+        touched[count++] = state.nodeAt(after);
+        if (after + 1 < state.size()) {
+            touched[count++] = state.nodeAt(after + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Pour chaque point de la route, ses {@code k} plus proches voisins parmi les autres points
+     * de la route ; tableau indexé par indice de matrice ({@code null} hors de la route).
+     */
+    static int[][] nearestNeighbours(DistanceMatrix matrix, int[] nodes, int k) {
+        int[][] neighbours = new int[matrix.size()][];
+        int count = Math.min(k, nodes.length - 1);
+        double[] distances = new double[count];
+        for (int node : nodes) {
+            // Sélection par insertion des count plus proches : O(n·k), sans tri ni boxing
+            int[] best = new int[count];
+            int size = 0;
+            for (int other : nodes) {
+                if (other == node) {
+                    continue;
+                }
+                double distance = matrix.distance(node, other);
+                if (size == count && (count == 0 || Double.compare(distance, distances[size - 1]) >= 0)) {
+                    continue;
+                }
+                int i = size < count ? size++ : size - 1;
+                while (i > 0 && Double.compare(distances[i - 1], distance) > 0) {
+                    best[i] = best[i - 1];
+                    distances[i] = distances[i - 1];
+                    i--;
+                }
+                best[i] = other;
+                distances[i] = distance;
+            }
+            neighbours[node] = best;
+        }
+        return neighbours;
+    }
+
+    static int[] toIndices(DistanceMatrix matrix, List<String> route) {
+        int[] nodes = new int[route.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = matrix.indexOf(route.get(i));
+            if (nodes[i] < 0) {
+                throw new IllegalArgumentException("Point absent de la matrice : " + route.get(i));
+            }
+        }
+        return nodes;
+    }
+}
@@ -1,66 +1,110 @@
 package com.covoiturage.algorithms;
 
+import com.covoiturage.models.CompactGraph;
 import com.covoiturage.models.Graph;
-import com.covoiturage.models.PathResult;
+import com.covoiturage.models.Noeud;
 
 import java.util.*;
 
 public final class NearestNeighbor {
 
+    /** Au-delà de ce nombre de points à visiter, les candidats sont présélectionnés par l'index spatial. */
+    static final int SPATIAL_INDEX_THRESHOLD = 64;
+    /** Nombre de candidats géographiquement proches comparés par distance routière. */
+    static final int SPATIAL_CANDIDATES = 16;
+
     private NearestNeighbor() {} // Constructeur privé pour classe utilitaire
 
+    /**
+     * Construit la matrice des seuls points de cet appel : un appelant qui enchaîne plusieurs
+     * routes sur le même graphe construit une fois {@link DistanceMatrix} et utilise la
+     * variante sur matrice.
+     */
     public static List<String> findRoute(Graph graph, String startNodeId, List<String> mustVisitNodes) {
+        return findRoute(CompactGraph.fromGraph(graph), startNodeId, mustVisitNodes);
+    }
+
+    public static List<String> findRoute(CompactGraph graph, String startNodeId, List<String> mustVisitNodes) {
+        // Une recherche un-vers-plusieurs par point suffit à couvrir toute la construction
+        List<String> points = new ArrayList<>();
+        points.add(startNodeId);
+        for (String nodeId : mustVisitNodes) {
+            if (graph.containsNode(nodeId)) {
+                points.add(nodeId);
+            }
+        }
+        return findRoute(DistanceMatrix.build(graph, points), startNodeId, mustVisitNodes);
+    }
+
+    /**
+     * Plus proche voisin sur la matrice. Sur les grandes routes, seuls les
+     * {@value #SPATIAL_CANDIDATES} points restants les plus proches à vol d'oiseau sont comparés
+     * par distance routière, avec repli sur un parcours complet si aucun n'est joignable :
+     * la construction passe de O(n²) à O(n·k) lectures de matrice.
+     */
+    public static List<String> findRoute(DistanceMatrix matrix, String startNodeId, List<String> mustVisitNodes) {
         List<String> route = new ArrayList<>();
-        Set<String> visited = new HashSet<>();
         String current = startNodeId;
 
         route.add(current);
-        visited.add(current);
 
-        List<String> toVisit = new ArrayList<>();
+        // Ensemble ordonné : même départage des égalités qu'une liste, suppression en O(1)
+        Set<String> toVisit = new LinkedHashSet<>();
         for (String nodeId : mustVisitNodes) {
-            if (graph.containsNode(nodeId) && !nodeId.equals(startNodeId)) {
+            if (matrix.containsPoint(nodeId) && !nodeId.equals(startNodeId)) {
                 toVisit.add(nodeId);
             }
         }
 
+        SpatialIndex index = null;
+        if (toVisit.size() > SPATIAL_INDEX_THRESHOLD) {
+            List<Noeud> locations = new ArrayList<>(toVisit.size());
+            for (String nodeId : toVisit) {
+                locations.add(matrix.getLocation(matrix.indexOf(nodeId)));
+            }
+            index = SpatialIndex.of(locations);
+        }
+
         while (!toVisit.isEmpty()) {
-            String nearest = findNearestNode(graph, current, toVisit);
+            String nearest = null;
+            if (index != null) {
+                Noeud location = matrix.getLocation(matrix.indexOf(current));
+                nearest = findNearestNode(matrix, current, index.nearest(location, SPATIAL_CANDIDATES));
+            }
+            if (nearest == null) {
+                nearest = findNearestNode(matrix, current, toVisit);
+            }
             if (nearest == null) break;
 
             route.add(nearest);
-            visited.add(nearest);
             toVisit.remove(nearest);
+            if (index != null) {
+                index.remove(nearest);
+            }
             current = nearest;
         }
 
         return route;
     }
 
-    private static String findNearestNode(Graph graph, String fromNodeId, List<String> candidates) {
+    private static String findNearestNode(DistanceMatrix matrix, String fromNodeId, Collection<String> candidates) {
         String nearest = null;
         double minDistance = Double.MAX_VALUE;
+        int from = matrix.indexOf(fromNodeId);
 
         for (String candidate : candidates) {
-            PathResult path = PlusCourtcChemin.findShortestPath(graph, fromNodeId, candidate);
+            double candidateDistance = matrix.distance(from, matrix.indexOf(candidate));
 
-            // Vérifications en cascade pour éviter toute exception
-            if (path == null) {
-                continue; // Chemin non calculable
+            // Distance infinie ou invalide : chemin inexistant ou non calculable
+            if (Double.isInfinite(candidateDistance) || Double.isNaN(candidateDistance)) {
+                continue;
             }
 
-            if (!path.isPathExists()) {
-                continue; // Aucun chemin trouvé
-            }
-
-            if (Double.isInfinite(path.getTotalDistance()) || Double.isNaN(path.getTotalDistance())) {
-                continue; // Distance invalide
-            }
-
-            if (path.getTotalDistance() < minDistance) {
-                minDistance = path.getTotalDistance();
+            if (candidateDistance < minDistance) {
+                minDistance = candidateDistance;
                 nearest = candidate;
             }
         }
         return nearest;
-    }}
\ No newline at end of file
+    }
+}
@@ -0,0 +1,41 @@
+package com.covoiturage.algorithms;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heuristique interchangeable de répartition des utilisateurs entre véhicules et d'ordre de
+ * passage ; {@link OptimizationStrategyFactory} la choisit selon la taille de l'instance et le
+ * budget de temps.
+ */
+public interface OptimizationStrategy {
+
+    /** Nom court, pour les journaux et l'état des jobs. */
+    String getName();
+
+    /**
+     * @return pour chaque dépôt, sa route (dépôt en tête, puis utilisateurs dans l'ordre de
+     *         passage) ; les utilisateurs impossibles à placer n'y figurent pas
+     */
+    default Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                               Map<String, Integer> capacities) {
+        return optimize(matrix, users, depots, capacities, CancellationToken.none());
+    }
+
+    /**
+     * Optimisation interruptible : dès que le jeton est déclenché (annulation ou échéance), la
+     * meilleure solution réalisable trouvée jusque-là est rendue.
+     */
+    Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                       Map<String, Integer> capacities, CancellationToken token);
+
+    /**
+     * Comme {@link #optimize(DistanceMatrix, List, List, Map, CancellationToken)}, en signalant
+     * les meilleures solutions intermédiaires à {@code listener} ; par défaut, aucun rapport.
+     */
+    default Map<String, List<String>> optimize(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                               Map<String, Integer> capacities, CancellationToken token,
+                                               ProgressListener listener) {
+        return optimize(matrix, users, depots, capacities, token);
+    }
+}
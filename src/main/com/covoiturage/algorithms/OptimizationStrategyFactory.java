@@ -0,0 +1,57 @@
+package com.covoiturage.algorithms;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Choisit la stratégie d'optimisation d'un job selon sa taille et son budget de temps :
+ * les petites instances, ou celles sans budget, sont construites par insertion puis chaque
+ * route est optimisée ({@link InsertionAnnealingStrategy}) ; les grandes instances à plusieurs
+ * véhicules sont confiées à {@link AdaptiveLargeNeighbourhoodSearch}, qui rend sa meilleure
+ * solution à l'échéance du budget, et les très grandes sont découpées en zones résolues en
+ * parallèle ({@link GeographicDecomposition}).
+ */
+public final class OptimizationStrategyFactory {
+
+    /** À partir de ce nombre d'utilisateurs, l'ALNS est préférée quand un budget est fixé. */
+    public static final int ALNS_MIN_USERS = 100;
+    /** À partir de ce nombre d'utilisateurs, l'instance est découpée en zones. */
+    public static final int DECOMPOSITION_MIN_USERS = 1000;
+
+    private final int regret;
+    private final int exactMaxStops;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param regret regret de l'insertion de la stratégie par insertion
+     * @param exactMaxStops nombre de passagers jusqu'auquel une route est ordonnée par {@link HeldKarp}
+     * @param pool pool d'optimisation des routes de la stratégie par insertion et des zones du
+     *             découpage géographique
+     */
+    public OptimizationStrategyFactory(int regret, int exactMaxStops, ForkJoinPool pool) {
+        this.regret = regret;
+        this.exactMaxStops = exactMaxStops;
+        this.pool = Objects.requireNonNull(pool, "pool");
+    }
+
+    /**
+     * @param timeBudgetMillis durée visée pour l'optimisation ; 0 sans contrainte
+     * @param routeMillis reçoit la durée d'optimisation de chaque route si la stratégie par
+     *                    insertion est choisie, ou {@code null}
+     */
+    public OptimizationStrategy create(int userCount, int vehicleCount, long timeBudgetMillis,
+                                       Map<String, Long> routeMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Le budget de temps ne peut pas être négatif : " + timeBudgetMillis);
+        }
+        // Un seul véhicule : il ne reste que l'ordre de passage, traité route par route
+        if (timeBudgetMillis == 0 || vehicleCount <= 1 || userCount < ALNS_MIN_USERS) {
+            return new InsertionAnnealingStrategy(regret, exactMaxStops, pool, routeMillis);
+        }
+        if (userCount >= DECOMPOSITION_MIN_USERS) {
+            return new GeographicDecomposition(timeBudgetMillis, pool);
+        }
+        return new AdaptiveLargeNeighbourhoodSearch(timeBudgetMillis);
+    }
+}
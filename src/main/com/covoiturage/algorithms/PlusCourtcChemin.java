@@ -1,5 +1,6 @@
 package com.covoiturage.algorithms;
 
+import com.covoiturage.models.CompactGraph;
 import com.covoiturage.models.Noeud;
 
 import com.covoiturage.models.Liaison;
@@ -60,6 +61,129 @@ public final class PlusCourtcChemin {
         return new PathResult(Collections.emptyList(), Double.POSITIVE_INFINITY, Double.NaN, false);
     }
 
+    /**
+     * Distances depuis {@code sourceId} vers chaque cible (même ordre que {@code targetIds},
+     * l'infini si inaccessible). Une seule recherche, arrêtée dès que toutes les cibles sont fixées.
+     */
+    public static double[] oneToMany(Graph graph, String sourceId, List<String> targetIds) {
+        Objects.requireNonNull(graph, "graph");
+        validateNode(graph, sourceId, "départ");
+        Set<String> remaining = new HashSet<>();
+        for (String targetId : targetIds) {
+            validateNode(graph, targetId, "arrivée");
+            remaining.add(targetId);
+        }
+
+        Map<String, Double> distances = new HashMap<>();
+        Set<String> visited = new HashSet<>();
+        PriorityQueue<NoeudDistance> queue = new PriorityQueue<>();
+        distances.put(sourceId, 0.0);
+        queue.add(new NoeudDistance(sourceId, 0.0));
+
+        while (!queue.isEmpty() && !remaining.isEmpty()) {
+            NoeudDistance current = queue.poll();
+            if (!visited.add(current.getNodeId())) {
+                continue;
+            }
+            remaining.remove(current.getNodeId());
+
+            for (Liaison liaison : graph.getEdges(current.getNodeId())) {
+                double newDistance = current.getDistance() + liaison.getDistance();
+                if (newDistance < distances.getOrDefault(liaison.getToNodeId(), Double.POSITIVE_INFINITY)) {
+                    distances.put(liaison.getToNodeId(), newDistance);
+                    queue.add(new NoeudDistance(liaison.getToNodeId(), newDistance));
+                }
+            }
+        }
+
+        double[] result = new double[targetIds.size()];
+        for (int i = 0; i < result.length; i++) {
+            String targetId = targetIds.get(i);
+            result[i] = visited.contains(targetId) ? distances.get(targetId) : Double.POSITIVE_INFINITY;
+        }
+        return result;
+    }
+
+    /**
+     * Table des distances {@code [source][cible]} (mêmes ordres que les listes fournies).
+     */
+    public static double[][] manyToMany(Graph graph, List<String> sourceIds, List<String> targetIds) {
+        double[][] table = new double[sourceIds.size()][];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = oneToMany(graph, sourceIds.get(i), targetIds);
+        }
+        return table;
+    }
+
+    /**
+     * Variante sur la représentation compacte : mêmes résultats que
+     * {@link #findShortestPath(Graph, String, String)}, calculés par {@link DijkstraEngine}.
+     */
+    public static PathResult findShortestPath(CompactGraph graph, String startNodeId, String endNodeId) {
+        Objects.requireNonNull(graph, "graph");
+        int start = validateNode(graph, startNodeId, "départ");
+        int end = validateNode(graph, endNodeId, "arrivée");
+        return DijkstraEngine.findShortestPath(graph, start, end);
+    }
+
+    /**
+     * Requête point à point avec l'algorithme choisi ({@link SearchMode}) ; les trois modes
+     * renvoient la même distance, A* et A* bidirectionnel fixant moins de nœuds.
+     */
+    public static PathResult findShortestPath(CompactGraph graph, String startNodeId, String endNodeId,
+                                              SearchMode mode) {
+        Objects.requireNonNull(graph, "graph");
+        Objects.requireNonNull(mode, "mode");
+        int start = validateNode(graph, startNodeId, "départ");
+        int end = validateNode(graph, endNodeId, "arrivée");
+        return AStarSearch.findShortestPath(graph, start, end, mode);
+    }
+
+    /**
+     * Requête A* guidée par les bornes ALT de l'oracle, sur le graphe où celui-ci a été calculé.
+     */
+    public static PathResult findShortestPath(LandmarkOracle oracle, String startNodeId, String endNodeId) {
+        return findShortestPath(oracle, startNodeId, endNodeId, SearchMode.A_STAR);
+    }
+
+    public static PathResult findShortestPath(LandmarkOracle oracle, String startNodeId, String endNodeId,
+                                              SearchMode mode) {
+        Objects.requireNonNull(oracle, "oracle");
+        Objects.requireNonNull(mode, "mode");
+        CompactGraph graph = oracle.getGraph();
+        int start = validateNode(graph, startNodeId, "départ");
+        int end = validateNode(graph, endNodeId, "arrivée");
+        return AStarSearch.findShortestPath(graph, start, end, mode, oracle);
+    }
+
+    public static double[] oneToMany(CompactGraph graph, String sourceId, List<String> targetIds) {
+        Objects.requireNonNull(graph, "graph");
+        int source = validateNode(graph, sourceId, "départ");
+        int[] targets = validateNodes(graph, targetIds);
+        double[] result = new double[targets.length];
+        DijkstraEngine.oneToMany(graph, source, targets, result);
+        return result;
+    }
+
+    public static double[][] manyToMany(CompactGraph graph, List<String> sourceIds, List<String> targetIds) {
+        Objects.requireNonNull(graph, "graph");
+        int[] sources = new int[sourceIds.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = validateNode(graph, sourceIds.get(i), "départ");
+        }
+        return DijkstraEngine.manyToMany(graph, sources, validateNodes(graph, targetIds));
+    }
+
+    /**
+     * Distance d'un résultat de plus court chemin, ou l'infini si le chemin est absent.
+     */
+    static double pathDistance(PathResult path) {
+        if (path == null || !path.isPathExists()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return path.getTotalDistance();
+    }
+
     private static PathResult buildResult(String startNodeId,
                                           String endNodeId,
                                           Map<String, Double> distances,
@@ -81,7 +205,7 @@ public final class PlusCourtcChemin {
         return new PathResult(path, distances.get(endNodeId), totalTime, true);
     }
 
-    private static double estimateTravelTime(Noeud from, Noeud to) {
+    static double estimateTravelTime(Noeud from, Noeud to) {
         if (from == null || to == null) {
             return Double.NaN;
         }
@@ -100,4 +224,23 @@ public final class PlusCourtcChemin {
             throw new IllegalArgumentException("Le graphe ne contient pas le nœud de " + descriptor + " : " + nodeId);
         }
     }
+
+    private static int validateNode(CompactGraph graph, String nodeId, String descriptor) {
+        if (nodeId == null || nodeId.isBlank()) {
+            throw new IllegalArgumentException("L'identifiant du nœud de " + descriptor + " est requis");
+        }
+        int index = graph.indexOf(nodeId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Le graphe ne contient pas le nœud de " + descriptor + " : " + nodeId);
+        }
+        return index;
+    }
+
+    private static int[] validateNodes(CompactGraph graph, List<String> nodeIds) {
+        int[] indices = new int[nodeIds.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = validateNode(graph, nodeIds.get(i), "arrivée");
+        }
+        return indices;
+    }
 }
@@ -0,0 +1,27 @@
+package com.covoiturage.algorithms;
+
+/**
+ * Reçoit la progression d'une recherche longue ({@link AdaptiveLargeNeighbourhoodSearch},
+ * {@link GeographicDecomposition}) : la solution initiale dès qu'elle est construite, puis au
+ * plus un rapport tous les {@value #INTERVAL_MILLIS} ms. {@link InsertionAnnealingStrategy}
+ * signale la solution après l'assignation puis après chaque route optimisée. L'appel a lieu
+ * dans le thread de la recherche, qu'il ralentit : il doit être bref et, pour le découpage
+ * géographique, sûr entre threads.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /** Intervalle minimal entre deux rapports d'une même recherche. */
+    long INTERVAL_MILLIS = 100;
+
+    ProgressListener NONE = progress -> { };
+
+    void onProgress(SearchProgress progress);
+
+    /**
+     * Auditeur qui ignore les rapports ; les recherches ne construisent alors aucune copie des routes.
+     */
+    static ProgressListener none() {
+        return NONE;
+    }
+}
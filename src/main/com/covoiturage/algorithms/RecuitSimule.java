@@ -1,84 +1,408 @@
 package com.covoiturage.algorithms;
 
+import com.covoiturage.models.CompactGraph;
 import com.covoiturage.models.Graph;
-import com.covoiturage.models.PathResult;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public final class RecuitSimule {
 
+    /** Pas de chaque réplique entre deux tentatives d'échange du recuit parallèle. */
+    private static final int EXCHANGE_INTERVAL = 100;
+    /** Rapport entre les températures extrêmes de l'échelle du recuit parallèle. */
+    private static final double TEMPERATURE_LADDER_RATIO = 1000.0;
+    /** Mouvements de la marche aléatoire qui étalonne la température initiale. */
+    private static final int SAMPLE_MOVES = 200;
+    /** Avancement d'un palier à partir duquel une stagnation déclenche réchauffage ou arrêt. */
+    private static final double COLD_PROGRESS = 0.5;
+    /** L'horloge n'est lue que toutes les 256 itérations. */
+    private static final int TIME_CHECK_MASK = 255;
+
     private RecuitSimule() {}
 
+    /**
+     * Construit la matrice des seuls points de cet appel : un appelant qui enchaîne plusieurs
+     * routes sur le même graphe construit une fois {@link DistanceMatrix} et utilise la
+     * variante sur matrice.
+     */
     public static OptimizationResult optimizeRoute(Graph graph, String startNodeId,
                                                    List<String> mustVisitNodes) {
-        // Solution initiale avec Nearest Neighbor
-        List<String> currentSolution = NearestNeighbor.findRoute(graph, startNodeId, mustVisitNodes);
-        double currentCost = calculateRouteDistance(graph, currentSolution);
+        return optimizeRoute(CompactGraph.fromGraph(graph), startNodeId, mustVisitNodes);
+    }
+
+    public static OptimizationResult optimizeRoute(CompactGraph graph, String startNodeId,
+                                                   List<String> mustVisitNodes) {
+        // Une recherche par point de la route, puis uniquement des lectures de matrice
+        List<String> points = new ArrayList<>();
+        points.add(startNodeId);
+        for (String nodeId : mustVisitNodes) {
+            if (graph.containsNode(nodeId)) {
+                points.add(nodeId);
+            }
+        }
+        return optimizeRoute(DistanceMatrix.build(graph, points), startNodeId, mustVisitNodes);
+    }
 
-        List<String> bestSolution = new ArrayList<>(currentSolution);
-        double bestCost = currentCost;
+    /**
+     * Recuit au programme adaptatif par défaut ({@link AnnealingSchedule#defaults()}) : nombre
+     * d'itérations et températures réglés sur la taille de la route et l'échelle de ses coûts.
+     */
+    public static OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                   List<String> mustVisitNodes) {
+        return optimizeRoute(matrix, startNodeId, mustVisitNodes, CancellationToken.none());
+    }
+
+    /**
+     * Comme {@link #optimizeRoute(DistanceMatrix, String, List)}, interrompu par le jeton : la
+     * meilleure route trouvée jusque-là est alors rendue.
+     */
+    public static OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                   List<String> mustVisitNodes, CancellationToken token) {
+        Objects.requireNonNull(token, "token");
+        return anneal(matrix, initialRoute(matrix, startNodeId, mustVisitNodes), AnnealingSchedule.defaults(),
+                new SplittableRandom(), token).getResult();
+    }
 
-        double temperature = 1000.0;
-        final double coolingRate = 0.003;
+    /**
+     * Recuit au programme donné, avec son bilan ; même graine, même route (pour un budget
+     * d'itérations).
+     */
+    public static AnnealingReport anneal(DistanceMatrix matrix, String startNodeId, List<String> mustVisitNodes,
+                                         AnnealingSchedule schedule, long seed) {
+        return anneal(matrix, startNodeId, mustVisitNodes, schedule, seed, CancellationToken.none());
+    }
 
-        Random random = new Random();
+    /**
+     * Recuit au programme donné, arrêté au plus tard par le jeton ; une échéance du jeton plus
+     * proche que le budget de temps du programme règle aussi le refroidissement.
+     */
+    public static AnnealingReport anneal(DistanceMatrix matrix, String startNodeId, List<String> mustVisitNodes,
+                                         AnnealingSchedule schedule, long seed, CancellationToken token) {
+        Objects.requireNonNull(schedule, "schedule");
+        Objects.requireNonNull(token, "token");
+        return anneal(matrix, initialRoute(matrix, startNodeId, mustVisitNodes), schedule, new SplittableRandom(seed),
+                token);
+    }
 
-        for (int iteration = 0; iteration < 1000 && temperature > 1.0; iteration++) {
-            List<String> newSolution = generateNeighbor(currentSolution);
-            double newCost = calculateRouteDistance(graph, newSolution);
+    /**
+     * Variante à nombre d'itérations choisi ({@link AnnealingSchedule#iterations(int)}) : la
+     * température initiale reste étalonnée sur l'écart moyen d'un mouvement de la route, puis
+     * décroît sur l'ensemble des itérations. Chaque itération coûte O(1) ; la route n'est copiée
+     * que lorsqu'une nouvelle meilleure solution est trouvée.
+     */
+    public static OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                   List<String> mustVisitNodes, int iterations) {
+        return optimizeRoute(matrix, startNodeId, mustVisitNodes, iterations, new SplittableRandom());
+    }
 
-            if (acceptanceProbability(currentCost, newCost, temperature) > random.nextDouble()) {
-                currentSolution = newSolution;
-                currentCost = newCost;
+    /**
+     * Variante reproductible : même graine, même route.
+     */
+    public static OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                   List<String> mustVisitNodes, int iterations, long seed) {
+        return optimizeRoute(matrix, startNodeId, mustVisitNodes, iterations, new SplittableRandom(seed));
+    }
+
+    /**
+     * Multi-départ : {@code chains} recuits indépendants répartis sur le pool commun, chacun avec
+     * son générateur dérivé de {@code seed} et sa température initiale étalonnée sur la route
+     * ({@link AnnealingSchedule#iterations(int)}) ; renvoie la meilleure route (à égalité, celle
+     * de la première chaîne), donc un résultat reproductible quel que soit l'ordonnancement.
+     */
+    public static OptimizationResult optimizeRouteMultiStart(DistanceMatrix matrix, String startNodeId,
+                                                             List<String> mustVisitNodes, int chains,
+                                                             int iterations, long seed) {
+        return optimizeRouteMultiStart(matrix, startNodeId, mustVisitNodes, chains, iterations, seed,
+                ForkJoinPool.commonPool());
+    }
+
+    public static OptimizationResult optimizeRouteMultiStart(DistanceMatrix matrix, String startNodeId,
+                                                             List<String> mustVisitNodes, int chains,
+                                                             int iterations, long seed, ForkJoinPool pool) {
+        requirePositive(chains, "Le nombre de chaînes");
+        requirePositive(iterations, "Le nombre d'itérations");
+        Objects.requireNonNull(pool, "pool");
+        int[] initial = initialRoute(matrix, startNodeId, mustVisitNodes);
+        int[][] neighbours = neighbours(matrix, initial);
+        AnnealingSchedule schedule = AnnealingSchedule.iterations(iterations);
+
+        // Générateurs dérivés avant le lancement : l'ordre d'exécution n'influe pas sur le résultat
+        SplittableRandom root = new SplittableRandom(seed);
+        List<ForkJoinTask<OptimizationResult>> tasks = new ArrayList<>(chains);
+        for (int c = 0; c < chains; c++) {
+            SplittableRandom random = root.split();
+            tasks.add(pool.submit(() -> anneal(matrix, initial, neighbours, schedule, random,
+                    CancellationToken.none()).getResult()));
+        }
+
+        OptimizationResult best = null;
+        for (ForkJoinTask<OptimizationResult> task : tasks) {
+            OptimizationResult result = task.join();
+            if (best == null || result.getTotalDistance() < best.getTotalDistance()) {
+                best = result;
             }
+        }
+        return best;
+    }
 
-            if (newCost < bestCost) {
-                bestSolution = new ArrayList<>(newSolution);
-                bestCost = newCost;
+    /**
+     * Recuit parallèle (échange de répliques) : {@code replicas} chaînes à températures fixes,
+     * en progression géométrique de {@code T} à {@code T / 1000}, où {@code T} est la longueur
+     * moyenne d'un tronçon de la route initiale. Toutes les {@value #EXCHANGE_INTERVAL}
+     * itérations, les répliques voisines échangent leurs températures selon le critère de
+     * Metropolis, ce qui laisse les bonnes routes descendre vers le froid.
+     *
+     * @param iterations nombre d'itérations de chaque réplique
+     */
+    public static OptimizationResult optimizeRouteTempering(DistanceMatrix matrix, String startNodeId,
+                                                            List<String> mustVisitNodes, int replicas,
+                                                            int iterations, long seed) {
+        return optimizeRouteTempering(matrix, startNodeId, mustVisitNodes, replicas, iterations, seed,
+                ForkJoinPool.commonPool());
+    }
+
+    public static OptimizationResult optimizeRouteTempering(DistanceMatrix matrix, String startNodeId,
+                                                            List<String> mustVisitNodes, int replicas,
+                                                            int iterations, long seed, ForkJoinPool pool) {
+        requirePositive(replicas, "Le nombre de répliques");
+        requirePositive(iterations, "Le nombre d'itérations");
+        Objects.requireNonNull(pool, "pool");
+        int[] initial = initialRoute(matrix, startNodeId, mustVisitNodes);
+        int[][] neighbours = neighbours(matrix, initial);
+
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom exchanges = root.split();
+        // ladder[k] : réplique courante à la k-ième température, de la plus chaude à la plus froide
+        AnnealingChain[] ladder = new AnnealingChain[replicas];
+        for (int k = 0; k < replicas; k++) {
+            ladder[k] = new AnnealingChain(matrix, initial, neighbours, root.split());
+        }
+        double[] temperatures = temperatureLadder(matrix, initial, replicas);
+
+        List<ForkJoinTask<?>> round = new ArrayList<>(replicas);
+        for (int done = 0; done < iterations; done += EXCHANGE_INTERVAL) {
+            int steps = Math.min(EXCHANGE_INTERVAL, iterations - done);
+            round.clear();
+            for (int k = 0; k < replicas; k++) {
+                AnnealingChain chain = ladder[k];
+                double temperature = temperatures[k];
+                round.add(pool.submit(() -> {
+                    for (int i = 0; i < steps; i++) {
+                        chain.step(temperature);
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : round) {
+                task.join();
             }
 
-            temperature *= 1 - coolingRate;
+            // Échanges entre températures voisines, alternativement paires et impaires
+            for (int k = (done / EXCHANGE_INTERVAL) % 2; k + 1 < replicas; k += 2) {
+                double hot = ladder[k].getCurrentCost();
+                double cold = ladder[k + 1].getCurrentCost();
+                double exponent = (cold - hot) * (1.0 / temperatures[k + 1] - 1.0 / temperatures[k]);
+                if (exponent >= 0 || exchanges.nextDouble() < Math.exp(exponent)) {
+                    AnnealingChain swapped = ladder[k];
+                    ladder[k] = ladder[k + 1];
+                    ladder[k + 1] = swapped;
+                }
+            }
         }
 
-        return new OptimizationResult(bestSolution, bestCost, bestCost < Double.POSITIVE_INFINITY);
+        OptimizationResult best = null;
+        for (AnnealingChain chain : ladder) {
+            if (best == null || chain.getBestCost() < best.getTotalDistance()) {
+                best = chain.bestResult();
+            }
+        }
+        return best;
+    }
+
+    private static OptimizationResult optimizeRoute(DistanceMatrix matrix, String startNodeId,
+                                                    List<String> mustVisitNodes, int iterations,
+                                                    SplittableRandom random) {
+        requirePositive(iterations, "Le nombre d'itérations");
+        return anneal(matrix, initialRoute(matrix, startNodeId, mustVisitNodes), AnnealingSchedule.iterations(iterations),
+                random, CancellationToken.none()).getResult();
     }
 
-    private static List<String> generateNeighbor(List<String> currentRoute) {
-        List<String> neighbor = new ArrayList<>(currentRoute);
-        Random random = new Random();
+    private static AnnealingReport anneal(DistanceMatrix matrix, int[] initial, AnnealingSchedule schedule,
+                                          SplittableRandom random, CancellationToken token) {
+        return anneal(matrix, initial, neighbours(matrix, initial), schedule, random, token);
+    }
+
+    private static AnnealingReport anneal(DistanceMatrix matrix, int[] initial, int[][] neighbours,
+                                          AnnealingSchedule schedule, SplittableRandom random,
+                                          CancellationToken token) {
+        long start = System.nanoTime();
+        AnnealingChain chain = new AnnealingChain(matrix, initial, neighbours, random.split());
+        double initialCost = chain.getCurrentCost();
+        double uphill = initial.length > 2 ? meanUphillDelta(matrix, initial, neighbours, random.split()) : 0.0;
+        GrowingCurve curve = new GrowingCurve();
+        curve.add(0, initialCost);
+        if (!(uphill > 0)) {
+            // Au plus un point à ordonner, ou aucun mouvement ne change le coût
+            return new AnnealingReport(chain.bestResult(), initialCost, 0.0, 0, 0, 0, 0, false, false,
+                    (System.nanoTime() - start) / 1_000_000, curve.iterations(), curve.costs());
+        }
+
+        // Température à laquelle un écart défavorable moyen est accepté avec la probabilité voulue
+        double initialTemperature = -uphill / Math.log(schedule.getInitialAcceptance());
+        double finalTemperature = initialTemperature / schedule.getCoolingRange();
+        int maxIterations = schedule.iterationsFor(initial.length);
+        int stagnationLimit = schedule.stagnationFor(initial.length);
+        long deadline = token.earliestDeadline(schedule.getTimeBudgetMillis() > 0
+                ? CancellationToken.deadlineAfter(start, schedule.getTimeBudgetMillis())
+                : Long.MAX_VALUE);
+
+        // Un palier commence au départ puis à chaque réchauffage, et refroidit sur le budget restant
+        double stageTemperature = initialTemperature;
+        int stageIteration = 0;
+        long stageStart = start;
+        double timeProgress = 0.0;
+        double bestCost = chain.getBestCost();
+        int lastImprovement = 0;
+        int accepted = 0;
+        int uphillAccepted = 0;
+        int reheats = 0;
+        boolean stagnated = false;
+        boolean stopped = false;
+        int iteration = 0;
+        for (; iteration < maxIterations; iteration++) {
+            if ((iteration & TIME_CHECK_MASK) == 0) {
+                if (token.isCancelled()) {
+                    stopped = true;
+                    break;
+                }
+                if (deadline != Long.MAX_VALUE) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        stopped = token.isExpired();
+                        break;
+                    }
+                    timeProgress = (double) (now - stageStart) / (deadline - stageStart);
+                }
+            }
+            double progress = Math.max(timeProgress, maxIterations == Integer.MAX_VALUE ? 0.0
+                    : (double) (iteration - stageIteration) / (maxIterations - stageIteration));
+            double temperature = stageTemperature * Math.pow(finalTemperature / stageTemperature, progress);
+
+            double before = chain.getCurrentCost();
+            if (chain.step(temperature)) {
+                accepted++;
+                if (chain.getCurrentCost() > before) {
+                    uphillAccepted++;
+                }
+            }
+            if (chain.getBestCost() < bestCost) {
+                bestCost = chain.getBestCost();
+                lastImprovement = iteration;
+                curve.add(iteration + 1, bestCost);
+            } else if (progress >= COLD_PROGRESS && iteration - lastImprovement >= stagnationLimit) {
+                // Stagnation comptée à froid : une route chaude n'améliore pas la meilleure
+                if (reheats == schedule.getMaxReheats()) {
+                    stagnated = true;
+                    iteration++;
+                    break;
+                }
+                reheats++;
+                chain.restartFromBest();
+                stageTemperature = Math.max(initialTemperature * schedule.getReheatFactor(), finalTemperature);
+                stageIteration = iteration;
+                stageStart = System.nanoTime();
+                timeProgress = 0.0;
+                lastImprovement = iteration;
+            }
+        }
+        return new AnnealingReport(chain.bestResult(), initialCost, initialTemperature, iteration, accepted,
+                uphillAccepted, reheats, stagnated, stopped, (System.nanoTime() - start) / 1_000_000,
+                curve.iterations(), curve.costs());
+    }
 
-        if (neighbor.size() > 2) {
-            // CORRECTION : Éviter de modifier le premier nœud (départ)
-            int i = random.nextInt(neighbor.size() - 1) + 1;
-            int j = random.nextInt(neighbor.size() - 1) + 1;
-            if (i != j) {
-                Collections.swap(neighbor, i, j);
+    /**
+     * Écart moyen des mouvements défavorables, mesuré sur une marche aléatoire de
+     * {@value #SAMPLE_MOVES} mouvements tous acceptés, depuis la route initiale.
+     */
+    private static double meanUphillDelta(DistanceMatrix matrix, int[] initial, int[][] neighbours,
+                                          SplittableRandom random) {
+        AnnealingChain walk = new AnnealingChain(matrix, initial, neighbours, random);
+        double total = 0.0;
+        int count = 0;
+        for (int i = 0; i < SAMPLE_MOVES; i++) {
+            double before = walk.getCurrentCost();
+            walk.step(Double.POSITIVE_INFINITY);
+            double delta = walk.getCurrentCost() - before;
+            if (delta > 0 && delta < Double.POSITIVE_INFINITY) {
+                total += delta;
+                count++;
             }
         }
-        return neighbor;
+        return count > 0 ? total / count : 0.0;
     }
 
-    private static double acceptanceProbability(double currentCost, double newCost, double temperature) {
-        return (newCost < currentCost) ? 1.0 : Math.exp((currentCost - newCost) / temperature);
+    private static int[] initialRoute(DistanceMatrix matrix, String startNodeId, List<String> mustVisitNodes) {
+        // Solution initiale avec Nearest Neighbor
+        return LocalSearch.toIndices(matrix, NearestNeighbor.findRoute(matrix, startNodeId, mustVisitNodes));
+    }
+
+    private static int[][] neighbours(DistanceMatrix matrix, int[] route) {
+        return route.length > 2
+                ? LocalSearch.nearestNeighbours(matrix, route, LocalSearch.DEFAULT_NEIGHBOURS)
+                : null;
+    }
+
+    private static double[] temperatureLadder(DistanceMatrix matrix, int[] route, int replicas) {
+        double total = 0.0;
+        int legs = 0;
+        for (int i = 0; i + 1 < route.length; i++) {
+            double leg = matrix.distance(route[i], route[i + 1]);
+            if (!Double.isInfinite(leg)) {
+                total += leg;
+                legs++;
+            }
+        }
+        double hottest = legs > 0 && total > 0 ? total / legs : 1.0;
+        double[] temperatures = new double[replicas];
+        for (int k = 0; k < replicas; k++) {
+            double fraction = replicas == 1 ? 1.0 : (double) k / (replicas - 1);
+            temperatures[k] = hottest * Math.pow(TEMPERATURE_LADDER_RATIO, -fraction);
+        }
+        return temperatures;
     }
 
-    private static double calculateRouteDistance(Graph graph, List<String> route) {
-        if (route.size() < 2) return 0.0;
+    /**
+     * Courbe d'amélioration : tableaux agrandis à la demande, sans boxing.
+     */
+    private static final class GrowingCurve {
+        private int[] iterations = new int[16];
+        private double[] costs = new double[16];
+        private int size;
 
-        double totalDistance = 0.0;
-        for (int i = 0; i < route.size() - 1; i++) {
-            PathResult path = PlusCourtcChemin.findShortestPath(graph, route.get(i), route.get(i + 1));
-            // AJOUT : Vérifications de sécurité comme dans NearestNeighbor
-            if (path != null && path.isPathExists() &&
-                    !Double.isInfinite(path.getTotalDistance()) &&
-                    !Double.isNaN(path.getTotalDistance())) {
-                totalDistance += path.getTotalDistance();
-            } else {
-                // Retourner une grande distance si chemin invalide
-                return Double.POSITIVE_INFINITY;
+        void add(int iteration, double cost) {
+            if (size == iterations.length) {
+                iterations = Arrays.copyOf(iterations, 2 * size);
+                costs = Arrays.copyOf(costs, 2 * size);
             }
+            iterations[size] = iteration;
+            costs[size] = cost;
+            size++;
+        }
+
+        int[] iterations() {
+            return Arrays.copyOf(iterations, size);
+        }
+
+        double[] costs() {
+            return Arrays.copyOf(costs, size);
+        }
+    }
+
+    private static void requirePositive(int value, String description) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(description + " doit être positif : " + value);
         }
-        return totalDistance;
     }
 
     public static class OptimizationResult {
@@ -0,0 +1,315 @@
+package com.covoiturage.algorithms;
+
+import java.util.*;
+
+/**
+ * Construction par insertion à regret : à chaque pas, l'utilisateur inséré est celui qui
+ * perdrait le plus à ne pas obtenir son meilleur véhicule, c'est-à-dire dont la somme des écarts
+ * entre ses {@code k} meilleurs coûts d'insertion et le meilleur est la plus grande ; il est
+ * inséré à sa meilleure position. Les routes sont ouvertes (pas de retour au dépôt), comme
+ * celles optimisées ensuite par {@link RecuitSimule}.
+ * <p>
+ * Le meilleur coût d'insertion de chaque utilisateur dans chaque véhicule est conservé avec
+ * sa position, ainsi que ses {@code k} meilleurs véhicules ; les utilisateurs sont dans un tas
+ * indexé par regret. Après une insertion, seule la route modifiée est réévaluée : pour chaque
+ * utilisateur, les deux nouvelles positions suffisent, sauf si sa meilleure position était
+ * le tronçon remplacé. Un pas coûte ainsi quelques lectures de matrice par utilisateur.
+ */
+public final class RegretInsertion {
+
+    /** Regret-2 : écart entre le meilleur et le deuxième meilleur véhicule. */
+    public static final int DEFAULT_REGRET = 2;
+    /** Coût d'une option manquante : moins de {@code k} véhicules possibles rend un utilisateur prioritaire. */
+    private static final double MISSING_OPTION_COST = 1e9;
+
+    private final DistanceMatrix matrix;
+    private final int regret;
+    private final int vehicleCount;
+    private final int[] users;
+    private final int[][] routes;
+    private final int[] lengths;
+    private final int[] remaining;
+    /** {@code cost[u * V + v]} : meilleur coût d'insertion, infini si impossible. */
+    private final double[] cost;
+    /** Position après laquelle insérer, pour ce meilleur coût. */
+    private final int[] position;
+    /** Meilleurs véhicules de chaque utilisateur, par coût croissant. */
+    private final int[][] top;
+    private final int[] topCount;
+    private final boolean[] assigned;
+    private final IndexedMinHeap queue;
+
+    private RegretInsertion(DistanceMatrix matrix, int[] users, int[][] routes, int[] lengths, int[] remaining,
+                            int regret) {
+        this.matrix = matrix;
+        this.regret = regret;
+        this.vehicleCount = routes.length;
+        this.users = users;
+        this.routes = routes;
+        this.lengths = lengths;
+        this.remaining = remaining;
+        this.cost = new double[users.length * vehicleCount];
+        this.position = new int[users.length * vehicleCount];
+        this.top = new int[users.length][regret];
+        this.topCount = new int[users.length];
+        this.assigned = new boolean[users.length];
+        this.queue = new IndexedMinHeap(users.length);
+    }
+
+    /**
+     * Répartit les utilisateurs entre les véhicules.
+     *
+     * @param regret nombre de véhicules comparés par utilisateur ; 1 revient à insérer d'abord
+     *               l'utilisateur le moins coûteux
+     * @return pour chaque dépôt, sa route (dépôt puis utilisateurs dans l'ordre de passage) ;
+     *         les utilisateurs impossibles à insérer n'y figurent pas
+     */
+    public static Map<String, List<String>> assign(DistanceMatrix matrix, List<String> users, List<String> depots,
+                                                   Map<String, Integer> capacities, int regret) {
+        Objects.requireNonNull(matrix, "matrix");
+        if (regret <= 0) {
+            throw new IllegalArgumentException("Le regret doit être positif : " + regret);
+        }
+        int[] userIndices = LocalSearch.toIndices(matrix, users);
+        int[] depotIndices = LocalSearch.toIndices(matrix, depots);
+        int[] capacityArray = new int[depots.size()];
+        for (int v = 0; v < capacityArray.length; v++) {
+            capacityArray[v] = Math.max(0, capacities.getOrDefault(depots.get(v), Integer.MAX_VALUE));
+        }
+
+        int[][] routes = new int[depots.size()][];
+        int[] lengths = new int[depots.size()];
+        for (int v = 0; v < routes.length; v++) {
+            routes[v] = new int[Math.min(capacityArray[v], userIndices.length) + 1];
+            routes[v][0] = depotIndices[v];
+            lengths[v] = 1;
+        }
+        insert(matrix, routes, lengths, capacityArray, userIndices, regret);
+
+        Map<String, List<String>> assignments = new HashMap<>();
+        for (int v = 0; v < depots.size(); v++) {
+            List<String> route = new ArrayList<>(lengths[v]);
+            for (int p = 0; p < lengths[v]; p++) {
+                route.add(matrix.getPointId(routes[v][p]));
+            }
+            assignments.put(depots.get(v), route);
+        }
+        return assignments;
+    }
+
+    /**
+     * Insère les utilisateurs dans des routes déjà commencées, modifiées sur place : chaque
+     * {@code routes[v]} contient {@code lengths[v]} points et doit pouvoir en recevoir
+     * {@code remaining[v]} de plus (places restantes, décrémentées à chaque insertion).
+     *
+     * @return les utilisateurs qui n'ont pu être insérés
+     */
+    static int[] insert(DistanceMatrix matrix, int[][] routes, int[] lengths, int[] remaining, int[] users,
+                        int regret) {
+        RegretInsertion insertion = new RegretInsertion(matrix, users, routes, lengths, remaining, regret);
+        insertion.run();
+        int[] rejected = new int[users.length];
+        int count = 0;
+        for (int u = 0; u < users.length; u++) {
+            if (!insertion.assigned[u]) {
+                rejected[count++] = users[u];
+            }
+        }
+        return Arrays.copyOf(rejected, count);
+    }
+
+    private void run() {
+        for (int u = 0; u < users.length; u++) {
+            for (int v = 0; v < vehicleCount; v++) {
+                recompute(u, v);
+            }
+            rescan(u);
+            queue.insertOrDecrease(u, key(u));
+        }
+
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            if (topCount[u] == 0) {
+                // Les suivants n'ont pas d'option non plus : clé infinie
+                continue;
+            }
+            int v = top[u][0];
+            int after = position[u * vehicleCount + v];
+            insert(v, after, users[u]);
+            assigned[u] = true;
+            remaining[v]--;
+
+            for (int w = 0; w < users.length; w++) {
+                if (assigned[w]) {
+                    continue;
+                }
+                if (remaining[v] == 0) {
+                    cost[w * vehicleCount + v] = Double.POSITIVE_INFINITY;
+                    if (isTop(w, v)) {
+                        rescan(w);
+                    }
+                } else {
+                    update(w, v, after);
+                }
+                queue.update(w, key(w));
+            }
+        }
+    }
+
+    /**
+     * Met à jour le coût de {@code w} dans {@code v} après l'insertion d'un point juste après
+     * la position {@code after}.
+     */
+    private void update(int w, int v, int after) {
+        int slot = w * vehicleCount + v;
+        double previous = cost[slot];
+        int previousPosition = position[slot];
+        if (previousPosition == after || Double.isInfinite(previous)) {
+            // Le tronçon de la meilleure position a disparu (ou il n'y en avait pas)
+            recompute(w, v);
+        } else {
+            if (previousPosition > after) {
+                position[slot] = previousPosition + 1;
+            }
+            for (int p = after; p <= after + 1; p++) {
+                double candidate = insertionCost(v, p, users[w]);
+                if (candidate < cost[slot]) {
+                    cost[slot] = candidate;
+                    position[slot] = p;
+                }
+            }
+        }
+
+        double current = cost[slot];
+        if (isTop(w, v)) {
+            if (!(current < Double.POSITIVE_INFINITY)) {
+                rescan(w);
+            } else {
+                sortTop(w);
+                // Renchéri jusqu'au dernier rang : un véhicule hors des k meilleurs peut le battre
+                if (current > previous && topCount[w] == regret && top[w][regret - 1] == v) {
+                    rescan(w);
+                }
+            }
+        } else {
+            offer(w, v);
+        }
+    }
+
+    private void recompute(int u, int v) {
+        int slot = u * vehicleCount + v;
+        cost[slot] = Double.POSITIVE_INFINITY;
+        position[slot] = -1;
+        if (remaining[v] <= 0) {
+            return;
+        }
+        for (int p = 0; p < lengths[v]; p++) {
+            double candidate = insertionCost(v, p, users[u]);
+            if (candidate < cost[slot]) {
+                cost[slot] = candidate;
+                position[slot] = p;
+            }
+        }
+    }
+
+    /**
+     * Coût d'insertion de {@code point} juste après la position {@code after} de la route.
+     */
+    private double insertionCost(int v, int after, int point) {
+        int[] route = routes[v];
+        double toPoint = matrix.distance(route[after], point);
+        double result;
+        if (after == lengths[v] - 1) {
+            result = toPoint;
+        } else {
+            int next = route[after + 1];
+            result = toPoint + matrix.distance(point, next) - matrix.distance(route[after], next);
+        }
+        // NaN ou infini : un tronçon sans chemin
+        return result < Double.POSITIVE_INFINITY ? result : Double.POSITIVE_INFINITY;
+    }
+
+    private void insert(int v, int after, int point) {
+        int[] route = routes[v];
+        System.arraycopy(route, after + 1, route, after + 2, lengths[v] - after - 1);
+        route[after + 1] = point;
+        lengths[v]++;
+    }
+
+    /**
+     * Reconstitue les {@code k} meilleurs véhicules de l'utilisateur sur tous les véhicules.
+     */
+    private void rescan(int u) {
+        topCount[u] = 0;
+        for (int v = 0; v < vehicleCount; v++) {
+            offer(u, v);
+        }
+    }
+
+    /**
+     * Fait entrer {@code v} dans les meilleurs véhicules de {@code u} si son coût le justifie.
+     */
+    private void offer(int u, int v) {
+        double candidate = cost[u * vehicleCount + v];
+        if (!(candidate < Double.POSITIVE_INFINITY)) {
+            return;
+        }
+        int[] best = top[u];
+        int count = topCount[u];
+        if (count == regret) {
+            if (candidate >= cost[u * vehicleCount + best[count - 1]]) {
+                return;
+            }
+            count--;
+        }
+        int i = count;
+        while (i > 0 && cost[u * vehicleCount + best[i - 1]] > candidate) {
+            best[i] = best[i - 1];
+            i--;
+        }
+        best[i] = v;
+        topCount[u] = count + 1;
+    }
+
+    private void sortTop(int u) {
+        int[] best = top[u];
+        for (int i = 1; i < topCount[u]; i++) {
+            int v = best[i];
+            double key = cost[u * vehicleCount + v];
+            int j = i;
+            while (j > 0 && cost[u * vehicleCount + best[j - 1]] > key) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = v;
+        }
+    }
+
+    private boolean isTop(int u, int v) {
+        for (int i = 0; i < topCount[u]; i++) {
+            if (top[u][i] == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clé du tas : opposé du regret, ou coût de la meilleure insertion pour {@code k = 1} ;
+     * infinie sans véhicule possible.
+     */
+    private double key(int u) {
+        if (topCount[u] == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double best = cost[u * vehicleCount + top[u][0]];
+        if (regret == 1) {
+            return best;
+        }
+        double sum = 0.0;
+        for (int i = 1; i < regret; i++) {
+            sum += (i < topCount[u] ? cost[u * vehicleCount + top[u][i]] : MISSING_OPTION_COST) - best;
+        }
+        return -sum;
+    }
+}
@@ -0,0 +1,236 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+import com.covoiturage.models.Noeud;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Instantané immuable d'un réseau routier résident, partagé en lecture seule par tous les jobs :
+ * graphe compact et index spatial de ses nœuds, construits une fois à la publication. Un job
+ * n'y ajoute rien : ses points (dépôts, prises en charge) y sont rattachés par un
+ * {@link Overlay}, chacun relié à ses nœuds les plus proches par un tronçon d'accès à vol
+ * d'oiseau, en O(points) quelle que soit la taille du réseau.
+ * <p>
+ * Une mise à jour ({@link #withChanges}) copie le réseau, applique les modifications à la
+ * copie et renvoie un nouvel instantané de version suivante : les jobs en cours gardent celui
+ * qu'ils ont lu. L'index spatial n'est plus modifié après la construction, ce qui rend ses
+ * lectures concurrentes sûres.
+ */
+public final class RoadNetwork {
+
+    /** Nœuds du réseau reliés à chaque point d'un job. */
+    public static final int DEFAULT_ACCESS_NODES = 3;
+
+    private final CompactGraph graph;
+    private final SpatialIndex index;
+    private final long version;
+    private final long buildTimeMillis;
+
+    private RoadNetwork(CompactGraph graph, SpatialIndex index, long version, long buildTimeMillis) {
+        this.graph = graph;
+        this.index = index;
+        this.version = version;
+        this.buildTimeMillis = buildTimeMillis;
+    }
+
+    /**
+     * Instantané (version 1) du réseau donné ; les modifications ultérieures de {@code graph}
+     * ne l'affectent pas.
+     */
+    public static RoadNetwork of(Graph graph) {
+        return build(graph, 1);
+    }
+
+    /**
+     * Instantané de version suivante, remplaçant entièrement ce réseau par {@code graph}.
+     */
+    public RoadNetwork withGraph(Graph graph) {
+        return build(graph, version + 1);
+    }
+
+    /**
+     * Copie le réseau, y applique {@code changes} (nouveaux carrefours, nouvelles liaisons) et
+     * renvoie l'instantané de version suivante ; celui-ci reste inchangé.
+     */
+    public RoadNetwork withChanges(Consumer<Graph> changes) {
+        Objects.requireNonNull(changes, "changes");
+        Graph copy = toGraph();
+        changes.accept(copy);
+        return build(copy, version + 1);
+    }
+
+    private static RoadNetwork build(Graph graph, long version) {
+        Objects.requireNonNull(graph, "graph");
+        long start = System.nanoTime();
+        CompactGraph compact = CompactGraph.fromGraph(graph);
+        List<Noeud> nodes = new ArrayList<>(compact.getNodeCount());
+        for (int i = 0; i < compact.getNodeCount(); i++) {
+            nodes.add(compact.getNode(i));
+        }
+        SpatialIndex index = SpatialIndex.of(nodes);
+        return new RoadNetwork(compact, index, version, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Copie modifiable du réseau.
+     */
+    public Graph toGraph() {
+        Graph copy = new Graph();
+        for (int i = 0; i < graph.getNodeCount(); i++) {
+            copy.addNode(graph.getNode(i));
+        }
+        for (int i = 0; i < graph.getNodeCount(); i++) {
+            for (int edge = graph.edgeStart(i); edge < graph.edgeEnd(i); edge++) {
+                copy.addEdge(graph.getNodeId(i), graph.getNodeId(graph.edgeTarget(edge)),
+                        graph.edgeDistance(edge), graph.edgeTime(edge));
+            }
+        }
+        return copy;
+    }
+
+    public Overlay attach(List<Noeud> points) {
+        return attach(points, DEFAULT_ACCESS_NODES);
+    }
+
+    /**
+     * Rattache les points d'un job au réseau : un point qui est déjà un nœud du réseau y est
+     * relié directement, les autres à leurs {@code accessNodes} nœuds les plus proches. Les
+     * doublons d'identifiant sont ignorés.
+     */
+    public Overlay attach(List<Noeud> points, int accessNodes) {
+        Objects.requireNonNull(points, "points");
+        if (accessNodes < 1) {
+            throw new IllegalArgumentException("Il faut au moins un nœud d'accès : " + accessNodes);
+        }
+        long start = System.nanoTime();
+        List<String> pointIds = new ArrayList<>(points.size());
+        List<Noeud> locations = new ArrayList<>(points.size());
+        Set<String> seen = new HashSet<>();
+        for (Noeud point : points) {
+            if (seen.add(point.getId())) {
+                pointIds.add(point.getId());
+                locations.add(point);
+            }
+        }
+
+        int size = pointIds.size();
+        int[][] nodes = new int[size][];
+        double[][] distances = new double[size][];
+        for (int i = 0; i < size; i++) {
+            Noeud point = locations.get(i);
+            int own = graph.indexOf(point.getId());
+            if (own >= 0) {
+                nodes[i] = new int[]{own};
+                distances[i] = new double[]{0.0};
+                continue;
+            }
+            List<String> nearest = index.nearest(point, accessNodes);
+            nodes[i] = new int[nearest.size()];
+            distances[i] = new double[nearest.size()];
+            for (int k = 0; k < nearest.size(); k++) {
+                nodes[i][k] = graph.indexOf(nearest.get(k));
+                distances[i][k] = CalculDistance.calculateDistance(point, graph.getNode(nodes[i][k]));
+            }
+        }
+        return new Overlay(this, Collections.unmodifiableList(pointIds), locations.toArray(new Noeud[0]),
+                nodes, distances, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Numéro de l'instantané, incrémenté à chaque publication.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNodeCount() {
+        return graph.getNodeCount();
+    }
+
+    public int getEdgeCount() {
+        return graph.getEdgeCount();
+    }
+
+    /**
+     * Durée de construction de l'instantané (graphe compact et index spatial).
+     */
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    public long estimateMemoryBytes() {
+        return graph.estimateMemoryBytes();
+    }
+
+    /**
+     * Points d'un job rattachés au réseau, propres au job : seuls leurs tronçons d'accès sont
+     * stockés, le réseau n'étant ni copié ni modifié.
+     */
+    public static final class Overlay {
+        private final RoadNetwork network;
+        private final List<String> pointIds;
+        private final Noeud[] locations;
+        private final int[][] accessNodes;
+        private final double[][] accessDistances;
+        private final long buildTimeMillis;
+
+        private Overlay(RoadNetwork network, List<String> pointIds, Noeud[] locations, int[][] accessNodes,
+                        double[][] accessDistances, long buildTimeMillis) {
+            this.network = network;
+            this.pointIds = pointIds;
+            this.locations = locations;
+            this.accessNodes = accessNodes;
+            this.accessDistances = accessDistances;
+            this.buildTimeMillis = buildTimeMillis;
+        }
+
+        public RoadNetwork getNetwork() {
+            return network;
+        }
+
+        public List<String> getPointIds() {
+            return pointIds;
+        }
+
+        public int size() {
+            return pointIds.size();
+        }
+
+        public int getAccessLinkCount() {
+            int count = 0;
+            for (int[] nodes : accessNodes) {
+                count += nodes.length;
+            }
+            return count;
+        }
+
+        public long getBuildTimeMillis() {
+            return buildTimeMillis;
+        }
+
+        Noeud location(int point) {
+            return locations[point];
+        }
+
+        /**
+         * Indices dans le réseau des nœuds d'accès du point.
+         */
+        int[] accessNodes(int point) {
+            return accessNodes[point];
+        }
+
+        /**
+         * Longueur (km) du tronçon d'accès vers chacun de {@link #accessNodes(int)}.
+         */
+        double[] accessDistances(int point) {
+            return accessDistances[point];
+        }
+    }
+}
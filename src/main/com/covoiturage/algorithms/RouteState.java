@@ -0,0 +1,221 @@
+package com.covoiturage.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Route ouverte modifiable en place (départ fixe en position 0), sur les indices d'une
+ * {@link DistanceMatrix}. Chaque mouvement (échange, inversion de segment, déplacement de
+ * segment) a un écart de coût en O(1), et son application ne touche que les positions qu'il
+ * déplace. Les sommes préfixes nécessaires à l'inversion sont recalculées paresseusement,
+ * depuis la première position modifiée jusqu'à celle que demande l'écart. Un écart non fini
+ * (tronçon sans chemin) signale un mouvement à ignorer.
+ */
+final class RouteState {
+    private final DistanceMatrix matrix;
+    private final int[] route;
+    /** Copie du segment déplacé par {@link #applyMove}. */
+    private final int[] scratch;
+    private final int[] positions;
+    /** {@code forward[k]} : longueur des tronçons 0..k-1 ; {@code backward[k]} : idem parcourus à l'envers. */
+    private final double[] forward;
+    private final double[] backward;
+    /** Dernière position dont les sommes préfixes sont à jour. */
+    private int validPrefix;
+
+    RouteState(DistanceMatrix matrix, int[] route) {
+        this.matrix = matrix;
+        this.route = route.clone();
+        this.scratch = new int[route.length];
+        this.positions = new int[matrix.size()];
+        this.forward = new double[route.length];
+        this.backward = new double[route.length];
+        Arrays.fill(positions, -1);
+        updatePositions(0, route.length - 1);
+    }
+
+    int size() {
+        return route.length;
+    }
+
+    int nodeAt(int position) {
+        return route[position];
+    }
+
+    /**
+     * @return la position du point dans la route, ou -1 s'il n'y figure pas
+     */
+    int positionOf(int node) {
+        return positions[node];
+    }
+
+    /**
+     * Coût complet de la route, l'infini si un tronçon n'a pas de chemin.
+     */
+    double cost() {
+        double total = 0.0;
+        for (int i = 0; i < route.length - 1; i++) {
+            double leg = matrix.distance(route[i], route[i + 1]);
+            if (Double.isInfinite(leg) || Double.isNaN(leg)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            total += leg;
+        }
+        return total;
+    }
+
+    /**
+     * Écart de coût si l'on échange les positions {@code i < j} (hors départ).
+     */
+    double swapDelta(int i, int j) {
+        int a = route[i];
+        int b = route[j];
+        int beforeI = route[i - 1];
+        double delta;
+        if (j == i + 1) {
+            // ... p, a, b, q ... devient ... p, b, a, q ...
+            delta = leg(beforeI, b) + leg(b, a) - leg(beforeI, a) - leg(a, b);
+        } else {
+            int afterI = route[i + 1];
+            int beforeJ = route[j - 1];
+            delta = leg(beforeI, b) + leg(b, afterI) + leg(beforeJ, a)
+                    - leg(beforeI, a) - leg(a, afterI) - leg(beforeJ, b);
+        }
+        if (j < route.length - 1) {
+            int afterJ = route[j + 1];
+            delta += leg(a, afterJ) - leg(b, afterJ);
+        }
+        return delta;
+    }
+
+    void applySwap(int i, int j) {
+        int tmp = route[i];
+        route[i] = route[j];
+        route[j] = tmp;
+        positions[route[i]] = i;
+        positions[route[j]] = j;
+        invalidatePrefixes(i);
+    }
+
+    /**
+     * Écart de coût du 2-opt qui inverse les positions {@code i..j} ({@code 1 <= i < j}). Les
+     * tronçons internes changent de sens, d'où les sommes préfixes pour les matrices asymétriques.
+     */
+    double reverseDelta(int i, int j) {
+        refreshPrefixes(j);
+        double delta = leg(route[i - 1], route[j]) - leg(route[i - 1], route[i])
+                + (backward[j] - backward[i]) - (forward[j] - forward[i]);
+        if (j < route.length - 1) {
+            delta += leg(route[i], route[j + 1]) - leg(route[j], route[j + 1]);
+        }
+        return delta;
+    }
+
+    void applyReverse(int i, int j) {
+        for (int left = i, right = j; left < right; left++, right--) {
+            int tmp = route[left];
+            route[left] = route[right];
+            route[right] = tmp;
+        }
+        updatePositions(i, j);
+        invalidatePrefixes(i);
+    }
+
+    /**
+     * Écart de coût du déplacement du segment {@code [start, start + length)} juste après la
+     * position {@code after}, qui doit être hors de {@code [start - 1, start + length)}.
+     * Avec {@code length == 1}, c'est une relocalisation ; au-delà, un Or-opt.
+     */
+    double moveDelta(int start, int length, int after) {
+        int end = start + length - 1;
+        int previous = route[start - 1];
+        int first = route[start];
+        int last = route[end];
+        double delta = -leg(previous, first);
+        if (end < route.length - 1) {
+            int next = route[end + 1];
+            delta += leg(previous, next) - leg(last, next);
+        }
+
+        int anchor = route[after];
+        delta += leg(anchor, first);
+        if (after < route.length - 1) {
+            int following = route[after + 1];
+            delta += leg(last, following) - leg(anchor, following);
+        }
+        return delta;
+    }
+
+    /**
+     * Déplace le segment en place : seules les positions entre le segment et {@code after}
+     * sont décalées.
+     */
+    void applyMove(int start, int length, int after) {
+        int end = start + length - 1;
+        System.arraycopy(route, start, scratch, 0, length);
+        int from;
+        if (after < start) {
+            from = after + 1;
+            System.arraycopy(route, from, route, from + length, start - from);
+            System.arraycopy(scratch, 0, route, from, length);
+        } else {
+            from = start;
+            System.arraycopy(route, end + 1, route, start, after - end);
+            System.arraycopy(scratch, 0, route, after - length + 1, length);
+        }
+        updatePositions(from, Math.max(after, end));
+        invalidatePrefixes(from);
+    }
+
+    int[] toArray() {
+        return route.clone();
+    }
+
+    void copyInto(int[] target) {
+        System.arraycopy(route, 0, target, 0, route.length);
+    }
+
+    void restore(int[] snapshot) {
+        System.arraycopy(snapshot, 0, route, 0, route.length);
+        updatePositions(0, route.length - 1);
+        invalidatePrefixes(0);
+    }
+
+    List<String> toPointIds() {
+        List<String> ids = new ArrayList<>(route.length);
+        for (int node : route) {
+            ids.add(matrix.getPointId(node));
+        }
+        return ids;
+    }
+
+    private double leg(int from, int to) {
+        return matrix.distance(from, to);
+    }
+
+    /**
+     * Met à jour les sommes préfixes jusqu'à la position {@code upTo} incluse.
+     */
+    private void refreshPrefixes(int upTo) {
+        for (int k = validPrefix + 1; k <= upTo; k++) {
+            forward[k] = forward[k - 1] + leg(route[k - 1], route[k]);
+            backward[k] = backward[k - 1] + leg(route[k], route[k - 1]);
+        }
+        validPrefix = Math.max(validPrefix, upTo);
+    }
+
+    /**
+     * La position {@code from} a changé : ses sommes préfixes (qui comptent le tronçon qui y
+     * arrive) et les suivantes sont périmées.
+     */
+    private void invalidatePrefixes(int from) {
+        validPrefix = Math.min(validPrefix, Math.max(0, from - 1));
+    }
+
+    private void updatePositions(int from, int to) {
+        for (int position = from; position <= to; position++) {
+            positions[route[position]] = position;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.covoiturage.algorithms;
+
+/**
+ * Algorithme utilisé pour une requête de plus court chemin point à point.
+ */
+public enum SearchMode {
+    /** Dijkstra unidirectionnel, sans heuristique. */
+    DIJKSTRA,
+    /** A* guidé par la distance orthodromique vers la cible. */
+    A_STAR,
+    /** A* bidirectionnel à potentiels moyennés. */
+    BIDIRECTIONAL_A_STAR
+}
@@ -0,0 +1,43 @@
+package com.covoiturage.algorithms;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * État d'une recherche en cours, signalé à un {@link ProgressListener} : itérations effectuées
+ * et meilleure solution réalisable trouvée jusque-là. Instances immuables, les routes pouvant
+ * être partagées entre deux rapports successifs tant que la meilleure solution ne change pas.
+ */
+public final class SearchProgress {
+
+    private final int iterations;
+    private final double bestCost;
+    private final int assignedUsers;
+    private final int userCount;
+    private final Map<String, List<String>> routes;
+    private final long elapsedMillis;
+
+    SearchProgress(int iterations, double bestCost, int assignedUsers, int userCount,
+                   Map<String, List<String>> routes, long elapsedMillis) {
+        this.iterations = iterations;
+        this.bestCost = bestCost;
+        this.assignedUsers = assignedUsers;
+        this.userCount = userCount;
+        this.routes = routes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getIterations() { return iterations; }
+
+    /** Distance totale (km) de la meilleure solution, sans pénalité pour les utilisateurs non servis. */
+    public double getBestCost() { return bestCost; }
+
+    public int getAssignedUsers() { return assignedUsers; }
+
+    public int getUserCount() { return userCount; }
+
+    /** Routes de la meilleure solution (dépôt en tête), non modifiables. */
+    public Map<String, List<String>> getRoutes() { return routes; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+}
@@ -0,0 +1,220 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.CompactGraph;
+import com.covoiturage.models.Graph;
+import com.covoiturage.models.PathResult;
+import com.covoiturage.utils.MemoryEstimates;
+
+import java.util.*;
+
+/**
+ * Cache borné d'arbres de plus courts chemins, indexés par nœud source.
+ * Un arbre complet est calculé au premier appel depuis une source ; les requêtes suivantes
+ * depuis cette source sont de simples lectures. L'éviction suit l'ordre LRU dès que la
+ * mémoire totale des arbres dépasse la limite. Toute modification du {@link Graph}
+ * (voir {@link Graph#getVersion()}) vide le cache.
+ */
+public final class ShortestPathTreeCache {
+
+    private final Graph graph;
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Tree> trees = new LinkedHashMap<>(16, 0.75f, true);
+
+    private CompactGraph snapshot;
+    private long snapshotVersion = -1;
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public ShortestPathTreeCache(Graph graph, long maxBytes) {
+        this.graph = Objects.requireNonNull(graph, "graph");
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("la taille maximale du cache doit être positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Représentation compacte du graphe à jour ; reconstruite (et le cache vidé) si le graphe a changé.
+     */
+    public synchronized CompactGraph getCompactGraph() {
+        if (snapshot == null || snapshotVersion != graph.getVersion()) {
+            if (snapshot != null) {
+                invalidations++;
+            }
+            trees.clear();
+            currentBytes = 0;
+            snapshot = CompactGraph.fromGraph(graph);
+            snapshotVersion = graph.getVersion();
+        }
+        return snapshot;
+    }
+
+    public double distance(String fromNodeId, String toNodeId) {
+        Tree tree = getTree(fromNodeId);
+        return tree.distance(tree.indexOf(toNodeId, "arrivée"));
+    }
+
+    public double[] oneToMany(String fromNodeId, List<String> toNodeIds) {
+        Tree tree = getTree(fromNodeId);
+        double[] result = new double[toNodeIds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = tree.distance(tree.indexOf(toNodeIds.get(i), "arrivée"));
+        }
+        return result;
+    }
+
+    public PathResult findShortestPath(String fromNodeId, String toNodeId) {
+        Tree tree = getTree(fromNodeId);
+        int target = tree.indexOf(toNodeId, "arrivée");
+        if (Double.isInfinite(tree.distance(target))) {
+            return new PathResult(Collections.emptyList(), Double.POSITIVE_INFINITY, Double.NaN, false);
+        }
+
+        List<String> path = new ArrayList<>();
+        for (int current = target; current != -1; current = tree.parent(current)) {
+            path.add(tree.graph.getNodeId(current));
+        }
+        Collections.reverse(path);
+        return new PathResult(path, tree.distance(target), tree.time(target), true);
+    }
+
+    Tree getTree(String sourceNodeId) {
+        CompactGraph compact = getCompactGraph();
+        int source = compact.indexOf(sourceNodeId);
+        if (source < 0) {
+            throw new IllegalArgumentException("Le graphe ne contient pas le nœud de départ : " + sourceNodeId);
+        }
+
+        synchronized (this) {
+            Tree cached = trees.get(source);
+            if (cached != null && cached.graph == compact) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // Calcul hors verrou : plusieurs jobs peuvent construire des arbres en parallèle
+        double[] distances = new double[compact.getNodeCount()];
+        int[] parents = new int[compact.getNodeCount()];
+        DijkstraEngine.search(compact, source, -1).copyTree(distances, parents);
+        Tree tree = new Tree(compact, distances, parents);
+
+        synchronized (this) {
+            // Un arbre calculé sur un instantané périmé n'est pas conservé
+            if (snapshot == compact && trees.get(source) == null && tree.bytes <= maxBytes) {
+                trees.put(source, tree);
+                currentBytes += tree.bytes;
+                evictIfNeeded();
+            }
+        }
+        return tree;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Tree> eldest = trees.values().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        trees.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized int getTreeCount() {
+        return trees.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CacheArbres{" +
+                "arbres=" + trees.size() +
+                ", mémoire=" + MemoryEstimates.format(currentBytes) + "/" + MemoryEstimates.format(maxBytes) +
+                ", succès=" + hits +
+                ", échecs=" + misses +
+                ", évictions=" + evictions +
+                ", invalidations=" + invalidations +
+                '}';
+    }
+
+    /**
+     * Arbre complet des plus courts chemins depuis une source, figé sur un instantané du graphe.
+     */
+    static final class Tree {
+        final CompactGraph graph;
+        private final double[] distances;
+        private final int[] parents;
+        final long bytes;
+
+        Tree(CompactGraph graph, double[] distances, int[] parents) {
+            this.graph = graph;
+            this.distances = distances;
+            this.parents = parents;
+            this.bytes = MemoryEstimates.objectBytes(3, Long.BYTES)
+                    + MemoryEstimates.arrayBytes(distances.length, Double.BYTES)
+                    + MemoryEstimates.arrayBytes(parents.length, Integer.BYTES);
+        }
+
+        int indexOf(String nodeId, String descriptor) {
+            int index = graph.indexOf(nodeId);
+            if (index < 0) {
+                throw new IllegalArgumentException("Le graphe ne contient pas le nœud de " + descriptor + " : " + nodeId);
+            }
+            return index;
+        }
+
+        double distance(int node) {
+            return distances[node];
+        }
+
+        int parent(int node) {
+            return parents[node];
+        }
+
+        /**
+         * Durée estimée (minutes) du chemin jusqu'au nœud, comme {@link PathResult#getTotalTime()}.
+         */
+        double time(int node) {
+            if (Double.isInfinite(distances[node])) {
+                return Double.NaN;
+            }
+            double totalTime = 0.0;
+            for (int current = node; parents[current] != -1; current = parents[current]) {
+                totalTime += PlusCourtcChemin.estimateTravelTime(
+                        graph.getNode(parents[current]), graph.getNode(current));
+            }
+            return totalTime;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.covoiturage.algorithms;
+
+import com.covoiturage.models.Noeud;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Index spatial en grille uniforme sur les coordonnées des nœuds : k plus proches voisins et
+ * recherche par rayon, à vol d'oiseau. Les coordonnées sont projetées en kilomètres
+ * (projection équirectangulaire autour de la latitude du premier point inséré), ce qui suffit
+ * à l'échelle d'une agglomération. Insertion et suppression en O(1) ; non thread-safe.
+ */
+public final class SpatialIndex {
+
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final double cellSizeKm;
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private double longitudeScale = Double.NaN;
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    public SpatialIndex(double cellSizeKm) {
+        if (!(cellSizeKm > 0)) {
+            throw new IllegalArgumentException("La taille de cellule doit être positive : " + cellSizeKm);
+        }
+        this.cellSizeKm = cellSizeKm;
+    }
+
+    /**
+     * Index des nœuds donnés, avec la taille de cellule de {@link #suggestedCellSize}.
+     */
+    public static SpatialIndex of(Collection<Noeud> nodes) {
+        SpatialIndex index = new SpatialIndex(suggestedCellSize(nodes));
+        for (Noeud node : nodes) {
+            index.insert(node);
+        }
+        return index;
+    }
+
+    /**
+     * Taille de cellule (km) visant environ deux nœuds par cellule sur l'emprise des nœuds.
+     */
+    public static double suggestedCellSize(Collection<Noeud> nodes) {
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        for (Noeud node : nodes) {
+            minLatitude = Math.min(minLatitude, node.getLatitude());
+            maxLatitude = Math.max(maxLatitude, node.getLatitude());
+            minLongitude = Math.min(minLongitude, node.getLongitude());
+            maxLongitude = Math.max(maxLongitude, node.getLongitude());
+        }
+        double cellSize = 1.0;
+        if (nodes.size() > 1) {
+            double height = (maxLatitude - minLatitude) * KM_PER_DEGREE;
+            double width = (maxLongitude - minLongitude) * KM_PER_DEGREE
+                    * Math.cos(Math.toRadians((minLatitude + maxLatitude) / 2));
+            double area = Math.max(height * width, 1e-6);
+            cellSize = Math.max(Math.sqrt(2.0 * area / nodes.size()), 1e-3);
+        }
+        return cellSize;
+    }
+
+    public void insert(Noeud node) {
+        insert(node.getId(), node.getLatitude(), node.getLongitude());
+    }
+
+    /**
+     * Insère (ou déplace) le point {@code id}.
+     */
+    public void insert(String id, double latitude, double longitude) {
+        Objects.requireNonNull(id, "id");
+        remove(id);
+        if (Double.isNaN(longitudeScale)) {
+            longitudeScale = Math.cos(Math.toRadians(latitude));
+        }
+        Entry entry = new Entry(id, longitude * KM_PER_DEGREE * longitudeScale, latitude * KM_PER_DEGREE);
+        int cellX = cell(entry.x);
+        int cellY = cell(entry.y);
+        cells.computeIfAbsent(key(cellX, cellY), k -> new ArrayList<>()).add(entry);
+        entries.put(id, entry);
+        minCellX = Math.min(minCellX, cellX);
+        maxCellX = Math.max(maxCellX, cellX);
+        minCellY = Math.min(minCellY, cellY);
+        maxCellY = Math.max(maxCellY, cellY);
+    }
+
+    public boolean remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        long key = key(cell(entry.x), cell(entry.y));
+        List<Entry> cell = cells.get(key);
+        cell.remove(entry);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+        return true;
+    }
+
+    public boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<String> nearest(Noeud origin, int k) {
+        return nearest(origin.getLatitude(), origin.getLongitude(), k);
+    }
+
+    /**
+     * Les {@code k} points les plus proches, du plus proche au plus éloigné. Les anneaux de
+     * cellules sont parcourus du centre vers l'extérieur jusqu'à ce qu'aucun point d'un anneau
+     * suivant ne puisse battre le k-ième trouvé.
+     */
+    public List<String> nearest(double latitude, double longitude, int k) {
+        if (k <= 0 || entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        double x = projectLongitude(longitude);
+        double y = latitude * KM_PER_DEGREE;
+        int centerX = cell(x);
+        int centerY = cell(y);
+        int maxRing = Math.max(Math.max(centerX - minCellX, maxCellX - centerX),
+                Math.max(centerY - minCellY, maxCellY - centerY));
+
+        // Tas max des k meilleurs candidats
+        PriorityQueue<Candidate> best = new PriorityQueue<>(
+                Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Tout point d'un anneau r est au moins à (r - 1) cellules du point de requête
+            if (best.size() == k && best.peek().distance <= (ring - 1) * cellSizeKm) {
+                break;
+            }
+            for (int cx = centerX - ring; cx <= centerX + ring; cx++) {
+                boolean edgeColumn = cx == centerX - ring || cx == centerX + ring;
+                int step = edgeColumn ? 1 : Math.max(1, 2 * ring);
+                for (int cy = centerY - ring; cy <= centerY + ring; cy += step) {
+                    List<Entry> cell = cells.get(key(cx, cy));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry entry : cell) {
+                        double distance = Math.hypot(entry.x - x, entry.y - y);
+                        if (best.size() < k) {
+                            best.add(new Candidate(entry.id, distance));
+                        } else if (distance < best.peek().distance) {
+                            best.poll();
+                            best.add(new Candidate(entry.id, distance));
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(c -> c.distance));
+        List<String> result = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted) {
+            result.add(candidate.id);
+        }
+        return result;
+    }
+
+    /**
+     * Point le plus proche accepté par {@code filter}, strictement à moins de
+     * {@code maxDistanceKm} ; {@code null} s'il n'y en a pas. Les anneaux sont parcourus comme
+     * pour {@link #nearest(double, double, int)} et la recherche s'arrête dès qu'aucun anneau
+     * suivant ne peut battre le point trouvé ou la borne : seuls les points refusés de ce
+     * voisinage sont examinés.
+     */
+    public String nearestMatching(Noeud origin, double maxDistanceKm, Predicate<String> filter) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        double x = projectLongitude(origin.getLongitude());
+        double y = origin.getLatitude() * KM_PER_DEGREE;
+        int centerX = cell(x);
+        int centerY = cell(y);
+        int maxRing = Math.max(Math.max(centerX - minCellX, maxCellX - centerX),
+                Math.max(centerY - minCellY, maxCellY - centerY));
+
+        String best = null;
+        double bestDistance = maxDistanceKm;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if ((ring - 1) * cellSizeKm >= bestDistance) {
+                break;
+            }
+            for (int cx = centerX - ring; cx <= centerX + ring; cx++) {
+                boolean edgeColumn = cx == centerX - ring || cx == centerX + ring;
+                int step = edgeColumn ? 1 : Math.max(1, 2 * ring);
+                for (int cy = centerY - ring; cy <= centerY + ring; cy += step) {
+                    List<Entry> cell = cells.get(key(cx, cy));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry entry : cell) {
+                        double distance = Math.hypot(entry.x - x, entry.y - y);
+                        if (distance < bestDistance && filter.test(entry.id)) {
+                            best = entry.id;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Distance en kilomètres, dans la projection de l'index, entre {@code origin} et le point {@code id}.
+     */
+    public double distance(Noeud origin, String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            throw new IllegalArgumentException("Point absent de l'index : " + id);
+        }
+        return Math.hypot(entry.x - projectLongitude(origin.getLongitude()),
+                entry.y - origin.getLatitude() * KM_PER_DEGREE);
+    }
+
+    /**
+     * Points à moins de {@code radiusKm} kilomètres, du plus proche au plus éloigné.
+     */
+    public List<String> withinRadius(double latitude, double longitude, double radiusKm) {
+        double x = projectLongitude(longitude);
+        double y = latitude * KM_PER_DEGREE;
+        List<Candidate> found = new ArrayList<>();
+        for (int cx = cell(x - radiusKm); cx <= cell(x + radiusKm); cx++) {
+            for (int cy = cell(y - radiusKm); cy <= cell(y + radiusKm); cy++) {
+                List<Entry> cell = cells.get(key(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (Entry entry : cell) {
+                    double distance = Math.hypot(entry.x - x, entry.y - y);
+                    if (distance <= radiusKm) {
+                        found.add(new Candidate(entry.id, distance));
+                    }
+                }
+            }
+        }
+        found.sort(Comparator.comparingDouble(c -> c.distance));
+        List<String> result = new ArrayList<>(found.size());
+        for (Candidate candidate : found) {
+            result.add(candidate.id);
+        }
+        return result;
+    }
+
+    private double projectLongitude(double longitude) {
+        double scale = Double.isNaN(longitudeScale) ? 1.0 : longitudeScale;
+        return longitude * KM_PER_DEGREE * scale;
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSizeKm);
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private static final class Entry {
+        final String id;
+        final double x;
+        final double y;
+
+        Entry(String id, double x, double y) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final class Candidate {
+        final String id;
+        final double distance;
+
+        Candidate(String id, double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.covoiturage.algorithms;
 
+import com.covoiturage.models.CompactGraph;
 import com.covoiturage.models.Graph;
 import com.covoiturage.models.Noeud;
 import com.covoiturage.models.PathResult;
+import com.covoiturage.utils.MemoryEstimates;
 
 import java.util.*;
 
@@ -27,6 +29,72 @@ public class TestOptimisation {
         // 5. Tester le gestionnaire d'optimisation complet
         testerGestionnaireOptimisation(graph);
 
+        // 6. Tester la représentation compacte du graphe
+        testerGrapheCompact(graph);
+
+        // 7. Tester le moteur de Dijkstra sans allocation
+        testerMoteurDijkstra();
+
+        // 8. Comparer Dijkstra, A* et A* bidirectionnel
+        testerRechercheGuidee();
+
+        // 9. Tester le cache d'arbres de plus courts chemins
+        testerCacheArbres();
+
+        // 10. Tester la hiérarchie de contraction
+        testerHierarchieContraction();
+
+        // 11. Tester l'oracle de repères ALT
+        testerOracleReperes();
+
+        // 12. Tester le recuit simulé à écarts de coût incrémentaux
+        testerRecuitIncremental();
+
+        // 13. Tester la recherche locale (2-opt, Or-opt, relocalisation)
+        testerRechercheLocale();
+
+        // 14. Tester le recuit multi-départ et le recuit parallèle
+        testerRecuitParallele();
+
+        // 15. Tester l'index spatial et la présélection géographique des candidats
+        testerIndexSpatial();
+
+        // 16. Tester le graphe des k plus proches voisins face au graphe complet
+        testerGrapheVoisins();
+
+        // 17. Tester l'insertion à regret face à l'affectation gloutonne
+        testerInsertionRegret();
+
+        // 18. Tester la recherche locale entre véhicules sous budget de temps
+        testerRechercheEntreVehicules();
+
+        // 19. Tester la résolution exacte des petites routes face au recuit
+        testerHeldKarp();
+
+        // 20. Tester la recherche adaptative à grand voisinage et le choix de la stratégie
+        testerStrategies();
+
+        // 21. Tester le découpage géographique en sous-problèmes parallèles
+        testerDecoupageGeographique();
+
+        // 22. Tester le programme de refroidissement adaptatif du recuit
+        testerRecuitAdaptatif();
+
+        // 23. Tester le réseau routier résident partagé par les jobs
+        testerReseauResident();
+
+        // 24. Tester la file bornée des jobs : priorités, admission et refus
+        testerFileDesJobs();
+
+        // 25. Tester l'échéance et l'annulation coopérative des heuristiques
+        testerEcheanceEtAnnulation();
+
+        // 26. Tester la publication de la progression et des solutions intermédiaires
+        testerProgression();
+
+        // 27. Tester la conservation bornée des résultats des jobs
+        testerMagasinDesResultats();
+
         System.out.println("\n=== TESTS TERMINÉS ===");
     }
 
@@ -104,15 +172,17 @@ public class TestOptimisation {
         System.out.println("\n--- TEST PLUS PROCHE VOISIN ---");
 
         List<String> pointsAVisiter = Arrays.asList("user1", "user2", "user3", "user4", "user5");
+        // Une seule matrice pour les deux dépôts, plutôt qu'une par appel
+        DistanceMatrix matrice = matriceDepots(graph, pointsAVisiter);
 
         // Test depuis depot_nord
-        List<String> routeNord = NearestNeighbor.findRoute(graph, "depot_nord", pointsAVisiter);
+        List<String> routeNord = NearestNeighbor.findRoute(matrice, "depot_nord", pointsAVisiter);
         System.out.println("Route depuis Depot Nord: " + routeNord);
         double distanceNord = calculerDistanceRoute(graph, routeNord);
         System.out.println("Distance totale: " + distanceNord + " km");
 
         // Test depuis depot_sud
-        List<String> routeSud = NearestNeighbor.findRoute(graph, "depot_sud", pointsAVisiter);
+        List<String> routeSud = NearestNeighbor.findRoute(matrice, "depot_sud", pointsAVisiter);
         System.out.println("Route depuis Depot Sud: " + routeSud);
         double distanceSud = calculerDistanceRoute(graph, routeSud);
         System.out.println("Distance totale: " + distanceSud + " km");
@@ -122,15 +192,16 @@ public class TestOptimisation {
         System.out.println("\n--- TEST RECUIT SIMULÉ ---");
 
         List<String> pointsAVisiter = Arrays.asList("user1", "user2", "user3", "user4", "user5");
+        DistanceMatrix matrice = matriceDepots(graph, pointsAVisiter);
 
         // Solution initiale
-        List<String> routeInitiale = NearestNeighbor.findRoute(graph, "depot_nord", pointsAVisiter);
+        List<String> routeInitiale = NearestNeighbor.findRoute(matrice, "depot_nord", pointsAVisiter);
         double distanceInitiale = calculerDistanceRoute(graph, routeInitiale);
         System.out.println("Solution initiale: " + routeInitiale);
         System.out.println("Distance initiale: " + distanceInitiale + " km");
 
         // Optimisation
-        RecuitSimule.OptimizationResult result = RecuitSimule.optimizeRoute(graph, "depot_nord", pointsAVisiter);
+        RecuitSimule.OptimizationResult result = RecuitSimule.optimizeRoute(matrice, "depot_nord", pointsAVisiter);
         System.out.println("Solution optimisée: " + result.getRoute());
         System.out.println("Distance optimisée: " + result.getTotalDistance() + " km");
         System.out.println("Amélioration: " + (distanceInitiale - result.getTotalDistance()) + " km");
@@ -142,6 +213,12 @@ public class TestOptimisation {
         }
     }
 
+    private static DistanceMatrix matriceDepots(Graph graph, List<String> pointsAVisiter) {
+        List<String> points = new ArrayList<>(List.of("depot_nord", "depot_sud"));
+        points.addAll(pointsAVisiter);
+        return DistanceMatrix.build(graph, points);
+    }
+
     private static void testerGestionnaireOptimisation(Graph graph) {
         System.out.println("\n--- TEST GESTIONNAIRE OPTIMISATION ---");
 
@@ -191,6 +268,1191 @@ public class TestOptimisation {
         System.out.println("   - Nombre de véhicules utilisés: " + resultats.size());
     }
 
+    private static void testerGrapheCompact(Graph graph) {
+        System.out.println("\n--- TEST GRAPHE COMPACT (CSR) ---");
+
+        CompactGraph compact = CompactGraph.fromGraph(graph);
+        PathResult reference = PlusCourtcChemin.findShortestPath(graph, "depot_nord", "user4");
+        PathResult result = PlusCourtcChemin.findShortestPath(compact, "depot_nord", "user4");
+        System.out.println("Depot Nord → User4: " + result.getTotalDistance() + " km" +
+                (result.getTotalDistance() == reference.getTotalDistance() ? " ✅ identique" : " ❌ différent"));
+
+        List<String> pointsAVisiter = Arrays.asList("user1", "user2", "user3", "user4", "user5");
+        System.out.println("Route compacte depuis Depot Nord: " +
+                NearestNeighbor.findRoute(compact, "depot_nord", pointsAVisiter));
+        System.out.println("Recuit simulé compact: " +
+                RecuitSimule.optimizeRoute(compact, "depot_nord", pointsAVisiter).getTotalDistance() + " km");
+
+        // Graphe complet comme celui construit par OptimizationService
+        Graph complet = creerGrapheComplet(1000);
+        CompactGraph completCompact = CompactGraph.fromGraph(complet);
+        long memoireGraphe = complet.estimateMemoryBytes();
+        long memoireCompacte = completCompact.estimateMemoryBytes();
+        System.out.println("Graphe complet: " + complet.getAllNodes().size() + " nœuds, " +
+                complet.getEdgeCount() + " liaisons");
+        System.out.println("   - Graph: " + MemoryEstimates.format(memoireGraphe));
+        System.out.println("   - CompactGraph: " + MemoryEstimates.format(memoireCompacte) +
+                " (-" + (100 - memoireCompacte * 100 / memoireGraphe) + "%)");
+    }
+
+    private static void testerMoteurDijkstra() {
+        System.out.println("\n--- TEST MOTEUR DIJKSTRA ---");
+
+        Graph graph = creerGrapheAleatoire(2000, 4);
+        CompactGraph compact = CompactGraph.fromGraph(graph);
+        Random random = new Random(7);
+
+        int identiques = 0;
+        int requetes = 200;
+        for (int i = 0; i < requetes; i++) {
+            int source = random.nextInt(compact.getNodeCount());
+            int cible = random.nextInt(compact.getNodeCount());
+            PathResult reference = PlusCourtcChemin.findShortestPath(
+                    graph, compact.getNodeId(source), compact.getNodeId(cible));
+            double distance = DijkstraEngine.distance(compact, source, cible);
+            if (Math.abs(reference.getTotalDistance() - distance) < 1e-9
+                    || reference.getTotalDistance() == distance) {
+                identiques++;
+            }
+        }
+        System.out.println("Résultats identiques à Dijkstra classique: " + identiques + "/" + requetes);
+
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            long threadId = Thread.currentThread().getId();
+            double somme = 0.0;
+            long avant = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < requetes; i++) {
+                somme += DijkstraEngine.distance(compact, i, compact.getNodeCount() - 1 - i);
+            }
+            long apres = allocations.getThreadAllocatedBytes(threadId);
+            System.out.println("Octets alloués pour " + requetes + " requêtes à chaud: " + (apres - avant) +
+                    " (somme des distances " + String.format("%.1f", somme) + " km)");
+        }
+    }
+
+    private static void testerRechercheGuidee() {
+        System.out.println("\n--- TEST A* ET A* BIDIRECTIONNEL ---");
+
+        CompactGraph compact = CompactGraph.fromGraph(creerGrapheAleatoire(2000, 4));
+        Random random = new Random(11);
+        int requetes = 200;
+        long[] noeudsFixes = new long[SearchMode.values().length];
+        int identiques = 0;
+
+        for (int i = 0; i < requetes; i++) {
+            int source = random.nextInt(compact.getNodeCount());
+            int cible = random.nextInt(compact.getNodeCount());
+            double reference = DijkstraEngine.distance(compact, source, cible);
+            boolean memeDistance = true;
+            for (SearchMode mode : SearchMode.values()) {
+                noeudsFixes[mode.ordinal()] += AStarSearch.settledNodeCount(compact, source, cible, mode);
+                memeDistance &= Math.abs(AStarSearch.distance(compact, source, cible, mode) - reference) < 1e-9;
+            }
+            if (memeDistance) {
+                identiques++;
+            }
+        }
+
+        System.out.println("Distances identiques dans les trois modes: " + identiques + "/" + requetes);
+        for (SearchMode mode : SearchMode.values()) {
+            System.out.println("   - " + mode + ": " + noeudsFixes[mode.ordinal()] / requetes +
+                    " nœuds fixés en moyenne");
+        }
+        PathResult chemin = PlusCourtcChemin.findShortestPath(compact, compact.getNodeId(0),
+                compact.getNodeId(1500), SearchMode.BIDIRECTIONAL_A_STAR);
+        System.out.println("Chemin bidirectionnel r0 → r1500: " + chemin.getPathNodeIds().size() + " nœuds, " +
+                String.format("%.2f", chemin.getTotalDistance()) + " km");
+    }
+
+    private static void testerCacheArbres() {
+        System.out.println("\n--- TEST CACHE D'ARBRES ---");
+
+        // Graphe dédié : il est modifié en fin de test
+        Graph graph = creerGrapheTest();
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(graph, 1024 * 1024);
+        List<String> points = Arrays.asList("depot_nord", "depot_sud", "user1", "user2", "user3", "user4", "user5");
+        DistanceMatrix.build(cache, points);
+        DistanceMatrix matrice = DistanceMatrix.build(cache, points);
+        System.out.println("Depot Nord → User4 via cache: " + matrice.distance("depot_nord", "user4") + " km");
+        System.out.println("Après deux constructions: " + cache);
+
+        // Une modification du graphe invalide les arbres en cache
+        graph.addEdge("depot_nord", "user4", 0.5);
+        System.out.println("Depot Nord → User4 après ajout d'une liaison: " +
+                cache.distance("depot_nord", "user4") + " km");
+        System.out.println("Après modification: " + cache);
+    }
+
+    private static void testerHierarchieContraction() {
+        System.out.println("\n--- TEST HIÉRARCHIE DE CONTRACTION ---");
+
+        CompactGraph compact = CompactGraph.fromGraph(creerGrapheRoutier(50));
+        ContractionHierarchy hierarchie = ContractionHierarchy.build(compact);
+        System.out.println("Prétraitement: " + hierarchie.getPreprocessingMillis() + " ms, " +
+                hierarchie.getShortcutCount() + " raccourcis sur " + hierarchie.getEdgeCount() + " liaisons");
+
+        Random random = new Random(13);
+        int requetes = 200;
+        int[] sources = new int[requetes];
+        int[] cibles = new int[requetes];
+        for (int i = 0; i < requetes; i++) {
+            sources[i] = random.nextInt(compact.getNodeCount());
+            cibles[i] = random.nextInt(compact.getNodeCount());
+        }
+
+        int identiques = 0;
+        long debut = System.nanoTime();
+        for (int i = 0; i < requetes; i++) {
+            double reference = DijkstraEngine.distance(compact, sources[i], cibles[i]);
+            double distance = hierarchie.distance(sources[i], cibles[i]);
+            if (Math.abs(distance - reference) < 1e-9 || distance == reference) {
+                identiques++;
+            }
+        }
+        System.out.println("Distances identiques à Dijkstra: " + identiques + "/" + requetes);
+
+        debut = System.nanoTime();
+        for (int i = 0; i < requetes; i++) {
+            DijkstraEngine.distance(compact, sources[i], cibles[i]);
+        }
+        long dureeDijkstra = System.nanoTime() - debut;
+        debut = System.nanoTime();
+        for (int i = 0; i < requetes; i++) {
+            hierarchie.distance(sources[i], cibles[i]);
+        }
+        long dureeHierarchie = System.nanoTime() - debut;
+        System.out.println("Temps moyen par requête: Dijkstra " + dureeDijkstra / requetes / 1000 +
+                " µs, CH " + dureeHierarchie / requetes / 1000 + " µs");
+
+        PathResult reference = DijkstraEngine.findShortestPath(compact, compact.indexOf("r0"), compact.indexOf("r2499"));
+        PathResult chemin = hierarchie.findShortestPath("r0", "r2499");
+        System.out.println("Chemin CH r0 → r2499: " + chemin.getPathNodeIds().size() + " nœuds, " +
+                String.format("%.2f", chemin.getTotalDistance()) + " km (Dijkstra: " +
+                reference.getPathNodeIds().size() + " nœuds, " +
+                String.format("%.2f", reference.getTotalDistance()) + " km)");
+
+        try {
+            java.io.ByteArrayOutputStream sortie = new java.io.ByteArrayOutputStream();
+            hierarchie.save(sortie);
+            ContractionHierarchy rechargee = ContractionHierarchy.load(
+                    new java.io.ByteArrayInputStream(sortie.toByteArray()));
+            System.out.println("Rechargée depuis " + MemoryEstimates.format(sortie.size()) + ": r0 → r2499 = " +
+                    String.format("%.2f", rechargee.distance("r0", "r2499")) + " km");
+        } catch (java.io.IOException e) {
+            System.out.println("❌ Échec de la sérialisation: " + e.getMessage());
+        }
+
+        List<String> points = Arrays.asList("r0", "r250", "r500", "r1500", "r2000", "r2499");
+        DistanceMatrix viaHierarchie = DistanceMatrix.build(hierarchie, points);
+        DistanceMatrix viaDijkstra = DistanceMatrix.build(compact, points);
+        double ecart = 0.0;
+        for (int i = 0; i < points.size(); i++) {
+            for (int j = 0; j < points.size(); j++) {
+                ecart = Math.max(ecart, Math.abs(viaHierarchie.distance(i, j) - viaDijkstra.distance(i, j)));
+                ecart = Math.max(ecart, Math.abs(viaHierarchie.time(i, j) - viaDijkstra.time(i, j)));
+            }
+        }
+        System.out.println("Matrice par seaux: écart maximal avec Dijkstra " + String.format("%.1e", ecart));
+
+        // Points hors réseau rattachés à leurs nœuds les plus proches, comme sur le réseau résident
+        List<Noeud> pointsDuJob = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pointsDuJob.add(new Noeud("job" + i, 48.80 + random.nextDouble() * 0.07, 2.30 + random.nextDouble() * 0.1));
+        }
+        ContractionHierarchy.Overlay rattachement = hierarchie.attach(pointsDuJob);
+        DistanceMatrix parRattachement = DistanceMatrix.build(rattachement);
+        DistanceMatrix parReseau = DistanceMatrix.build(RoadNetwork.of(creerGrapheRoutier(50)).attach(pointsDuJob));
+        double ecartRattachement = 0.0;
+        for (int i = 0; i < pointsDuJob.size(); i++) {
+            for (int j = 0; j < pointsDuJob.size(); j++) {
+                ecartRattachement = Math.max(ecartRattachement,
+                        Math.abs(parRattachement.distance(i, j) - parReseau.distance(i, j)));
+                ecartRattachement = Math.max(ecartRattachement,
+                        Math.abs(parRattachement.time(i, j) - parReseau.time(i, j)));
+            }
+        }
+        System.out.println("Rattachement de " + rattachement.size() + " points hors réseau (" +
+                rattachement.getAccessLinkCount() + " tronçons d'accès), matrice en " +
+                parRattachement.getBuildTimeMillis() + " ms: écart maximal avec le réseau résident " +
+                String.format("%.1e", ecartRattachement));
+
+        // Un job du service, dont les points ont des identifiants propres au job, passe par la hiérarchie
+        com.covoiturage.services.OptimizationService service = new com.covoiturage.services.OptimizationService();
+        service.setRoadHierarchy(hierarchie);
+        List<com.covoiturage.models.User> utilisateurs = new ArrayList<>();
+        for (long i = 1; i <= 12; i++) {
+            utilisateurs.add(new com.covoiturage.models.User(i, "u" + i, "a", "b", null, null));
+        }
+        List<com.covoiturage.models.Vehicle> vehicules = List.of(
+                new com.covoiturage.models.Vehicle(1L, 1L, "m1", 7, null),
+                new com.covoiturage.models.Vehicle(2L, 2L, "m2", 7, null));
+        com.covoiturage.services.OptimizationService.JobStatus statut;
+        try {
+            statut = silencieux(() -> attendreFin(service, service.startOptimization(utilisateurs, vehicules)));
+        } finally {
+            service.shutdown();
+        }
+        if (statut == null) {
+            return;
+        }
+        System.out.println("Job du service sur la hiérarchie: " + statut.status + ", " +
+                (statut.graphEdgeCount - hierarchie.getEdgeCount()) + " tronçons d'accès, matrice en " +
+                statut.matrixBuildMillis + " ms, " + statut.assignedUsers + " utilisateurs assignés");
+
+        // Le gain croît avec la taille du réseau : Dijkstra en explore une part fixe, CH quelques centaines de nœuds
+        CompactGraph grand = CompactGraph.fromGraph(creerGrapheRoutier(100));
+        ContractionHierarchy grandeHierarchie = ContractionHierarchy.build(grand);
+        for (int i = 0; i < requetes; i++) {
+            sources[i] = random.nextInt(grand.getNodeCount());
+            cibles[i] = random.nextInt(grand.getNodeCount());
+        }
+        int identiquesGrand = 0;
+        for (int i = 0; i < requetes; i++) {
+            // Premier passage : vérification, et compilation à chaud des deux recherches avant la mesure
+            double attendue = DijkstraEngine.distance(grand, sources[i], cibles[i]);
+            double distance = grandeHierarchie.distance(sources[i], cibles[i]);
+            if (Math.abs(distance - attendue) < 1e-9 || distance == attendue) {
+                identiquesGrand++;
+            }
+        }
+        debut = System.nanoTime();
+        for (int i = 0; i < requetes; i++) {
+            DijkstraEngine.distance(grand, sources[i], cibles[i]);
+        }
+        long totalDijkstra = System.nanoTime() - debut;
+        debut = System.nanoTime();
+        for (int i = 0; i < requetes; i++) {
+            grandeHierarchie.distance(sources[i], cibles[i]);
+        }
+        long totalHierarchie = System.nanoTime() - debut;
+        System.out.println("Réseau de " + grand.getNodeCount() + " nœuds (prétraitement " +
+                grandeHierarchie.getPreprocessingMillis() + " ms): Dijkstra " + totalDijkstra / requetes / 1000 +
+                " µs, CH " + totalHierarchie / requetes / 1000 + " µs par requête, soit x" +
+                String.format("%.1f", (double) totalDijkstra / Math.max(1, totalHierarchie)) + ", " +
+                identiquesGrand + "/" + requetes + " distances identiques");
+    }
+
+    private static void testerOracleReperes() {
+        System.out.println("\n--- TEST ORACLE DE REPÈRES (ALT) ---");
+
+        CompactGraph compact = CompactGraph.fromGraph(creerGrapheRoutier(50));
+        LandmarkOracle oracle = LandmarkOracle.build(compact, 8);
+        System.out.println("Prétraitement: " + oracle.getPreprocessingMillis() + " ms, " +
+                oracle.getLandmarkCount() + " repères, " + MemoryEstimates.format(oracle.estimateMemoryBytes()));
+
+        Random random = new Random(17);
+        int requetes = 200;
+        int identiques = 0;
+        int bornesValides = 0;
+        long fixesOrthodromie = 0;
+        long fixesReperes = 0;
+        for (int i = 0; i < requetes; i++) {
+            int source = random.nextInt(compact.getNodeCount());
+            int cible = random.nextInt(compact.getNodeCount());
+            double reference = DijkstraEngine.distance(compact, source, cible);
+            double distance = AStarSearch.distance(compact, source, cible, SearchMode.A_STAR, oracle);
+            if (Math.abs(distance - reference) < 1e-9 || distance == reference) {
+                identiques++;
+            }
+            if (oracle.lowerBound(source, cible) <= reference) {
+                bornesValides++;
+            }
+            fixesOrthodromie += AStarSearch.settledNodeCount(compact, source, cible, SearchMode.A_STAR);
+            fixesReperes += AStarSearch.settledNodeCount(compact, source, cible, SearchMode.A_STAR, oracle);
+        }
+        System.out.println("Distances identiques à Dijkstra: " + identiques + "/" + requetes +
+                ", bornes valides: " + bornesValides + "/" + requetes);
+        System.out.println("Nœuds fixés par A* en moyenne: orthodromie " + fixesOrthodromie / requetes +
+                ", repères " + fixesReperes / requetes);
+
+        // Assignation avec élimination des véhicules par borne inférieure
+        List<String> depots = Arrays.asList("r0", "r49", "r2450", "r2499", "r1275");
+        List<String> utilisateurs = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            utilisateurs.add(compact.getNodeId(random.nextInt(compact.getNodeCount())));
+        }
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 4);
+        }
+        Map<String, List<String>> routes =
+                GestionnaireOptimisation.optimiserCovoiturage(oracle, utilisateurs, depots, capacites);
+        int assignes = routes.values().stream().mapToInt(route -> route.size() - 1).sum();
+        System.out.println("Utilisateurs assignés: " + assignes + "/" + utilisateurs.size());
+    }
+
+    private static void testerRecuitIncremental() {
+        System.out.println("\n--- TEST RECUIT SIMULÉ INCRÉMENTAL ---");
+
+        Graph graph = creerGrapheComplet(60);
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            points.add("p" + i);
+        }
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+        List<String> aVisiter = points.subList(1, points.size());
+
+        List<String> initiale = NearestNeighbor.findRoute(matrice, "p0", aVisiter);
+        double coutInitial = 0.0;
+        for (int i = 0; i < initiale.size() - 1; i++) {
+            coutInitial += matrice.distance(initiale.get(i), initiale.get(i + 1));
+        }
+
+        for (int iterations : new int[]{1_000, 100_000}) {
+            long debut = System.nanoTime();
+            RecuitSimule.OptimizationResult result = RecuitSimule.optimizeRoute(matrice, "p0", aVisiter, iterations);
+            long duree = (System.nanoTime() - debut) / 1_000_000;
+            System.out.println(iterations + " itérations en " + duree + " ms: " +
+                    String.format("%.2f", result.getTotalDistance()) + " km (plus proche voisin: " +
+                    String.format("%.2f", coutInitial) + " km), meilleur que le plus proche voisin: " +
+                    (result.getTotalDistance() < coutInitial));
+        }
+    }
+
+    private static void testerRechercheLocale() {
+        System.out.println("\n--- TEST RECHERCHE LOCALE ---");
+
+        Graph graph = creerGrapheComplet(200);
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            points.add("p" + i);
+        }
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+        List<String> aVisiter = points.subList(1, points.size());
+
+        List<String> initiale = NearestNeighbor.findRoute(matrice, "p0", aVisiter);
+        double coutInitial = coutRoute(matrice, initiale);
+        System.out.println("Plus proche voisin: " + String.format("%.2f", coutInitial) + " km");
+
+        long debut = System.nanoTime();
+        List<String> amelioree = LocalSearch.improve(matrice, initiale);
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println("Recherche locale: " + String.format("%.2f", coutRoute(matrice, amelioree)) +
+                " km en " + duree + " ms, " + new HashSet<>(amelioree).size() + " points distincts, départ " +
+                amelioree.get(0));
+
+        debut = System.nanoTime();
+        RecuitSimule.OptimizationResult recuit = RecuitSimule.optimizeRoute(matrice, "p0", aVisiter, 200_000);
+        duree = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println("Recuit (200 000 itérations, mouvements 2-opt/Or-opt): " +
+                String.format("%.2f", recuit.getTotalDistance()) + " km en " + duree + " ms, meilleur que le " +
+                "plus proche voisin: " + (recuit.getTotalDistance() < coutInitial));
+    }
+
+    private static void testerRecuitParallele() {
+        System.out.println("\n--- TEST RECUIT PARALLÈLE ---");
+
+        Graph graph = creerGrapheComplet(200);
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            points.add("p" + i);
+        }
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+        List<String> aVisiter = points.subList(1, points.size());
+        int chaines = Math.max(4, Runtime.getRuntime().availableProcessors());
+        double coutInitial = coutRoute(matrice, NearestNeighbor.findRoute(matrice, "p0", aVisiter));
+
+        RecuitSimule.OptimizationResult premier = RecuitSimule.optimizeRoute(matrice, "p0", aVisiter, 50_000, 42L);
+        RecuitSimule.OptimizationResult second = RecuitSimule.optimizeRoute(matrice, "p0", aVisiter, 50_000, 42L);
+        System.out.println("Même graine, même route: " + premier.getRoute().equals(second.getRoute()));
+
+        long debut = System.nanoTime();
+        RecuitSimule.OptimizationResult multi =
+                RecuitSimule.optimizeRouteMultiStart(matrice, "p0", aVisiter, chaines, 50_000, 42L);
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        RecuitSimule.OptimizationResult multiBis =
+                RecuitSimule.optimizeRouteMultiStart(matrice, "p0", aVisiter, chaines, 50_000, 42L);
+        System.out.println("Multi-départ (" + chaines + " chaînes): " +
+                String.format("%.2f", multi.getTotalDistance()) + " km en " + duree + " ms, reproductible: " +
+                multi.getRoute().equals(multiBis.getRoute()) + ", meilleur que le plus proche voisin (" +
+                String.format("%.2f", coutInitial) + " km): " + (multi.getTotalDistance() < coutInitial));
+
+        debut = System.nanoTime();
+        RecuitSimule.OptimizationResult tempering =
+                RecuitSimule.optimizeRouteTempering(matrice, "p0", aVisiter, chaines, 50_000, 42L);
+        duree = (System.nanoTime() - debut) / 1_000_000;
+        RecuitSimule.OptimizationResult temperingBis =
+                RecuitSimule.optimizeRouteTempering(matrice, "p0", aVisiter, chaines, 50_000, 42L);
+        System.out.println("Échange de répliques (" + chaines + " répliques): " +
+                String.format("%.2f", tempering.getTotalDistance()) + " km en " + duree + " ms, reproductible: " +
+                tempering.getRoute().equals(temperingBis.getRoute()));
+    }
+
+    private static void testerIndexSpatial() {
+        System.out.println("\n--- TEST INDEX SPATIAL ---");
+
+        Graph graph = creerGrapheRoutier(40);
+        List<Noeud> noeuds = new ArrayList<>(graph.getAllNodes());
+        SpatialIndex index = SpatialIndex.of(noeuds);
+
+        // k plus proches voisins comparés à un tri complet dans la métrique de l'index
+        // (équirectangulaire autour du premier point) ; à égalité de distance l'ordre peut
+        // différer, ce sont donc les distances rang par rang qui sont comparées
+        double echelle = Math.cos(Math.toRadians(noeuds.get(0).getLatitude()));
+        Random random = new Random(7);
+        for (int q = 0; q < 100; q++) {
+            Noeud origine = noeuds.get(random.nextInt(noeuds.size()));
+            double[] attendues = new double[noeuds.size()];
+            for (int i = 0; i < attendues.length; i++) {
+                attendues[i] = distanceEquirectangulaire(origine, noeuds.get(i), echelle);
+            }
+            Arrays.sort(attendues);
+            List<String> trouves = index.nearest(origine, 10);
+            if (trouves.size() != 10) {
+                throw new IllegalStateException("kNN depuis " + origine.getId() + " : " + trouves.size() +
+                        " voisins au lieu de 10");
+            }
+            for (int i = 0; i < 10; i++) {
+                double distance = distanceEquirectangulaire(origine, graph.getNode(trouves.get(i)), echelle);
+                if (Math.abs(distance - attendues[i]) > 1e-9) {
+                    throw new IllegalStateException("kNN depuis " + origine.getId() + " : rang " + i + " à " +
+                            distance + " km au lieu de " + attendues[i] + " km");
+                }
+            }
+        }
+        System.out.println("10 plus proches conformes au tri complet: 100/100");
+        Noeud centre = noeuds.get(noeuds.size() / 2);
+        System.out.println("Nœuds à moins de 300 m de " + centre.getId() + ": " +
+                index.withinRadius(centre.getLatitude(), centre.getLongitude(), 0.3).size());
+
+        // Assignation de 600 utilisateurs à 300 véhicules : seuls les véhicules proches sont évalués
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : noeuds) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, random);
+        List<String> depots = new ArrayList<>(ids.subList(0, 300));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(300, 900));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 3);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        long debut = System.nanoTime();
+        // Journal d'assignation trop volumineux à cette échelle
+        Map<String, List<String>> resultat = silencieux(
+                () -> GestionnaireOptimisation.optimiserCovoiturage(matrice, utilisateurs, depots, capacites));
+        long duree = (System.nanoTime() - debut) / 1_000_000;
+        int assignes = 0;
+        double total = 0.0;
+        for (List<String> route : resultat.values()) {
+            assignes += route.size() - 1;
+            total += coutRoute(matrice, route);
+        }
+        System.out.println("300 véhicules, 600 utilisateurs: " + assignes + " assignés, " +
+                String.format("%.2f", total) + " km au total, en " + duree + " ms");
+
+        // Plus proche voisin sur 899 points : présélection des 16 candidats les plus proches
+        debut = System.nanoTime();
+        List<String> route = NearestNeighbor.findRoute(matrice, points.get(0), points.subList(1, points.size()));
+        duree = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println("Plus proche voisin sur " + route.size() + " points: " +
+                String.format("%.2f", coutRoute(matrice, route)) + " km en " + duree + " ms");
+    }
+
+    private static void testerGrapheVoisins() {
+        System.out.println("\n--- TEST GRAPHE DES K PLUS PROCHES VOISINS ---");
+
+        Random random = new Random(11);
+        List<Noeud> noeuds = new ArrayList<>();
+        Graph complet = new Graph();
+        for (int i = 0; i < 800; i++) {
+            Noeud noeud = new Noeud("k" + i,
+                    48.85 + (random.nextDouble() - 0.5) * 0.1,
+                    2.35 + (random.nextDouble() - 0.5) * 0.1);
+            noeuds.add(noeud);
+            complet.addNode(noeud);
+        }
+        long debut = System.nanoTime();
+        for (Noeud from : noeuds) {
+            for (Noeud to : noeuds) {
+                if (from != to) {
+                    complet.addEdge(from.getId(), to.getId(), CalculDistance.calculateDistance(from, to));
+                }
+            }
+        }
+        long dureeComplet = (System.nanoTime() - debut) / 1_000_000;
+        System.out.println("Graphe complet: " + complet.getEdgeCount() + " liaisons en " + dureeComplet + " ms");
+
+        KNearestGraph creux = KNearestGraph.build(noeuds, KNearestGraph.DEFAULT_NEIGHBOURS, 0.05);
+        System.out.println("Graphe creux (k=" + creux.getNeighbourCount() + "): " + creux.getEdgeCount() +
+                " liaisons en " + creux.getBuildTimeMillis() + " ms, connexe: " + creux.isConnected() +
+                ", erreur estimée sur 8 sources " + String.format("%.2f", 100 * creux.estimateError()) + " %");
+
+        // Même route évaluée sur les deux graphes
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            points.add("k" + i);
+        }
+        DistanceMatrix matriceComplete = DistanceMatrix.build(complet, points);
+        DistanceMatrix matriceCreuse = DistanceMatrix.build(creux.getGraph(), points);
+        List<String> route = LocalSearch.improve(matriceComplete,
+                NearestNeighbor.findRoute(matriceComplete, "k0", points.subList(1, points.size())));
+        double coutComplet = coutRoute(matriceComplete, route);
+        double coutCreux = coutRoute(matriceCreuse, route);
+        System.out.println("Route de 100 points: " + String.format("%.2f", coutComplet) + " km (complet), " +
+                String.format("%.2f", coutCreux) + " km (creux), écart " +
+                String.format("%.2f", 100 * (coutCreux / coutComplet - 1)) + " %");
+    }
+
+    private static void testerInsertionRegret() {
+        System.out.println("\n--- TEST INSERTION À REGRET ---");
+
+        Graph graph = creerGrapheRoutier(40);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, new Random(5));
+        List<String> depots = new ArrayList<>(ids.subList(0, 60));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(60, 460));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 7);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        for (int regret = 1; regret <= 3; regret++) {
+            long debut = System.nanoTime();
+            Map<String, List<String>> routes = RegretInsertion.assign(matrice, utilisateurs, depots, capacites, regret);
+            long duree = (System.nanoTime() - debut) / 1_000_000;
+            System.out.println("Construction regret-" + regret + ": " +
+                    String.format("%.2f", coutTotal(matrice, routes)) + " km en " + duree + " ms");
+        }
+
+        // Solutions complètes (construction puis recuit de chaque route), journal masqué
+        Map<String, List<String>> glouton = silencieux(
+                () -> GestionnaireOptimisation.optimiserCovoiturage(matrice, utilisateurs, depots, capacites));
+        Map<String, List<String>> regret = silencieux(
+                () -> GestionnaireOptimisation.optimiserCovoiturage(matrice, utilisateurs, depots, capacites,
+                        RegretInsertion.DEFAULT_REGRET, java.util.concurrent.ForkJoinPool.commonPool(), null));
+        System.out.println("Après optimisation des routes: glouton " + String.format("%.2f", coutTotal(matrice, glouton)) +
+                " km, regret-2 " + String.format("%.2f", coutTotal(matrice, regret)) + " km");
+    }
+
+    private static void testerRechercheEntreVehicules() {
+        System.out.println("\n--- TEST RECHERCHE ENTRE VÉHICULES ---");
+
+        Graph graph = creerGrapheRoutier(40);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, new Random(9));
+        List<String> depots = new ArrayList<>(ids.subList(0, 60));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(60, 460));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 7);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        Map<String, List<String>> routes = RegretInsertion.assign(matrice, utilisateurs, depots, capacites,
+                RegretInsertion.DEFAULT_REGRET);
+        for (long budget : new long[]{15, 1000}) {
+            InterRouteSearch.Result resultat = InterRouteSearch.improve(matrice, routes, capacites, budget);
+            int depassements = 0;
+            for (Map.Entry<String, List<String>> route : resultat.getRoutes().entrySet()) {
+                if (route.getValue().size() - 1 > capacites.get(route.getKey())) {
+                    depassements++;
+                }
+            }
+            System.out.println("Budget " + budget + " ms: " + String.format("%.2f", resultat.getInitialCost()) +
+                    " -> " + String.format("%.2f", resultat.getFinalCost()) + " km, " + resultat.getMoveCount() +
+                    " mouvements en " + resultat.getElapsedMillis() + " ms, optimum local: " +
+                    resultat.isCompleted() + ", capacités dépassées: " + depassements);
+        }
+    }
+
+    private static void testerHeldKarp() {
+        System.out.println("\n--- TEST RÉSOLUTION EXACTE (HELD-KARP) ---");
+
+        Graph graph = creerGrapheRoutier(30);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Random random = new Random(17);
+        for (int arrets : new int[]{3, 6, 8, 12}) {
+            double exact = 0.0;
+            double recuit = 0.0;
+            double force = 0.0;
+            long nanosExact = 0;
+            long nanosRecuit = 0;
+            for (int essai = 0; essai < 20; essai++) {
+                Collections.shuffle(ids, random);
+                List<String> route = new ArrayList<>(ids.subList(0, arrets + 1));
+                DistanceMatrix matrice = DistanceMatrix.build(graph, route);
+                List<String> passagers = route.subList(1, route.size());
+
+                long debut = System.nanoTime();
+                exact += HeldKarp.optimizeRoute(matrice, route.get(0), passagers).getTotalDistance();
+                nanosExact += System.nanoTime() - debut;
+                debut = System.nanoTime();
+                recuit += RecuitSimule.optimizeRoute(matrice, route.get(0), passagers).getTotalDistance();
+                nanosRecuit += System.nanoTime() - debut;
+                if (arrets <= 8) {
+                    force += meilleurOrdre(matrice, route.get(0), new ArrayList<>(passagers));
+                }
+            }
+            System.out.println(arrets + " passagers (20 routes): exact " + String.format("%.2f", exact) +
+                    " km en " + nanosExact / 20_000 + " µs/route, recuit " + String.format("%.2f", recuit) +
+                    " km en " + nanosRecuit / 20_000 + " µs/route" +
+                    (arrets <= 8 ? ", énumération " + String.format("%.2f", force) + " km" : ""));
+        }
+    }
+
+    private static void testerStrategies() {
+        System.out.println("\n--- TEST STRATÉGIES (ALNS) ---");
+
+        Graph graph = creerGrapheRoutier(40);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, new Random(9));
+        List<String> depots = new ArrayList<>(ids.subList(0, 60));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(60, 460));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 7);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        OptimizationStrategyFactory fabrique = new OptimizationStrategyFactory(RegretInsertion.DEFAULT_REGRET,
+                HeldKarp.DEFAULT_MAX_STOPS, java.util.concurrent.ForkJoinPool.commonPool());
+        System.out.println("Stratégie pour 30 utilisateurs: " + fabrique.create(30, 5, 2000, null).getName() +
+                ", pour 400 utilisateurs: " + fabrique.create(400, 60, 2000, null).getName() +
+                ", sans budget: " + fabrique.create(400, 60, 0, null).getName());
+
+        OptimizationStrategy classique = fabrique.create(400, 60, 0, null);
+        long debut = System.nanoTime();
+        Map<String, List<String>> routes = silencieux(
+                () -> classique.optimize(matrice, utilisateurs, depots, capacites));
+        System.out.println(classique.getName() + ": " + String.format("%.2f", coutTotal(matrice, routes)) +
+                " km en " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+
+        for (long budget : new long[]{200, 1000}) {
+            AdaptiveLargeNeighbourhoodSearch.Result resultat = new AdaptiveLargeNeighbourhoodSearch(budget)
+                    .search(matrice, utilisateurs, depots, capacites);
+            System.out.println("ALNS " + budget + " ms: " + String.format("%.2f", resultat.getInitialCost()) +
+                    " -> " + String.format("%.2f", resultat.getFinalCost()) + " km, " +
+                    resultat.getIterationCount() + " itérations en " + resultat.getElapsedMillis() +
+                    " ms, non servis: " + resultat.getUnassignedCount() + ", poids des retraits " +
+                    poids(resultat.getRemovalWeights()) + ", des réinsertions " + poids(resultat.getRepairWeights()));
+        }
+    }
+
+    private static void testerDecoupageGeographique() {
+        System.out.println("\n--- TEST DÉCOUPAGE GÉOGRAPHIQUE ---");
+
+        Graph graph = creerGrapheRoutier(50);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, new Random(9));
+        List<String> depots = new ArrayList<>(ids.subList(0, 200));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(200, 1400));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 7);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        AdaptiveLargeNeighbourhoodSearch.Result global = new AdaptiveLargeNeighbourhoodSearch(1000)
+                .search(matrice, utilisateurs, depots, capacites);
+        System.out.println("ALNS globale 1000 ms: " + String.format("%.2f", global.getFinalCost()) + " km, " +
+                global.getIterationCount() + " itérations");
+        int coeurs = Runtime.getRuntime().availableProcessors();
+        for (int parallelisme : java.util.stream.IntStream.of(1, coeurs).distinct().toArray()) {
+            java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(parallelisme);
+            try {
+                GeographicDecomposition.Result resultat = new GeographicDecomposition(1000, pool)
+                        .search(matrice, utilisateurs, depots, capacites);
+                int servis = 0;
+                for (List<String> route : resultat.getRoutes().values()) {
+                    servis += route.size() - 1;
+                }
+                System.out.println("Découpage sur " + parallelisme + " cœur(s): " + resultat.getClusterCount() +
+                        " zones, " + resultat.getIterationCount() + " itérations en " + resultat.getClusterMillis() +
+                        " ms, réunies " + String.format("%.2f", resultat.getStitchedCost()) + " -> " +
+                        String.format("%.2f", resultat.getFinalCost()) + " km après réparation (" +
+                        resultat.getRepairMillis() + " ms), " + resultat.getInsertedAcrossClusters() +
+                        " insérés hors zone, " + servis + "/" + utilisateurs.size() + " servis");
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void testerRecuitAdaptatif() {
+        System.out.println("\n--- TEST RECUIT ADAPTATIF ---");
+
+        Graph graph = creerGrapheComplet(200);
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            points.add("p" + i);
+        }
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        for (int taille : new int[]{8, 50, 199}) {
+            List<String> aVisiter = points.subList(1, taille + 1);
+            RecuitSimule.OptimizationResult budget = RecuitSimule.optimizeRoute(matrice, "p0", aVisiter, 1000, 42L);
+            AnnealingReport adaptatif = RecuitSimule.anneal(matrice, "p0", aVisiter, AnnealingSchedule.defaults(), 42L);
+            System.out.println(taille + " points: budget de 1000 itérations " +
+                    String.format("%.2f", budget.getTotalDistance()) + " km, adaptatif " + resume(adaptatif));
+        }
+
+        List<String> aVisiter = points.subList(1, points.size());
+        AnnealingReport chrono = RecuitSimule.anneal(matrice, "p0", aVisiter,
+                AnnealingSchedule.timeBudget(200).withReheats(0, 0, 1.0), 42L);
+        System.out.println("Budget de 200 ms, sans réchauffage: " + resume(chrono));
+        int[] iterations = chrono.getCurveIterations();
+        double[] couts = chrono.getCurveCosts();
+        StringJoiner courbe = new StringJoiner(", ");
+        for (int i = 0; i < iterations.length; i += Math.max(1, iterations.length / 6)) {
+            courbe.add(iterations[i] + ": " + String.format("%.1f", couts[i]));
+        }
+        courbe.add(iterations[iterations.length - 1] + ": " + String.format("%.1f", couts[couts.length - 1]));
+        System.out.println("Courbe d'amélioration (itération: km): " + courbe);
+    }
+
+    private static void testerReseauResident() {
+        System.out.println("\n--- TEST RÉSEAU RÉSIDENT ---");
+
+        Random random = new Random(17);
+        List<Noeud> pointsDuJob = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pointsDuJob.add(new Noeud("job" + i, 48.80 + random.nextDouble() * 0.07,
+                    2.30 + random.nextDouble() * 0.1));
+        }
+
+        RoadNetwork dernier = null;
+        for (int cote : new int[]{50, 100, 200}) {
+            RoadNetwork reseau = RoadNetwork.of(creerGrapheRoutier(cote));
+            RoadNetwork.Overlay rattachement = reseau.attach(pointsDuJob);
+            DistanceMatrix matrice = DistanceMatrix.build(rattachement);
+            System.out.println(reseau.getNodeCount() + " carrefours: instantané construit en " +
+                    reseau.getBuildTimeMillis() + " ms (une fois), rattachement de " + rattachement.size() +
+                    " points en " + rattachement.getBuildTimeMillis() + " ms (" +
+                    rattachement.getAccessLinkCount() + " tronçons d'accès), matrice en " +
+                    matrice.getBuildTimeMillis() + " ms, job0 -> job1 " +
+                    String.format("%.3f", matrice.distance("job0", "job1")) + " km");
+            dernier = reseau;
+        }
+
+        // Copie sur écriture : un job garde l'instantané qu'il a lu pendant la mise à jour
+        RoadNetwork avant = RoadNetwork.of(creerGrapheRoutier(50));
+        Noeud coinSud = avant.getGraph().getNode(avant.getGraph().indexOf("r0"));
+        Noeud coinNord = avant.getGraph().getNode(avant.getGraph().indexOf("r2499"));
+        RoadNetwork apres = avant.withChanges(graph -> relierDansLesDeuxSens(graph, coinSud, coinNord));
+        List<Noeud> extremites = List.of(new Noeud("sud", coinSud.getLatitude(), coinSud.getLongitude()),
+                new Noeud("nord", coinNord.getLatitude(), coinNord.getLongitude()));
+        System.out.println("Mise à jour (voie rapide r0 - r2499): version " + avant.getVersion() + " " +
+                String.format("%.3f", DistanceMatrix.build(avant.attach(extremites)).distance("sud", "nord")) +
+                " km, version " + apres.getVersion() + " " +
+                String.format("%.3f", DistanceMatrix.build(apres.attach(extremites)).distance("sud", "nord")) +
+                " km, " + avant.getEdgeCount() + " -> " + apres.getEdgeCount() + " liaisons");
+        System.out.println("Empreinte du plus grand réseau: " + dernier.estimateMemoryBytes() / 1024 + " Kio");
+    }
+
+    private static void testerFileDesJobs() {
+        System.out.println("\n--- TEST FILE DES JOBS ---");
+
+        com.covoiturage.services.JobScheduler file = new com.covoiturage.services.JobScheduler(1, 4, 100_000);
+        java.util.concurrent.CountDownLatch bloque = new java.util.concurrent.CountDownLatch(1);
+        List<String> ordre = Collections.synchronizedList(new ArrayList<>());
+        file.submit(() -> {
+            bloque.await();
+            return "occupe";
+        }, com.covoiturage.services.JobPriority.BATCH, 10_000, 500);
+
+        // Trois jobs batch au plus (75 % de la file), puis un job trop gros pour le budget restant
+        String[] noms = {"batch1", "batch2", "batch3", "batch4", "gros", "interactif1", "interactif2"};
+        for (String nom : noms) {
+            com.covoiturage.services.JobPriority priorite = nom.startsWith("batch")
+                    ? com.covoiturage.services.JobPriority.BATCH : com.covoiturage.services.JobPriority.INTERACTIVE;
+            try {
+                file.submit(() -> ordre.add(nom), priorite, nom.equals("gros") ? 80_000 : 10_000, 200);
+            } catch (com.covoiturage.services.JobRejectedException e) {
+                System.out.println(nom + " refusé: " + e.getMessage());
+            }
+        }
+        System.out.println("Avant libération: " + file.getStats());
+
+        bloque.countDown();
+        file.shutdown();
+        try {
+            file.awaitTermination(10, java.util.concurrent.TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Ordre d'exécution: " + ordre);
+        System.out.println("Après: " + file.getStats());
+    }
+
+    private static void testerEcheanceEtAnnulation() {
+        System.out.println("\n--- TEST ÉCHÉANCE ET ANNULATION ---");
+
+        Graph graph = creerGrapheRoutier(40);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, new Random(9));
+        List<String> depots = new ArrayList<>(ids.subList(0, 60));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(60, 460));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 7);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        // Échéance plus proche que le budget : la meilleure solution trouvée est rendue à temps
+        AdaptiveLargeNeighbourhoodSearch.Result alns = new AdaptiveLargeNeighbourhoodSearch(5000)
+                .search(matrice, utilisateurs, depots, capacites, CancellationToken.withTimeout(300));
+        System.out.println("ALNS (budget 5000 ms, échéance 300 ms): " + String.format("%.2f", alns.getInitialCost()) +
+                " -> " + String.format("%.2f", alns.getFinalCost()) + " km en " + alns.getElapsedMillis() +
+                " ms, non servis: " + alns.getUnassignedCount());
+
+        // Échéance du jeton plus proche que le budget du recuit : le refroidissement s'y règle
+        List<String> route = utilisateurs.subList(0, 150);
+        AnnealingReport recuit = RecuitSimule.anneal(matrice, depots.get(0), route,
+                AnnealingSchedule.timeBudget(2000).withReheats(0, 0, 1.0), 42L, CancellationToken.withTimeout(100));
+        System.out.println("Recuit (budget 2000 ms, échéance 100 ms): " + resume(recuit) +
+                ", arrêté par le jeton: " + recuit.isStoppedByToken());
+
+        // Annulation depuis un autre thread
+        CancellationToken jeton = CancellationToken.cancellable();
+        java.util.concurrent.ScheduledExecutorService minuterie =
+                java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
+        minuterie.schedule(jeton::cancel, 150, java.util.concurrent.TimeUnit.MILLISECONDS);
+        AdaptiveLargeNeighbourhoodSearch.Result annule = new AdaptiveLargeNeighbourhoodSearch(5000)
+                .search(matrice, utilisateurs, depots, capacites, jeton);
+        minuterie.shutdown();
+        System.out.println("ALNS annulée après 150 ms: " + String.format("%.2f", annule.getFinalCost()) + " km, " +
+                annule.getIterationCount() + " itérations en " + annule.getElapsedMillis() + " ms");
+
+        // Échéance déjà dépassée : l'assignation va à son terme, les routes gardent leur ordre
+        long debut = System.nanoTime();
+        CancellationToken expire = CancellationToken.withTimeout(1);
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Map<String, List<String>> sansOptimisation = silencieux(
+                () -> new InsertionAnnealingStrategy(RegretInsertion.DEFAULT_REGRET, HeldKarp.DEFAULT_MAX_STOPS,
+                        java.util.concurrent.ForkJoinPool.commonPool(), null)
+                        .optimize(matrice, utilisateurs, depots, capacites, expire));
+        long dureeExpiree = (System.nanoTime() - debut) / 1_000_000;
+        Map<String, List<String>> complet = silencieux(
+                () -> new InsertionAnnealingStrategy(RegretInsertion.DEFAULT_REGRET, HeldKarp.DEFAULT_MAX_STOPS,
+                        java.util.concurrent.ForkJoinPool.commonPool(), null)
+                        .optimize(matrice, utilisateurs, depots, capacites));
+        System.out.println("Regret + recuit, échéance dépassée: " +
+                String.format("%.2f", coutTotal(matrice, sansOptimisation)) + " km en " + dureeExpiree +
+                " ms, sans échéance: " + String.format("%.2f", coutTotal(matrice, complet)) + " km");
+    }
+
+    private static void testerProgression() {
+        System.out.println("\n--- TEST PROGRESSION ---");
+
+        Graph graph = creerGrapheRoutier(40);
+        List<String> ids = new ArrayList<>();
+        for (Noeud noeud : graph.getAllNodes()) {
+            ids.add(noeud.getId());
+        }
+        Collections.shuffle(ids, new Random(9));
+        List<String> depots = new ArrayList<>(ids.subList(0, 60));
+        List<String> utilisateurs = new ArrayList<>(ids.subList(60, 460));
+        Map<String, Integer> capacites = new HashMap<>();
+        for (String depot : depots) {
+            capacites.put(depot, 7);
+        }
+        List<String> points = new ArrayList<>(depots);
+        points.addAll(utilisateurs);
+        DistanceMatrix matrice = DistanceMatrix.build(graph, points);
+
+        // ALNS : solution initiale puis un rapport toutes les 100 ms au plus
+        List<SearchProgress> rapports = new ArrayList<>();
+        AdaptiveLargeNeighbourhoodSearch.Result alns = new AdaptiveLargeNeighbourhoodSearch(500)
+                .search(matrice, utilisateurs, depots, capacites, CancellationToken.none(), rapports::add);
+        System.out.println("ALNS 500 ms: " + rapports.size() + " rapports, " + progression(rapports.get(0)) + " -> " +
+                progression(rapports.get(rapports.size() - 1)) + ", résultat final " +
+                String.format("%.2f", alns.getFinalCost()) + " km");
+
+        // Découpage : rapports des zones réunis, appelés depuis plusieurs threads
+        List<SearchProgress> zones = Collections.synchronizedList(new ArrayList<>());
+        GeographicDecomposition.Result decoupage = new GeographicDecomposition(100, 500,
+                java.util.concurrent.ForkJoinPool.commonPool())
+                .search(matrice, utilisateurs, depots, capacites, CancellationToken.none(), zones::add);
+        SearchProgress premier = zones.get(0);
+        System.out.println("Découpage en " + decoupage.getClusterCount() + " zones: " + zones.size() +
+                " rapports, premier " + progression(premier) + " sur " + premier.getRoutes().size() +
+                " véhicules, dernier " + progression(zones.get(zones.size() - 1)) + ", résultat final " +
+                String.format("%.2f", decoupage.getFinalCost()) + " km");
+
+        // Insertion : un rapport après l'assignation, puis un par route optimisée
+        List<SearchProgress> insertion = new ArrayList<>();
+        Map<String, List<String>> routes = silencieux(
+                () -> new InsertionAnnealingStrategy(2, HeldKarp.DEFAULT_MAX_STOPS,
+                        java.util.concurrent.ForkJoinPool.commonPool(), null)
+                        .optimize(matrice, utilisateurs, depots, capacites, CancellationToken.none(), insertion::add));
+        System.out.println("Insertion + recuit: " + insertion.size() + " rapports, " + progression(insertion.get(0)) +
+                " -> " + progression(insertion.get(insertion.size() - 1)) + ", résultat final " +
+                String.format("%.2f", coutTotal(matrice, routes)) + " km");
+    }
+
+    private static void testerMagasinDesResultats() {
+        System.out.println("\n--- TEST MAGASIN DES RÉSULTATS ---");
+
+        // 20 jobs terminés pour 60 Kio sur le tas : les moins récemment lus sont compactés
+        com.covoiturage.services.OptimizationService service = new com.covoiturage.services.OptimizationService();
+        service.setJobResultMemoryBytes(60_000);
+        service.setJobResultSpillBytes(12_000);
+        service.setJobResultTtlMillis(1_000);
+        List<String> jobs = new ArrayList<>();
+        silencieux(() -> {
+            for (int job = 0; job < 20; job++) {
+                List<com.covoiturage.models.User> utilisateurs = new ArrayList<>();
+                List<com.covoiturage.models.Vehicle> vehicules = new ArrayList<>();
+                for (long i = 1; i <= 40; i++) {
+                    utilisateurs.add(new com.covoiturage.models.User(job * 100 + i, "u" + i, "a", "b", null, null));
+                }
+                for (long i = 1; i <= 6; i++) {
+                    vehicules.add(new com.covoiturage.models.Vehicle(job * 100 + i, job * 100 + i, "m" + i, 7, null));
+                }
+                jobs.add(service.startOptimization(utilisateurs, vehicules));
+            }
+            for (String job : jobs) {
+                if (attendreFin(service, job) == null) {
+                    return;
+                }
+            }
+        });
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        System.out.println("Après 20 jobs: " + service.getJobStoreStats());
+        com.covoiturage.services.OptimizationService.JobStatus relu = service.getStatus(jobs.get(0));
+        System.out.println("Premier job relu: " + relu.status + ", " + relu.assignedUsers + " utilisateurs sur " +
+                relu.result.size() + " véhicules, " + String.format("%.2f", relu.bestCost) + " km");
+        System.out.println("Dernier job oublié après lecture: " + service.removeJob(jobs.get(19)));
+        try {
+            Thread.sleep(1_100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        service.cleanupCompletedJobs();
+        System.out.println("Après expiration: " + service.getJobStoreStats() + ", premier job: " +
+                service.getStatus(jobs.get(0)).message);
+        service.shutdown();
+    }
+
+    /**
+     * Exécute {@code bloc} sans sortie standard ; elle est rétablie même en cas d'exception.
+     */
+    private static void silencieux(Runnable bloc) {
+        silencieux(() -> {
+            bloc.run();
+            return null;
+        });
+    }
+
+    private static <T> T silencieux(java.util.function.Supplier<T> bloc) {
+        java.io.PrintStream sortie = System.out;
+        System.setOut(new java.io.PrintStream(java.io.OutputStream.nullOutputStream()));
+        try {
+            return bloc.get();
+        } finally {
+            System.setOut(sortie);
+        }
+    }
+
+    /**
+     * Attend la fin du job ; {@code null} si le thread est interrompu (l'interruption est conservée).
+     */
+    private static com.covoiturage.services.OptimizationService.JobStatus attendreFin(
+            com.covoiturage.services.OptimizationService service, String job) {
+        com.covoiturage.services.OptimizationService.JobStatus statut;
+        while (!"DONE".equals((statut = service.getStatus(job)).status) && !"ERROR".equals(statut.status)) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return statut;
+    }
+
+    private static double distanceEquirectangulaire(Noeud a, Noeud b, double echelle) {
+        double dx = (a.getLongitude() - b.getLongitude()) * 111.32 * echelle;
+        double dy = (a.getLatitude() - b.getLatitude()) * 111.32;
+        return Math.hypot(dx, dy);
+    }
+
+    private static String progression(SearchProgress rapport) {
+        return rapport.getIterations() + " it. " + rapport.getAssignedUsers() + "/" + rapport.getUserCount() +
+                " servis " + String.format("%.2f", rapport.getBestCost()) + " km";
+    }
+
+    private static String resume(AnnealingReport rapport) {
+        return String.format("%.2f", rapport.getResult().getTotalDistance()) + " km (départ " +
+                String.format("%.2f", rapport.getInitialCost()) + ", T0 " +
+                String.format("%.3f", rapport.getInitialTemperature()) + "), " + rapport.getIterations() +
+                " itérations en " + rapport.getElapsedMillis() + " ms, acceptation " +
+                String.format("%.1f", 100 * rapport.getAcceptanceRate()) + " %, " + rapport.getReheats() +
+                " réchauffage(s)" + (rapport.isStoppedOnStagnation() ? ", arrêt sur stagnation" : "");
+    }
+
+    private static String poids(double[] valeurs) {
+        StringJoiner texte = new StringJoiner("/", "[", "]");
+        for (double valeur : valeurs) {
+            texte.add(String.format("%.1f", valeur));
+        }
+        return texte.toString();
+    }
+
+    /**
+     * Coût de la meilleure route ouverte par énumération de toutes les permutations.
+     */
+    private static double meilleurOrdre(DistanceMatrix matrice, String depart, List<String> restants) {
+        if (restants.isEmpty()) {
+            return 0.0;
+        }
+        double meilleur = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < restants.size(); i++) {
+            String suivant = restants.remove(i);
+            meilleur = Math.min(meilleur,
+                    matrice.distance(depart, suivant) + meilleurOrdre(matrice, suivant, restants));
+            restants.add(i, suivant);
+        }
+        return meilleur;
+    }
+
+    private static double coutTotal(DistanceMatrix matrice, Map<String, List<String>> routes) {
+        double total = 0.0;
+        for (List<String> route : routes.values()) {
+            total += coutRoute(matrice, route);
+        }
+        return total;
+    }
+
+    private static double coutRoute(DistanceMatrix matrice, List<String> route) {
+        double cout = 0.0;
+        for (int i = 0; i < route.size() - 1; i++) {
+            cout += matrice.distance(route.get(i), route.get(i + 1));
+        }
+        return cout;
+    }
+
+    private static Graph creerGrapheAleatoire(int taille, int voisins) {
+        Graph graph = new Graph();
+        Random random = new Random(42);
+        List<Noeud> noeuds = new ArrayList<>();
+        for (int i = 0; i < taille; i++) {
+            Noeud noeud = new Noeud("r" + i,
+                    48.85 + (random.nextDouble() - 0.5) * 0.1,
+                    2.35 + (random.nextDouble() - 0.5) * 0.1);
+            graph.addNode(noeud);
+            noeuds.add(noeud);
+        }
+        for (int i = 0; i < taille; i++) {
+            Noeud from = noeuds.get(i);
+            // Chaîne pour garantir la connexité, puis voisins aléatoires
+            Noeud next = noeuds.get((i + 1) % taille);
+            double chaine = CalculDistance.calculateDistance(from, next);
+            graph.addEdge(from.getId(), next.getId(), chaine);
+            graph.addEdge(next.getId(), from.getId(), chaine);
+            for (int k = 0; k < voisins; k++) {
+                Noeud to = noeuds.get(random.nextInt(taille));
+                if (to != from) {
+                    double distance = CalculDistance.calculateDistance(from, to) * 1.3;
+                    graph.addEdge(from.getId(), to.getId(), distance);
+                    graph.addEdge(to.getId(), from.getId(), distance);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Quadrillage irrégulier de {@code cote}² carrefours, plus proche d'un réseau urbain que
+     * {@link #creerGrapheAleatoire(int, int)} : liaisons locales uniquement, quelques rues manquantes.
+     */
+    private static Graph creerGrapheRoutier(int cote) {
+        Graph graph = new Graph();
+        Random random = new Random(42);
+        Noeud[][] carrefours = new Noeud[cote][cote];
+        for (int i = 0; i < cote; i++) {
+            for (int j = 0; j < cote; j++) {
+                carrefours[i][j] = new Noeud("r" + (i * cote + j),
+                        48.80 + i * 0.0015 + (random.nextDouble() - 0.5) * 0.0008,
+                        2.30 + j * 0.0022 + (random.nextDouble() - 0.5) * 0.0008);
+                graph.addNode(carrefours[i][j]);
+            }
+        }
+        for (int i = 0; i < cote; i++) {
+            for (int j = 0; j < cote; j++) {
+                Noeud from = carrefours[i][j];
+                // Rue vers l'est et vers le nord (la première colonne et la première ligne sont complètes)
+                if (j + 1 < cote && (i == 0 || random.nextDouble() < 0.9)) {
+                    relierDansLesDeuxSens(graph, from, carrefours[i][j + 1]);
+                }
+                if (i + 1 < cote && (j == 0 || random.nextDouble() < 0.9)) {
+                    relierDansLesDeuxSens(graph, from, carrefours[i + 1][j]);
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static void relierDansLesDeuxSens(Graph graph, Noeud a, Noeud b) {
+        double distance = CalculDistance.calculateDistance(a, b) * 1.1;
+        graph.addEdge(a.getId(), b.getId(), distance);
+        graph.addEdge(b.getId(), a.getId(), distance);
+    }
+
+    private static Graph creerGrapheComplet(int taille) {
+        Graph graph = new Graph();
+        Random random = new Random(42);
+        List<Noeud> noeuds = new ArrayList<>();
+        for (int i = 0; i < taille; i++) {
+            Noeud noeud = new Noeud("p" + i,
+                    48.85 + (random.nextDouble() - 0.5) * 0.1,
+                    2.35 + (random.nextDouble() - 0.5) * 0.1);
+            graph.addNode(noeud);
+            noeuds.add(noeud);
+        }
+        for (Noeud from : noeuds) {
+            for (Noeud to : noeuds) {
+                if (from != to) {
+                    graph.addEdge(from.getId(), to.getId(), CalculDistance.calculateDistance(from, to));
+                }
+            }
+        }
+        return graph;
+    }
+
     // Méthode utilitaire pour calculer la distance d'une route
     private static double calculerDistanceRoute(Graph graph, List<String> route) {
         if (route.size() < 2) return 0.0;
@@ -0,0 +1,172 @@
+package com.covoiturage.models;
+
+import com.covoiturage.utils.MemoryEstimates;
+
+import java.util.*;
+
+/**
+ * Représentation figée et compacte du réseau routier (format CSR).
+ * Les nœuds reçoivent un indice entier dense ; les liaisons sortantes du nœud {@code i}
+ * occupent les positions {@code [offsets[i], offsets[i + 1])} des tableaux de liaisons.
+ * Les identifiants texte ne sont utilisés qu'aux bords de l'API.
+ */
+public final class CompactGraph {
+    private final Noeud[] nodes;
+    private final Map<String, Integer> indexById;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] distances;
+    private final double[] times;
+    private volatile CompactGraph reversed;
+
+    private CompactGraph(Noeud[] nodes, Map<String, Integer> indexById, int[] offsets,
+                         int[] targets, double[] distances, double[] times) {
+        this.nodes = nodes;
+        this.indexById = indexById;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.distances = distances;
+        this.times = times;
+    }
+
+    public static CompactGraph fromGraph(Graph graph) {
+        Objects.requireNonNull(graph, "graph");
+
+        List<Noeud> allNodes = new ArrayList<>(graph.getAllNodes());
+        int nodeCount = allNodes.size();
+        Noeud[] nodes = allNodes.toArray(new Noeud[0]);
+        Map<String, Integer> indexById = new HashMap<>(nodeCount * 2);
+        for (int i = 0; i < nodeCount; i++) {
+            indexById.put(nodes[i].getId(), i);
+        }
+
+        int[] offsets = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            offsets[i + 1] = offsets[i] + graph.getEdges(nodes[i].getId()).size();
+        }
+
+        int edgeCount = offsets[nodeCount];
+        int[] targets = new int[edgeCount];
+        double[] distances = new double[edgeCount];
+        double[] times = new double[edgeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int edge = offsets[i];
+            for (Liaison liaison : graph.getEdges(nodes[i].getId())) {
+                targets[edge] = indexById.get(liaison.getToNodeId());
+                distances[edge] = liaison.getDistance();
+                times[edge] = liaison.getTime();
+                edge++;
+            }
+        }
+
+        return new CompactGraph(nodes, Collections.unmodifiableMap(indexById),
+                offsets, targets, distances, times);
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * @return l'indice du nœud, ou -1 s'il n'appartient pas au graphe
+     */
+    public int indexOf(String nodeId) {
+        Integer index = indexById.get(nodeId);
+        return index != null ? index : -1;
+    }
+
+    public boolean containsNode(String nodeId) {
+        return indexById.containsKey(nodeId);
+    }
+
+    public String getNodeId(int index) {
+        return nodes[index].getId();
+    }
+
+    public Noeud getNode(int index) {
+        return nodes[index];
+    }
+
+    public int edgeStart(int node) {
+        return offsets[node];
+    }
+
+    public int edgeEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double edgeDistance(int edge) {
+        return distances[edge];
+    }
+
+    public double edgeTime(int edge) {
+        return times[edge];
+    }
+
+    /**
+     * Graphe transposé (chaque liaison inversée), partageant les mêmes indices de nœuds.
+     * Calculé au premier appel puis conservé ; utilisé par les recherches arrière.
+     */
+    public CompactGraph reversed() {
+        CompactGraph result = reversed;
+        if (result == null) {
+            synchronized (this) {
+                result = reversed;
+                if (result == null) {
+                    result = buildReversed();
+                    result.reversed = this;
+                    reversed = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private CompactGraph buildReversed() {
+        int nodeCount = nodes.length;
+        int[] reversedOffsets = new int[nodeCount + 1];
+        for (int target : targets) {
+            reversedOffsets[target + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            reversedOffsets[i + 1] += reversedOffsets[i];
+        }
+
+        int[] next = Arrays.copyOf(reversedOffsets, nodeCount);
+        int[] reversedTargets = new int[targets.length];
+        double[] reversedDistances = new double[targets.length];
+        double[] reversedTimes = new double[targets.length];
+        for (int from = 0; from < nodeCount; from++) {
+            for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+                int position = next[targets[edge]]++;
+                reversedTargets[position] = from;
+                reversedDistances[position] = distances[edge];
+                reversedTimes[position] = times[edge];
+            }
+        }
+        return new CompactGraph(nodes, indexById, reversedOffsets, reversedTargets, reversedDistances, reversedTimes);
+    }
+
+    /**
+     * Estimation de l'empreinte mémoire (JVM 64 bits, références compressées).
+     * Les objets {@link Noeud} sont partagés avec le {@link Graph} source et ne sont comptés
+     * que par leur référence.
+     */
+    public long estimateMemoryBytes() {
+        long bytes = MemoryEstimates.arrayBytes(nodes.length, MemoryEstimates.REFERENCE_BYTES);
+        bytes += MemoryEstimates.hashMapBytes(indexById.size(), MemoryEstimates.INTEGER_BYTES);
+        bytes += MemoryEstimates.arrayBytes(offsets.length, Integer.BYTES);
+        bytes += MemoryEstimates.arrayBytes(targets.length, Integer.BYTES);
+        bytes += MemoryEstimates.arrayBytes(distances.length, Double.BYTES);
+        bytes += MemoryEstimates.arrayBytes(times.length, Double.BYTES);
+        return bytes;
+    }
+}
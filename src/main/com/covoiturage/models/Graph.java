@@ -1,5 +1,7 @@
 package com.covoiturage.models;
 
+import com.covoiturage.utils.MemoryEstimates;
+
 import java.util.*;
 
 /**
@@ -8,6 +10,8 @@ import java.util.*;
 public class Graph {
     private final Map<String, Noeud> nodes;
     private final Map<String, List<Liaison>> adjacencyList;
+    private int edgeCount;
+    private long version;
 
     public Graph() {
         this.nodes = new HashMap<>();
@@ -18,6 +22,7 @@ public class Graph {
         Objects.requireNonNull(node, "node");
         nodes.put(node.getId(), node);
         adjacencyList.computeIfAbsent(node.getId(), k -> new ArrayList<>());
+        version++;
     }
 
     public void addEdge(String fromNodeId, String toNodeId, double distance) {
@@ -29,6 +34,8 @@ public class Graph {
         validateNodeExists(toNodeId);
         Liaison liaison = new Liaison(fromNodeId, toNodeId, distance, time);
         adjacencyList.computeIfAbsent(fromNodeId, k -> new ArrayList<>()).add(liaison);
+        edgeCount++;
+        version++;
     }
 
     public List<Liaison> getEdges(String nodeId) {
@@ -47,6 +54,34 @@ public class Graph {
         return nodes.containsKey(nodeId);
     }
 
+    /**
+     * Compteur incrémenté à chaque modification ; permet aux caches dérivés de se savoir périmés.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Estimation de l'empreinte mémoire (JVM 64 bits, références compressées),
+     * comparable à {@link CompactGraph#estimateMemoryBytes()}.
+     */
+    public long estimateMemoryBytes() {
+        long nodeBytes = MemoryEstimates.objectBytes(2, 2 * Double.BYTES);
+        long edgeBytes = MemoryEstimates.objectBytes(2, 2 * Double.BYTES);
+
+        long bytes = MemoryEstimates.hashMapBytes(nodes.size(), nodeBytes);
+        bytes += MemoryEstimates.hashMapBytes(adjacencyList.size(), 0);
+        for (List<Liaison> edges : adjacencyList.values()) {
+            bytes += MemoryEstimates.arrayListBytes(edges.size());
+        }
+        bytes += (long) edgeCount * edgeBytes;
+        return bytes;
+    }
+
     private void validateNodeExists(String nodeId) {
         if (!nodes.containsKey(nodeId)) {
             throw new IllegalArgumentException("Le nœud " + nodeId + " est introuvable.");
@@ -0,0 +1,17 @@
+package com.covoiturage.services;
+
+/**
+ * Étape d'un job d'optimisation, signalée par {@link JobProgress}.
+ */
+public enum JobPhase {
+    /** En attente dans la file de {@link JobScheduler}. */
+    QUEUED,
+    /** Construction du graphe et de la matrice des distances. */
+    MATRIX,
+    /** Répartition des utilisateurs et ordre de passage, par la stratégie du job. */
+    OPTIMIZATION,
+    /** Échanges entre véhicules. */
+    INTER_ROUTE,
+    /** Job terminé, annulé ou en erreur : plus aucun rapport ne suit. */
+    FINISHED
+}
@@ -0,0 +1,11 @@
+package com.covoiturage.services;
+
+/**
+ * Classe de priorité d'un job d'optimisation dans la file de {@link JobScheduler}.
+ */
+public enum JobPriority {
+    /** Petit job attendu par un utilisateur : passe devant les replanifications. */
+    INTERACTIVE,
+    /** Grosse replanification : cède la place aux jobs interactifs, dans la limite d'un délai. */
+    BATCH
+}
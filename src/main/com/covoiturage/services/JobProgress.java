@@ -0,0 +1,69 @@
+package com.covoiturage.services;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instantané immuable de la progression d'un job : étape, itérations de la recherche et
+ * meilleure solution réalisable connue, que l'interface peut tracer avant la fin du job.
+ * Chaque rapport porte un numéro croissant ; un abonné qui en manque n'a besoin que du dernier.
+ */
+public final class JobProgress {
+
+    private final String jobId;
+    private final long sequence;
+    private final JobPhase phase;
+    private final int iterations;
+    private final double bestCost;
+    private final int assignedUsers;
+    private final int userCount;
+    private final Map<String, List<String>> routes;
+    private final long elapsedMillis;
+
+    JobProgress(String jobId, long sequence, JobPhase phase, int iterations, double bestCost, int assignedUsers,
+                int userCount, Map<String, List<String>> routes, long elapsedMillis) {
+        this.jobId = jobId;
+        this.sequence = sequence;
+        this.phase = phase;
+        this.iterations = iterations;
+        this.bestCost = bestCost;
+        this.assignedUsers = assignedUsers;
+        this.userCount = userCount;
+        this.routes = routes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    static JobProgress queued(String jobId, int userCount) {
+        return new JobProgress(jobId, 0, JobPhase.QUEUED, 0, 0.0, 0, userCount, Collections.emptyMap(), 0);
+    }
+
+    /**
+     * Même instantané avec d'autres routes, pour conserver un job terminé sans en dupliquer le résultat.
+     */
+    JobProgress withRoutes(Map<String, List<String>> routes) {
+        return new JobProgress(jobId, sequence, phase, iterations, bestCost, assignedUsers, userCount, routes,
+                elapsedMillis);
+    }
+
+    public String getJobId() { return jobId; }
+    public long getSequence() { return sequence; }
+    public JobPhase getPhase() { return phase; }
+    /** Itérations de la recherche en cours, routes optimisées pour l'insertion ; 0 hors de l'étape d'optimisation. */
+    public int getIterations() { return iterations; }
+    /** Distance totale (km) de la meilleure solution connue ; 0 tant qu'il n'y en a pas. */
+    public double getBestCost() { return bestCost; }
+    public int getAssignedUsers() { return assignedUsers; }
+    public int getUserCount() { return userCount; }
+    /** Routes de la meilleure solution connue (dépôt en tête), vides tant qu'il n'y en a pas. */
+    public Map<String, List<String>> getRoutes() { return routes; }
+    public boolean hasSolution() { return !routes.isEmpty(); }
+    /** Durée depuis le démarrage du job, hors attente dans la file. */
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("%s #%d %s : %d itérations, %d/%d utilisateurs, %.2f km, %d ms",
+                jobId, sequence, phase, iterations, assignedUsers, userCount, bestCost, elapsedMillis);
+    }
+}
@@ -0,0 +1,115 @@
+package com.covoiturage.services;
+
+import com.covoiturage.algorithms.ProgressListener;
+import com.covoiturage.algorithms.SearchProgress;
+
+import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Progression d'un job : garde le dernier {@link JobProgress}, lu sans attente par
+ * {@link OptimizationService#getStatus}, et le diffuse aux abonnés. La diffusion ne bloque
+ * jamais le job : un abonné dont le tampon est plein perd des instantanés intermédiaires, le
+ * dernier restant lisible par {@link OptimizationService#getProgress}. Le flux se termine
+ * ({@code onComplete}) avec l'instantané {@link JobPhase#FINISHED}.
+ */
+final class JobProgressTracker implements ProgressListener {
+
+    private final String jobId;
+    private final SubmissionPublisher<JobProgress> publisher = new SubmissionPublisher<>();
+    private volatile JobProgress latest;
+    // Protégés par this
+    private long startNanos;
+    private boolean finished;
+
+    JobProgressTracker(String jobId, int userCount) {
+        this.jobId = jobId;
+        this.latest = JobProgress.queued(jobId, userCount);
+    }
+
+    JobProgress latest() {
+        return latest;
+    }
+
+    Flow.Publisher<JobProgress> publisher() {
+        return publisher;
+    }
+
+    /**
+     * Le job quitte la file : construction de sa matrice.
+     */
+    synchronized void start() {
+        startNanos = System.nanoTime();
+        enter(JobPhase.MATRIX);
+    }
+
+    synchronized void enter(JobPhase phase) {
+        JobProgress current = latest;
+        publish(phase, 0, current.getBestCost(), current.getAssignedUsers(), current.getRoutes());
+    }
+
+    /**
+     * Nouvelle meilleure solution, obtenue hors de la recherche de la stratégie.
+     */
+    synchronized void solution(JobPhase phase, Map<String, List<String>> routes, double cost) {
+        publish(phase, 0, cost, assignedUsers(routes), freeze(routes));
+    }
+
+    @Override
+    public synchronized void onProgress(SearchProgress progress) {
+        publish(JobPhase.OPTIMIZATION, progress.getIterations(), progress.getBestCost(),
+                progress.getAssignedUsers(), progress.getRoutes());
+    }
+
+    /**
+     * Dernier instantané, avec la solution finale si elle existe, puis fin du flux.
+     */
+    synchronized void finish(Map<String, List<String>> routes, double cost) {
+        if (routes != null) {
+            solution(JobPhase.FINISHED, routes, cost);
+        } else {
+            enter(JobPhase.FINISHED);
+        }
+        finished = true;
+        publisher.close();
+    }
+
+    /**
+     * Termine le flux d'un job qui ne s'exécutera pas (annulé dans la file, service arrêté).
+     */
+    synchronized void close() {
+        if (!finished) {
+            finish(null, 0.0);
+        }
+    }
+
+    private void publish(JobPhase phase, int iterations, double cost, int assigned,
+                         Map<String, List<String>> routes) {
+        if (finished) {
+            return;
+        }
+        JobProgress current = latest;
+        long elapsed = startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1_000_000;
+        JobProgress next = new JobProgress(jobId, current.getSequence() + 1, phase, iterations, cost, assigned,
+                current.getUserCount(), routes, elapsed);
+        latest = next;
+        publisher.offer(next, (subscriber, dropped) -> false);
+    }
+
+    private static int assignedUsers(Map<String, List<String>> routes) {
+        int count = 0;
+        for (List<String> route : routes.values()) {
+            count += route.size() - 1;
+        }
+        return count;
+    }
+
+    private static Map<String, List<String>> freeze(Map<String, List<String>> routes) {
+        Map<String, List<String>> copy = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : routes.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+}
@@ -0,0 +1,26 @@
+package com.covoiturage.services;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Job refusé à l'admission (file pleine ou budget mémoire épuisé) ; le client peut le
+ * soumettre de nouveau après {@link #getRetryAfterMillis()}.
+ */
+public class JobRejectedException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public JobRejectedException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Délai conseillé avant une nouvelle soumission, estimé d'après le travail en attente.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,350 @@
+package com.covoiturage.services;
+
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * Ordonnanceur des jobs d'optimisation : file de priorité bornée devant un pool fixe de
+ * threads. Chaque job est admis ou refusé à la soumission d'après son coût estimé (mémoire
+ * de sa matrice et de son graphe, durée de calcul) : au-delà de la profondeur de file ou du
+ * budget mémoire, il est refusé par une {@link JobRejectedException} indiquant quand réessayer.
+ * <p>
+ * Les jobs {@link JobPriority#INTERACTIVE} passent devant les jobs {@link JobPriority#BATCH},
+ * classés comme s'ils avaient été soumis {@value #BATCH_DELAY_MILLIS} ms plus tard : une
+ * replanification n'attend donc jamais indéfiniment. Les jobs batch n'occupent au plus que
+ * {@link #BATCH_QUEUE_SHARE} de la file, le reste étant gardé pour les jobs interactifs.
+ */
+public final class JobScheduler {
+
+    static final long BATCH_DELAY_MILLIS = 10_000;
+    static final double BATCH_QUEUE_SHARE = 0.75;
+    static final long MIN_RETRY_AFTER_MILLIS = 100;
+
+    private final ThreadPoolExecutor executor;
+    private final int workers;
+    private final Object lock = new Object();
+    private volatile int maxQueuedJobs;
+    private volatile long memoryBudgetBytes;
+
+    // Comptabilité protégée par lock
+    private long sequence;
+    private int queuedInteractive;
+    private int queuedBatch;
+    private int running;
+    private long reservedBytes;
+    private long pendingWorkMillis;
+    private long admittedCount;
+    private long rejectedCount;
+    private long completedCount;
+    private long startedCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    /**
+     * @param workers nombre de jobs exécutés simultanément
+     * @param maxQueuedJobs nombre maximal de jobs en attente
+     * @param memoryBudgetBytes mémoire estimée cumulée des jobs admis (en attente ou en cours)
+     */
+    public JobScheduler(int workers, int maxQueuedJobs, long memoryBudgetBytes) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Il faut au moins un thread : " + workers);
+        }
+        this.workers = workers;
+        setMaxQueuedJobs(maxQueuedJobs);
+        setMemoryBudgetBytes(memoryBudgetBytes);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+    }
+
+    /**
+     * Admet le job dans la file ou le refuse.
+     *
+     * @param estimatedBytes mémoire estimée du job, réservée jusqu'à sa fin
+     * @param estimatedMillis durée de calcul estimée, qui sert au délai conseillé des refus
+     * @throws JobRejectedException si la file est pleine pour cette priorité ou si le budget
+     *                              mémoire ne permet pas de l'admettre
+     */
+    public <T> Job<T> submit(Callable<T> task, JobPriority priority, long estimatedBytes, long estimatedMillis) {
+        Objects.requireNonNull(task, "task");
+        Objects.requireNonNull(priority, "priority");
+        if (estimatedBytes < 0 || estimatedMillis < 0) {
+            throw new IllegalArgumentException("Les estimations ne peuvent pas être négatives : " +
+                    estimatedBytes + ", " + estimatedMillis);
+        }
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("L'ordonnanceur est arrêté.");
+        }
+
+        Job<T> job;
+        synchronized (lock) {
+            int queued = queuedInteractive + queuedBatch;
+            int limit = priority == JobPriority.BATCH
+                    ? Math.max(1, (int) (maxQueuedJobs * BATCH_QUEUE_SHARE))
+                    : maxQueuedJobs;
+            if (queued >= limit) {
+                throw reject("File d'attente pleine (" + queued + " jobs en attente)");
+            }
+            // Un job plus gros que tout le budget n'est admis que seul
+            if (reservedBytes > 0 && reservedBytes + estimatedBytes > memoryBudgetBytes) {
+                throw reject("Budget mémoire atteint (" + reservedBytes + " octets réservés sur " +
+                        memoryBudgetBytes + ")");
+            }
+            job = new Job<>(task, priority, estimatedBytes, estimatedMillis, sequence++);
+            if (priority == JobPriority.BATCH) {
+                queuedBatch++;
+            } else {
+                queuedInteractive++;
+            }
+            reservedBytes += estimatedBytes;
+            pendingWorkMillis += estimatedMillis;
+            admittedCount++;
+        }
+
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            // Arrêt concurrent : l'annulation libère la réservation
+            job.cancel(false);
+            throw e;
+        }
+        return job;
+    }
+
+    private JobRejectedException reject(String reason) {
+        rejectedCount++;
+        long retryAfter = Math.max(MIN_RETRY_AFTER_MILLIS, pendingWorkMillis / workers);
+        return new JobRejectedException(reason + ", réessayer dans " + retryAfter + " ms", retryAfter);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getMaxQueuedJobs() {
+        return maxQueuedJobs;
+    }
+
+    public void setMaxQueuedJobs(int maxQueuedJobs) {
+        if (maxQueuedJobs < 1) {
+            throw new IllegalArgumentException("La file doit pouvoir contenir au moins un job : " + maxQueuedJobs);
+        }
+        this.maxQueuedJobs = maxQueuedJobs;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Le budget mémoire doit être positif : " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Instantané cohérent des compteurs de la file.
+     */
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(queuedInteractive, queuedBatch, running, reservedBytes, memoryBudgetBytes,
+                    pendingWorkMillis, admittedCount, rejectedCount, completedCount,
+                    startedCount == 0 ? 0 : totalWaitNanos / startedCount / 1_000_000,
+                    maxWaitNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * N'admet plus de job ; ceux déjà admis sont exécutés.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Annule les jobs en attente et interrompt ceux en cours.
+     */
+    public void shutdownNow() {
+        for (Runnable pending : executor.shutdownNow()) {
+            ((Job<?>) pending).cancel(false);
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Job admis : futur de son résultat, avec sa priorité et son temps d'attente.
+     */
+    public final class Job<T> extends FutureTask<T> implements Comparable<Job<?>> {
+        private final JobPriority priority;
+        private final long estimatedBytes;
+        private final long estimatedMillis;
+        private final long sequence;
+        private final long submittedNanos;
+        private final long orderKey;
+        private volatile long startedNanos;
+        private volatile boolean started;
+
+        private Job(Callable<T> task, JobPriority priority, long estimatedBytes, long estimatedMillis,
+                    long sequence) {
+            super(task);
+            this.priority = priority;
+            this.estimatedBytes = estimatedBytes;
+            this.estimatedMillis = estimatedMillis;
+            this.sequence = sequence;
+            this.submittedNanos = System.nanoTime();
+            this.orderKey = priority == JobPriority.BATCH
+                    ? submittedNanos + TimeUnit.MILLISECONDS.toNanos(BATCH_DELAY_MILLIS)
+                    : submittedNanos;
+        }
+
+        @Override
+        public void run() {
+            if (markStarted()) {
+                super.run();
+            }
+        }
+
+        private boolean markStarted() {
+            synchronized (lock) {
+                if (isCancelled()) {
+                    return false;
+                }
+                startedNanos = System.nanoTime();
+                started = true;
+                if (priority == JobPriority.BATCH) {
+                    queuedBatch--;
+                } else {
+                    queuedInteractive--;
+                }
+                running++;
+                long wait = startedNanos - submittedNanos;
+                startedCount++;
+                totalWaitNanos += wait;
+                maxWaitNanos = Math.max(maxWaitNanos, wait);
+                return true;
+            }
+        }
+
+        @Override
+        protected void done() {
+            synchronized (lock) {
+                if (started) {
+                    running--;
+                    completedCount++;
+                } else {
+                    // Annulé avant d'avoir démarré
+                    if (priority == JobPriority.BATCH) {
+                        queuedBatch--;
+                    } else {
+                        queuedInteractive--;
+                    }
+                    executor.remove(this);
+                }
+                reservedBytes -= estimatedBytes;
+                pendingWorkMillis -= estimatedMillis;
+            }
+        }
+
+        /**
+         * Retire le job de la file s'il n'a pas encore démarré ; un job en cours n'est pas touché,
+         * son arrêt relève de l'appelant (jeton d'annulation).
+         *
+         * @return {@code true} si le job a été retiré
+         */
+        public boolean cancelIfQueued() {
+            synchronized (lock) {
+                return !started && cancel(false);
+            }
+        }
+
+        public JobPriority getPriority() {
+            return priority;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+
+        public long getEstimatedMillis() {
+            return estimatedMillis;
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        /**
+         * Temps passé dans la file : jusqu'au démarrage, ou jusqu'à maintenant s'il attend encore.
+         */
+        public long getWaitMillis() {
+            long end = started ? startedNanos : System.nanoTime();
+            return (end - submittedNanos) / 1_000_000;
+        }
+
+        @Override
+        public int compareTo(Job<?> other) {
+            int byKey = Long.compare(orderKey, other.orderKey);
+            return byKey != 0 ? byKey : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Compteurs de la file à un instant donné.
+     */
+    public static final class Stats {
+        private final int queuedInteractive;
+        private final int queuedBatch;
+        private final int running;
+        private final long reservedBytes;
+        private final long memoryBudgetBytes;
+        private final long pendingWorkMillis;
+        private final long admittedCount;
+        private final long rejectedCount;
+        private final long completedCount;
+        private final long averageWaitMillis;
+        private final long maxWaitMillis;
+
+        Stats(int queuedInteractive, int queuedBatch, int running, long reservedBytes, long memoryBudgetBytes,
+              long pendingWorkMillis, long admittedCount, long rejectedCount, long completedCount,
+              long averageWaitMillis, long maxWaitMillis) {
+            this.queuedInteractive = queuedInteractive;
+            this.queuedBatch = queuedBatch;
+            this.running = running;
+            this.reservedBytes = reservedBytes;
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            this.pendingWorkMillis = pendingWorkMillis;
+            this.admittedCount = admittedCount;
+            this.rejectedCount = rejectedCount;
+            this.completedCount = completedCount;
+            this.averageWaitMillis = averageWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        public int getQueueDepth() { return queuedInteractive + queuedBatch; }
+        public int getQueuedInteractive() { return queuedInteractive; }
+        public int getQueuedBatch() { return queuedBatch; }
+        public int getRunning() { return running; }
+        /** Mémoire estimée des jobs en attente ou en cours. */
+        public long getReservedBytes() { return reservedBytes; }
+        public long getMemoryBudgetBytes() { return memoryBudgetBytes; }
+        /** Durée de calcul estimée des jobs en attente ou en cours. */
+        public long getPendingWorkMillis() { return pendingWorkMillis; }
+        public long getAdmittedCount() { return admittedCount; }
+        public long getRejectedCount() { return rejectedCount; }
+        public long getCompletedCount() { return completedCount; }
+        /** Attente moyenne dans la file des jobs démarrés. */
+        public long getAverageWaitMillis() { return averageWaitMillis; }
+        public long getMaxWaitMillis() { return maxWaitMillis; }
+
+        @Override
+        public String toString() {
+            return "file " + getQueueDepth() + " (" + queuedInteractive + " interactifs, " + queuedBatch +
+                    " batch), " + running + " en cours, " + reservedBytes / 1024 + "/" + memoryBudgetBytes / 1024 +
+                    " Kio réservés, " + admittedCount + " admis, " + rejectedCount + " refusés, attente moyenne " +
+                    averageWaitMillis + " ms (max " + maxWaitMillis + " ms)";
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.covoiturage.services;
+
+import com.covoiturage.services.OptimizationService.JobStatus;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Forme compacte d'un {@link JobStatus} terminé : champs écrits un à un puis compressés, les
+ * identifiants des routes se répétant d'un point à l'autre. Utilisée par {@link JobStore}
+ * pour garder hors du tas les résultats qui n'y tiennent plus.
+ */
+final class JobStatusCodec {
+
+    private static final int FORMAT_MAGIC = 0x4A535431; // "JST1"
+    /** Au-delà, une chaîne (message d'erreur) est tronquée : {@code writeUTF} est limité à 64 Kio. */
+    private static final int MAX_STRING_CHARS = 16_384;
+
+    private JobStatusCodec() {}
+
+    static byte[] encode(JobStatus status) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(FORMAT_MAGIC);
+            writeString(out, status.jobId);
+            writeString(out, status.status);
+            writeString(out, status.priority == null ? null : status.priority.name());
+            out.writeLong(status.queueWaitMillis);
+            out.writeLong(status.estimatedMemoryBytes);
+            writeString(out, status.message);
+            out.writeBoolean(status.result != null);
+            if (status.result != null) {
+                out.writeInt(status.result.size());
+                for (Map.Entry<String, List<String>> route : status.result.entrySet()) {
+                    writeString(out, route.getKey());
+                    writeList(out, route.getValue());
+                }
+            }
+            out.writeBoolean(status.conflicts != null);
+            if (status.conflicts != null) {
+                writeList(out, status.conflicts);
+            }
+            out.writeLong(status.matrixBuildMillis);
+            out.writeLong(status.matrixMemoryBytes);
+            out.writeBoolean(status.routeOptimizationMillis != null);
+            if (status.routeOptimizationMillis != null) {
+                out.writeInt(status.routeOptimizationMillis.size());
+                for (Map.Entry<String, Long> route : status.routeOptimizationMillis.entrySet()) {
+                    writeString(out, route.getKey());
+                    out.writeLong(route.getValue());
+                }
+            }
+            out.writeLong(status.graphBuildMillis);
+            out.writeInt(status.graphEdgeCount);
+            out.writeBoolean(status.graphConnected);
+            out.writeDouble(status.graphError);
+            out.writeLong(status.interRouteMillis);
+            out.writeInt(status.interRouteMoves);
+            out.writeDouble(status.interRouteGain);
+            writeString(out, status.strategy);
+            out.writeLong(status.strategyMillis);
+            out.writeLong(status.roadNetworkVersion);
+            out.writeBoolean(status.deadlineReached);
+            writeString(out, status.phase == null ? null : status.phase.name());
+            out.writeInt(status.iterations);
+            out.writeDouble(status.bestCost);
+            out.writeInt(status.assignedUsers);
+        } catch (IOException e) {
+            // Flux en mémoire : aucune erreur d'entrée-sortie possible
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static JobStatus decode(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(input));
+        if (in.readInt() != FORMAT_MAGIC) {
+            throw new IOException("Format de résultat de job inconnu");
+        }
+        JobStatus status = new JobStatus();
+        status.jobId = readString(in);
+        status.status = readString(in);
+        String priority = readString(in);
+        status.priority = priority == null ? null : JobPriority.valueOf(priority);
+        status.queueWaitMillis = in.readLong();
+        status.estimatedMemoryBytes = in.readLong();
+        status.message = readString(in);
+        if (in.readBoolean()) {
+            int size = in.readInt();
+            status.result = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String depot = readString(in);
+                status.result.put(depot, readList(in));
+            }
+        }
+        if (in.readBoolean()) {
+            status.conflicts = readList(in);
+        }
+        status.matrixBuildMillis = in.readLong();
+        status.matrixMemoryBytes = in.readLong();
+        if (in.readBoolean()) {
+            int size = in.readInt();
+            status.routeOptimizationMillis = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                String depot = readString(in);
+                status.routeOptimizationMillis.put(depot, in.readLong());
+            }
+        }
+        status.graphBuildMillis = in.readLong();
+        status.graphEdgeCount = in.readInt();
+        status.graphConnected = in.readBoolean();
+        status.graphError = in.readDouble();
+        status.interRouteMillis = in.readLong();
+        status.interRouteMoves = in.readInt();
+        status.interRouteGain = in.readDouble();
+        status.strategy = readString(in);
+        status.strategyMillis = in.readLong();
+        status.roadNetworkVersion = in.readLong();
+        status.deadlineReached = in.readBoolean();
+        String phase = readString(in);
+        status.phase = phase == null ? null : JobPhase.valueOf(phase);
+        status.iterations = in.readInt();
+        status.bestCost = in.readDouble();
+        status.assignedUsers = in.readInt();
+        return status;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value.length() > MAX_STRING_CHARS ? value.substring(0, MAX_STRING_CHARS) : value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,416 @@
+package com.covoiturage.services;
+
+import com.covoiturage.services.OptimizationService.JobStatus;
+import com.covoiturage.utils.MemoryEstimates;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Résultats des jobs terminés, gardés {@code ttlMillis} ms après leur fin puis oubliés. Leur
+ * empreinte sur le tas, estimée à l'entrée, est bornée par {@code maxResidentBytes} : au-delà,
+ * les résultats les moins récemment lus sont compactés ({@link JobStatusCodec}) dans des
+ * tampons hors du tas, eux-mêmes bornés par {@code maxSpilledBytes} ; au-delà, les plus
+ * anciens sont oubliés avant leur expiration. Un résultat compacté est décodé à chaque lecture.
+ * <p>
+ * Les entrées expirées sont retirées lors des accès suivants ; la compaction a lieu hors du
+ * verrou, un résultat restant lisible pendant qu'elle s'effectue.
+ */
+public final class JobStore {
+
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60_000;
+
+    private final Object lock = new Object();
+    private volatile long ttlMillis;
+    private volatile long maxResidentBytes;
+    private volatile long maxSpilledBytes;
+
+    // Protégés par lock
+    /** Toutes les entrées, dans l'ordre de fin des jobs, qui est aussi celui d'expiration. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    /** Entrées sur le tas, de la moins récemment lue à la plus récente. */
+    private final LinkedHashMap<String, Entry> resident = new LinkedHashMap<>(16, 0.75f, true);
+    /** Entrées compactées, dans l'ordre de compaction. */
+    private final LinkedHashMap<String, Entry> spilled = new LinkedHashMap<>();
+    private long residentBytes;
+    private long spilledBytes;
+    private long storedCount;
+    private long spillCount;
+    private long spillReadCount;
+    private long expiredCount;
+    private long droppedCount;
+    private long removedCount;
+
+    /**
+     * @param ttlMillis durée de conservation d'un résultat après la fin de son job
+     * @param maxResidentBytes empreinte estimée maximale des résultats gardés sur le tas
+     * @param maxSpilledBytes taille maximale des résultats compactés hors du tas ; 0 pour oublier
+     *                        directement ceux qui ne tiennent plus sur le tas
+     */
+    public JobStore(long ttlMillis, long maxResidentBytes, long maxSpilledBytes) {
+        setTtlMillis(ttlMillis);
+        setMaxResidentBytes(maxResidentBytes);
+        setMaxSpilledBytes(maxSpilledBytes);
+    }
+
+    /**
+     * Conserve le résultat d'un job terminé, avec son dernier instantané de progression ;
+     * remplace un résultat déjà conservé pour le même job.
+     */
+    public void put(JobStatus status, JobProgress finalProgress) {
+        Objects.requireNonNull(status, "status");
+        Objects.requireNonNull(status.jobId, "status.jobId");
+        Objects.requireNonNull(finalProgress, "finalProgress");
+        Entry entry = new Entry(status.jobId, status, finalProgress.withRoutes(Collections.emptyMap()),
+                estimateBytes(status), System.nanoTime());
+        List<Entry> victims;
+        synchronized (lock) {
+            expire(entry.storedAt);
+            discard(entries.remove(entry.jobId));
+            entries.put(entry.jobId, entry);
+            resident.put(entry.jobId, entry);
+            residentBytes += entry.heapBytes;
+            storedCount++;
+            victims = selectVictims();
+        }
+        spill(victims);
+    }
+
+    /**
+     * @return le résultat du job, décodé s'il a été compacté ; {@code null} s'il est inconnu ou expiré
+     */
+    public JobStatus get(String jobId) {
+        ByteBuffer buffer;
+        synchronized (lock) {
+            expire(System.nanoTime());
+            Entry entry = entries.get(jobId);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.status != null) {
+                resident.get(jobId);
+                return entry.status;
+            }
+            buffer = entry.buffer;
+            spillReadCount++;
+        }
+        return decode(buffer);
+    }
+
+    /**
+     * Dernier instantané de progression du job, avec son résultat ; {@code null} s'il est
+     * inconnu ou expiré.
+     */
+    public JobProgress getProgress(String jobId) {
+        JobProgress summary;
+        synchronized (lock) {
+            expire(System.nanoTime());
+            Entry entry = entries.get(jobId);
+            if (entry == null) {
+                return null;
+            }
+            summary = entry.summary;
+        }
+        JobStatus status = get(jobId);
+        return status == null || status.result == null ? summary
+                : summary.withRoutes(Collections.unmodifiableMap(status.result));
+    }
+
+    public boolean contains(String jobId) {
+        synchronized (lock) {
+            expire(System.nanoTime());
+            return entries.containsKey(jobId);
+        }
+    }
+
+    /**
+     * Oublie le résultat d'un job, par exemple une fois qu'il a été récupéré.
+     *
+     * @return {@code false} si le job est inconnu ou déjà expiré
+     */
+    public boolean remove(String jobId) {
+        synchronized (lock) {
+            Entry entry = entries.remove(jobId);
+            if (entry == null) {
+                return false;
+            }
+            discard(entry);
+            removedCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Retire dès maintenant les résultats expirés.
+     *
+     * @return le nombre de résultats retirés
+     */
+    public int expire() {
+        synchronized (lock) {
+            return expire(System.nanoTime());
+        }
+    }
+
+    private int expire(long now) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        int count = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.storedAt < ttlNanos) {
+                break;
+            }
+            iterator.remove();
+            discard(entry);
+            expiredCount++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Retire l'entrée des tables secondaires et libère sa part des budgets.
+     */
+    private void discard(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (resident.remove(entry.jobId) != null) {
+            residentBytes -= entry.heapBytes;
+        } else if (entry.spilling) {
+            // Compaction en cours, déjà décomptée du tas
+            entry.spilling = false;
+        } else if (spilled.remove(entry.jobId) != null) {
+            spilledBytes -= entry.buffer.capacity();
+        }
+    }
+
+    /**
+     * Entrées à sortir du tas, des moins récemment lues aux plus récentes, décomptées dès
+     * maintenant du budget ; sans espace de compaction, elles sont oubliées tout de suite.
+     */
+    private List<Entry> selectVictims() {
+        List<Entry> victims = new ArrayList<>();
+        Iterator<Entry> iterator = resident.values().iterator();
+        while (residentBytes > maxResidentBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            residentBytes -= entry.heapBytes;
+            if (maxSpilledBytes == 0) {
+                entries.remove(entry.jobId);
+                droppedCount++;
+            } else {
+                entry.spilling = true;
+                victims.add(entry);
+            }
+        }
+        return victims;
+    }
+
+    private void spill(List<Entry> victims) {
+        for (Entry entry : victims) {
+            byte[] bytes = JobStatusCodec.encode(entry.status);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes).flip();
+            synchronized (lock) {
+                if (!entry.spilling) {
+                    // Expiré ou retiré pendant la compaction
+                    continue;
+                }
+                entry.spilling = false;
+                entry.buffer = buffer;
+                entry.status = null;
+                spilled.put(entry.jobId, entry);
+                spilledBytes += bytes.length;
+                spillCount++;
+                Iterator<Entry> oldest = spilled.values().iterator();
+                while (spilledBytes > maxSpilledBytes && oldest.hasNext()) {
+                    Entry dropped = oldest.next();
+                    oldest.remove();
+                    spilledBytes -= dropped.buffer.capacity();
+                    entries.remove(dropped.jobId);
+                    droppedCount++;
+                }
+            }
+        }
+    }
+
+    private static JobStatus decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        try {
+            return JobStatusCodec.decode(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Résultat de job compacté illisible", e);
+        }
+    }
+
+    /**
+     * Empreinte sur le tas d'un résultat : champs, routes et identifiants de leurs points,
+     * conflits et durées par route.
+     */
+    static long estimateBytes(JobStatus status) {
+        long bytes = MemoryEstimates.objectBytes(12, 120) + stringBytes(status.jobId) + stringBytes(status.status)
+                + stringBytes(status.message) + stringBytes(status.strategy);
+        if (status.result != null) {
+            bytes += MemoryEstimates.hashMapBytes(status.result.size(), 0);
+            for (List<String> route : status.result.values()) {
+                bytes += listBytes(route);
+            }
+        }
+        if (status.conflicts != null) {
+            bytes += listBytes(status.conflicts);
+        }
+        if (status.routeOptimizationMillis != null) {
+            bytes += MemoryEstimates.hashMapBytes(status.routeOptimizationMillis.size(), MemoryEstimates.DOUBLE_BYTES);
+        }
+        return bytes;
+    }
+
+    private static long listBytes(List<String> values) {
+        long bytes = MemoryEstimates.arrayListBytes(values.size());
+        for (String value : values) {
+            bytes += stringBytes(value);
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : MemoryEstimates.stringBytes(value.length());
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("La durée de conservation doit être positive : " + ttlMillis);
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    public long getMaxResidentBytes() {
+        return maxResidentBytes;
+    }
+
+    /**
+     * Le nouveau budget s'applique au prochain résultat conservé.
+     */
+    public void setMaxResidentBytes(long maxResidentBytes) {
+        if (maxResidentBytes < 0) {
+            throw new IllegalArgumentException("Le budget mémoire ne peut pas être négatif : " + maxResidentBytes);
+        }
+        this.maxResidentBytes = maxResidentBytes;
+    }
+
+    public long getMaxSpilledBytes() {
+        return maxSpilledBytes;
+    }
+
+    public void setMaxSpilledBytes(long maxSpilledBytes) {
+        if (maxSpilledBytes < 0) {
+            throw new IllegalArgumentException("Le budget hors du tas ne peut pas être négatif : " + maxSpilledBytes);
+        }
+        this.maxSpilledBytes = maxSpilledBytes;
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            expire(System.nanoTime());
+            return new Stats(entries.size(), resident.size(), residentBytes, maxResidentBytes, spilled.size(),
+                    spilledBytes, maxSpilledBytes, storedCount, spillCount, spillReadCount, expiredCount,
+                    droppedCount, removedCount);
+        }
+    }
+
+    private static final class Entry {
+        final String jobId;
+        final JobProgress summary;
+        final long heapBytes;
+        final long storedAt;
+        /** Résultat sur le tas, {@code null} une fois compacté. */
+        JobStatus status;
+        ByteBuffer buffer;
+        /** Sorti du tas, en cours de compaction hors du verrou. */
+        boolean spilling;
+
+        Entry(String jobId, JobStatus status, JobProgress summary, long heapBytes, long storedAt) {
+            this.jobId = jobId;
+            this.status = status;
+            this.summary = summary;
+            this.heapBytes = heapBytes;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * Occupation et compteurs cumulés du magasin, à un instant donné.
+     */
+    public static final class Stats {
+        private final int entryCount;
+        private final int residentCount;
+        private final long residentBytes;
+        private final long maxResidentBytes;
+        private final int spilledCount;
+        private final long spilledBytes;
+        private final long maxSpilledBytes;
+        private final long storedCount;
+        private final long spillCount;
+        private final long spillReadCount;
+        private final long expiredCount;
+        private final long droppedCount;
+        private final long removedCount;
+
+        Stats(int entryCount, int residentCount, long residentBytes, long maxResidentBytes, int spilledCount,
+              long spilledBytes, long maxSpilledBytes, long storedCount, long spillCount, long spillReadCount,
+              long expiredCount, long droppedCount, long removedCount) {
+            this.entryCount = entryCount;
+            this.residentCount = residentCount;
+            this.residentBytes = residentBytes;
+            this.maxResidentBytes = maxResidentBytes;
+            this.spilledCount = spilledCount;
+            this.spilledBytes = spilledBytes;
+            this.maxSpilledBytes = maxSpilledBytes;
+            this.storedCount = storedCount;
+            this.spillCount = spillCount;
+            this.spillReadCount = spillReadCount;
+            this.expiredCount = expiredCount;
+            this.droppedCount = droppedCount;
+            this.removedCount = removedCount;
+        }
+
+        /** Résultats conservés, sur le tas, compactés ou en cours de compaction. */
+        public int getEntryCount() { return entryCount; }
+        public int getResidentCount() { return residentCount; }
+        /** Empreinte estimée des résultats gardés sur le tas. */
+        public long getResidentBytes() { return residentBytes; }
+        public long getMaxResidentBytes() { return maxResidentBytes; }
+        public int getSpilledCount() { return spilledCount; }
+        /** Taille des résultats compactés hors du tas. */
+        public long getSpilledBytes() { return spilledBytes; }
+        public long getMaxSpilledBytes() { return maxSpilledBytes; }
+        public long getStoredCount() { return storedCount; }
+        /** Résultats sortis du tas par compaction. */
+        public long getSpillCount() { return spillCount; }
+        /** Lectures de résultats compactés, chacune décodée. */
+        public long getSpillReadCount() { return spillReadCount; }
+        public long getExpiredCount() { return expiredCount; }
+        /** Résultats oubliés avant leur expiration, faute de place hors du tas. */
+        public long getDroppedCount() { return droppedCount; }
+        public long getRemovedCount() { return removedCount; }
+
+        @Override
+        public String toString() {
+            return entryCount + " résultats (" + residentCount + " sur le tas, " + residentBytes / 1024 + "/" +
+                    maxResidentBytes / 1024 + " Kio ; " + spilledCount + " compactés, " + spilledBytes / 1024 + "/" +
+                    maxSpilledBytes / 1024 + " Kio), " + storedCount + " conservés, " + spillCount + " compactés, " +
+                    spillReadCount + " lectures compactées, " + expiredCount + " expirés, " + droppedCount +
+                    " oubliés avant expiration, " + removedCount + " retirés";
+        }
+    }
+}
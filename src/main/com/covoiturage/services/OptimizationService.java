@@ -1,15 +1,30 @@
 package com.covoiturage.services;
 
-import com.covoiturage.algorithms.GestionnaireOptimisation;
+import com.covoiturage.algorithms.AdaptiveLargeNeighbourhoodSearch;
+import com.covoiturage.algorithms.CancellationToken;
 import com.covoiturage.algorithms.ConflictDetector;
 import com.covoiturage.algorithms.CalculDistance;
+import com.covoiturage.algorithms.ContractionHierarchy;
+import com.covoiturage.algorithms.DistanceMatrix;
+import com.covoiturage.algorithms.HeldKarp;
+import com.covoiturage.algorithms.InterRouteSearch;
+import com.covoiturage.algorithms.KNearestGraph;
+import com.covoiturage.algorithms.OptimizationStrategy;
+import com.covoiturage.algorithms.OptimizationStrategyFactory;
+import com.covoiturage.algorithms.RegretInsertion;
+import com.covoiturage.algorithms.RoadNetwork;
+import com.covoiturage.algorithms.SearchMode;
 import com.covoiturage.models.Graph;
 import com.covoiturage.models.Noeud;
 import com.covoiturage.models.User;
 import com.covoiturage.models.Vehicle;
+import com.covoiturage.utils.MemoryEstimates;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 import static com.covoiturage.algorithms.CalculDistance.calculateDistance;
 
@@ -17,75 +32,655 @@ public class OptimizationService {
 
     public static class JobStatus {
         public String jobId;
-        public String status; // PENDING, RUNNING, DONE, ERROR
+        public String status; // PENDING, RUNNING, DONE, CANCELLED, ERROR
+        public JobPriority priority;
+        /** Temps passé dans la file avant le démarrage du job. */
+        public long queueWaitMillis;
+        /** Mémoire estimée à l'admission (matrice et graphe du job). */
+        public long estimatedMemoryBytes;
         public String message;
         public Map<String, List<String>> result;
         public List<String> conflicts;
+        public long matrixBuildMillis;
+        public long matrixMemoryBytes;
+        public Map<String, Long> routeOptimizationMillis;
+        /** Construction du graphe du job, ou rattachement de ses points au réseau résident. */
+        public long graphBuildMillis;
+        public int graphEdgeCount;
+        public boolean graphConnected;
+        /**
+         * Erreur relative du graphe creux par rapport au graphe complet, estimée sur un échantillon de
+         * sources (voir {@link KNearestGraph#estimateError()}) ; 0 si complet.
+         */
+        public double graphError;
+        public long interRouteMillis;
+        public int interRouteMoves;
+        /** Kilomètres gagnés par les échanges entre véhicules. */
+        public double interRouteGain;
+        /** Stratégie d'optimisation choisie pour le job. */
+        public String strategy;
+        public long strategyMillis;
+        /** Version du réseau résident utilisé (0 : graphe construit pour le job). */
+        public long roadNetworkVersion;
+        /** Vrai si l'échéance a interrompu l'optimisation : le résultat est la meilleure solution trouvée. */
+        public boolean deadlineReached;
+        /** Étape en cours ; pendant l'optimisation, {@code result} est la meilleure solution connue. */
+        public JobPhase phase;
+        public int iterations;
+        /** Distance totale (km) de {@code result}. */
+        public double bestCost;
+        public int assignedUsers;
     }
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(
-            Math.max(2, Runtime.getRuntime().availableProcessors()/2)
+    /** Job soumis : son futur, le jeton qui permet de l'interrompre et sa progression. */
+    private static final class SubmittedJob {
+        final JobScheduler.Job<JobStatus> future;
+        final CancellationToken token;
+        final JobProgressTracker progress;
+
+        SubmittedJob(JobScheduler.Job<JobStatus> future, CancellationToken token, JobProgressTracker progress) {
+            this.future = future;
+            this.token = token;
+            this.progress = progress;
+        }
+    }
+
+    /** En deçà de ce nombre de nœuds, le graphe d'un job reste complet. */
+    private static final int COMPLETE_GRAPH_MAX_NODES = 300;
+    private static final double DEFAULT_MAX_GRAPH_ERROR = 0.05;
+    private static final long DEFAULT_INTER_ROUTE_BUDGET_MILLIS = 500;
+    /** Jusqu'à ce nombre d'utilisateurs, un job est interactif par défaut. */
+    private static final int INTERACTIVE_MAX_USERS = 100;
+    private static final int DEFAULT_MAX_QUEUED_JOBS = 64;
+    /** Estimations de coût utilisées à l'admission. */
+    private static final long GRAPH_EDGE_BYTES = MemoryEstimates.objectBytes(2, 2 * Double.BYTES)
+            + MemoryEstimates.REFERENCE_BYTES;
+    private static final long MATRIX_NANOS_PER_CELL = 2_000;
+    private static final long ROUTE_MILLIS_PER_USER = 2;
+    /** Flux déjà terminé, rendu pour les jobs finis : un abonné reçoit aussitôt {@code onComplete}. */
+    private static final SubmissionPublisher<JobProgress> FINISHED_PROGRESS = new SubmissionPublisher<>();
+
+    static {
+        FINISHED_PROGRESS.close();
+    }
+
+    /** File bornée des jobs, devant un pool de taille fixe. */
+    private final JobScheduler scheduler = new JobScheduler(
+            Math.max(2, Runtime.getRuntime().availableProcessors()/2),
+            DEFAULT_MAX_QUEUED_JOBS,
+            Runtime.getRuntime().maxMemory() / 4
+    );
+    /** Pool partagé par les jobs pour optimiser leurs routes en parallèle. */
+    private final ForkJoinPool routePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    /** Jobs en attente ou en cours ; à leur fin, leur résultat passe dans {@link #jobStore}. */
+    private final Map<String, SubmittedJob> jobs = new ConcurrentHashMap<>();
+    private final JobStore jobStore = new JobStore(
+            JobStore.DEFAULT_TTL_MILLIS,
+            Runtime.getRuntime().maxMemory() / 16,
+            Runtime.getRuntime().maxMemory() / 16
     );
-    private final Map<String, Future<JobStatus>> jobs = new ConcurrentHashMap<>();
+    private volatile SearchMode searchMode = SearchMode.DIJKSTRA;
+    private volatile ContractionHierarchy roadHierarchy;
+    /** Instantané publié du réseau résident, remplacé en bloc à chaque mise à jour. */
+    private volatile RoadNetwork roadNetwork;
+    private final Object roadNetworkLock = new Object();
+    private volatile int graphNeighbours = KNearestGraph.DEFAULT_NEIGHBOURS;
+    private volatile double maxGraphError = DEFAULT_MAX_GRAPH_ERROR;
+    private volatile int insertionRegret = RegretInsertion.DEFAULT_REGRET;
+    private volatile long interRouteBudgetMillis = DEFAULT_INTER_ROUTE_BUDGET_MILLIS;
+    private volatile int exactRouteMaxStops = HeldKarp.DEFAULT_MAX_STOPS;
+    private volatile long optimizationBudgetMillis = AdaptiveLargeNeighbourhoodSearch.DEFAULT_TIME_BUDGET_MILLIS;
+    private volatile long jobTimeoutMillis;
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    /**
+     * Algorithme de plus court chemin utilisé pour la matrice des distances des prochains jobs.
+     */
+    public void setSearchMode(SearchMode searchMode) {
+        this.searchMode = Objects.requireNonNull(searchMode, "searchMode");
+    }
+
+    public ContractionHierarchy getRoadHierarchy() {
+        return roadHierarchy;
+    }
+
+    /**
+     * Hiérarchie de contraction du réseau routier, utilisée en priorité sur le réseau résident
+     * pour la matrice des prochains jobs : leurs points y sont rattachés à leurs nœuds les plus
+     * proches ; {@code null} pour la désactiver.
+     */
+    public void setRoadHierarchy(ContractionHierarchy roadHierarchy) {
+        this.roadHierarchy = roadHierarchy;
+    }
+
+    /**
+     * Charge au démarrage une hiérarchie précalculée par {@link ContractionHierarchy#save}.
+     */
+    public void loadRoadHierarchy(InputStream input) throws IOException {
+        setRoadHierarchy(ContractionHierarchy.load(input));
+    }
+
+    public RoadNetwork getRoadNetwork() {
+        return roadNetwork;
+    }
+
+    /**
+     * Publie le réseau routier résident, partagé en lecture seule par les prochains jobs qui y
+     * rattachent leurs points au lieu de construire leur propre graphe ; {@code null} pour
+     * revenir au graphe construit par job. Le graphe est copié : le modifier ensuite n'a
+     * aucun effet.
+     */
+    public void setRoadNetwork(Graph graph) {
+        synchronized (roadNetworkLock) {
+            RoadNetwork current = roadNetwork;
+            roadNetwork = graph == null ? null
+                    : current == null ? RoadNetwork.of(graph) : current.withGraph(graph);
+        }
+    }
+
+    /**
+     * Applique {@code changes} à une copie du réseau résident puis publie celle-ci ; les jobs
+     * en cours terminent sur l'instantané qu'ils ont lu. Les mises à jour sont sérialisées.
+     *
+     * @return le nouvel instantané
+     */
+    public RoadNetwork updateRoadNetwork(Consumer<Graph> changes) {
+        Objects.requireNonNull(changes, "changes");
+        synchronized (roadNetworkLock) {
+            RoadNetwork current = roadNetwork;
+            if (current == null) {
+                throw new IllegalStateException("Aucun réseau routier résident n'est publié.");
+            }
+            RoadNetwork updated = current.withChanges(changes);
+            roadNetwork = updated;
+            return updated;
+        }
+    }
+
+    public int getGraphNeighbours() {
+        return graphNeighbours;
+    }
+
+    /**
+     * Nombre de plus proches voisins reliés à chaque nœud du graphe des grands jobs ;
+     * 0 pour toujours utiliser le graphe complet.
+     */
+    public void setGraphNeighbours(int graphNeighbours) {
+        if (graphNeighbours < 0) {
+            throw new IllegalArgumentException("Le nombre de voisins ne peut pas être négatif : " + graphNeighbours);
+        }
+        this.graphNeighbours = graphNeighbours;
+    }
+
+    public double getMaxGraphError() {
+        return maxGraphError;
+    }
+
+    /**
+     * Erreur relative tolérée sur les distances du graphe creux par rapport au graphe complet
+     * (0.05 pour 5 %, la valeur par défaut) ; le nombre de voisins est doublé tant qu'elle est
+     * dépassée.
+     */
+    public void setMaxGraphError(double maxGraphError) {
+        if (!(maxGraphError >= 0)) {
+            throw new IllegalArgumentException("L'erreur maximale doit être positive : " + maxGraphError);
+        }
+        this.maxGraphError = maxGraphError;
+    }
+
+    public int getInsertionRegret() {
+        return insertionRegret;
+    }
+
+    /**
+     * Regret de l'insertion qui répartit les utilisateurs entre les véhicules ; 0 pour
+     * l'affectation gloutonne dans l'ordre des utilisateurs.
+     */
+    public void setInsertionRegret(int insertionRegret) {
+        if (insertionRegret < 0) {
+            throw new IllegalArgumentException("Le regret ne peut pas être négatif : " + insertionRegret);
+        }
+        this.insertionRegret = insertionRegret;
+    }
+
+    public long getInterRouteBudgetMillis() {
+        return interRouteBudgetMillis;
+    }
+
+    /**
+     * Durée maximale de la recherche locale entre véhicules qui suit l'optimisation des routes ;
+     * 0 pour la désactiver.
+     */
+    public void setInterRouteBudgetMillis(long interRouteBudgetMillis) {
+        if (interRouteBudgetMillis < 0) {
+            throw new IllegalArgumentException("Le budget de temps ne peut pas être négatif : " + interRouteBudgetMillis);
+        }
+        this.interRouteBudgetMillis = interRouteBudgetMillis;
+    }
+
+    public int getExactRouteMaxStops() {
+        return exactRouteMaxStops;
+    }
+
+    /**
+     * Nombre de passagers jusqu'auquel l'ordre de passage d'une route est calculé de façon
+     * exacte (au plus {@value HeldKarp#MAX_STOPS}) ; au-delà, recuit simulé. 0 pour toujours
+     * utiliser le recuit.
+     */
+    public void setExactRouteMaxStops(int exactRouteMaxStops) {
+        if (exactRouteMaxStops < 0 || exactRouteMaxStops > HeldKarp.MAX_STOPS) {
+            throw new IllegalArgumentException("Le nombre d'arrêts de la résolution exacte doit être entre 0 et " +
+                    HeldKarp.MAX_STOPS + " : " + exactRouteMaxStops);
+        }
+        this.exactRouteMaxStops = exactRouteMaxStops;
+    }
+
+    public long getOptimizationBudgetMillis() {
+        return optimizationBudgetMillis;
+    }
+
+    /**
+     * Durée visée pour l'optimisation d'un grand job, confiée alors à la recherche adaptative à
+     * grand voisinage (voir {@link OptimizationStrategyFactory}) ; 0 pour toujours construire
+     * par insertion puis optimiser chaque route.
+     */
+    public void setOptimizationBudgetMillis(long optimizationBudgetMillis) {
+        if (optimizationBudgetMillis < 0) {
+            throw new IllegalArgumentException("Le budget de temps ne peut pas être négatif : " + optimizationBudgetMillis);
+        }
+        this.optimizationBudgetMillis = optimizationBudgetMillis;
+    }
+
+    public long getJobTimeoutMillis() {
+        return jobTimeoutMillis;
+    }
+
+    /**
+     * Échéance par défaut des jobs, comptée depuis leur soumission ; à l'échéance, un job rend
+     * la meilleure solution trouvée jusque-là. 0 (par défaut) pour ne fixer aucune échéance.
+     */
+    public void setJobTimeoutMillis(long jobTimeoutMillis) {
+        if (jobTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Le délai ne peut pas être négatif : " + jobTimeoutMillis);
+        }
+        this.jobTimeoutMillis = jobTimeoutMillis;
+    }
+
+    public int getMaxQueuedJobs() {
+        return scheduler.getMaxQueuedJobs();
+    }
+
+    /**
+     * Nombre maximal de jobs en attente ; au-delà, les soumissions sont refusées.
+     */
+    public void setMaxQueuedJobs(int maxQueuedJobs) {
+        scheduler.setMaxQueuedJobs(maxQueuedJobs);
+    }
+
+    public long getJobMemoryBudgetBytes() {
+        return scheduler.getMemoryBudgetBytes();
+    }
+
+    /**
+     * Mémoire estimée cumulée des jobs admis (matrices et graphes), un quart du tas par défaut.
+     */
+    public void setJobMemoryBudgetBytes(long jobMemoryBudgetBytes) {
+        scheduler.setMemoryBudgetBytes(jobMemoryBudgetBytes);
+    }
+
+    /**
+     * Profondeur de la file, jobs en cours, mémoire réservée et temps d'attente.
+     */
+    public JobScheduler.Stats getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
+    public long getJobResultTtlMillis() {
+        return jobStore.getTtlMillis();
+    }
+
+    /**
+     * Durée de conservation du résultat d'un job après sa fin, 10 minutes par défaut.
+     */
+    public void setJobResultTtlMillis(long jobResultTtlMillis) {
+        jobStore.setTtlMillis(jobResultTtlMillis);
+    }
+
+    public long getJobResultMemoryBytes() {
+        return jobStore.getMaxResidentBytes();
+    }
+
+    /**
+     * Empreinte estimée des résultats gardés sur le tas (un seizième du tas par défaut) ; au-delà,
+     * les moins récemment lus sont compactés hors du tas.
+     */
+    public void setJobResultMemoryBytes(long jobResultMemoryBytes) {
+        jobStore.setMaxResidentBytes(jobResultMemoryBytes);
+    }
 
+    public long getJobResultSpillBytes() {
+        return jobStore.getMaxSpilledBytes();
+    }
+
+    /**
+     * Taille des résultats compactés hors du tas (un seizième du tas par défaut) ; au-delà, les
+     * plus anciens sont oubliés avant leur expiration. 0 pour ne rien compacter.
+     */
+    public void setJobResultSpillBytes(long jobResultSpillBytes) {
+        jobStore.setMaxSpilledBytes(jobResultSpillBytes);
+    }
+
+    /**
+     * Occupation des résultats conservés, compactions, expirations et évictions.
+     */
+    public JobStore.Stats getJobStoreStats() {
+        return jobStore.getStats();
+    }
+
+    /**
+     * Soumet un job, interactif jusqu'à {@value #INTERACTIVE_MAX_USERS} utilisateurs, batch au-delà.
+     *
+     * @throws JobRejectedException si la file est pleine ou le budget mémoire atteint
+     */
     public String startOptimization(List<User> users, List<Vehicle> vehicles) {
+        return startOptimization(users, vehicles,
+                users.size() <= INTERACTIVE_MAX_USERS ? JobPriority.INTERACTIVE : JobPriority.BATCH);
+    }
+
+    /**
+     * @throws JobRejectedException si la file est pleine ou le budget mémoire atteint ; le
+     *                              délai conseillé avant de réessayer est joint
+     */
+    public String startOptimization(List<User> users, List<Vehicle> vehicles, JobPriority priority) {
+        return startOptimization(users, vehicles, priority, jobTimeoutMillis);
+    }
+
+    /**
+     * @param timeoutMillis échéance du job, comptée depuis maintenant ; 0 pour aucune
+     * @throws JobRejectedException si la file est pleine ou le budget mémoire atteint
+     */
+    public String startOptimization(List<User> users, List<Vehicle> vehicles, JobPriority priority,
+                                    long timeoutMillis) {
+        Objects.requireNonNull(priority, "priority");
+        CancellationToken token = CancellationToken.withTimeout(timeoutMillis);
         String jobId = UUID.randomUUID().toString();
+        SearchMode jobSearchMode = searchMode;
+        ContractionHierarchy jobHierarchy = roadHierarchy;
+        RoadNetwork jobNetwork = roadNetwork;
+        int jobGraphNeighbours = graphNeighbours;
+        double jobMaxGraphError = maxGraphError;
+        int jobRegret = insertionRegret;
+        long jobInterRouteBudget = interRouteBudgetMillis;
+        int jobExactMaxStops = exactRouteMaxStops;
+        long jobOptimizationBudget = optimizationBudgetMillis;
+        int jobPointCount = users.size() + vehicles.size();
+        long estimatedBytes = estimateJobBytes(jobPointCount, users.size() + jobPointCount,
+                jobHierarchy != null || jobNetwork != null, jobGraphNeighbours);
+        long estimatedMillis = Math.min(token.remainingMillis(), estimateJobMillis(users.size(), jobPointCount,
+                jobOptimizationBudget, jobInterRouteBudget));
+        JobProgressTracker progress = new JobProgressTracker(jobId, users.size());
+        long submittedAt = System.nanoTime();
 
         Callable<JobStatus> task = () -> {
             JobStatus js = new JobStatus();
             js.jobId = jobId;
             js.status = "RUNNING";
+            js.priority = priority;
+            js.queueWaitMillis = (System.nanoTime() - submittedAt) / 1_000_000;
+            js.estimatedMemoryBytes = estimatedBytes;
+            progress.start();
 
             try {
                 // 1. Convertir les données en format compatible avec vos algorithmes
-                Graph graph = createGraphFromUsersAndVehicles(users, vehicles);
                 List<String> userPoints = extractUserPoints(users);
                 List<String> vehicleDepots = extractVehicleDepots(vehicles, users);
                 Map<String, Integer> capacities = extractCapacities(vehicles);
 
-                // 2. Utiliser VOS algorithmes existants
+                // 2. Matrice des distances entre dépôts et points utilisateurs, calculée une fois
+                List<String> jobPoints = new ArrayList<>(vehicleDepots);
+                jobPoints.addAll(userPoints);
+                DistanceMatrix matrix;
+                if (jobHierarchy != null) {
+                    matrix = DistanceMatrix.build(attachToHierarchy(jobHierarchy, users, vehicles, jobPoints, js));
+                } else if (jobNetwork != null) {
+                    matrix = DistanceMatrix.build(attachToNetwork(jobNetwork, users, vehicles, jobPoints, js));
+                } else {
+                    Graph graph = connectGraph(createGraphFromUsersAndVehicles(users, vehicles),
+                            jobGraphNeighbours, jobMaxGraphError, js);
+                    matrix = DistanceMatrix.build(graph, jobPoints, jobSearchMode);
+                }
+                js.matrixBuildMillis = matrix.getBuildTimeMillis();
+                js.matrixMemoryBytes = matrix.estimateMemoryBytes();
+                if (token.isCancelled()) {
+                    js.status = "CANCELLED";
+                    js.message = "Optimisation annulée avant la construction des routes";
+                    return js;
+                }
+
+                // 3. Stratégie choisie selon la taille du job et le budget de temps
+                Map<String, Long> routeMillis = new LinkedHashMap<>();
+                OptimizationStrategy strategy = new OptimizationStrategyFactory(jobRegret, jobExactMaxStops, routePool)
+                        .create(userPoints.size(), vehicleDepots.size(), jobOptimizationBudget, routeMillis);
+                progress.enter(JobPhase.OPTIMIZATION);
+                long strategyStart = System.nanoTime();
                 Map<String, List<String>> optimizedRoutes =
-                        GestionnaireOptimisation.optimiserCovoiturage(
-                                graph, userPoints, vehicleDepots, capacities
-                        );
-
-                // 3. Détecter les conflits
+                        strategy.optimize(matrix, userPoints, vehicleDepots, capacities, token, progress);
+                js.strategy = strategy.getName();
+                js.strategyMillis = (System.nanoTime() - strategyStart) / 1_000_000;
+                js.routeOptimizationMillis = routeMillis;
+
+                // 4. Échanges entre véhicules, dans la limite du budget de temps
+                if (jobInterRouteBudget > 0 && !token.shouldStop()) {
+                    progress.solution(JobPhase.INTER_ROUTE, optimizedRoutes, routesDistance(matrix, optimizedRoutes));
+                    InterRouteSearch.Result interRoute =
+                            InterRouteSearch.improve(matrix, optimizedRoutes, capacities, jobInterRouteBudget, token);
+                    optimizedRoutes = new HashMap<>(interRoute.getRoutes());
+                    js.interRouteMillis = interRoute.getElapsedMillis();
+                    js.interRouteMoves = interRoute.getMoveCount();
+                    js.interRouteGain = interRoute.getInitialCost() - interRoute.getFinalCost();
+                }
+
+                // 5. Détecter les conflits
                 js.conflicts = ConflictDetector.detecterConflits(
-                        graph, optimizedRoutes, capacities
+                        matrix, optimizedRoutes, capacities
                 );
 
                 js.result = optimizedRoutes;
-                js.status = "DONE";
-                js.message = "Optimisation terminée avec " + optimizedRoutes.size() + " véhicules";
+                js.bestCost = routesDistance(matrix, optimizedRoutes);
+                for (List<String> route : optimizedRoutes.values()) {
+                    js.assignedUsers += route.size() - 1;
+                }
+                if (token.isCancelled()) {
+                    js.status = "CANCELLED";
+                    js.message = "Optimisation annulée, meilleure solution trouvée conservée";
+                } else if (token.isExpired()) {
+                    js.status = "DONE";
+                    js.deadlineReached = true;
+                    js.message = "Échéance atteinte, meilleure solution trouvée avec " + optimizedRoutes.size() +
+                            " véhicules";
+                } else {
+                    js.status = "DONE";
+                    js.message = "Optimisation terminée avec " + optimizedRoutes.size() + " véhicules";
+                }
 
             } catch (Exception e) {
                 js.status = "ERROR";
                 js.message = "Erreur lors de l'optimisation: " + e.getMessage();
                 e.printStackTrace();
+            } finally {
+                js.phase = JobPhase.FINISHED;
+                progress.finish(js.result, js.bestCost);
+                complete(js, progress.latest());
             }
             return js;
         };
 
-        Future<JobStatus> future = executor.submit(task);
-        jobs.put(jobId, future);
+        SubmittedJob submitted = new SubmittedJob(scheduler.submit(task, priority, estimatedBytes, estimatedMillis),
+                token, progress);
+        jobs.put(jobId, submitted);
+        if (jobStore.contains(jobId)) {
+            // Job terminé avant d'être enregistré
+            jobs.remove(jobId, submitted);
+        }
         return jobId;
     }
 
+    /**
+     * Conserve le résultat d'un job terminé puis le retire des jobs en cours, dans cet ordre :
+     * une lecture le trouve toujours dans l'un ou l'autre.
+     */
+    private void complete(JobStatus js, JobProgress finalProgress) {
+        jobStore.put(js, finalProgress);
+        jobs.remove(js.jobId);
+    }
+
+    /**
+     * Dernier instantané de la progression d'un job, lu sans attente.
+     *
+     * @throws IllegalArgumentException si le job est inconnu
+     */
+    public JobProgress getProgress(String jobId) {
+        SubmittedJob job = jobs.get(jobId);
+        if (job != null) {
+            return job.progress.latest();
+        }
+        JobProgress finished = jobStore.getProgress(jobId);
+        if (finished == null) {
+            throw new IllegalArgumentException("Job introuvable : " + jobId);
+        }
+        return finished;
+    }
+
+    /**
+     * Flux des instantanés de progression d'un job : chaque abonné reçoit ceux publiés après
+     * son abonnement, délivrés par le pool commun, puis {@code onComplete} à la fin du job.
+     * Un abonné lent perd des instantanés intermédiaires, chacun remplaçant le précédent.
+     *
+     * @throws IllegalArgumentException si le job est inconnu
+     */
+    public Flow.Publisher<JobProgress> getProgressPublisher(String jobId) {
+        SubmittedJob job = jobs.get(jobId);
+        if (job != null) {
+            return job.progress.publisher();
+        }
+        if (!jobStore.contains(jobId)) {
+            throw new IllegalArgumentException("Job introuvable : " + jobId);
+        }
+        return FINISHED_PROGRESS;
+    }
+
+    /**
+     * Distance totale (km) de routes ouvertes, dépôt en tête.
+     */
+    private static double routesDistance(DistanceMatrix matrix, Map<String, List<String>> routes) {
+        double total = 0.0;
+        for (List<String> route : routes.values()) {
+            for (int i = 1; i < route.size(); i++) {
+                total += matrix.distance(route.get(i - 1), route.get(i));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Annule un job : retiré de la file s'il n'a pas démarré, sinon interrompu au prochain point
+     * de contrôle de ses heuristiques, avec la meilleure solution trouvée.
+     *
+     * @return {@code false} si le job est inconnu ou déjà terminé
+     */
+    public boolean cancel(String jobId) {
+        SubmittedJob job = jobs.get(jobId);
+        if (job == null || job.future.isDone()) {
+            return false;
+        }
+        job.token.cancel();
+        if (job.future.cancelIfQueued()) {
+            job.progress.close();
+            complete(cancelledBeforeStart(jobId, job.future), job.progress.latest());
+        }
+        return true;
+    }
+
+    /**
+     * Oublie le résultat d'un job terminé, par exemple une fois récupéré, sans attendre son expiration.
+     *
+     * @return {@code false} si le job est inconnu, expiré ou pas encore terminé
+     */
+    public boolean removeJob(String jobId) {
+        return jobStore.remove(jobId);
+    }
+
+    /**
+     * Mémoire d'un job : matrice (distance et durée par paire de points) et, sans hiérarchie
+     * ni réseau résident, graphe construit pour le job (départ et arrivée de chaque
+     * utilisateur, dépôts).
+     */
+    private static long estimateJobBytes(int points, int graphNodes, boolean sharedGraph, int neighbours) {
+        long bytes = MemoryEstimates.arrayBytes(2L * points * points, Double.BYTES);
+        if (!sharedGraph) {
+            long edges = neighbours == 0 || graphNodes <= COMPLETE_GRAPH_MAX_NODES
+                    ? (long) graphNodes * (graphNodes - 1)
+                    : 2L * graphNodes * neighbours;
+            bytes += edges * GRAPH_EDGE_BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Durée de calcul d'un job : matrice, stratégie (le budget de temps, ou quelques
+     * millisecondes par utilisateur) et recherche entre véhicules.
+     */
+    private static long estimateJobMillis(int users, int points, long optimizationBudget, long interRouteBudget) {
+        long matrixMillis = (long) points * points * MATRIX_NANOS_PER_CELL / 1_000_000;
+        long strategyMillis = optimizationBudget > 0 && users >= OptimizationStrategyFactory.ALNS_MIN_USERS
+                ? optimizationBudget
+                : (long) users * ROUTE_MILLIS_PER_USER;
+        return matrixMillis + strategyMillis + interRouteBudget;
+    }
+
     public JobStatus getStatus(String jobId) {
-        Future<JobStatus> future = jobs.get(jobId);
-        if (future == null) {
+        SubmittedJob job = jobs.get(jobId);
+        if (job == null) {
+            JobStatus stored = jobStore.get(jobId);
+            if (stored != null) {
+                return stored;
+            }
             JobStatus js = new JobStatus();
             js.jobId = jobId;
             js.status = "ERROR";
-            js.message = "Job introuvable";
+            js.message = "Job introuvable ou expiré";
             return js;
         }
 
+        JobScheduler.Job<JobStatus> future = job.future;
+        if (future.isCancelled()) {
+            return cancelledBeforeStart(jobId, future);
+        }
+
         if (!future.isDone()) {
+            JobProgress latest = job.progress.latest();
             JobStatus js = new JobStatus();
             js.jobId = jobId;
-            js.status = "RUNNING";
-            js.message = "Optimisation en cours...";
+            js.priority = future.getPriority();
+            js.queueWaitMillis = future.getWaitMillis();
+            js.estimatedMemoryBytes = future.getEstimatedBytes();
+            js.phase = latest.getPhase();
+            js.iterations = latest.getIterations();
+            js.bestCost = latest.getBestCost();
+            js.assignedUsers = latest.getAssignedUsers();
+            if (latest.hasSolution()) {
+                js.result = latest.getRoutes();
+            }
+            if (future.isStarted()) {
+                js.status = "RUNNING";
+                js.message = "Optimisation en cours...";
+            } else {
+                js.status = "PENDING";
+                js.message = "En attente dans la file...";
+            }
             return js;
         }
 
@@ -106,9 +701,66 @@ public class OptimizationService {
         }
     }
 
+    private static JobStatus cancelledBeforeStart(String jobId, JobScheduler.Job<JobStatus> future) {
+        JobStatus js = new JobStatus();
+        js.jobId = jobId;
+        js.status = "CANCELLED";
+        js.phase = JobPhase.FINISHED;
+        js.priority = future.getPriority();
+        js.queueWaitMillis = future.getWaitMillis();
+        js.message = "Job annulé avant son démarrage";
+        return js;
+    }
+
     // Méthodes utilitaires pour la conversion des données
     private Graph createGraphFromUsersAndVehicles(List<User> users, List<Vehicle> vehicles) {
         Graph graph = new Graph();
+        for (Noeud node : createJobNodes(users, vehicles)) {
+            graph.addNode(node);
+        }
+        return graph;
+    }
+
+    /**
+     * Rattache les points du job au réseau résident, sans copier ni modifier celui-ci.
+     */
+    private RoadNetwork.Overlay attachToNetwork(RoadNetwork network, List<User> users, List<Vehicle> vehicles,
+                                                List<String> jobPoints, JobStatus js) {
+        RoadNetwork.Overlay overlay = network.attach(locateJobPoints(users, vehicles, jobPoints));
+        js.roadNetworkVersion = network.getVersion();
+        js.graphBuildMillis = overlay.getBuildTimeMillis();
+        js.graphEdgeCount = network.getEdgeCount() + overlay.getAccessLinkCount();
+        js.graphConnected = true;
+        return overlay;
+    }
+
+    /**
+     * Rattache les points du job aux nœuds les plus proches de la hiérarchie, sans la modifier.
+     */
+    private ContractionHierarchy.Overlay attachToHierarchy(ContractionHierarchy hierarchy, List<User> users,
+                                                           List<Vehicle> vehicles, List<String> jobPoints,
+                                                           JobStatus js) {
+        ContractionHierarchy.Overlay overlay = hierarchy.attach(locateJobPoints(users, vehicles, jobPoints));
+        js.graphBuildMillis = overlay.getBuildTimeMillis();
+        js.graphEdgeCount = hierarchy.getEdgeCount() + overlay.getAccessLinkCount();
+        js.graphConnected = true;
+        return overlay;
+    }
+
+    private List<Noeud> locateJobPoints(List<User> users, List<Vehicle> vehicles, List<String> jobPoints) {
+        Map<String, Noeud> nodesById = new HashMap<>();
+        for (Noeud node : createJobNodes(users, vehicles)) {
+            nodesById.put(node.getId(), node);
+        }
+        List<Noeud> points = new ArrayList<>(jobPoints.size());
+        for (String pointId : jobPoints) {
+            points.add(nodesById.get(pointId));
+        }
+        return points;
+    }
+
+    private List<Noeud> createJobNodes(List<User> users, List<Vehicle> vehicles) {
+        List<Noeud> nodes = new ArrayList<>();
 
         // Ajouter les dépôts des véhicules (utiliser l'adresse du conducteur comme dépôt)
         for (Vehicle vehicle : vehicles) {
@@ -118,7 +770,7 @@ public class OptimizationService {
                 String depotId = "depot_" + vehicle.getId();
                 // Pour la démo, on génère des coordonnées aléatoires basées sur l'ID
                 double[] coords = generateCoordinatesFromId(driver.getId());
-                graph.addNode(new Noeud(
+                nodes.add(new Noeud(
                         depotId,
                         coords[0], // latitude
                         coords[1], // longitude
@@ -131,7 +783,7 @@ public class OptimizationService {
         for (User user : users) {
             String startPointId = "user_start_" + user.getId();
             double[] startCoords = generateCoordinatesFromId(user.getId());
-            graph.addNode(new Noeud(
+            nodes.add(new Noeud(
                     startPointId,
                     startCoords[0] + 0.001, // Léger décalage
                     startCoords[1] + 0.001,
@@ -140,7 +792,7 @@ public class OptimizationService {
 
             String endPointId = "user_end_" + user.getId();
             double[] endCoords = generateCoordinatesFromId(user.getId() + 1000); // Différent du départ
-            graph.addNode(new Noeud(
+            nodes.add(new Noeud(
                     endPointId,
                     endCoords[0] - 0.001,
                     endCoords[1] - 0.001,
@@ -148,9 +800,29 @@ public class OptimizationService {
             ));
         }
 
-        // Calculer et ajouter les liaisons
-        addAllPossibleEdges(graph);
+        return nodes;
+    }
 
+    /**
+     * Relie les nœuds du job : graphe complet pour les petits jobs, graphe des plus proches
+     * voisins rendu connexe au-delà de {@value #COMPLETE_GRAPH_MAX_NODES} nœuds.
+     */
+    private Graph connectGraph(Graph nodes, int neighbours, double maxError, JobStatus js) {
+        long start = System.nanoTime();
+        Graph graph;
+        if (neighbours == 0 || nodes.getAllNodes().size() <= COMPLETE_GRAPH_MAX_NODES) {
+            addAllPossibleEdges(nodes);
+            graph = nodes;
+            js.graphConnected = true;
+            js.graphError = 0.0;
+        } else {
+            KNearestGraph sparse = KNearestGraph.build(nodes.getAllNodes(), neighbours, maxError);
+            graph = sparse.getGraph();
+            js.graphConnected = sparse.isConnected();
+            js.graphError = sparse.estimateError();
+        }
+        js.graphBuildMillis = (System.nanoTime() - start) / 1_000_000;
+        js.graphEdgeCount = graph.getEdgeCount();
         return graph;
     }
 
@@ -212,27 +884,45 @@ public class OptimizationService {
         return capacities;
     }
 
-    // Méthode pour nettoyer les jobs terminés
+    /**
+     * Retire dès maintenant les résultats expirés, et les jobs annulés dans la file par l'arrêt
+     * du service. Les résultats non expirés sont gardés : les jobs terminés passent d'eux-mêmes
+     * dans le magasin des résultats, borné en mémoire.
+     */
     public void cleanupCompletedJobs() {
-        jobs.entrySet().removeIf(entry -> {
-            try {
-                return entry.getValue().isDone();
-            } catch (Exception e) {
-                return true;
+        jobStore.expire();
+        jobs.entrySet().removeIf(entry -> entry.getValue().future.isCancelled());
+    }
+
+    private void cancelAll() {
+        for (SubmittedJob job : jobs.values()) {
+            job.token.cancel();
+        }
+    }
+
+    private void closeQueuedProgress() {
+        for (SubmittedJob job : jobs.values()) {
+            if (job.future.isCancelled()) {
+                job.progress.close();
             }
-        });
+        }
     }
 
     // Méthode pour arrêter le service proprement
     public void shutdown() {
-        executor.shutdown();
+        scheduler.shutdown();
         try {
-            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
+            if (!scheduler.awaitTermination(60, TimeUnit.SECONDS)) {
+                cancelAll();
+                scheduler.shutdownNow();
             }
         } catch (InterruptedException e) {
-            executor.shutdownNow();
+            cancelAll();
+            scheduler.shutdownNow();
             Thread.currentThread().interrupt();
+        } finally {
+            closeQueuedProgress();
+            routePool.shutdown();
         }
     }
 }
\ No newline at end of file
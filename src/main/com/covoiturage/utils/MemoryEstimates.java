@@ -0,0 +1,62 @@
+package com.covoiturage.utils;
+
+/**
+ * Estimations grossières de l'empreinte mémoire des structures courantes
+ * (JVM 64 bits, références compressées, alignement sur 8 octets).
+ */
+public final class MemoryEstimates {
+
+    public static final int OBJECT_HEADER_BYTES = 12;
+    public static final int ARRAY_HEADER_BYTES = 16;
+    public static final int REFERENCE_BYTES = 4;
+    /** Un {@code Integer} ou {@code Double} boxé. */
+    public static final int INTEGER_BYTES = 16;
+    public static final int DOUBLE_BYTES = 16;
+    /** Une entrée de {@code HashMap} (hash, clé, valeur, suivant). */
+    public static final int HASH_ENTRY_BYTES = 32;
+
+    private MemoryEstimates() {}
+
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public static long arrayBytes(long length, int elementBytes) {
+        return align(ARRAY_HEADER_BYTES + length * elementBytes);
+    }
+
+    public static long objectBytes(int referenceFields, int primitiveBytes) {
+        return align(OBJECT_HEADER_BYTES + (long) referenceFields * REFERENCE_BYTES + primitiveBytes);
+    }
+
+    /**
+     * Table de hachage dont les clés sont partagées ; {@code valueBytes} compte la valeur
+     * si elle est propre à l'entrée (0 sinon).
+     */
+    public static long hashMapBytes(long size, long valueBytes) {
+        long buckets = Long.highestOneBit(Math.max(1, size * 4 / 3)) * 2;
+        return objectBytes(6, 16) + arrayBytes(buckets, REFERENCE_BYTES)
+                + size * (HASH_ENTRY_BYTES + valueBytes);
+    }
+
+    public static long arrayListBytes(long size) {
+        return objectBytes(1, 8) + arrayBytes(Math.max(size, 10), REFERENCE_BYTES);
+    }
+
+    /**
+     * Chaîne de caractères latins (un octet par caractère, chaînes compactes).
+     */
+    public static long stringBytes(int length) {
+        return objectBytes(1, 8) + arrayBytes(length, 1);
+    }
+
+    public static String format(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " o";
+        }
+        if (bytes < 1024L * 1024) {
+            return String.format("%.1f Ko", bytes / 1024.0);
+        }
+        return String.format("%.1f Mo", bytes / (1024.0 * 1024.0));
+    }
+}